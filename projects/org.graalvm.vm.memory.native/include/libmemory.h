@@ -41,6 +41,11 @@
 #ifndef __LIBMEMORY_H__
 #define __LIBMEMORY_H__
 
+#define MEM_HUGEPAGE_SIZE	(2UL * 1024 * 1024)
+
 long MEM_setup_segv_handler(long lo, long hi, int* err);
 
+/* request transparent huge pages for all complete huge pages in [addr, addr + len) */
+long MEM_madvise_hugepages(long addr, long len, int* err);
+
 #endif
@@ -167,3 +167,26 @@ JNIEXPORT jint JNICALL Java_org_graalvm_vm_memory_hardware_MMU_mprotect
 	}
 	return 0;
 }
+
+JNIEXPORT jint JNICALL Java_org_graalvm_vm_memory_hardware_MMU_madvise
+  (JNIEnv* env, jclass self, jlong addr, jlong len, jint advice)
+{
+	int result = madvise((void*) addr, len, advice);
+	if(result < 0) {
+		throw_posix_exception(env, errno);
+		return 0;
+	}
+	return 0;
+}
+
+JNIEXPORT jlong JNICALL Java_org_graalvm_vm_memory_hardware_MMU_hugepages
+  (JNIEnv* env, jclass self, jlong addr, jlong len)
+{
+	int err = 0;
+	long result = MEM_madvise_hugepages(addr, len, &err);
+	if(result < 0) {
+		throw_posix_exception(env, err);
+		return 0;
+	}
+	return result;
+}
@@ -49,6 +49,7 @@ import org.graalvm.nativeimage.c.function.CLibrary;
 import org.graalvm.nativeimage.c.type.CIntPointer;
 import org.graalvm.vm.posix.api.PosixException;
 import org.graalvm.word.PointerBase;
+import org.graalvm.word.UnsignedWord;
 import org.graalvm.word.WordFactory;
 
 @CLibrary("memory")
@@ -58,6 +59,12 @@ public class LibMemory {
     @CFunction
     protected static native PointerBase MEM_setup_segv_handler(PointerBase lo, PointerBase hi, CIntPointer err);
 
+    @CFunction
+    protected static native int madvise(PointerBase addr, UnsignedWord len, int advice);
+
+    @CFunction
+    protected static native long MEM_madvise_hugepages(long addr, long len, CIntPointer err);
+
     public static long setupSegvHandler(long lo, long hi) throws PosixException {
         CIntPointer err = StackValue.get(CIntPointer.class);
         PointerBase result = MEM_setup_segv_handler(WordFactory.pointer(lo), WordFactory.pointer(hi), err);
@@ -70,4 +77,13 @@ public class LibMemory {
         }
         return result.rawValue();
     }
+
+    public static long madviseHugepages(long addr, long len) throws PosixException {
+        CIntPointer err = StackValue.get(CIntPointer.class);
+        long result = MEM_madvise_hugepages(addr, len, err);
+        if (result < 0) {
+            throw new PosixException(ErrnoTranslator.translate(err.read()));
+        }
+        return result;
+    }
 }
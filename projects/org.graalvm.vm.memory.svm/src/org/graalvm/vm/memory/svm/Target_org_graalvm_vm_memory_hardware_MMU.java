@@ -108,4 +108,19 @@ final class Target_org_graalvm_vm_memory_hardware_MMU {
         }
         return result;
     }
+
+    @Substitute
+    public static int madvise(long addr, long len, int advice) throws PosixException {
+        int result = LibMemory.madvise(WordFactory.pointer(addr), WordFactory.unsigned(len), advice);
+        if (result < 0) {
+            int errno = Errno.errno();
+            throw new PosixException(ErrnoTranslator.translate(errno));
+        }
+        return result;
+    }
+
+    @Substitute
+    public static long hugepages(long addr, long len) throws PosixException {
+        return LibMemory.madviseHugepages(addr, len);
+    }
 }
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.memory.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.graalvm.vm.memory.MemoryAllocator;
+import org.graalvm.vm.memory.VirtualMemory;
+import org.junit.Test;
+
+public class MemoryAllocatorTest {
+    private static final long PAGE = VirtualMemory.PAGE_SIZE;
+    private static final long BASE = VirtualMemory.POINTER_BASE;
+    private static final long SIZE = VirtualMemory.POINTER_END - VirtualMemory.POINTER_BASE;
+
+    @Test
+    public void testFirstFit() {
+        MemoryAllocator alloc = new MemoryAllocator(BASE, SIZE);
+        long a = alloc.alloc(PAGE);
+        long b = alloc.alloc(4 * PAGE);
+        long c = alloc.alloc(PAGE);
+        long d = alloc.alloc(2 * PAGE);
+        assertEquals(BASE, a);
+        assertEquals(BASE + PAGE, b);
+        assertEquals(BASE + 5 * PAGE, c);
+        assertEquals(BASE + 6 * PAGE, d);
+        alloc.free(b, 4 * PAGE);
+        alloc.free(d, 2 * PAGE);
+        alloc.check();
+        // lowest hole which fits
+        assertEquals(b, alloc.alloc(2 * PAGE));
+        assertEquals(b + 2 * PAGE, alloc.alloc(2 * PAGE));
+        assertEquals(d, alloc.alloc(PAGE));
+        assertEquals(7 * PAGE, alloc.getUsedMemory());
+        alloc.check();
+    }
+
+    @Test
+    public void testBestFit() {
+        MemoryAllocator alloc = new MemoryAllocator(BASE, SIZE, MemoryAllocator.Policy.BEST_FIT);
+        long a = alloc.alloc(4 * PAGE);
+        alloc.alloc(PAGE);
+        long b = alloc.alloc(2 * PAGE);
+        alloc.alloc(PAGE);
+        alloc.free(a, 4 * PAGE);
+        alloc.free(b, 2 * PAGE);
+        alloc.check();
+        // smallest hole which fits
+        assertEquals(b, alloc.alloc(2 * PAGE));
+        assertEquals(a, alloc.alloc(3 * PAGE));
+        assertEquals(a + 3 * PAGE, alloc.alloc(PAGE));
+        alloc.check();
+    }
+
+    @Test
+    public void testAllocat() {
+        MemoryAllocator alloc = new MemoryAllocator(BASE, SIZE);
+        assertEquals(BASE + 2 * PAGE, alloc.allocat(BASE + 2 * PAGE, 2 * PAGE));
+        alloc.check();
+        // overlapping an already allocated block
+        alloc.allocat(BASE + 3 * PAGE, 3 * PAGE);
+        alloc.check();
+        assertEquals(4 * PAGE, alloc.getUsedMemory());
+        assertEquals(BASE, alloc.alloc(2 * PAGE));
+        assertEquals(BASE + 6 * PAGE, alloc.alloc(PAGE));
+        // outside of the managed region
+        assertEquals(0x1000, alloc.allocat(0x1000, PAGE));
+        assertEquals(7 * PAGE, alloc.getUsedMemory());
+        alloc.check();
+    }
+
+    @Test
+    public void testPartialFree() {
+        MemoryAllocator alloc = new MemoryAllocator(BASE, SIZE);
+        long a = alloc.alloc(8 * PAGE);
+        // punch a hole, then free the head and the tail
+        alloc.free(a + 2 * PAGE, 2 * PAGE);
+        alloc.check();
+        assertEquals(6 * PAGE, alloc.getUsedMemory());
+        alloc.free(a, PAGE);
+        alloc.free(a + 7 * PAGE, PAGE);
+        alloc.check();
+        assertEquals(4 * PAGE, alloc.getUsedMemory());
+        // range spanning allocated blocks and free space
+        alloc.free(a, 8 * PAGE);
+        alloc.check();
+        assertEquals(0, alloc.getUsedMemory());
+        assertEquals(a, alloc.alloc(16 * PAGE));
+        alloc.free(a);
+        alloc.check();
+        assertEquals(0, alloc.getUsedMemory());
+    }
+
+    @Test
+    public void testOutOfMemory() {
+        MemoryAllocator alloc = new MemoryAllocator(BASE, 4 * PAGE);
+        alloc.alloc(2 * PAGE);
+        try {
+            alloc.alloc(3 * PAGE);
+            fail();
+        } catch (OutOfMemoryError e) {
+            alloc.check();
+            assertEquals(2 * PAGE, alloc.getUsedMemory());
+        }
+    }
+
+    private static void stress(MemoryAllocator.Policy policy) {
+        MemoryAllocator alloc = new MemoryAllocator(BASE, SIZE, policy);
+        Random rng = new Random(42);
+        List<long[]> live = new ArrayList<>();
+        long usedMemory = 0;
+        for (int i = 0; i < 100_000; i++) {
+            // mmap
+            long size = (1 + rng.nextInt(64)) * PAGE;
+            long addr = alloc.alloc(size);
+            assertTrue(Long.compareUnsigned(addr, BASE) >= 0);
+            live.add(new long[]{addr, size});
+            usedMemory += size;
+
+            // munmap a random mapping, sometimes only partially
+            if (live.size() > 2000 || rng.nextBoolean()) {
+                int idx = rng.nextInt(live.size());
+                long[] m = live.get(idx);
+                if (m[1] > PAGE && rng.nextInt(4) == 0) {
+                    long pages = m[1] / PAGE;
+                    long off = rng.nextInt((int) pages - 1) + 1;
+                    alloc.free(m[0] + off * PAGE, m[1] - off * PAGE);
+                    usedMemory -= m[1] - off * PAGE;
+                    m[1] = off * PAGE;
+                } else {
+                    alloc.free(m[0], m[1]);
+                    usedMemory -= m[1];
+                    live.set(idx, live.get(live.size() - 1));
+                    live.remove(live.size() - 1);
+                }
+            }
+
+            if (i % 1000 == 0) {
+                alloc.check();
+            }
+        }
+        assertEquals(usedMemory, alloc.getUsedMemory());
+        alloc.check();
+
+        for (long[] m : live) {
+            alloc.free(m[0], m[1]);
+        }
+        assertEquals(0, alloc.getUsedMemory());
+        alloc.check();
+        assertEquals(BASE, alloc.alloc(SIZE));
+    }
+
+    @Test
+    public void stressFirstFit() {
+        stress(MemoryAllocator.Policy.FIRST_FIT);
+    }
+
+    @Test
+    public void stressBestFit() {
+        stress(MemoryAllocator.Policy.BEST_FIT);
+    }
+}
@@ -41,13 +41,23 @@
 package org.graalvm.vm.memory.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
 
 import org.graalvm.vm.memory.ByteMemory;
 import org.graalvm.vm.memory.JavaVirtualMemory;
 import org.graalvm.vm.memory.Memory;
 import org.graalvm.vm.memory.MemoryPage;
+import org.graalvm.vm.memory.PagedMemory;
+import org.graalvm.vm.memory.PosixVirtualMemoryPointer;
 import org.graalvm.vm.memory.VirtualMemory;
+import org.graalvm.vm.memory.exception.SegmentationViolation;
+import org.graalvm.vm.posix.api.Errno;
 import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.posix.api.mem.Mman;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -161,4 +171,323 @@ public class VirtualMemoryTest {
 
         assertEquals(0xC0DEBABE, m.getI32(0x1d6010));
     }
+
+    private static void assertFault(Runnable access) {
+        try {
+            access.run();
+            fail();
+        } catch (SegmentationViolation e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void mprotect001() throws PosixException {
+        JavaVirtualMemory jvm = (JavaVirtualMemory) vm;
+        Memory m = new ByteMemory(4 * 4096);
+        MemoryPage p = new MemoryPage(m, 0x7f0000100000L, 4 * 4096);
+        vm.add(p);
+        int pages = jvm.getPages().size();
+        long seq = vm.getMapSequence();
+
+        // guard page in the middle of the mapping
+        vm.mprotect(0x7f0000101000L, 4096, false, false, false);
+        assertEquals(pages, jvm.getPages().size());
+        assertEquals(seq, vm.getMapSequence());
+        assertFault(() -> vm.getI8(0x7f0000101000L));
+        assertFault(() -> vm.setI32(0x7f0000101ffcL, 0));
+        // access crossing into the guard page
+        assertFault(() -> vm.getI64(0x7f0000100ffcL));
+        vm.setI32(0x7f0000100ffcL, 0xDEADBEEF);
+        vm.setI32(0x7f0000102000L, 0xC0DEBABE);
+        assertEquals(0xDEADBEEF, m.getI32(0xffc));
+        assertEquals(0xC0DEBABE, m.getI32(0x2000));
+
+        // W^X toggle on the last page
+        vm.mprotect(0x7f0000103000L, 4096, true, false, true);
+        assertFault(() -> vm.setI8(0x7f0000103000L, (byte) 1));
+        assertTrue(vm.isExecutable(0x7f0000103000L));
+        vm.mprotect(0x7f0000103000L, 4096, true, true, false);
+        vm.setI8(0x7f0000103000L, (byte) 1);
+        assertFalse(vm.isExecutable(0x7f0000103000L));
+
+        vm.mprotect(0x7f0000101000L, 4096, true, true, true);
+        vm.setI32(0x7f0000101000L, 0xCAFEBABE);
+        assertEquals(0xCAFEBABE, m.getI32(0x1000));
+        assertEquals(pages, jvm.getPages().size());
+        assertEquals(seq, vm.getMapSequence());
+    }
+
+    @Test
+    public void mprotect002() throws PosixException {
+        Memory m = new ByteMemory(4 * 4096);
+        MemoryPage p = new MemoryPage(m, 0x7f0000100000L, 4 * 4096, "[stack]");
+        vm.add(p);
+        vm.mprotect(0x7f0000100000L, 4096, false, false, false);
+
+        // unmapping part of a mapping keeps the protection of the remaining pages
+        vm.remove(0x7f0000103000L, 4096);
+        assertFault(() -> vm.getI8(0x7f0000100000L));
+        vm.setI8(0x7f0000101000L, (byte) 1);
+        assertEquals(String.format("%016x-%016x ---p %08x 00:00 0 [stack]\n%016x-%016x rwxp %08x 00:00 0 [stack]",
+                        0x7f0000100000L, 0x7f0000101000L, 0, 0x7f0000101000L, 0x7f0000103000L, 0x1000),
+                        vm.get(0x7f0000101000L).toString());
+    }
+
+    @Test
+    public void mprotectGuardPages() throws PosixException {
+        // thread stacks with guard pages which are toggled like a W^X JIT or a growing stack would
+        JavaVirtualMemory jvm = (JavaVirtualMemory) vm;
+        long base = 0x7f0001000000L;
+        long stack = 16 * 4096;
+        int threads = 256;
+        for (int i = 0; i < threads; i++) {
+            vm.add(new MemoryPage(new ByteMemory(stack), base + i * stack, stack));
+        }
+        int pages = jvm.getPages().size();
+        long seq = vm.getMapSequence();
+        for (int i = 0; i < 100_000; i++) {
+            long addr = base + (i % threads) * stack + ((i / threads) % 16) * 4096;
+            vm.mprotect(addr, 4096, false, false, false);
+            assertFalse(jvm.get(addr).isReadable(addr));
+            vm.mprotect(addr, 4096, true, true, false);
+            vm.setI64(addr, i);
+        }
+        assertEquals(pages, jvm.getPages().size());
+        assertEquals(seq, vm.getMapSequence());
+    }
+
+    @Test
+    public void bulk001() {
+        // two adjacent mappings with different backing memory
+        Memory m1 = new ByteMemory(2 * 4096);
+        Memory m2 = new PagedMemory(3 * 4096);
+        vm.add(new MemoryPage(m1, 0x7f0000100000L, 2 * 4096));
+        vm.add(new MemoryPage(m2, 0x7f0000102000L, 3 * 4096));
+
+        byte[] data = new byte[3 * 4096];
+        new Random(42).nextBytes(data);
+        assertEquals(data.length - 16, vm.setBytes(0x7f0000100800L, data, 16, data.length - 16));
+        for (int i = 16; i < data.length; i++) {
+            assertEquals(data[i], vm.getI8(0x7f0000100800L + i - 16));
+        }
+
+        byte[] out = new byte[data.length];
+        assertEquals(data.length - 16, vm.getBytes(0x7f0000100800L, out, 0, data.length - 16));
+        for (int i = 16; i < data.length; i++) {
+            assertEquals(data[i], out[i - 16]);
+        }
+
+        // pages which were never written read as zero
+        assertEquals(4096, vm.getBytes(0x7f0000104000L, out, 0, 4096));
+        for (int i = 0; i < 4096; i++) {
+            assertEquals(0, out[i]);
+        }
+    }
+
+    @Test
+    public void bulk002() throws PosixException {
+        Memory m = new ByteMemory(4 * 4096);
+        vm.add(new MemoryPage(m, 0x7f0000100000L, 4 * 4096));
+        vm.mprotect(0x7f0000102000L, 4096, true, false, false);
+        vm.mprotect(0x7f0000103000L, 4096, false, false, false);
+
+        byte[] buf = new byte[4 * 4096];
+        // the copy stops at the first page without the required permission
+        assertEquals(2 * 4096 - 16, vm.setBytes(0x7f0000100010L, buf, 0, buf.length - 16));
+        assertEquals(3 * 4096 - 16, vm.getBytes(0x7f0000100010L, buf, 0, buf.length - 16));
+        // a fault at the first byte is reported as such
+        assertFault(() -> vm.setBytes(0x7f0000102000L, buf, 0, 16));
+        assertFault(() -> vm.getBytes(0x7f0000103000L, buf, 0, 16));
+        assertFault(() -> vm.getBytes(0x7f0000200000L, buf, 0, 16));
+        assertEquals(0, vm.getBytes(0x7f0000200000L, buf, 0, 0));
+    }
+
+    @Test
+    public void arrayPage001() throws PosixException {
+        vm.add(new MemoryPage(new ByteMemory(4096), 0x7f0000100000L, 4096));
+        vm.add(new MemoryPage(new ByteMemory(4096), 0x7f0000101000L, 4096));
+        vm.mprotect(0x7f0000100000L, 4096, true, true, false);
+
+        PosixVirtualMemoryPointer data = new PosixVirtualMemoryPointer(vm, 0x7f0000100000L);
+        PosixVirtualMemoryPointer code = new PosixVirtualMemoryPointer(vm, 0x7f0000101000L);
+        assertTrue(data.hasMemory(4096));
+        assertFalse(data.hasMemory(4097));
+        // executable pages are never exposed as arrays so that writes reach the code cache
+        assertFalse(code.hasMemory(16));
+    }
+
+    @Test
+    public void madvise001() throws PosixException {
+        MemoryPage p = vm.allocate(16 * 4096, "[heap]");
+        long resident = vm.getResidentSize();
+        for (long addr = p.base; addr < p.end; addr += 4096) {
+            vm.setI64(addr + 8, 0x0123456789ABCDEFL);
+        }
+        assertEquals(resident + 16 * 4096, vm.getResidentSize());
+
+        vm.madvise(p.base + 4 * 4096, 8 * 4096, Mman.MADV_DONTNEED);
+        assertEquals(resident + 8 * 4096, vm.getResidentSize());
+        assertEquals(0x0123456789ABCDEFL, vm.getI64(p.base + 3 * 4096 + 8));
+        assertEquals(0, vm.getI64(p.base + 4 * 4096 + 8));
+        assertEquals(0, vm.getI64(p.base + 11 * 4096 + 8));
+        assertEquals(0x0123456789ABCDEFL, vm.getI64(p.base + 12 * 4096 + 8));
+
+        // pure hints keep the contents
+        vm.madvise(p.base, 16 * 4096, Mman.MADV_WILLNEED);
+        assertEquals(0x0123456789ABCDEFL, vm.getI64(p.base + 8));
+    }
+
+    @Test
+    public void madvise002() throws PosixException {
+        // memory which cannot give pages back is at least zeroed
+        Memory m = new ByteMemory(8192);
+        vm.add(new MemoryPage(m, 0x7f0000100000L, 8192));
+        vm.setI32(0x7f0000100010L, 0xDEADBEEF);
+        vm.setI32(0x7f0000101010L, 0xC0DEBABE);
+        vm.madvise(0x7f0000100000L, 4096, Mman.MADV_FREE);
+        assertEquals(0, m.getI32(0x10));
+        assertEquals(0xC0DEBABE, m.getI32(0x1010));
+
+        try {
+            vm.madvise(0x7f0000200000L, 4096, Mman.MADV_DONTNEED);
+            fail();
+        } catch (PosixException e) {
+            assertEquals(Errno.ENOMEM, e.getErrno());
+        }
+    }
+
+    @Test
+    public void madviseSoak() throws PosixException {
+        // a malloc arena which is repeatedly filled and trimmed, plus short lived mmap chunks
+        long baseline = vm.getResidentSize();
+        MemoryPage arena = vm.allocate(64 * 1024 * 1024, "[heap]");
+        Random rng = new Random(0);
+        for (int i = 0; i < 2000; i++) {
+            long off = (rng.nextInt(1024) * 4096L) % (arena.size - 256 * 4096);
+            long len = (1 + rng.nextInt(256)) * 4096L;
+            for (long p = 0; p < len; p += 4096) {
+                vm.setI64(arena.base + off + p, i);
+            }
+            MemoryPage chunk = vm.allocate(1024 * 1024, "[anon]");
+            vm.setI64(chunk.base + 4096 * rng.nextInt(256), i);
+            assertEquals(i, vm.getI64(arena.base + off));
+            vm.madvise(arena.base + off, len, i % 2 == 0 ? Mman.MADV_DONTNEED : Mman.MADV_FREE);
+            vm.remove(chunk.base, chunk.size);
+            assertEquals(baseline, vm.getResidentSize());
+        }
+        assertEquals(0, vm.getI64(arena.base));
+    }
+
+    @Test
+    public void cmpxchg001() {
+        MemoryPage p = vm.allocate(2 * 4096, "[heap]");
+        long addr = p.base + 0x100;
+        assertTrue(vm.cmpxchgI32(addr, 0, 0xCAFEBABE));
+        assertFalse(vm.cmpxchgI32(addr, 0, 0x12345678));
+        assertEquals(0xCAFEBABE, vm.getI32(addr));
+        assertTrue(vm.cmpxchgI64(addr, 0x00000000CAFEBABEL, 0x0123456789ABCDEFL));
+        assertFalse(vm.cmpxchgI64(addr, 0x00000000CAFEBABEL, 0));
+        assertTrue(vm.cmpxchgI8(addr + 2, (byte) 0xAB, (byte) 0x42));
+        assertFalse(vm.cmpxchgI8(addr + 2, (byte) 0xAB, (byte) 0x00));
+        assertTrue(vm.cmpxchgI16(addr + 5, (short) 0x2345, (short) 0x1122));
+        assertEquals(0x011122678942CDEFL, vm.getI64(addr));
+
+        // unaligned and across the page boundary
+        long split = p.base + 4096 - 4;
+        vm.setI64(split, 0x1111111122222222L);
+        assertFalse(vm.cmpxchgI64(split, 0, 1));
+        assertTrue(vm.cmpxchgI64(split, 0x1111111122222222L, 0x3333333344444444L));
+        assertEquals(0x33333333, vm.getI32(p.base + 4096));
+        assertTrue(vm.cmpxchgI32(split + 2, 0x33334444, 0x55556666));
+        assertEquals(0x3333555566664444L, vm.getI64(split));
+    }
+
+    @Test
+    public void cmpxchg002() throws PosixException {
+        MemoryPage p = vm.allocate(4096, "[heap]");
+        vm.mprotect(p.base, 4096, true, false, false);
+        assertFault(() -> vm.cmpxchgI32(p.base, 0, 1));
+        assertEquals(0, vm.getI32(p.base));
+    }
+
+    private static void runThreads(int count, Runnable body) {
+        Thread[] threads = new Thread[count];
+        for (int i = 0; i < count; i++) {
+            threads[i] = new Thread(body);
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private void atomicCounters(long base) {
+        // lock inc / lock xadd on aligned, unaligned and sub-word counters
+        int threads = 8;
+        int iterations = 20000;
+        runThreads(threads, () -> {
+            for (int i = 0; i < iterations; i++) {
+                long l;
+                do {
+                    l = vm.getI64(base);
+                } while (!vm.cmpxchgI64(base, l, l + 1));
+                int n;
+                do {
+                    n = vm.getI32(base + 13);
+                } while (!vm.cmpxchgI32(base + 13, n, n + 3));
+                byte b;
+                do {
+                    b = vm.getI8(base + 8);
+                } while (!vm.cmpxchgI8(base + 8, b, (byte) (b + 1)));
+                short s;
+                do {
+                    s = vm.getI16(base + 10);
+                } while (!vm.cmpxchgI16(base + 10, s, (short) (s + 1)));
+            }
+        });
+        assertEquals((long) threads * iterations, vm.getI64(base));
+        assertEquals(threads * iterations * 3, vm.getI32(base + 13));
+        assertEquals((byte) (threads * iterations), vm.getI8(base + 8));
+        assertEquals(0, vm.getI8(base + 9));
+        assertEquals((short) (threads * iterations), vm.getI16(base + 10));
+        assertEquals(0, vm.getI8(base + 12));
+    }
+
+    @Test
+    public void cmpxchgCounters() {
+        atomicCounters(vm.allocate(4096, "[heap]").base + 0x40);
+        Memory m = new ByteMemory(4096, false);
+        vm.add(new MemoryPage(m, 0x7f0000100000L, 4096));
+        atomicCounters(0x7f0000100040L);
+        // byte and half word counters in the same word as the page boundary is crossed
+        vm.add(new MemoryPage(new PagedMemory(8192, false), 0x7f0000200000L, 8192));
+        atomicCounters(0x7f0000200000L + 4096 - 16);
+    }
+
+    @Test
+    public void cmpxchgSpinlock() {
+        MemoryPage p = vm.allocate(4096, "[heap]");
+        long lock = p.base;
+        long counter = p.base + 64;
+        int threads = 8;
+        int iterations = 20000;
+        runThreads(threads, () -> {
+            for (int i = 0; i < iterations; i++) {
+                while (!vm.cmpxchgI32(lock, 0, 1)) {
+                    Thread.yield();
+                }
+                vm.setI64(counter, vm.getI64(counter) + 1);
+                while (!vm.cmpxchgI32(lock, 1, 0)) {
+                    fail("lock lost");
+                }
+            }
+        });
+        assertEquals((long) threads * iterations, vm.getI64(counter));
+        assertEquals(0, vm.getI32(lock));
+    }
 }
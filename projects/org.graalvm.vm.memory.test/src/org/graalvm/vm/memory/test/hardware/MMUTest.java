@@ -46,10 +46,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import org.graalvm.vm.memory.MemoryPage;
 import org.graalvm.vm.memory.exception.SegmentationViolation;
+import org.graalvm.vm.memory.hardware.MMU;
 import org.graalvm.vm.memory.hardware.NativeMemory;
 import org.graalvm.vm.memory.hardware.NativeVirtualMemory;
 import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.posix.api.mem.Mman;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -118,6 +121,62 @@ public class MMUTest {
         }
     }
 
+    @Test
+    public void vmMadvise01() throws PosixException {
+        long ptr = mmap(mem.getPhysicalLow(), 8192, true, true, false, true, true, false, -1, 0);
+        try {
+            mem.i32L(0, 0xDEADBEEF);
+            mem.i32L(4096, 0xCAFEBABE);
+            MMU.madvise(ptr, 4096, Mman.MADV_DONTNEED);
+            assertEquals(0, mem.i32L(0));
+            assertEquals(0xCAFEBABE, mem.i32L(4096));
+        } finally {
+            munmap(ptr, 8192);
+        }
+    }
+
+    @Test
+    public void vmHugepages01() {
+        mem.setHugepages(true);
+        MemoryPage page = mem.allocate(3 * MMU.HUGEPAGE_SIZE + 4096, "[heap]");
+        assertEquals(0, page.base % MMU.HUGEPAGE_SIZE);
+        for (long off = 0; off < page.size; off += 4096) {
+            mem.setI64(page.base + off, off);
+        }
+        for (long off = 0; off < page.size; off += 4096) {
+            assertEquals(off, mem.getI64(page.base + off));
+        }
+    }
+
+    // memory bound guest: random read-modify-write accesses all over a large heap
+    private static long randomAccess(NativeVirtualMemory vm, long size, int count) {
+        MemoryPage page = vm.allocate(size, "[heap]");
+        long words = size / 8;
+        long state = 0x2545F4914F6CDD1DL;
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            state ^= state << 13;
+            state ^= state >>> 7;
+            state ^= state << 17;
+            long addr = page.base + Long.remainderUnsigned(state, words) * 8;
+            long value = vm.getI64(addr);
+            sum += value;
+            vm.setI64(addr, value + state);
+        }
+        return sum;
+    }
+
+    @Test
+    public void vmHugepagesRandomAccess() {
+        long size = 256 * 1024 * 1024;
+        int count = 4 * 1024 * 1024;
+        mem.setHugepages(false);
+        long sum = randomAccess(mem, size, count);
+        NativeVirtualMemory huge = new NativeVirtualMemory(NativeVirtualMemory.LOW, NativeVirtualMemory.HIGH, 0, NativeVirtualMemory.SIZE);
+        huge.setHugepages(true);
+        assertEquals(sum, randomAccess(huge, size, count));
+    }
+
     @Test
     public void segfault() {
         NativeMemory.i8(NativeVirtualMemory.LOW);
@@ -40,7 +40,10 @@
  */
 package org.graalvm.vm.memory;
 
+import java.util.Arrays;
+
 import org.graalvm.vm.memory.exception.SegmentationViolation;
+import org.graalvm.vm.util.io.ByteArrayAccess;
 import org.graalvm.vm.util.io.Endianess;
 
 public class ByteMemory extends Memory {
@@ -236,12 +239,118 @@ public class ByteMemory extends Memory {
         data = null;
     }
 
+    @Override
+    public void discard(long pos, long len) {
+        assert pos == (int) pos && pos + len == (int) (pos + len);
+        check(pos);
+        Arrays.fill(data, (int) pos, (int) (pos + len), (byte) 0);
+    }
+
     @Override
     public void memcpy(byte[] dst, long off) {
         assert off == (int) off : String.format("Invalid offset 0x%016X", off);
         System.arraycopy(data, (int) off, dst, 0, dst.length);
     }
 
+    @Override
+    public void get(long pos, byte[] dst, int off, int len) {
+        assert pos == (int) pos;
+        check(pos);
+        try {
+            System.arraycopy(data, (int) pos, dst, off, len);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new SegmentationViolation(this, pos);
+        }
+    }
+
+    @Override
+    public void set(long pos, byte[] src, int off, int len) {
+        assert pos == (int) pos;
+        check(pos);
+        try {
+            System.arraycopy(src, off, data, (int) pos, len);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new SegmentationViolation(this, pos);
+        }
+    }
+
+    @Override
+    public boolean cmpxchgI8(long pos, byte expected, byte x) {
+        assert pos == (int) pos;
+        check(pos);
+        if (ByteArrayAccess.isAtomic(data, (int) pos, 1)) {
+            return ByteArrayAccess.casI8(data, (int) pos, expected, x);
+        } else {
+            return super.cmpxchgI8(pos, expected, x);
+        }
+    }
+
+    @Override
+    public boolean cmpxchgI16L(long pos, short expected, short x) {
+        assert pos == (int) pos;
+        check(pos);
+        if (ByteArrayAccess.isAtomic(data, (int) pos, 2)) {
+            return ByteArrayAccess.casI16LE(data, (int) pos, expected, x);
+        } else {
+            return super.cmpxchgI16L(pos, expected, x);
+        }
+    }
+
+    @Override
+    public boolean cmpxchgI16B(long pos, short expected, short x) {
+        assert pos == (int) pos;
+        check(pos);
+        if (ByteArrayAccess.isAtomic(data, (int) pos, 2)) {
+            return ByteArrayAccess.casI16BE(data, (int) pos, expected, x);
+        } else {
+            return super.cmpxchgI16B(pos, expected, x);
+        }
+    }
+
+    @Override
+    public boolean cmpxchgI32L(long pos, int expected, int x) {
+        assert pos == (int) pos;
+        check(pos);
+        if (ByteArrayAccess.isAtomic(data, (int) pos, 4)) {
+            return ByteArrayAccess.casI32LE(data, (int) pos, expected, x);
+        } else {
+            return super.cmpxchgI32L(pos, expected, x);
+        }
+    }
+
+    @Override
+    public boolean cmpxchgI32B(long pos, int expected, int x) {
+        assert pos == (int) pos;
+        check(pos);
+        if (ByteArrayAccess.isAtomic(data, (int) pos, 4)) {
+            return ByteArrayAccess.casI32BE(data, (int) pos, expected, x);
+        } else {
+            return super.cmpxchgI32B(pos, expected, x);
+        }
+    }
+
+    @Override
+    public boolean cmpxchgI64L(long pos, long expected, long x) {
+        assert pos == (int) pos;
+        check(pos);
+        if (ByteArrayAccess.isAtomic(data, (int) pos, 8)) {
+            return ByteArrayAccess.casI64LE(data, (int) pos, expected, x);
+        } else {
+            return super.cmpxchgI64L(pos, expected, x);
+        }
+    }
+
+    @Override
+    public boolean cmpxchgI64B(long pos, long expected, long x) {
+        assert pos == (int) pos;
+        check(pos);
+        if (ByteArrayAccess.isAtomic(data, (int) pos, 8)) {
+            return ByteArrayAccess.casI64BE(data, (int) pos, expected, x);
+        } else {
+            return super.cmpxchgI64B(pos, expected, x);
+        }
+    }
+
     @Override
     public long size() {
         return data.length;
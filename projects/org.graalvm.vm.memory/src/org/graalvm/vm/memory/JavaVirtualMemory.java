@@ -43,8 +43,10 @@ package org.graalvm.vm.memory;
 import java.io.PrintStream;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Set;
 import java.util.TreeMap;
 
 import org.graalvm.vm.memory.exception.SegmentationViolation;
@@ -53,6 +55,7 @@ import org.graalvm.vm.memory.vector.Vector256;
 import org.graalvm.vm.memory.vector.Vector512;
 import org.graalvm.vm.posix.api.Errno;
 import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.posix.api.mem.Mman;
 import org.graalvm.vm.util.io.Endianess;
 
 import com.oracle.truffle.api.CompilerAsserts;
@@ -87,6 +90,11 @@ public class JavaVirtualMemory extends VirtualMemory {
         return Collections.unmodifiableCollection(pages.values());
     }
 
+    @Override
+    public boolean supportsSharedMapping(long address) {
+        return true;
+    }
+
     @TruffleBoundary
     @Override
     public void add(MemoryPage page) {
@@ -241,7 +249,7 @@ public class JavaVirtualMemory extends VirtualMemory {
         if (base == 0) {
             return null;
         } else {
-            Memory mem = new ByteMemory(size, bigEndian);
+            Memory mem = new PagedMemory(size, bigEndian);
             MemoryPage page = new MemoryPage(mem, base, size, name);
             add(page);
             return page;
@@ -635,84 +643,218 @@ public class JavaVirtualMemory extends VirtualMemory {
         }
     }
 
-    // TODO: this is *not* atomic for now!
+    @TruffleBoundary
+    @Override
+    public int getBytes(long address, byte[] dst, int off, int len) {
+        int done = 0;
+        try {
+            while (done < len) {
+                long ptr = addr(address + done);
+                MemoryPage page = get(ptr);
+                done += page.getBytes(ptr, dst, off + done, len - done);
+            }
+        } catch (SegmentationViolation e) {
+            if (done == 0) {
+                throw e;
+            }
+        }
+        return done;
+    }
+
+    @TruffleBoundary
+    @Override
+    public int setBytes(long address, byte[] src, int off, int len) {
+        int done = 0;
+        try {
+            while (done < len) {
+                long ptr = addr(address + done);
+                MemoryPage page = get(ptr);
+                done += page.setBytes(ptr, src, off + done, len - done);
+            }
+        } catch (SegmentationViolation e) {
+            if (done == 0) {
+                throw e;
+            }
+        }
+        return done;
+    }
+
+    @TruffleBoundary
     @Override
     public boolean cmpxchgI8(long address, byte expected, byte x) {
-        setI8(address, x);
-        return true;
+        long ptr = addr(address);
+        MemoryPage page = get(ptr);
+        boolean ok = page.cmpxchgI8(ptr, expected, x);
+        if (ok) {
+            logMemoryWrite(address, 1, x);
+        }
+        return ok;
     }
 
+    @TruffleBoundary
     @Override
     public boolean cmpxchgI16(long address, short expected, short x) {
-        setI16(address, x);
-        return true;
+        long ptr = addr(address);
+        MemoryPage page = get(ptr);
+        boolean ok;
+        try {
+            ok = page.cmpxchgI16(ptr, expected, x);
+        } catch (SegmentationViolation e) { // unaligned access across page boundary
+            synchronized (this) {
+                ok = getI16(address) == expected;
+                if (ok) {
+                    setI16(address, x);
+                }
+            }
+            return ok;
+        }
+        if (ok) {
+            logMemoryWrite(address, 2, x);
+        }
+        return ok;
     }
 
+    @TruffleBoundary
     @Override
     public boolean cmpxchgI32(long address, int expected, int x) {
-        setI32(address, x);
-        return true;
+        long ptr = addr(address);
+        MemoryPage page = get(ptr);
+        boolean ok;
+        try {
+            ok = page.cmpxchgI32(ptr, expected, x);
+        } catch (SegmentationViolation e) { // unaligned access across page boundary
+            synchronized (this) {
+                ok = getI32(address) == expected;
+                if (ok) {
+                    setI32(address, x);
+                }
+            }
+            return ok;
+        }
+        if (ok) {
+            logMemoryWrite(address, 4, x);
+        }
+        return ok;
     }
 
+    @TruffleBoundary
     @Override
     public boolean cmpxchgI64(long address, long expected, long x) {
-        setI64(address, x);
-        return true;
+        long ptr = addr(address);
+        MemoryPage page = get(ptr);
+        boolean ok;
+        try {
+            ok = page.cmpxchgI64(ptr, expected, x);
+        } catch (SegmentationViolation e) { // unaligned access across page boundary
+            synchronized (this) {
+                ok = getI64(address) == expected;
+                if (ok) {
+                    setI64(address, x);
+                }
+            }
+            return ok;
+        }
+        if (ok) {
+            logMemoryWrite(address, 8, x);
+        }
+        return ok;
     }
 
+    @TruffleBoundary
     @Override
     public boolean cmpxchgI128(long address, Vector128 expected, Vector128 x) {
-        setI128(address, x);
-        return true;
+        long ptr = addr(address);
+        MemoryPage page = get(ptr);
+        boolean ok;
+        try {
+            ok = page.cmpxchgI128(ptr, expected, x);
+        } catch (SegmentationViolation e) { // unaligned access across page boundary
+            synchronized (this) {
+                ok = getI128(address).equals(expected);
+                if (ok) {
+                    setI128(address, x);
+                }
+            }
+            return ok;
+        }
+        if (ok) {
+            logMemoryWrite(address, x);
+        }
+        return ok;
     }
 
     @TruffleBoundary
     @Override
     public void mprotect(long address, long len, boolean r, boolean w, boolean x) throws PosixException {
-        long remaining = len;
-        long p = address;
-        while (remaining > 0) {
+        long addr = addr(address);
+        if ((addr & ~PAGE_MASK) != 0) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        long end = addr + roundToPageSize(len);
+        for (long p = addr; Long.compareUnsigned(p, end) < 0;) {
             MemoryPage page = get(p);
-            if (page.base == addr(p) && Long.compareUnsigned(page.size, remaining) <= 0) {
-                // whole "page"
-                page.r = r;
-                page.w = w;
-                page.x = x;
-                p = page.end;
-                remaining -= page.size;
-            } else if (page.base == addr(p) && Long.compareUnsigned(page.size, remaining) > 0) {
-                // split, modify first part
-                MemoryPage p1 = new MemoryPage(page, page.base, remaining);
-                MemoryPage p2 = new MemoryPage(page, page.base + remaining, page.size - remaining);
-                p1.r = r;
-                p1.w = w;
-                p1.x = x;
-                pages.remove(page.base);
-                pages.put(p1.base, p1);
-                pages.put(p2.base, p2);
-                return;
-            } else {
-                // split, modify second part
-                assert Long.compareUnsigned(page.base, p) < 0;
-                long off = p - page.base;
-                MemoryPage p1 = new MemoryPage(page, page.base, off);
-                MemoryPage p2 = new MemoryPage(page, page.base + off, page.size - off);
-                p2.r = r;
-                p2.w = w;
-                p2.x = x;
-                pages.remove(page.base);
-                pages.put(p1.base, p1);
-                pages.put(p2.base, p2);
-                p = page.end;
-                remaining -= page.size;
+            // protection is changed in place, so the mapping table and the caches stay valid
+            page.protect(p, end - p, r, w, x);
+            p = page.end;
+        }
+    }
+
+    @TruffleBoundary
+    @Override
+    public void madvise(long address, long len, int advice) throws PosixException {
+        if (advice != Mman.MADV_DONTNEED && advice != Mman.MADV_FREE) {
+            return;
+        }
+        long addr = addr(address);
+        long end = addr + roundToPageSize(len);
+        for (long p = addr; Long.compareUnsigned(p, end) < 0;) {
+            MemoryPage page;
+            try {
+                page = get(p);
+            } catch (SegmentationViolation e) {
+                throw new PosixException(Errno.ENOMEM);
+            }
+            Memory memory = page.getMemory();
+            long offset = page.getOffset(p);
+            long length = (Long.compareUnsigned(page.end, end) < 0 ? page.end : end) - p;
+            if (length > memory.size() - offset) {
+                length = memory.size() - offset;
+            }
+            if (length > 0) {
+                memory.discard(offset, length);
+            }
+            p = page.end;
+        }
+    }
+
+    @TruffleBoundary
+    @Override
+    public long getResidentSize() {
+        // several pages can share one Memory after splits
+        Set<Memory> memories = Collections.newSetFromMap(new IdentityHashMap<>());
+        long size = 0;
+        for (MemoryPage page : pages.values()) {
+            if (memories.add(page.getMemory())) {
+                size += page.getMemory().getResidentSize();
             }
         }
+        return size;
     }
 
     @Override
     public boolean isExecutable(long address) {
         MemoryPage page = get(address);
-        return page.x;
+        return page.isExecutable(addr(address));
+    }
+
+    @TruffleBoundary
+    @Override
+    public MemoryView getCodeView(long address) {
+        long addr = addr(address);
+        if (addr != address || !contains(addr)) {
+            return null;
+        }
+        return get(addr).getCodeView(addr);
     }
 
     @Override
@@ -364,12 +364,131 @@ public abstract class Memory {
         }
     }
 
+    /**
+     * Atomically replaces the value at pos with x if it currently equals expected. The default
+     * implementation serializes all compare-and-exchange operations on this memory object;
+     * subclasses override it with lock-free versions where the host allows it.
+     */
+    public synchronized boolean cmpxchgI8(long pos, byte expected, byte x) {
+        if (getI8(pos) == expected) {
+            setI8(pos, x);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public synchronized boolean cmpxchgI16L(long pos, short expected, short x) {
+        if (getI16L(pos) == expected) {
+            setI16L(pos, x);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public synchronized boolean cmpxchgI16B(long pos, short expected, short x) {
+        if (getI16B(pos) == expected) {
+            setI16B(pos, x);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public synchronized boolean cmpxchgI32L(long pos, int expected, int x) {
+        if (getI32L(pos) == expected) {
+            setI32L(pos, x);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public synchronized boolean cmpxchgI32B(long pos, int expected, int x) {
+        if (getI32B(pos) == expected) {
+            setI32B(pos, x);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public synchronized boolean cmpxchgI64L(long pos, long expected, long x) {
+        if (getI64L(pos) == expected) {
+            setI64L(pos, x);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public synchronized boolean cmpxchgI64B(long pos, long expected, long x) {
+        if (getI64B(pos) == expected) {
+            setI64B(pos, x);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public synchronized boolean cmpxchgI128(long pos, Vector128 expected, Vector128 x) {
+        if (getI128(pos).equals(expected)) {
+            setI128(pos, x);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public boolean cmpxchgI16(long pos, short expected, short x) {
+        if (isBE) {
+            return cmpxchgI16B(pos, expected, x);
+        } else {
+            return cmpxchgI16L(pos, expected, x);
+        }
+    }
+
+    public boolean cmpxchgI32(long pos, int expected, int x) {
+        if (isBE) {
+            return cmpxchgI32B(pos, expected, x);
+        } else {
+            return cmpxchgI32L(pos, expected, x);
+        }
+    }
+
+    public boolean cmpxchgI64(long pos, long expected, long x) {
+        if (isBE) {
+            return cmpxchgI64B(pos, expected, x);
+        } else {
+            return cmpxchgI64L(pos, expected, x);
+        }
+    }
+
     public void memcpy(byte[] dst, long off) {
         for (int i = 0; i < dst.length; i++) {
             dst[i] = getI8(off + i);
         }
     }
 
+    /**
+     * Copies [pos, pos + len) to dst[off].
+     */
+    public void get(long pos, byte[] dst, int off, int len) {
+        for (int i = 0; i < len; i++) {
+            dst[off + i] = getI8(pos + i);
+        }
+    }
+
+    /**
+     * Copies src[off, off + len) to [pos, pos + len).
+     */
+    public void set(long pos, byte[] src, int off, int len) {
+        for (int i = 0; i < len; i++) {
+            setI8(pos + i, src[off + i]);
+        }
+    }
+
     public byte[] get(long off, long len) {
         assert len == (int) len : String.format("Invalid length 0x%016X", off);
         byte[] out = new byte[(int) len];
@@ -377,6 +496,23 @@ public abstract class Memory {
         return out;
     }
 
+    /**
+     * Releases the contents of [pos, pos + len) like MADV_DONTNEED does for anonymous memory: the
+     * range reads as zero afterwards and, where possible, no longer occupies host memory.
+     */
+    public void discard(long pos, long len) {
+        for (long i = 0; i < len; i++) {
+            setI8(pos + i, (byte) 0);
+        }
+    }
+
+    /**
+     * Returns the number of bytes which actually occupy host memory.
+     */
+    public long getResidentSize() {
+        return size();
+    }
+
     public void free() {
         if (free) {
             throw new DoubleFreeException(this);
@@ -40,45 +40,68 @@
  */
 package org.graalvm.vm.memory;
 
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 
+/**
+ * Page granular address space allocator.
+ *
+ * Free space is kept as coalesced extents in a treap ordered by address where every node also
+ * records the largest extent of its subtree. This gives logarithmic first-fit allocation (lowest
+ * address which fits) as well as logarithmic lookups by address. A second index ordered by
+ * (size, address) is used for best-fit allocation. Allocated blocks are kept in a map ordered by
+ * address, so partial frees only touch the blocks which actually overlap the freed range.
+ */
 public class MemoryAllocator {
-    private static final boolean debug = true;
+    private static final boolean debug = MemoryOptions.MEM_DEBUG.get();
+
+    public static enum Policy {
+        FIRST_FIT,
+        BEST_FIT
+    }
 
-    private Block memory;
-    private Block free;
+    private final Policy policy;
+
+    private Extent root;
+    private final TreeSet<Extent> bySize;
+    private final NavigableMap<Long, Long> used;
+    private int seed;
 
     private long usedMemory;
 
     private final long memoryBase;
     private final long memorySize;
 
-    private static class Block {
-        public long base;
-        public long size;
-        public boolean free;
-        public Block prev; // link to previous free block
-        public Block next; // link to next free block
-        public Block prevBlock; // link to previous block according to memory layout
-        public Block nextBlock; // link to next block according to memory layout
+    private static class Extent {
+        public final long base;
+        public final long size;
+        public final int priority;
+        public long max; // largest extent in this subtree
+        public Extent left;
+        public Extent right;
 
-        Block(long base, long size) {
+        Extent(long base, long size, int priority) {
             this.base = base;
             this.size = size;
-            free = true;
+            this.priority = priority;
+            this.max = size;
+        }
+
+        long end() {
+            return base + size;
         }
 
         boolean contains(long address) {
-            if (size == 0xffffffffffffffffL) { // avoid overflow
-                return Long.compareUnsigned(address, base) >= 0;
-            } else {
-                return Long.compareUnsigned(address, base) >= 0 && Long.compareUnsigned(address, base + size) < 0;
-            }
+            return Long.compareUnsigned(address - base, size) < 0;
         }
 
         @Override
         public String toString() {
-            return String.format("Block[0x%016x, 0x%016x, free=%s]", base, size, free);
+            return String.format("Block[0x%016x, 0x%016x, free=true]", base, size);
         }
     }
 
@@ -87,11 +110,28 @@ public class MemoryAllocator {
     }
 
     public MemoryAllocator(long base, long size) {
+        this(base, size, Policy.FIRST_FIT);
+    }
+
+    public MemoryAllocator(long base, long size, Policy policy) {
         memoryBase = base;
         memorySize = size;
-        memory = new Block(base, size);
-        free = memory;
+        this.policy = policy;
+        bySize = new TreeSet<>(MemoryAllocator::compareSize);
+        used = new TreeMap<>(Long::compareUnsigned);
+        seed = 0x2545F491;
         usedMemory = 0;
+        if (size != 0) {
+            insert(base, size);
+        }
+    }
+
+    private static int compareSize(Extent a, Extent b) {
+        int cmp = Long.compareUnsigned(a.size, b.size);
+        if (cmp != 0) {
+            return cmp;
+        }
+        return Long.compareUnsigned(a.base, b.base);
     }
 
     private static void check(long addr) {
@@ -100,337 +140,267 @@ public class MemoryAllocator {
         }
     }
 
-    public synchronized long alloc(long size) {
-        check(size);
-        Block b = free;
-        if (b == null) {
-            throw new OutOfMemoryError();
+    private boolean inRange(long addr) {
+        return Long.compareUnsigned(addr - memoryBase, memorySize) < 0;
+    }
+
+    private int nextPriority() {
+        // xorshift32: deterministic layout, no shared RNG state
+        int x = seed;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        seed = x;
+        return x;
+    }
+
+    // treap primitives
+    private static long max(Extent e) {
+        return e == null ? 0 : e.max;
+    }
+
+    private static void update(Extent e) {
+        long m = e.size;
+        if (Long.compareUnsigned(max(e.left), m) > 0) {
+            m = e.left.max;
         }
-        while (Long.compareUnsigned(b.size, size) < 0) {
-            if (b.next == null) {
-                throw new OutOfMemoryError();
-            }
-            b = b.next;
+        if (Long.compareUnsigned(max(e.right), m) > 0) {
+            m = e.right.max;
         }
-        assert b.free == true;
-        check(b);
-        if (b.size == size) {
-            if (b.prev != null) {
-                b.prev.next = b.next;
-            } else {
-                assert free == b;
-                free = b.next;
-                check(free);
-            }
-            if (b.next != null) {
-                b.next.prev = b.prev;
-            }
-            check(b.prev);
-            check(b.next);
+        e.max = m;
+    }
+
+    private static Extent merge(Extent a, Extent b) {
+        if (a == null) {
+            return b;
+        } else if (b == null) {
+            return a;
+        } else if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
         } else {
-            Block split = new Block(b.base + size, b.size - size);
-            split.prevBlock = b;
-            split.nextBlock = b.nextBlock;
-            b.nextBlock = split;
-            if (split.nextBlock != null) {
-                split.nextBlock.prevBlock = split;
-            }
-            split.next = b.next;
-            split.prev = b.prev;
-            if (split.next != null) {
-                split.next.prev = split;
-            }
-            if (split.prev != null) {
-                split.prev.next = split;
-            }
-            check(split);
-            if (free == b) {
-                free = split;
-            }
+            b.left = merge(a, b.left);
+            update(b);
+            return b;
         }
-        b.size = size;
-        b.free = false;
-        usedMemory += size;
+    }
 
-        if (debug) {
-            check();
+    private static Extent insert(Extent t, Extent e) {
+        if (t == null) {
+            return e;
+        } else if (e.priority > t.priority) {
+            Extent[] parts = split(t, e.base);
+            e.left = parts[0];
+            e.right = parts[1];
+            update(e);
+            return e;
+        } else if (Long.compareUnsigned(e.base, t.base) < 0) {
+            t.left = insert(t.left, e);
+        } else {
+            t.right = insert(t.right, e);
         }
-
-        return b.base;
+        update(t);
+        return t;
     }
 
-    private Block find(long addr) {
-        for (Block b = memory; b != null; b = b.nextBlock) {
-            assert (b.nextBlock == null) || (b.nextBlock.base == b.base + b.size) : String.format("0x%x vs 0x%x", b.base + b.size, b.nextBlock.base);
-            if (b.base == addr || b.contains(addr)) {
-                return b;
-            }
+    private static Extent[] split(Extent t, long key) {
+        if (t == null) {
+            return new Extent[2];
+        } else if (Long.compareUnsigned(t.base, key) < 0) {
+            Extent[] parts = split(t.right, key);
+            t.right = parts[0];
+            update(t);
+            parts[0] = t;
+            return parts;
+        } else {
+            Extent[] parts = split(t.left, key);
+            t.left = parts[1];
+            update(t);
+            parts[1] = t;
+            return parts;
         }
-        assert false : String.format("BUG! 0x%x [%x-%x]", addr, memoryBase, memoryBase + memorySize);
-        return null;
     }
 
-    public synchronized long allocat(long addr, long size) {
-        if (Long.compareUnsigned(addr, memoryBase) < 0) {
-            return addr;
-        }
-        if (Long.compareUnsigned(addr, memoryBase + memorySize) >= 0) {
-            return addr;
+    private static Extent remove(Extent t, long base) {
+        assert t != null;
+        if (t.base == base) {
+            return merge(t.left, t.right);
+        } else if (Long.compareUnsigned(base, t.base) < 0) {
+            t.left = remove(t.left, base);
+        } else {
+            t.right = remove(t.right, base);
         }
+        update(t);
+        return t;
+    }
 
-        check(addr);
-        check(size);
-        Block blk = find(addr);
-        if (blk == null) {
-            throw new OutOfMemoryError();
+    // free extent with the lowest address
+    private Extent first() {
+        Extent e = root;
+        while (e != null && e.left != null) {
+            e = e.left;
         }
-        if (blk.base == addr && blk.size == size) {
-            if (!blk.free) {
-                if (debug) {
-                    check();
-                }
+        return e;
+    }
 
-                return addr;
+    // free extent with the largest base <= addr
+    private Extent floor(long addr) {
+        Extent result = null;
+        Extent e = root;
+        while (e != null) {
+            if (Long.compareUnsigned(e.base, addr) <= 0) {
+                result = e;
+                e = e.right;
+            } else {
+                e = e.left;
             }
+        }
+        return result;
+    }
 
-            blk.free = false;
-            usedMemory += size;
-            if (blk.prev != null) {
-                blk.prev.next = blk.next;
+    // free extent with the smallest base > addr
+    private Extent higher(long addr) {
+        Extent result = null;
+        Extent e = root;
+        while (e != null) {
+            if (Long.compareUnsigned(e.base, addr) > 0) {
+                result = e;
+                e = e.left;
             } else {
-                assert free == blk;
-                free = blk.next;
+                e = e.right;
             }
-            if (blk.next != null) {
-                blk.next.prev = blk.prev;
-            }
-            check(blk.prev);
-            check(blk.next);
+        }
+        return result;
+    }
 
-            if (debug) {
-                check();
+    // lowest free extent with at least size bytes
+    private Extent firstFit(long size) {
+        Extent e = root;
+        if (e == null || Long.compareUnsigned(e.max, size) < 0) {
+            return null;
+        }
+        while (true) {
+            if (e.left != null && Long.compareUnsigned(e.left.max, size) >= 0) {
+                e = e.left;
+            } else if (Long.compareUnsigned(e.size, size) >= 0) {
+                return e;
+            } else {
+                e = e.right;
+                assert e != null && Long.compareUnsigned(e.max, size) >= 0;
             }
+        }
+    }
 
-            return addr;
-        } else if (blk.base == addr && Long.compareUnsigned(blk.size, size) > 0) {
-            if (!blk.free) {
-                if (debug) {
-                    check();
-                }
+    // smallest free extent with at least size bytes, lowest address on ties
+    private Extent bestFit(long size) {
+        return bySize.ceiling(new Extent(0, size, 0));
+    }
 
-                return addr;
-            }
+    private void insert(long base, long size) {
+        Extent e = new Extent(base, size, nextPriority());
+        root = insert(root, e);
+        bySize.add(e);
+    }
 
-            blk.free = false;
-            usedMemory += size;
-            Block split = new Block(blk.base + size, blk.size - size);
-            if (blk.prev != null) {
-                blk.prev.next = split;
-            } else {
-                assert free == blk;
-                free = split;
-            }
-            split.prev = blk.prev;
-            split.next = blk.next;
-            if (split.next != null) {
-                split.next.prev = split;
-            }
-            split.prevBlock = blk;
-            split.nextBlock = blk.nextBlock;
-            blk.nextBlock = split;
-            if (split.nextBlock != null) {
-                split.nextBlock.prevBlock = split;
-            }
-            check(split);
-            blk.size = size;
+    private void remove(Extent e) {
+        root = remove(root, e.base);
+        bySize.remove(e);
+    }
 
-            if (debug) {
-                check();
-            }
+    // return [base, base+size) to the free space, merging it with adjacent free extents
+    private void release(long base, long size) {
+        long start = base;
+        long end = base + size;
+        Extent prev = floor(base);
+        if (prev != null && prev.end() == base) {
+            start = prev.base;
+            remove(prev);
+        }
+        Extent next = higher(base);
+        if (next != null && next.base == end) {
+            end = next.end();
+            remove(next);
+        }
+        insert(start, end - start);
+    }
 
-            return addr;
-        } else {
-            Block start = blk;
-            long off = addr - start.base;
-            long todo = size;
-            if (start.free && off != 0) { // unsigned version of "off > 0"
-                start.free = true;
-                Block split = new Block(blk.base + off, blk.size - off);
-                split.prevBlock = blk;
-                split.nextBlock = blk.nextBlock;
-                blk.nextBlock = split;
-                if (split.nextBlock != null) {
-                    split.nextBlock.prevBlock = split;
-                }
-                split.next = blk.next;
-                split.prev = blk;
-                blk.next = split;
-                if (split.next != null) {
-                    split.next.prev = split;
-                }
-                check(split);
-                blk.size = off;
-                start = split;
-            } else if (off != 0) {
-                if (Long.compareUnsigned(blk.size - off, todo) >= 0) {
-                    if (debug) {
-                        check();
-                    }
-
-                    return addr;
-                } else {
-                    todo -= blk.size - off;
-                    blk = blk.nextBlock;
-                }
-            }
-            blk = start;
-            assert start.base == addr;
-            while (todo != 0) {
-                if (blk.free) {
-                    if (blk.size == todo) {
-                        blk.free = false;
-                        usedMemory += blk.size;
-                        if (blk.prev != null) {
-                            blk.prev.next = blk.next;
-                        } else {
-                            assert free == blk;
-                            free = blk.next;
-                        }
-                        if (blk.next != null) {
-                            blk.next.prev = blk.prev;
-                        }
-                        check(blk);
-
-                        if (debug) {
-                            check();
-                        }
-
-                        return addr;
-                    }
-                    // block is larger than todo
-                    if (Long.compareUnsigned(blk.size, todo) > 0) {
-                        Block split = new Block(blk.base + todo, blk.size - todo);
-                        blk.free = false;
-                        blk.size = todo;
-                        split.next = blk.next;
-                        split.prev = blk.prev;
-                        split.nextBlock = blk.nextBlock;
-                        split.prevBlock = blk;
-                        blk.nextBlock = split;
-                        if (split.nextBlock != null) {
-                            split.nextBlock.prevBlock = split;
-                        }
-                        if (blk.prev != null) {
-                            blk.prev.next = split;
-                        } else {
-                            assert free == blk;
-                            free = split;
-                        }
-                        if (split.next != null) {
-                            split.next.prev = split;
-                        }
-                        check(split);
-                        usedMemory += todo;
-
-                        if (debug) {
-                            check();
-                        }
-
-                        return addr;
-                    } else { // block is too small
-                        todo -= size;
-                        blk.free = false;
-                        if (blk.prev != null) {
-                            blk.prev.next = blk.next;
-                        } else {
-                            assert free == blk;
-                            free = blk.next;
-                        }
-                        if (blk.next != null) {
-                            blk.next.prev = blk.prev;
-                        }
-                        check(blk);
-                        blk = blk.nextBlock;
-                        usedMemory += size;
-                        continue;
-                    }
-                }
-                blk.free = false;
-                if (Long.compareUnsigned(blk.size, todo) >= 0) {
-
-                    if (debug) {
-                        check();
-                    }
-
-                    return addr;
-                } else {
-                    todo -= blk.size;
-                    blk = blk.nextBlock;
-                }
-            }
+    // take [base, base+size) out of the free extent e
+    private void take(Extent e, long base, long size) {
+        remove(e);
+        if (e.base != base) {
+            insert(e.base, base - e.base);
+        }
+        long end = base + size;
+        if (e.end() != end) {
+            insert(end, e.end() - end);
+        }
+        if (size != 0) {
+            used.put(base, size);
+            usedMemory += size;
+        }
+    }
 
-            if (debug) {
-                check();
-            }
+    public synchronized long alloc(long size) {
+        check(size);
+        Extent e = policy == Policy.BEST_FIT ? bestFit(size) : firstFit(size);
+        if (e == null) {
+            throw new OutOfMemoryError();
+        }
+        long base = e.base;
+        take(e, base, size);
 
-            return addr;
+        if (debug) {
+            check();
         }
+
+        return base;
     }
 
-    public synchronized void free(long addr) {
-        if (Long.compareUnsigned(addr, memoryBase) < 0) {
-            return;
-        }
-        if (Long.compareUnsigned(addr, memoryBase + memorySize) >= 0) {
-            return;
+    public synchronized long allocat(long addr, long size) {
+        if (!inRange(addr)) {
+            return addr;
         }
 
         check(addr);
-        Block blk = find(addr);
-        assert blk.base == addr;
-        assert !blk.free;
-        blk.free = true;
-        usedMemory -= blk.size;
-
-        // find previous free block
-        Block b = blk.prevBlock;
-        while (b != null) {
-            if (b.free) {
-                blk.next = b.next;
-                b.next = blk;
-                if (blk.next != null) {
-                    blk.next.prev = blk;
-                }
-                blk.prev = b;
-                check(b);
-                check(blk);
-
-                if (debug) {
-                    check();
-                }
-
-                return;
-            } else {
-                b = b.prevBlock;
-            }
-        }
+        check(size);
 
-        // no previous free block
-        assert free == null || Long.compareUnsigned(blk.base, free.base) < 0;
-        assert blk.free;
-        blk.next = free;
-        blk.prev = null;
-        if (free != null) {
-            free.prev = blk;
+        long remaining = memorySize - (addr - memoryBase);
+        long end = addr + (Long.compareUnsigned(size, remaining) > 0 ? remaining : size);
+
+        // claim every free extent overlapping [addr, end); already allocated parts stay as they are
+        Extent e = floor(addr);
+        if (e == null || !e.contains(addr)) {
+            e = higher(addr);
+        }
+        while (e != null && Long.compareUnsigned(e.base, end) < 0) {
+            long start = Long.compareUnsigned(e.base, addr) > 0 ? e.base : addr;
+            long stop = Long.compareUnsigned(e.end(), end) < 0 ? e.end() : end;
+            long next = e.end();
+            take(e, start, stop - start);
+            e = higher(next - 1);
         }
-        free = blk;
-        check(free);
 
         if (debug) {
             check();
         }
 
-        compact(blk);
+        return addr;
+    }
+
+    public synchronized void free(long addr) {
+        if (!inRange(addr)) {
+            return;
+        }
+
+        check(addr);
+        Long size = used.remove(addr);
+        assert size != null : String.format("free(0x%x): no block", addr);
+        if (size == null) {
+            return;
+        }
+        usedMemory -= size;
+        release(addr, size);
 
         if (debug) {
             check();
@@ -438,294 +408,68 @@ public class MemoryAllocator {
     }
 
     public synchronized void free(long addr, long size) {
-        if (Long.compareUnsigned(addr, memoryBase) < 0) {
-            return;
-        }
-        if (Long.compareUnsigned(addr, memoryBase + memorySize) >= 0) {
+        if (!inRange(addr)) {
             return;
         }
 
-        // TODO: fix all the bugs
         check(addr);
         check(size);
-        long p = addr;
-        long remaining = size;
-        Block start = null;
-        Block lastFree = null;
-        for (Block b = memory; remaining > 0 && b != null; b = b.nextBlock) {
-            if (b.free) {
-                lastFree = b;
+
+        long remaining = memorySize - (addr - memoryBase);
+        long end = addr + (Long.compareUnsigned(size, remaining) > 0 ? remaining : size);
+
+        // release every allocated block overlapping [addr, end); free parts stay as they are
+        Entry<Long, Long> blk = used.floorEntry(addr);
+        if (blk == null || Long.compareUnsigned(addr - blk.getKey(), blk.getValue()) >= 0) {
+            blk = used.higherEntry(addr);
+        }
+        while (blk != null && Long.compareUnsigned(blk.getKey(), end) < 0) {
+            long base = blk.getKey();
+            long blkEnd = base + blk.getValue();
+            used.remove(base);
+            if (Long.compareUnsigned(base, addr) < 0) {
+                used.put(base, addr - base);
+                base = addr;
             }
-            if (b.base == p) {
-                start = b;
-                if (Long.compareUnsigned(b.size, remaining) > 0) {
-                    if (b.free) {
-                        if (debug) {
-                            check();
-                        }
-                        return;
-                    }
-
-                    Block split = new Block(b.base + remaining, b.size - remaining);
-                    split.prevBlock = b;
-                    split.nextBlock = b.nextBlock;
-                    split.nextBlock.prevBlock = split;
-                    split.free = false;
-                    b.nextBlock = split;
-                    b.size = remaining;
-                    b.free = true;
-                    if (lastFree != null) {
-                        b.next = lastFree.next;
-                        b.prev = lastFree;
-                        lastFree.next = b;
-                        if (b.next != null) {
-                            b.next.prev = b;
-                        }
-                        lastFree = b;
-                    } else {
-                        b.prev = null;
-                        b.next = free;
-                        if (free != null) {
-                            free.prev = b;
-                        }
-                        free = b;
-                        lastFree = b;
-                    }
-
-                    usedMemory -= remaining;
-
-                    check(b);
-                    check(split);
-                    compact(b);
-
-                    if (debug) {
-                        check();
-                    }
-
-                    return;
-                } else if (b.size == size) {
-                    b.free = true;
-                    usedMemory -= b.size;
-                    for (Block blk = b.prevBlock; blk != null; blk = blk.prevBlock) {
-                        if (blk.free) {
-                            b.next = blk.next;
-                            blk.next = b;
-                            b.prev = blk;
-                            if (b.next != null) {
-                                b.next.prev = b;
-                            }
-                            if (b.prev != null) {
-                                b.prev.next = b;
-                            }
-
-                            check(b);
-                            check(blk);
-
-                            if (debug) {
-                                check();
-                            }
-
-                            return;
-                        }
-                    }
-
-                    // no previous free block
-                    assert free == null || Long.compareUnsigned(b.base, free.base) < 0;
-                    assert b.free;
-                    b.next = free;
-                    b.prev = null;
-                    if (free != null) {
-                        free.prev = b;
-                    }
-                    free = b;
-                    check(free);
-
-                    if (debug) {
-                        check();
-                    }
-
-                    compact(b);
-
-                    if (debug) {
-                        check();
-                    }
-                    return;
-                } else {
-                    throw new AssertionError();
-                }
-            } else if (b.contains(p)) {
-                // split block, mark center as free
-                start = b;
-                Block head = new Block(start.base, p - start.base);
-                Block tail = new Block(p, start.size - head.size);
-                b = head;
-                if (start == memory) {
-                    memory = head;
-                }
-                if (Long.compareUnsigned(tail.size, remaining) > 0) {
-                    Block center = new Block(tail.base, remaining);
-                    tail = new Block(tail.base + remaining, tail.size - remaining);
-
-                    head.free = false;
-                    head.prevBlock = start.prevBlock;
-                    if (head.prevBlock != null) {
-                        head.prevBlock.nextBlock = head;
-                    }
-                    head.nextBlock = center;
-                    head.nextBlock.prevBlock = head;
-                    center.nextBlock = tail;
-                    center.nextBlock.prevBlock = center;
-                    center.free = true;
-                    tail.nextBlock = start.nextBlock;
-                    tail.nextBlock.prevBlock = tail;
-                    tail.free = false;
-
-                    if (lastFree != null) {
-                        center.next = lastFree.next;
-                        center.prev = lastFree;
-                        lastFree.next = center;
-                        if (center.next != null) {
-                            center.next.prev = center;
-                        }
-                        lastFree = center;
-                    } else {
-                        center.prev = null;
-                        center.next = free;
-                        if (free != null) {
-                            free.prev = center;
-                        }
-                        free = center;
-                        lastFree = center;
-                    }
-
-                    usedMemory -= remaining;
-
-                    check(free);
-
-                    if (debug) {
-                        check();
-                    }
-
-                    return;
-                } else if (tail.size == remaining) { // mark tail as free
-                    head.free = false;
-                    head.prevBlock = start.prevBlock;
-                    if (head.prevBlock != null) {
-                        head.prevBlock.nextBlock = head;
-                    }
-                    head.nextBlock = tail;
-                    head.nextBlock.prevBlock = head;
-                    tail.nextBlock = start.nextBlock;
-                    tail.nextBlock.prevBlock = tail;
-                    tail.free = true;
-
-                    if (lastFree != null) {
-                        tail.next = lastFree.next;
-                        tail.prev = lastFree;
-                        lastFree.next = tail;
-                        if (tail.next != null) {
-                            tail.next.prev = tail;
-                        }
-                        lastFree = tail;
-                    } else {
-                        tail.prev = null;
-                        tail.next = free;
-                        if (free != null) {
-                            free.prev = tail;
-                        }
-                        free = tail;
-                        lastFree = tail;
-                    }
-
-                    usedMemory -= remaining;
-
-                    check(free);
-
-                    if (debug) {
-                        check();
-                    }
-
-                    compact(tail);
-
-                    if (debug) {
-                        check();
-                    }
-
-                    return;
-                } else {
-                    assert false;
-                }
-
-                check(free);
-
-                if (debug) {
-                    check();
-                }
-
-                throw new AssertionError();
+            if (Long.compareUnsigned(blkEnd, end) > 0) {
+                used.put(end, blkEnd - end);
+                blkEnd = end;
             }
+            usedMemory -= blkEnd - base;
+            release(base, blkEnd - base);
+            blk = used.higherEntry(base);
         }
-        // TODO: unreachable?
-        assert false : String.format("free(0x%x, %d)", addr, size);
-        compact(start);
-        usedMemory -= size - remaining;
 
         if (debug) {
             check();
         }
     }
 
-    private void compact(Block block) {
-        Block b = block;
-        assert b.free;
-        while (b.prevBlock != null && b.prevBlock.free) {
-            b = b.prevBlock;
-        }
-        assert b.prev != null || free == b;
-        assert b.free;
-        while (b.nextBlock != null && b.nextBlock.free) {
-            Block blk = b.nextBlock;
-            b.size += blk.size;
-            b.nextBlock = blk.nextBlock;
-            if (b.nextBlock != null) {
-                b.nextBlock.prevBlock = b;
-            }
-            b.next = blk.next;
-            if (b.next != null) {
-                b.next.prev = b;
-            }
-            check(b);
-        }
-    }
-
     public long getUsedMemory() {
         return usedMemory;
     }
 
+    public Policy getPolicy() {
+        return policy;
+    }
+
     @TruffleBoundary
     public synchronized String dump() {
         StringBuilder buf = new StringBuilder();
-        for (Block b = memory; b != null; b = b.nextBlock) {
-            buf.append(b).append("\n");
+        Extent e = first();
+        Entry<Long, Long> blk = used.firstEntry();
+        while (e != null || blk != null) {
+            if (blk == null || (e != null && Long.compareUnsigned(e.base, blk.getKey()) < 0)) {
+                buf.append(e).append("\n");
+                e = higher(e.base);
+            } else {
+                buf.append(String.format("Block[0x%016x, 0x%016x, free=false]", blk.getKey(), blk.getValue())).append("\n");
+                blk = used.higherEntry(blk.getKey());
+            }
         }
         return buf.toString().trim();
     }
 
-    @TruffleBoundary
-    private static void check(Block b) {
-        if (b == null) {
-            return;
-        }
-        assert !b.free || b.prev == null || Long.compareUnsigned(b.prev.base, b.base) < 0 : String.format("prev=0x%016x, this=0x%016x", b.prev.base, b.base);
-        assert !b.free || b.next == null || Long.compareUnsigned(b.base, b.next.base) < 0 : String.format("this=0x%016x, next=0x%016x", b.base, b.next.base);
-        assert !b.free || b.prev == null || b.prev.next == b : String.format("this=0x%016x, this.prev.next=0x%016x", b.base, b.prev.next.base);
-        assert !b.free || b.next == null || b.next.prev == b : String.format("this=0x%016x, this.next.prev=0x%016x", b.base, b.next.prev.base);
-        assert b.prevBlock == null || Long.compareUnsigned(b.prevBlock.base, b.base) < 0 : String.format("prev=0x%016x, this=0x%016x", b.prevBlock.base, b.base);
-        assert b.nextBlock == null || Long.compareUnsigned(b.base, b.nextBlock.base) < 0 : String.format("this=0x%016x, next=0x%016x", b.base, b.nextBlock.base);
-        assert b.prevBlock == null || b.prevBlock.nextBlock == b : String.format("this=0x%016x, this.prevBlock.nextBlock=0x%016x", b.base, b.prevBlock.nextBlock.base);
-        assert b.nextBlock == null || b.nextBlock.prevBlock == b : String.format("this=0x%016x, this.nextBlock.prevBlock=0x%016x", b.base, b.nextBlock.prevBlock.base);
-    }
-
     private static void __assert(boolean b) {
         if (!b) {
             throw new AssertionError();
@@ -738,42 +482,58 @@ public class MemoryAllocator {
         }
     }
 
+    // checks the treap structure and returns the number of extents in the subtree
+    private static int check(Extent e, Extent lower, Extent upper) {
+        if (e == null) {
+            return 0;
+        }
+        __assert(lower == null || Long.compareUnsigned(lower.end(), e.base) < 0,
+                        String.format("extent 0x%016x overlaps or touches previous extent", e.base));
+        __assert(upper == null || Long.compareUnsigned(e.end(), upper.base) < 0,
+                        String.format("extent 0x%016x overlaps or touches next extent", e.base));
+        __assert(e.size != 0, String.format("empty extent at 0x%016x", e.base));
+        __assert(e.left == null || e.left.priority <= e.priority);
+        __assert(e.right == null || e.right.priority <= e.priority);
+        int count = 1 + check(e.left, lower, e) + check(e.right, e, upper);
+        long m = e.size;
+        if (e.left != null && Long.compareUnsigned(e.left.max, m) > 0) {
+            m = e.left.max;
+        }
+        if (e.right != null && Long.compareUnsigned(e.right.max, m) > 0) {
+            m = e.right.max;
+        }
+        __assert(e.max == m, String.format("max of 0x%016x: 0x%x vs 0x%x", e.base, e.max, m));
+        return count;
+    }
+
     // consistency checks which *don't* rely on -ea
     @TruffleBoundary
     public synchronized void check() {
+        int extents = check(root, null, null);
+        __assert(extents == bySize.size(), String.format("%d extents vs %d in size index", extents, bySize.size()));
+
+        // free extents and allocated blocks must tile the whole region
         long usedmem = 0;
         long freemem = 0;
         long nextaddr = memoryBase;
-        Block lastblock = null;
-        __assert(memory.prevBlock == null);
-        __assert(free == null || free.prev == null);
-        __assert(free == null || free.free);
-        for (Block b = memory; b != null; b = b.nextBlock) {
-            __assert(b.base == nextaddr, String.format("0x%016x vs 0x%016x", b.base, nextaddr));
-            __assert(b.prevBlock == lastblock);
-            __assert(!b.free || b.prev != null || free == b);
-            lastblock = b;
-            nextaddr += b.size;
-            if (b.free) {
-                freemem += b.size;
+        Extent e = first();
+        Entry<Long, Long> blk = used.firstEntry();
+        while (e != null || blk != null) {
+            if (blk == null || (e != null && Long.compareUnsigned(e.base, blk.getKey()) < 0)) {
+                __assert(e.base == nextaddr, String.format("0x%016x vs 0x%016x", e.base, nextaddr));
+                __assert(bySize.contains(e), String.format("extent 0x%016x missing in size index", e.base));
+                freemem += e.size;
+                nextaddr = e.end();
+                e = higher(e.base);
             } else {
-                usedmem += b.size;
+                __assert(blk.getKey() == nextaddr, String.format("0x%016x vs 0x%016x", blk.getKey(), nextaddr));
+                __assert(blk.getValue() != 0, String.format("empty block at 0x%016x", blk.getKey()));
+                usedmem += blk.getValue();
+                nextaddr = blk.getKey() + blk.getValue();
+                blk = used.higherEntry(blk.getKey());
             }
-            check(b);
-        }
-        long lastaddr = free.base;
-        for (Block b = free.next; b != null; b = b.next) {
-            check(b);
-            __assert(Long.compareUnsigned(b.base, lastaddr) > 0,
-                            String.format("last: 0x%016x, cur: 0x%016x", lastaddr, b.base));
-            lastaddr = b.base;
-        }
-        long freeMemory = 0;
-        for (Block b = free; b != null; b = b.next) {
-            freeMemory += b.size;
         }
         __assert(usedmem == usedMemory, String.format("used memory: 0x%x vs 0x%x", usedmem, usedMemory));
-        __assert(freemem == freeMemory, String.format("free memory: 0x%x vs 0x%x", freemem, freeMemory));
-        __assert((usedmem + freemem) == memorySize, String.format("0x%dx bytes in blocks vs 0x%dx memory region", usedmem + freemem, memorySize));
+        __assert((usedmem + freemem) == memorySize, String.format("0x%x bytes in blocks vs 0x%x memory region", usedmem + freemem, memorySize));
     }
 }
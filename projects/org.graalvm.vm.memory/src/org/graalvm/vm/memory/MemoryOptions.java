@@ -45,7 +45,9 @@ public class MemoryOptions {
     public static final BooleanOption MEM_VIRTUAL = new BooleanOption("mem.virtual", false);
     public static final BooleanOption MEM_VERIFY = new BooleanOption("mem.verify", false);
     public static final BooleanOption MEM_MAP_NATIVE = new BooleanOption("mem.mapnative", false);
+    public static final BooleanOption MEM_BEST_FIT = new BooleanOption("mem.bestfit", false);
 
+    public static final BooleanOption MEM_HUGEPAGES = new BooleanOption("mem.native.hugepages", false);
     public static final BooleanOption BYPASS_SEGFAULT_CHECK = new BooleanOption("mem.native.bypasssegfaults", false);
 
     public static class BooleanOption {
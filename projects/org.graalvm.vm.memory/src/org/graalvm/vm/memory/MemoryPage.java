@@ -40,6 +40,7 @@
  */
 package org.graalvm.vm.memory;
 
+import java.util.Arrays;
 import java.util.logging.Logger;
 
 import org.graalvm.vm.memory.exception.SegmentationViolation;
@@ -67,6 +68,17 @@ public class MemoryPage {
     public final String name;
     public final long fileOffset;
 
+    private static final byte PROT_R = 1;
+    private static final byte PROT_W = 2;
+    private static final byte PROT_X = 4;
+
+    /*
+     * Per page protection bits, only allocated once mprotect changes part of the mapping. While it
+     * is set, r and w mean "every page is readable/writable" and x means "some page is executable",
+     * so the fast path in the accessors stays a single field check.
+     */
+    private byte[] protection;
+
     private final long id = nextID();
     private static long seq = 0;
 
@@ -124,6 +136,7 @@ public class MemoryPage {
         this.x = page.x;
         this.name = page.name;
         this.fileOffset = page.fileOffset;
+        this.protection = page.protection == null ? null : page.protection.clone();
     }
 
     public MemoryPage(MemoryPage page, long address, long size) {
@@ -137,6 +150,13 @@ public class MemoryPage {
         this.offset = page.offset + address - page.base;
         this.name = page.name;
         this.fileOffset = page.fileOffset + (address - page.base);
+        if (page.protection != null) {
+            int first = page.pageIndex(address);
+            int last = page.pageIndex(end - 1);
+            protection = new byte[last - first + 1];
+            System.arraycopy(page.protection, first, protection, 0, protection.length);
+            normalize();
+        }
     }
 
     public boolean contains(long address) {
@@ -159,9 +179,127 @@ public class MemoryPage {
         return end;
     }
 
+    private int pageIndex(long addr) {
+        return (int) ((addr - (base & VirtualMemory.PAGE_MASK)) >>> 12);
+    }
+
+    private static byte prot(boolean r, boolean w, boolean x) {
+        return (byte) ((r ? PROT_R : 0) | (w ? PROT_W : 0) | (x ? PROT_X : 0));
+    }
+
+    private boolean test(long addr, byte bit) {
+        return (protection[pageIndex(addr)] & bit) != 0;
+    }
+
+    // recompute the summary flags and drop the per page table if it is uniform again
+    private void normalize() {
+        byte all = (byte) (PROT_R | PROT_W | PROT_X);
+        byte any = 0;
+        for (byte b : protection) {
+            all &= b;
+            any |= b;
+        }
+        if (all == any) {
+            protection = null;
+            r = (all & PROT_R) != 0;
+            w = (all & PROT_W) != 0;
+            x = (all & PROT_X) != 0;
+        } else {
+            r = (all & PROT_R) != 0;
+            w = (all & PROT_W) != 0;
+            x = (any & PROT_X) != 0;
+        }
+    }
+
+    /**
+     * Changes the protection of [address, address + len) in place. The range is clipped to this
+     * mapping and rounded to page granularity.
+     */
+    @TruffleBoundary
+    public void protect(long address, long len, boolean read, boolean write, boolean exec) {
+        long start = Long.compareUnsigned(address, base) < 0 ? base : address;
+        long stop = Long.compareUnsigned(address + len, end) > 0 ? end : address + len;
+        if (Long.compareUnsigned(start, stop) >= 0) {
+            return;
+        }
+        if (start == base && stop == end) {
+            protection = null;
+            r = read;
+            w = write;
+            x = exec;
+            return;
+        }
+        byte prot = prot(read, write, exec);
+        if (protection == null) {
+            if (prot == prot(r, w, x)) {
+                return;
+            }
+            protection = new byte[pageIndex(end - 1) + 1];
+            Arrays.fill(protection, prot(r, w, x));
+        }
+        Arrays.fill(protection, pageIndex(start), pageIndex(stop - 1) + 1, prot);
+        normalize();
+    }
+
+    public boolean isReadable(long addr) {
+        return protection == null ? r : test(addr, PROT_R);
+    }
+
+    public boolean isWritable(long addr) {
+        return protection == null ? w : test(addr, PROT_W);
+    }
+
+    public boolean isExecutable(long addr) {
+        return protection == null ? x : test(addr, PROT_X);
+    }
+
+    /**
+     * Returns a direct view of the executable memory around addr: the whole mapping if it is
+     * executable as a whole, otherwise only the surrounding page.
+     */
+    public MemoryView getCodeView(long addr) {
+        if (!isExecutable(addr) || memory.isBE()) {
+            return null;
+        }
+        long start = base;
+        long stop = end;
+        if (protection != null) {
+            start = Math.max(base, addr & VirtualMemory.PAGE_MASK);
+            stop = Math.min(end, (addr & VirtualMemory.PAGE_MASK) + VirtualMemory.PAGE_SIZE);
+        }
+        if (memory instanceof ByteMemory) {
+            return MemoryView.array(start, stop, memory.getBytes(), (int) getOffset(start));
+        } else if (memory instanceof PagedMemory) {
+            PagedMemory mem = (PagedMemory) memory;
+            long pos = getOffset(addr);
+            byte[] page = mem.getPage(pos);
+            if (page == null) {
+                return null;
+            }
+            long pageStart = addr - mem.getPageOffset(pos);
+            start = Math.max(start, pageStart);
+            stop = Math.min(stop, pageStart + page.length);
+            return MemoryView.array(start, stop, page, (int) (start - pageStart));
+        } else {
+            return null;
+        }
+    }
+
+    private void checkRead(long addr, long len) {
+        if (protection == null || !test(addr, PROT_R) || !test(addr + len - 1, PROT_R)) {
+            throw new SegmentationViolation(this, addr);
+        }
+    }
+
+    private void checkWrite(long addr, long len) {
+        if (protection == null || !test(addr, PROT_W) || !test(addr + len - 1, PROT_W)) {
+            throw new SegmentationViolation(addr);
+        }
+    }
+
     public byte getI8(long addr) {
         if (!r) {
-            throw new SegmentationViolation(this, addr);
+            checkRead(addr, 1);
         }
         try {
             return memory.getI8(getOffset(addr));
@@ -172,7 +310,7 @@ public class MemoryPage {
 
     public short getI16(long addr) {
         if (!r) {
-            throw new SegmentationViolation(addr);
+            checkRead(addr, 2);
         }
         try {
             return memory.getI16(getOffset(addr));
@@ -183,7 +321,7 @@ public class MemoryPage {
 
     public int getI32(long addr) {
         if (!r) {
-            throw new SegmentationViolation(addr);
+            checkRead(addr, 4);
         }
         try {
             return memory.getI32(getOffset(addr));
@@ -194,7 +332,7 @@ public class MemoryPage {
 
     public long getI64(long addr) {
         if (!r) {
-            throw new SegmentationViolation(addr);
+            checkRead(addr, 8);
         }
         try {
             return memory.getI64(getOffset(addr));
@@ -205,7 +343,7 @@ public class MemoryPage {
 
     public Vector128 getI128(long addr) {
         if (!r) {
-            throw new SegmentationViolation(addr);
+            checkRead(addr, 16);
         }
         try {
             return memory.getI128(getOffset(addr));
@@ -216,7 +354,7 @@ public class MemoryPage {
 
     public Vector256 getI256(long addr) {
         if (!r) {
-            throw new SegmentationViolation(addr);
+            checkRead(addr, 32);
         }
         try {
             return memory.getI256(getOffset(addr));
@@ -227,7 +365,7 @@ public class MemoryPage {
 
     public Vector512 getI512(long addr) {
         if (!r) {
-            throw new SegmentationViolation(addr);
+            checkRead(addr, 64);
         }
         try {
             return memory.getI512(getOffset(addr));
@@ -241,7 +379,7 @@ public class MemoryPage {
             invalidateCodeCache(addr);
         }
         if (!w) {
-            throw new SegmentationViolation(addr);
+            checkWrite(addr, 1);
         }
         try {
             memory.setI8(getOffset(addr), val);
@@ -255,7 +393,7 @@ public class MemoryPage {
             invalidateCodeCache(addr);
         }
         if (!w) {
-            throw new SegmentationViolation(addr);
+            checkWrite(addr, 2);
         }
         try {
             memory.setI16(getOffset(addr), val);
@@ -269,7 +407,7 @@ public class MemoryPage {
             invalidateCodeCache(addr);
         }
         if (!w) {
-            throw new SegmentationViolation(addr);
+            checkWrite(addr, 4);
         }
         try {
             memory.setI32(getOffset(addr), val);
@@ -283,7 +421,7 @@ public class MemoryPage {
             invalidateCodeCache(addr);
         }
         if (!w) {
-            throw new SegmentationViolation(addr);
+            checkWrite(addr, 8);
         }
         try {
             memory.setI64(getOffset(addr), val);
@@ -297,7 +435,7 @@ public class MemoryPage {
             invalidateCodeCache(addr);
         }
         if (!w) {
-            throw new SegmentationViolation(addr);
+            checkWrite(addr, 16);
         }
         try {
             memory.setI128(getOffset(addr), val);
@@ -311,7 +449,7 @@ public class MemoryPage {
             invalidateCodeCache(addr);
         }
         if (!w) {
-            throw new SegmentationViolation(addr);
+            checkWrite(addr, 32);
         }
         try {
             memory.setI256(getOffset(addr), val);
@@ -325,7 +463,7 @@ public class MemoryPage {
             invalidateCodeCache(addr);
         }
         if (!w) {
-            throw new SegmentationViolation(addr);
+            checkWrite(addr, 64);
         }
         try {
             memory.setI512(getOffset(addr), val);
@@ -334,10 +472,131 @@ public class MemoryPage {
         }
     }
 
-    public byte[] get(long addr, long len) {
+    public boolean cmpxchgI8(long addr, byte expected, byte val) {
+        if (x) {
+            invalidateCodeCache(addr);
+        }
+        if (!w) {
+            checkWrite(addr, 1);
+        }
+        try {
+            return memory.cmpxchgI8(getOffset(addr), expected, val);
+        } catch (SegmentationViolation e) {
+            throw new SegmentationViolation(addr);
+        }
+    }
+
+    public boolean cmpxchgI16(long addr, short expected, short val) {
+        if (x) {
+            invalidateCodeCache(addr);
+        }
+        if (!w) {
+            checkWrite(addr, 2);
+        }
+        try {
+            return memory.cmpxchgI16(getOffset(addr), expected, val);
+        } catch (SegmentationViolation e) {
+            throw new SegmentationViolation(addr);
+        }
+    }
+
+    public boolean cmpxchgI32(long addr, int expected, int val) {
+        if (x) {
+            invalidateCodeCache(addr);
+        }
+        if (!w) {
+            checkWrite(addr, 4);
+        }
+        try {
+            return memory.cmpxchgI32(getOffset(addr), expected, val);
+        } catch (SegmentationViolation e) {
+            throw new SegmentationViolation(addr);
+        }
+    }
+
+    public boolean cmpxchgI64(long addr, long expected, long val) {
+        if (x) {
+            invalidateCodeCache(addr);
+        }
         if (!w) {
+            checkWrite(addr, 8);
+        }
+        try {
+            return memory.cmpxchgI64(getOffset(addr), expected, val);
+        } catch (SegmentationViolation e) {
             throw new SegmentationViolation(addr);
         }
+    }
+
+    public boolean cmpxchgI128(long addr, Vector128 expected, Vector128 val) {
+        if (x) {
+            invalidateCodeCache(addr);
+        }
+        if (!w) {
+            checkWrite(addr, 16);
+        }
+        try {
+            return memory.cmpxchgI128(getOffset(addr), expected, val);
+        } catch (SegmentationViolation e) {
+            throw new SegmentationViolation(addr);
+        }
+    }
+
+    // number of bytes from addr up to the end of this mapping or the first page without prot
+    private int accessible(long addr, int len, byte prot) {
+        int n = (int) Math.min(len, end - addr);
+        if (protection == null) {
+            return (prot(r, w, x) & prot) != 0 ? n : 0;
+        }
+        long stop = addr + n;
+        long p = addr;
+        while (Long.compareUnsigned(p, stop) < 0 && test(p, prot)) {
+            p = (p & VirtualMemory.PAGE_MASK) + VirtualMemory.PAGE_SIZE;
+        }
+        return (int) (Math.min(p, stop) - addr);
+    }
+
+    /**
+     * Copies up to len bytes starting at addr to dst[off] and returns the number of bytes copied.
+     * The copy stops at the end of this mapping and at the first page which is not readable.
+     */
+    public int getBytes(long addr, byte[] dst, int off, int len) {
+        int n = accessible(addr, len, PROT_R);
+        if (n == 0) {
+            throw new SegmentationViolation(this, addr);
+        }
+        try {
+            memory.get(getOffset(addr), dst, off, n);
+        } catch (SegmentationViolation e) {
+            throw new SegmentationViolation(addr);
+        }
+        return n;
+    }
+
+    /**
+     * Copies up to len bytes from src[off] to addr and returns the number of bytes copied. The copy
+     * stops at the end of this mapping and at the first page which is not writable.
+     */
+    public int setBytes(long addr, byte[] src, int off, int len) {
+        if (x) {
+            invalidateCodeCache(addr);
+        }
+        int n = accessible(addr, len, PROT_W);
+        if (n == 0) {
+            throw new SegmentationViolation(addr);
+        }
+        try {
+            memory.set(getOffset(addr), src, off, n);
+        } catch (SegmentationViolation e) {
+            throw new SegmentationViolation(addr);
+        }
+        return n;
+    }
+
+    public byte[] get(long addr, long len) {
+        if (!w) {
+            checkWrite(addr, len);
+        }
         try {
             return memory.get(getOffset(addr), len);
         } catch (SegmentationViolation e) {
@@ -366,6 +625,29 @@ public class MemoryPage {
 
     @Override
     public String toString() {
+        if (protection != null) {
+            // one line per run of equal protection, like /proc/self/maps
+            StringBuilder buf = new StringBuilder();
+            long start = base;
+            while (Long.compareUnsigned(start, end) < 0) {
+                byte prot = protection[pageIndex(start)];
+                long stop = (start & VirtualMemory.PAGE_MASK) + VirtualMemory.PAGE_SIZE;
+                while (Long.compareUnsigned(stop, end) < 0 && protection[pageIndex(stop)] == prot) {
+                    stop += VirtualMemory.PAGE_SIZE;
+                }
+                if (Long.compareUnsigned(stop, end) > 0) {
+                    stop = end;
+                }
+                if (buf.length() > 0) {
+                    buf.append('\n');
+                }
+                buf.append(String.format("%016x-%016x %c%c%cp %08x 00:00 0 %s",
+                                start, stop, (prot & PROT_R) != 0 ? 'r' : '-', (prot & PROT_W) != 0 ? 'w' : '-', (prot & PROT_X) != 0 ? 'x' : '-',
+                                fileOffset + (start - base), name != null ? name : ""));
+                start = stop;
+            }
+            return buf.toString();
+        }
         return String.format("%016x-%016x %c%c%cp %08x 00:00 0 %s",
                         base, end, r ? 'r' : '-', w ? 'w' : '-', x ? 'x' : '-', fileOffset,
                         name != null ? name : "");
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.memory;
+
+import org.graalvm.vm.memory.hardware.NativeMemory;
+import org.graalvm.vm.util.io.Endianess;
+
+/**
+ * A direct little endian view of the guest address range [base, end), backed either by a byte array
+ * or by host memory. It allows to read code without the lookup and permission checks of the
+ * VirtualMemory accessors. A view is a snapshot of the mapping it was created from: it stays valid
+ * for changes of the memory contents, but not for munmap/mprotect.
+ */
+public final class MemoryView {
+    public final long base;
+    public final long end;
+
+    private final byte[] data;
+    private final long offset;
+
+    private MemoryView(long base, long end, byte[] data, long offset) {
+        this.base = base;
+        this.end = end;
+        this.data = data;
+        this.offset = offset;
+    }
+
+    /**
+     * Creates a view where guest address {@code base} corresponds to {@code data[offset]}.
+     */
+    public static MemoryView array(long base, long end, byte[] data, int offset) {
+        assert offset >= 0 && offset + (end - base) <= data.length;
+        return new MemoryView(base, end, data, offset);
+    }
+
+    /**
+     * Creates a view where guest address {@code base} corresponds to host address {@code address}.
+     */
+    public static MemoryView host(long base, long end, long address) {
+        return new MemoryView(base, end, null, address);
+    }
+
+    public boolean contains(long address, int size) {
+        long off = address - base;
+        return Long.compareUnsigned(off, end - base) < 0 && off + size <= end - base;
+    }
+
+    public byte getI8(long address) {
+        assert contains(address, 1);
+        if (data != null) {
+            return data[(int) (address - base + offset)];
+        } else {
+            return NativeMemory.i8(address - base + offset);
+        }
+    }
+
+    public short getI16(long address) {
+        assert contains(address, 2);
+        if (data != null) {
+            return Endianess.get16bitLE(data, (int) (address - base + offset));
+        } else {
+            return NativeMemory.i16L(address - base + offset);
+        }
+    }
+
+    public int getI32(long address) {
+        assert contains(address, 4);
+        if (data != null) {
+            return Endianess.get32bitLE(data, (int) (address - base + offset));
+        } else {
+            return NativeMemory.i32L(address - base + offset);
+        }
+    }
+
+    public long getI64(long address) {
+        assert contains(address, 8);
+        if (data != null) {
+            return Endianess.get64bitLE(data, (int) (address - base + offset));
+        } else {
+            return NativeMemory.i64L(address - base + offset);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.memory;
+
+import java.util.Arrays;
+
+import org.graalvm.vm.memory.exception.SegmentationViolation;
+import org.graalvm.vm.util.io.ByteArrayAccess;
+import org.graalvm.vm.util.io.Endianess;
+
+/**
+ * Anonymous memory which is backed by one array per page. Pages are allocated on the first write,
+ * pages which were never written read as zero, and {@link #discard(long, long)} drops whole pages
+ * again so the Java heap actually shrinks when the guest releases memory with madvise.
+ */
+public class PagedMemory extends Memory {
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_OFFSET_MASK = PAGE_SIZE - 1;
+
+    private final long size;
+    private byte[][] pages;
+    private int residentPages;
+
+    public PagedMemory(long size) {
+        this(size, true);
+    }
+
+    public PagedMemory(long size, boolean isBE) {
+        super(isBE);
+        long count = (size + PAGE_SIZE - 1) >>> PAGE_SHIFT;
+        if (size < 0 || (int) count != count) {
+            throw new OutOfMemoryError();
+        }
+        this.size = size;
+        this.pages = new byte[(int) count][];
+        this.residentPages = 0;
+    }
+
+    private static int page(long pos) {
+        return (int) (pos >>> PAGE_SHIFT);
+    }
+
+    private static int offset(long pos) {
+        return (int) pos & PAGE_OFFSET_MASK;
+    }
+
+    private void check(long pos, int len) {
+        check(pos);
+        if (pos < 0 || pos + len > size) {
+            throw new SegmentationViolation(this, pos);
+        }
+    }
+
+    // page for reading, null if it was never written
+    private byte[] read(long pos, int len) {
+        check(pos, len);
+        return pages[page(pos)];
+    }
+
+    private byte[] write(long pos, int len) {
+        check(pos, len);
+        byte[] page = pages[page(pos)];
+        if (page == null) {
+            return allocate(page(pos));
+        }
+        return page;
+    }
+
+    // guest threads may touch the same fresh page concurrently, only one allocation may win
+    private synchronized byte[] allocate(int idx) {
+        byte[] page = pages[idx];
+        if (page == null) {
+            page = new byte[PAGE_SIZE];
+            pages[idx] = page;
+            residentPages++;
+        }
+        return page;
+    }
+
+    private static boolean crossesPage(long pos, int len) {
+        return offset(pos) + len > PAGE_SIZE;
+    }
+
+    @Override
+    protected byte i8(long pos) {
+        byte[] page = read(pos, 1);
+        return page == null ? 0 : page[offset(pos)];
+    }
+
+    @Override
+    protected short i16L(long pos) {
+        if (crossesPage(pos, 2)) {
+            return (short) (Byte.toUnsignedInt(i8(pos)) | (i8(pos + 1) << 8));
+        }
+        byte[] page = read(pos, 2);
+        return page == null ? 0 : Endianess.get16bitLE(page, offset(pos));
+    }
+
+    @Override
+    protected short i16B(long pos) {
+        return Short.reverseBytes(i16L(pos));
+    }
+
+    @Override
+    protected int i32L(long pos) {
+        if (crossesPage(pos, 4)) {
+            return Short.toUnsignedInt(i16L(pos)) | (i16L(pos + 2) << 16);
+        }
+        byte[] page = read(pos, 4);
+        return page == null ? 0 : Endianess.get32bitLE(page, offset(pos));
+    }
+
+    @Override
+    protected int i32B(long pos) {
+        return Integer.reverseBytes(i32L(pos));
+    }
+
+    @Override
+    protected long i64L(long pos) {
+        if (crossesPage(pos, 8)) {
+            return Integer.toUnsignedLong(i32L(pos)) | ((long) i32L(pos + 4) << 32);
+        }
+        byte[] page = read(pos, 8);
+        return page == null ? 0 : Endianess.get64bitLE(page, offset(pos));
+    }
+
+    @Override
+    protected long i64B(long pos) {
+        return Long.reverseBytes(i64L(pos));
+    }
+
+    @Override
+    protected void i8(long pos, byte val) {
+        write(pos, 1)[offset(pos)] = val;
+    }
+
+    @Override
+    protected void i16L(long pos, short val) {
+        if (crossesPage(pos, 2)) {
+            i8(pos, (byte) val);
+            i8(pos + 1, (byte) (val >> 8));
+        } else {
+            Endianess.set16bitLE(write(pos, 2), offset(pos), val);
+        }
+    }
+
+    @Override
+    protected void i16B(long pos, short val) {
+        i16L(pos, Short.reverseBytes(val));
+    }
+
+    @Override
+    protected void i32L(long pos, int val) {
+        if (crossesPage(pos, 4)) {
+            i16L(pos, (short) val);
+            i16L(pos + 2, (short) (val >> 16));
+        } else {
+            Endianess.set32bitLE(write(pos, 4), offset(pos), val);
+        }
+    }
+
+    @Override
+    protected void i32B(long pos, int val) {
+        i32L(pos, Integer.reverseBytes(val));
+    }
+
+    @Override
+    protected void i64L(long pos, long val) {
+        if (crossesPage(pos, 8)) {
+            i32L(pos, (int) val);
+            i32L(pos + 4, (int) (val >> 32));
+        } else {
+            Endianess.set64bitLE(write(pos, 8), offset(pos), val);
+        }
+    }
+
+    @Override
+    protected void i64B(long pos, long val) {
+        i64L(pos, Long.reverseBytes(val));
+    }
+
+    @Override
+    public boolean cmpxchgI8(long pos, byte expected, byte x) {
+        if (!crossesPage(pos, 1)) {
+            byte[] page = write(pos, 1);
+            if (ByteArrayAccess.isAtomic(page, offset(pos), 1)) {
+                return ByteArrayAccess.casI8(page, offset(pos), expected, x);
+            }
+        }
+        return super.cmpxchgI8(pos, expected, x);
+    }
+
+    @Override
+    public boolean cmpxchgI16L(long pos, short expected, short x) {
+        if (!crossesPage(pos, 2)) {
+            byte[] page = write(pos, 2);
+            if (ByteArrayAccess.isAtomic(page, offset(pos), 2)) {
+                return ByteArrayAccess.casI16LE(page, offset(pos), expected, x);
+            }
+        }
+        return super.cmpxchgI16L(pos, expected, x);
+    }
+
+    @Override
+    public boolean cmpxchgI16B(long pos, short expected, short x) {
+        if (!crossesPage(pos, 2)) {
+            byte[] page = write(pos, 2);
+            if (ByteArrayAccess.isAtomic(page, offset(pos), 2)) {
+                return ByteArrayAccess.casI16BE(page, offset(pos), expected, x);
+            }
+        }
+        return super.cmpxchgI16B(pos, expected, x);
+    }
+
+    @Override
+    public boolean cmpxchgI32L(long pos, int expected, int x) {
+        if (!crossesPage(pos, 4)) {
+            byte[] page = write(pos, 4);
+            if (ByteArrayAccess.isAtomic(page, offset(pos), 4)) {
+                return ByteArrayAccess.casI32LE(page, offset(pos), expected, x);
+            }
+        }
+        return super.cmpxchgI32L(pos, expected, x);
+    }
+
+    @Override
+    public boolean cmpxchgI32B(long pos, int expected, int x) {
+        if (!crossesPage(pos, 4)) {
+            byte[] page = write(pos, 4);
+            if (ByteArrayAccess.isAtomic(page, offset(pos), 4)) {
+                return ByteArrayAccess.casI32BE(page, offset(pos), expected, x);
+            }
+        }
+        return super.cmpxchgI32B(pos, expected, x);
+    }
+
+    @Override
+    public boolean cmpxchgI64L(long pos, long expected, long x) {
+        if (!crossesPage(pos, 8)) {
+            byte[] page = write(pos, 8);
+            if (ByteArrayAccess.isAtomic(page, offset(pos), 8)) {
+                return ByteArrayAccess.casI64LE(page, offset(pos), expected, x);
+            }
+        }
+        return super.cmpxchgI64L(pos, expected, x);
+    }
+
+    @Override
+    public boolean cmpxchgI64B(long pos, long expected, long x) {
+        if (!crossesPage(pos, 8)) {
+            byte[] page = write(pos, 8);
+            if (ByteArrayAccess.isAtomic(page, offset(pos), 8)) {
+                return ByteArrayAccess.casI64BE(page, offset(pos), expected, x);
+            }
+        }
+        return super.cmpxchgI64B(pos, expected, x);
+    }
+
+    /**
+     * Returns the array which holds the page containing pos, or null if it was never written.
+     */
+    public byte[] getPage(long pos) {
+        check(pos, 1);
+        return pages[page(pos)];
+    }
+
+    public int getPageOffset(long pos) {
+        return offset(pos);
+    }
+
+    @Override
+    public void memcpy(byte[] dst, long off) {
+        get(off, dst, 0, dst.length);
+    }
+
+    @Override
+    public void get(long pos, byte[] dst, int off, int len) {
+        check(pos, len);
+        int done = 0;
+        while (done < len) {
+            long p = pos + done;
+            int n = Math.min(PAGE_SIZE - offset(p), len - done);
+            byte[] page = pages[page(p)];
+            if (page == null) {
+                Arrays.fill(dst, off + done, off + done + n, (byte) 0);
+            } else {
+                System.arraycopy(page, offset(p), dst, off + done, n);
+            }
+            done += n;
+        }
+    }
+
+    @Override
+    public void set(long pos, byte[] src, int off, int len) {
+        check(pos, len);
+        int done = 0;
+        while (done < len) {
+            long p = pos + done;
+            int n = Math.min(PAGE_SIZE - offset(p), len - done);
+            System.arraycopy(src, off + done, write(p, n), offset(p), n);
+            done += n;
+        }
+    }
+
+    @Override
+    public synchronized void discard(long pos, long len) {
+        check(pos, 0);
+        long end = Math.min(pos + len, size);
+        long p = pos;
+        while (p < end) {
+            int idx = page(p);
+            int off = offset(p);
+            int n = (int) Math.min(PAGE_SIZE - off, end - p);
+            if (pages[idx] != null) {
+                if (n == PAGE_SIZE || (off == 0 && p + n == size)) {
+                    pages[idx] = null;
+                    residentPages--;
+                } else {
+                    Arrays.fill(pages[idx], off, off + n, (byte) 0);
+                }
+            }
+            p += n;
+        }
+    }
+
+    @Override
+    public long getResidentSize() {
+        return (long) residentPages * PAGE_SIZE;
+    }
+
+    @Override
+    public void free() {
+        super.free();
+        pages = null;
+        residentPages = 0;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+}
@@ -41,6 +41,7 @@
 package org.graalvm.vm.memory;
 
 import org.graalvm.vm.memory.exception.SegmentationViolation;
+import org.graalvm.vm.posix.api.PosixException;
 import org.graalvm.vm.posix.api.PosixPointer;
 
 import com.oracle.truffle.api.CompilerAsserts;
@@ -205,6 +206,51 @@ public class PosixMemory extends Memory {
         }
     }
 
+    @TruffleBoundary
+    @Override
+    public void get(long pos, byte[] dst, int off, int len) {
+        int n;
+        try {
+            n = ptr(pos).getBytes(dst, off, len);
+        } catch (RuntimeException e) {
+            throw new SegmentationViolation(this, pos);
+        }
+        if (n != len) {
+            throw new SegmentationViolation(this, pos + n);
+        }
+    }
+
+    @TruffleBoundary
+    @Override
+    public void set(long pos, byte[] src, int off, int len) {
+        int n;
+        try {
+            n = ptr(pos).setBytes(src, off, len);
+        } catch (RuntimeException e) {
+            throw new SegmentationViolation(this, pos);
+        }
+        if (n != len) {
+            throw new SegmentationViolation(this, pos + n);
+        }
+    }
+
+    @TruffleBoundary
+    public void msync(long pos, long length, int flags) throws PosixException {
+        ptr(pos).msync(length, flags);
+    }
+
+    @TruffleBoundary
+    @Override
+    public void discard(long pos, long len) {
+        ptr(pos).discard(len);
+    }
+
+    @TruffleBoundary
+    @Override
+    public long getResidentSize() {
+        return ptr.getResidentSize();
+    }
+
     @TruffleBoundary
     @Override
     public long size() {
@@ -146,6 +146,69 @@ public class PosixVirtualMemoryPointer implements PosixPointer {
         }
     }
 
+    @Override
+    public boolean cmpxchgI32(int expected, int x) throws MemoryFaultException {
+        try {
+            return memory.cmpxchgI32(offset, expected, x);
+        } catch (SegmentationViolation e) {
+            CompilerDirectives.transferToInterpreter();
+            throw new MemoryFaultException(e);
+        }
+    }
+
+    // the mapping if [offset, offset + size) is plain read/write data backed by a single array;
+    // writes to executable memory have to go through MemoryPage to invalidate translated code
+    private MemoryPage getArrayPage(int size) {
+        MemoryPage page;
+        try {
+            page = memory.get(offset);
+        } catch (SegmentationViolation e) {
+            return null;
+        }
+        if (page == null || !page.r || !page.w || page.x || !(page.getMemory() instanceof ByteMemory)) {
+            return null;
+        }
+        if (Long.compareUnsigned(offset + size, page.end) > 0) {
+            return null;
+        }
+        return page;
+    }
+
+    @Override
+    public boolean hasMemory(int size) {
+        return getArrayPage(size) != null;
+    }
+
+    @Override
+    public byte[] getMemory() {
+        return getArrayPage(1).getMemory().getBytes();
+    }
+
+    @Override
+    public int getOffset() {
+        return (int) getArrayPage(1).getOffset(offset);
+    }
+
+    @Override
+    public int getBytes(byte[] dst, int off, int length) throws MemoryFaultException {
+        try {
+            return memory.getBytes(offset, dst, off, length);
+        } catch (SegmentationViolation e) {
+            CompilerDirectives.transferToInterpreter();
+            throw new MemoryFaultException(e);
+        }
+    }
+
+    @Override
+    public int setBytes(byte[] src, int off, int length) throws MemoryFaultException {
+        try {
+            return memory.setBytes(offset, src, off, length);
+        } catch (SegmentationViolation e) {
+            CompilerDirectives.transferToInterpreter();
+            throw new MemoryFaultException(e);
+        }
+    }
+
     @Override
     public String toString() {
         CompilerAsserts.neverPartOfCompilation();
@@ -43,6 +43,7 @@ package org.graalvm.vm.memory;
 import java.io.PrintStream;
 import java.util.logging.Logger;
 
+import org.graalvm.vm.memory.exception.SegmentationViolation;
 import org.graalvm.vm.memory.hardware.HybridVirtualMemory;
 import org.graalvm.vm.memory.hardware.NativeVirtualMemory;
 import org.graalvm.vm.memory.vector.Vector128;
@@ -63,6 +64,7 @@ public abstract class VirtualMemory {
     protected static final boolean VIRTUAL = MemoryOptions.MEM_VIRTUAL.get();
     protected static final boolean VERIFY = MemoryOptions.MEM_VERIFY.get();
     protected static final boolean MAP_NATIVE = MemoryOptions.MEM_MAP_NATIVE.get();
+    protected static final boolean BEST_FIT = MemoryOptions.MEM_BEST_FIT.get();
 
     public static final long PAGE_SIZE = 4096;
     public static final long PAGE_MASK = ~(PAGE_SIZE - 1);
@@ -116,7 +118,7 @@ public abstract class VirtualMemory {
     public VirtualMemory(long pointerBase, long pointerEnd) {
         this.pointerBase = pointerBase;
         this.pointerEnd = pointerEnd;
-        allocator = new MemoryAllocator(pointerBase, pointerEnd - pointerBase);
+        allocator = new MemoryAllocator(pointerBase, pointerEnd - pointerBase, BEST_FIT ? MemoryAllocator.Policy.BEST_FIT : MemoryAllocator.Policy.FIRST_FIT);
         brk = 0;
         reportedBrk = brk;
         enableAccessTrace = DEBUG;
@@ -224,6 +226,15 @@ public abstract class VirtualMemory {
 
     public abstract void add(MemoryPage page);
 
+    /**
+     * Returns whether a MAP_SHARED file mapping at address can be accessed through its
+     * {@link PosixMemory}, so that writes reach the file. Memory which copies mappings into its own
+     * storage cannot do this. An address of -1 asks for a mapping placed by {@link #allocate}.
+     */
+    public boolean supportsSharedMapping(@SuppressWarnings("unused") long address) {
+        return false;
+    }
+
     public abstract void remove(long addr, long len) throws PosixException;
 
     public MemoryPage allocate(long size) {
@@ -240,6 +251,14 @@ public abstract class VirtualMemory {
 
     public abstract void free(long address);
 
+    /**
+     * Returns a direct view of the executable memory around address, or null if there is none.
+     * Readers fall back to the regular accessors outside of the view.
+     */
+    public MemoryView getCodeView(@SuppressWarnings("unused") long address) {
+        return null;
+    }
+
     protected long allocateRegion(long size) {
         return allocator.alloc(size);
     }
@@ -295,6 +314,43 @@ public abstract class VirtualMemory {
 
     public abstract void setI512(long address, Vector512 val);
 
+    /**
+     * Copies up to len bytes starting at address to dst[off] and returns the number of bytes
+     * copied. Less than len bytes are only copied if the copy runs into a fault after the first
+     * byte, a fault at the first byte raises a SegmentationViolation.
+     */
+    public int getBytes(long address, byte[] dst, int off, int len) {
+        int i = 0;
+        try {
+            for (i = 0; i < len; i++) {
+                dst[off + i] = getI8(address + i);
+            }
+        } catch (SegmentationViolation e) {
+            if (i == 0) {
+                throw e;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Copies up to len bytes from src[off] to address and returns the number of bytes copied,
+     * with the same fault behavior as {@link #getBytes(long, byte[], int, int)}.
+     */
+    public int setBytes(long address, byte[] src, int off, int len) {
+        int i = 0;
+        try {
+            for (i = 0; i < len; i++) {
+                setI8(address + i, src[off + i]);
+            }
+        } catch (SegmentationViolation e) {
+            if (i == 0) {
+                throw e;
+            }
+        }
+        return i;
+    }
+
     public abstract boolean cmpxchgI8(long address, byte expected, byte x);
 
     public abstract boolean cmpxchgI16(long address, short expected, short x);
@@ -309,6 +365,17 @@ public abstract class VirtualMemory {
 
     public abstract boolean isExecutable(long address);
 
+    /**
+     * Applies madvise advice to [address, address + len). MADV_DONTNEED and MADV_FREE release the
+     * memory, all other advice values are hints which may be ignored.
+     */
+    public abstract void madvise(long address, long len, int advice) throws PosixException;
+
+    /**
+     * Returns the number of bytes of guest memory which currently occupy host memory.
+     */
+    public abstract long getResidentSize();
+
     public byte peek(long p) {
         // disable memory access log during peek
         boolean wasDebug = enableAccessTrace;
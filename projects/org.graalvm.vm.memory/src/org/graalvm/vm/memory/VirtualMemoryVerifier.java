@@ -280,37 +280,52 @@ public class VirtualMemoryVerifier extends VirtualMemory {
     // VirtualMemoryVerifier is single threaded only!
     @Override
     public boolean cmpxchgI8(long address, byte expected, byte x) {
-        jmem.setI8(address, x);
-        nmem.setI8(address, x);
-        return true;
+        boolean b1 = jmem.cmpxchgI8(address, expected, x);
+        boolean b2 = nmem.cmpxchgI8(address, expected, x);
+        if (b1 != b2) {
+            fail(address, "cmpxchg " + b1 + " vs " + b2);
+        }
+        return b1;
     }
 
     @Override
     public boolean cmpxchgI16(long address, short expected, short x) {
-        jmem.setI16(address, x);
-        nmem.setI16(address, x);
-        return true;
+        boolean b1 = jmem.cmpxchgI16(address, expected, x);
+        boolean b2 = nmem.cmpxchgI16(address, expected, x);
+        if (b1 != b2) {
+            fail(address, "cmpxchg " + b1 + " vs " + b2);
+        }
+        return b1;
     }
 
     @Override
     public boolean cmpxchgI32(long address, int expected, int x) {
-        jmem.setI32(address, x);
-        nmem.setI32(address, x);
-        return true;
+        boolean b1 = jmem.cmpxchgI32(address, expected, x);
+        boolean b2 = nmem.cmpxchgI32(address, expected, x);
+        if (b1 != b2) {
+            fail(address, "cmpxchg " + b1 + " vs " + b2);
+        }
+        return b1;
     }
 
     @Override
     public boolean cmpxchgI64(long address, long expected, long x) {
-        jmem.setI64(address, x);
-        nmem.setI64(address, x);
-        return true;
+        boolean b1 = jmem.cmpxchgI64(address, expected, x);
+        boolean b2 = nmem.cmpxchgI64(address, expected, x);
+        if (b1 != b2) {
+            fail(address, "cmpxchg " + b1 + " vs " + b2);
+        }
+        return b1;
     }
 
     @Override
     public boolean cmpxchgI128(long address, Vector128 expected, Vector128 x) {
-        jmem.setI128(address, x);
-        nmem.setI128(address, x);
-        return true;
+        // the native memory has no 128bit cmpxchg
+        boolean b1 = jmem.cmpxchgI128(address, expected, x);
+        if (b1) {
+            nmem.setI128(address, x);
+        }
+        return b1;
     }
 
     @Override
@@ -319,6 +334,17 @@ public class VirtualMemoryVerifier extends VirtualMemory {
         nmem.mprotect(address, len, r, w, x);
     }
 
+    @Override
+    public void madvise(long address, long len, int advice) throws PosixException {
+        jmem.madvise(address, len, advice);
+        nmem.madvise(address, len, advice);
+    }
+
+    @Override
+    public long getResidentSize() {
+        return jmem.getResidentSize();
+    }
+
     @Override
     public boolean isExecutable(long address) {
         boolean e1 = jmem.isExecutable(address);
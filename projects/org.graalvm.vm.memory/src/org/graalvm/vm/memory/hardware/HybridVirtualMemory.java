@@ -46,6 +46,7 @@ import java.nio.ByteOrder;
 import org.graalvm.vm.memory.JavaVirtualMemory;
 import org.graalvm.vm.memory.Memory;
 import org.graalvm.vm.memory.MemoryPage;
+import org.graalvm.vm.memory.MemoryView;
 import org.graalvm.vm.memory.PosixMemory;
 import org.graalvm.vm.memory.VirtualMemory;
 import org.graalvm.vm.memory.vector.Vector128;
@@ -102,6 +103,12 @@ public class HybridVirtualMemory extends VirtualMemory {
         }
     }
 
+    @Override
+    public boolean supportsSharedMapping(long address) {
+        // shared mappings are placed in Java memory by allocate
+        return Long.compareUnsigned(address, nmem.getVirtualHigh()) >= 0;
+    }
+
     @Override
     public void add(MemoryPage page) {
         if (Long.compareUnsigned(page.base, nmem.getVirtualHigh()) < 0) {
@@ -164,6 +171,17 @@ public class HybridVirtualMemory extends VirtualMemory {
         }
     }
 
+    @Override
+    public MemoryView getCodeView(long address) {
+        if (MAP_NATIVE && address < 0) {
+            return null;
+        } else if (Long.compareUnsigned(address, nmem.getVirtualHigh()) < 0) {
+            return nmem.getCodeView(address);
+        } else {
+            return jmem.getCodeView(address);
+        }
+    }
+
     @Override
     public byte getI8(long address) {
         if (MAP_NATIVE && address < 0) {
@@ -362,6 +380,30 @@ public class HybridVirtualMemory extends VirtualMemory {
         }
     }
 
+    @Override
+    public int getBytes(long address, byte[] dst, int off, int len) {
+        if (MAP_NATIVE && address < 0) {
+            NativeMemory.read(dst, off, fromMappedNative(address), len);
+            return len;
+        } else if (Long.compareUnsigned(address, nmem.getVirtualHigh()) < 0) {
+            return nmem.getBytes(address, dst, off, len);
+        } else {
+            return jmem.getBytes(address, dst, off, len);
+        }
+    }
+
+    @Override
+    public int setBytes(long address, byte[] src, int off, int len) {
+        if (MAP_NATIVE && address < 0) {
+            NativeMemory.write(fromMappedNative(address), src, off, len);
+            return len;
+        } else if (Long.compareUnsigned(address, nmem.getVirtualHigh()) < 0) {
+            return nmem.setBytes(address, src, off, len);
+        } else {
+            return jmem.setBytes(address, src, off, len);
+        }
+    }
+
     @Override
     public boolean cmpxchgI8(long address, byte expected, byte x) {
         if (MAP_NATIVE && address < 0) {
@@ -448,6 +490,22 @@ public class HybridVirtualMemory extends VirtualMemory {
         }
     }
 
+    @Override
+    public void madvise(long address, long len, int advice) throws PosixException {
+        if (MAP_NATIVE && address < 0) {
+            return; // mapped host process memory is not owned by the guest
+        } else if (Long.compareUnsigned(address, nmem.getVirtualHigh()) < 0) {
+            nmem.madvise(address, len, advice);
+        } else {
+            jmem.madvise(address, len, advice);
+        }
+    }
+
+    @Override
+    public long getResidentSize() {
+        return nmem.getResidentSize() + jmem.getResidentSize();
+    }
+
     @Override
     public void printMaps(PrintStream out) {
         nmem.printMaps(out);
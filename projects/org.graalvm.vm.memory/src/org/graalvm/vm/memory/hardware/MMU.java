@@ -57,6 +57,8 @@ import sun.misc.Unsafe;
 public class MMU {
     private static final Logger log = Trace.create(MMU.class);
 
+    public static final long HUGEPAGE_SIZE = 2 * 1024 * 1024;
+
     @CompilationFinal private static boolean initialized = false;
     @CompilationFinal private static boolean loaded = false;
     private static final Unsafe unsafe = UnsafeHolder.getUnsafe();
@@ -121,4 +123,12 @@ public class MMU {
     public static native int munmap(long addr, long len) throws PosixException;
 
     public static native int mprotect(long addr, long len, boolean r, boolean w, boolean x) throws PosixException;
+
+    public static native int madvise(long addr, long len, int advice) throws PosixException;
+
+    /**
+     * Requests transparent huge pages for every complete {@link #HUGEPAGE_SIZE} page in [addr, addr
+     * + len) and returns the number of bytes covered by the request.
+     */
+    public static native long hugepages(long addr, long len) throws PosixException;
 }
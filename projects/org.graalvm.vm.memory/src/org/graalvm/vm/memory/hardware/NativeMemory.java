@@ -235,16 +235,16 @@ public class NativeMemory {
     }
 
     public static void read(byte[] dst, int off, long addr, long len) {
-        long ptr = addr;
-        for (int i = 0; i < len; i++, ptr++) {
-            dst[i + off] = i8(ptr);
+        if (off < 0 || len < 0 || off + len > dst.length) {
+            throw new ArrayIndexOutOfBoundsException(off);
         }
+        unsafe.copyMemory(null, addr, dst, Unsafe.ARRAY_BYTE_BASE_OFFSET + off, len);
     }
 
     public static void write(long addr, byte[] src, int off, long len) {
-        long ptr = addr;
-        for (int i = 0; i < len; i++, ptr++) {
-            i8(ptr, src[i + off]);
+        if (off < 0 || len < 0 || off + len > src.length) {
+            throw new ArrayIndexOutOfBoundsException(off);
         }
+        unsafe.copyMemory(src, Unsafe.ARRAY_BYTE_BASE_OFFSET + off, null, addr, len);
     }
 }
@@ -51,6 +51,8 @@ import org.graalvm.vm.memory.ByteMemory;
 import org.graalvm.vm.memory.Memory;
 import org.graalvm.vm.memory.MemoryOptions;
 import org.graalvm.vm.memory.MemoryPage;
+import org.graalvm.vm.memory.MemoryView;
+import org.graalvm.vm.memory.PagedMemory;
 import org.graalvm.vm.memory.PosixMemory;
 import org.graalvm.vm.memory.VirtualMemory;
 import org.graalvm.vm.memory.exception.SegmentationViolation;
@@ -61,6 +63,7 @@ import org.graalvm.vm.memory.vector.Vector256;
 import org.graalvm.vm.memory.vector.Vector512;
 import org.graalvm.vm.posix.api.Errno;
 import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.posix.api.mem.Mman;
 import org.graalvm.vm.util.log.Levels;
 import org.graalvm.vm.util.log.Trace;
 
@@ -73,6 +76,7 @@ public class NativeVirtualMemory extends VirtualMemory {
 
     private static final String ARCH = System.getProperty("os.arch");
     private static final boolean BYPASS_SEGFAULT_CHECK = MemoryOptions.BYPASS_SEGFAULT_CHECK.get();
+    private static final boolean HUGEPAGES = MemoryOptions.MEM_HUGEPAGES.get();
 
     public static final long LOW = getLow();
     public static final long HIGH = getHigh();
@@ -89,6 +93,8 @@ public class NativeVirtualMemory extends VirtualMemory {
 
     private List<MemorySegment> map;
 
+    private boolean hugepages = HUGEPAGES;
+
     private static long getLow() {
         switch (ARCH) {
             case "aarch64":
@@ -346,23 +352,108 @@ public class NativeVirtualMemory extends VirtualMemory {
         MMU.mprotect(phy, len, r, w, x);
     }
 
+    @Override
+    public void madvise(long address, long len, int advice) throws PosixException {
+        if (advice != Mman.MADV_DONTNEED && advice != Mman.MADV_FREE) {
+            return;
+        }
+        long addr = addr(address);
+        long phy = phy(addr);
+        // the advice values of the guest and the host are identical on Linux
+        MMU.madvise(phy, roundToPageSize(len), advice);
+    }
+
+    public boolean isHugepages() {
+        return hugepages;
+    }
+
+    /**
+     * Back large anonymous regions with transparent huge pages. This only affects regions which are
+     * mapped afterwards.
+     */
+    public void setHugepages(boolean hugepages) {
+        this.hugepages = hugepages;
+    }
+
+    @TruffleBoundary
+    private void adviseHugepages(long start, long size) {
+        try {
+            MMU.hugepages(start, size);
+        } catch (PosixException e) {
+            // THP is not available in this kernel, don't try again
+            log.log(Level.INFO, "cannot use transparent huge pages: " + Errno.toString(e.getErrno()));
+            hugepages = false;
+        }
+    }
+
+    // place regions of at least one huge page on a huge page boundary so they can be fully backed
+    // by huge pages
+    @Override
+    protected long allocateRegion(long size) {
+        if (!hugepages || size < MMU.HUGEPAGE_SIZE) {
+            return super.allocateRegion(size);
+        }
+        long base;
+        try {
+            base = super.allocateRegion(size + MMU.HUGEPAGE_SIZE);
+        } catch (OutOfMemoryError e) {
+            return super.allocateRegion(size);
+        }
+        long aligned = (base + MMU.HUGEPAGE_SIZE - 1) & ~(MMU.HUGEPAGE_SIZE - 1);
+        long end = base + size + MMU.HUGEPAGE_SIZE;
+        if (aligned != base) {
+            free(base, aligned - base);
+        }
+        if (aligned + size != end) {
+            free(aligned + size, end - aligned - size);
+        }
+        return aligned;
+    }
+
+    /**
+     * Returns the number of bytes of this memory which are currently backed by transparent huge
+     * pages.
+     */
+    @TruffleBoundary
+    public long getHugepageSize() {
+        try {
+            long size = 0;
+            for (MemorySegment s : MemoryMap.smaps().getSegments()) {
+                if (Long.compareUnsigned(s.start, physicalLo) >= 0 && Long.compareUnsigned(s.end, physicalHi) <= 0) {
+                    size += s.anonHugePages;
+                }
+            }
+            return size;
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Cannot retrieve memory region info", e);
+            return 0;
+        }
+    }
+
+    @TruffleBoundary
+    @Override
+    public long getResidentSize() {
+        try {
+            long size = 0;
+            for (MemorySegment s : MemoryMap.smaps().getSegments()) {
+                if (Long.compareUnsigned(s.start, physicalLo) >= 0 && Long.compareUnsigned(s.end, physicalHi) <= 0) {
+                    size += s.rss;
+                }
+            }
+            return size;
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Cannot retrieve memory region info", e);
+            return 0;
+        }
+    }
+
     @Override
     public void add(MemoryPage page) {
         Memory mem = page.getMemory();
         if (mem instanceof PosixMemory) {
+            // copied directly into native memory below, without a Java heap copy
             assert ((PosixMemory) mem).isReadOnly();
-
-            // copy
-            long size = mem.size();
-            Memory memory = new ByteMemory(size, false);
-            long sz = mem.size();
-            for (int i = 0; i < sz; i++) {
-                memory.setI8(i, mem.getI8(i));
-            }
-            MemoryPage pag = new MemoryPage(memory, page.base, page.size, page.name, page.fileOffset);
-            add(pag);
-            return;
-        } else if (!(mem instanceof ByteMemory) && !(mem instanceof NullMemory)) {
+        } else if (!(mem instanceof ByteMemory) && !(mem instanceof PagedMemory) && !(mem instanceof NullMemory)) {
             throw new IllegalArgumentException("not a ByteMemory");
         }
         long addr = addr(page.base);
@@ -377,6 +468,9 @@ public class NativeVirtualMemory extends VirtualMemory {
             log.log(Levels.WARNING, "mmap failed: " + Errno.toString(e.getErrno()));
             throw new OutOfMemoryError("mmap failed: " + Errno.toString(e.getErrno()));
         }
+        if (hugepages && size >= MMU.HUGEPAGE_SIZE) {
+            adviseHugepages(start, size);
+        }
 
         // update allocator here, otherwise failed mmap cannot be rolled back in allocator
         boolean ok = Long.compareUnsigned(page.end, pointerBase) <= 0 || Long.compareUnsigned(page.end, pointerEnd) > 0;
@@ -387,8 +481,8 @@ public class NativeVirtualMemory extends VirtualMemory {
         // System.out.printf("ADD: [0x%x-0x%x:0x%x] (0x%x-0x%x)\n", page.base, page.end, page.size,
         // start, start + size);
 
-        // copy page content to native memory
-        if (mem instanceof ByteMemory) {
+        // copy page content to native memory; fresh anonymous host pages are zero already
+        if (mem instanceof ByteMemory || mem instanceof PosixMemory || (mem instanceof PagedMemory && mem.getResidentSize() != 0)) {
             int i = 0;
             try {
                 for (i = 0; i < page.size - 8; i += 8) {
@@ -406,23 +500,6 @@ public class NativeVirtualMemory extends VirtualMemory {
             } catch (SegmentationViolation e) {
                 // this could be a SIGBUS when accessing a mmap'd file
             }
-        } else {
-            // clear
-            int i = 0;
-            try {
-                for (i = 0; i < page.size - 8; i += 8) {
-                    setI64(page.base + i, 0);
-                }
-            } catch (SegmentationViolation e) {
-                // this could be a SIGBUS when accessing a mmap'd file
-            }
-            try {
-                for (; i < page.size; i++) {
-                    setI8(page.base + i, (byte) 0);
-                }
-            } catch (SegmentationViolation e) {
-                // this could be a SIGBUS when accessing a mmap'd file
-            }
         }
 
         try {
@@ -458,14 +535,6 @@ public class NativeVirtualMemory extends VirtualMemory {
     public MemoryPage allocate(Memory memory, long size, String name, long offset) {
         if (memory instanceof PosixMemory) {
             assert ((PosixMemory) memory).isReadOnly();
-
-            // copy
-            Memory mem = new ByteMemory(size, false);
-            long sz = memory.size();
-            for (int i = 0; i < sz; i++) {
-                mem.setI8(i, memory.getI8(i));
-            }
-            return allocate(mem, size, name, offset);
         } else if (!(memory instanceof ByteMemory)) {
             throw new IllegalArgumentException("not a ByteMemory");
         }
@@ -694,6 +763,59 @@ public class NativeVirtualMemory extends VirtualMemory {
         throw new UnsupportedOperationException();
     }
 
+    /*
+     * Bulk copies go page by page: the first byte of each page is probed with a regular access so
+     * that a protection fault is caught by the segfault handler, the rest of the page is copied in
+     * one go. The probe for writes is a compare-and-swap which stores the value it just read.
+     */
+    @TruffleBoundary
+    @Override
+    public int getBytes(long address, byte[] dst, int off, int len) {
+        int done = 0;
+        try {
+            while (done < len) {
+                long addr = addr(address + done);
+                long phy = phy(addr);
+                int n = (int) Math.min(len - done, PAGE_SIZE - (addr & ~PAGE_MASK));
+                phy(addr + n - 1);
+                NativeMemory.i8(phy);
+                checkSegfault(addr, phy);
+                NativeMemory.read(dst, off + done, phy, n);
+                done += n;
+            }
+        } catch (SegmentationViolation e) {
+            if (done == 0) {
+                throw e;
+            }
+        }
+        return done;
+    }
+
+    @TruffleBoundary
+    @Override
+    public int setBytes(long address, byte[] src, int off, int len) {
+        int done = 0;
+        try {
+            while (done < len) {
+                long addr = addr(address + done);
+                long phy = phy(addr);
+                int n = (int) Math.min(len - done, PAGE_SIZE - (addr & ~PAGE_MASK));
+                phy(addr + n - 1);
+                byte val = NativeMemory.i8(phy);
+                checkSegfault(addr, phy);
+                NativeMemory.cmpxchgI8(phy, val, val);
+                checkSegfault(addr, phy);
+                NativeMemory.write(phy, src, off + done, n);
+                done += n;
+            }
+        } catch (SegmentationViolation e) {
+            if (done == 0) {
+                throw e;
+            }
+        }
+        return done;
+    }
+
     @Override
     public boolean isExecutable(long address) {
         for (MemorySegment s : map) {
@@ -704,6 +826,25 @@ public class NativeVirtualMemory extends VirtualMemory {
         return false;
     }
 
+    @TruffleBoundary
+    @Override
+    public MemoryView getCodeView(long address) {
+        long addr = addr(address);
+        if (addr != address || Long.compareUnsigned(addr, virtualLo) < 0 || Long.compareUnsigned(addr, virtualHi) >= 0) {
+            return null;
+        }
+        long phy = phy(addr);
+        for (MemorySegment s : map) {
+            if (s.contains(phy)) {
+                if (!s.permissions.isExecute()) {
+                    return null;
+                }
+                return MemoryView.host(vaddr(s.start), vaddr(s.end), s.start);
+            }
+        }
+        return null;
+    }
+
     private long vaddr(long phy) {
         long offset = phy - physicalLo;
         long vaddr = offset + virtualLo;
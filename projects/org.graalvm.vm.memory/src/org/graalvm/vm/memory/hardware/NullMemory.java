@@ -140,4 +140,14 @@ public class NullMemory extends Memory {
         CompilerDirectives.transferToInterpreter();
         throw new UnsupportedOperationException();
     }
+
+    @Override
+    public void discard(long pos, long len) {
+        // the contents live in native memory and are released via MMU.madvise
+    }
+
+    @Override
+    public long getResidentSize() {
+        return 0;
+    }
 }
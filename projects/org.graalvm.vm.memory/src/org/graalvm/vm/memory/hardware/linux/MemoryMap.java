@@ -63,6 +63,19 @@ public class MemoryMap {
         List<String> lines = Files.readAllLines(Paths.get(filename));
         for (String line : lines) {
             String[] tokens = line.split("\\s+");
+            if (tokens[0].endsWith(":")) {
+                // smaps attribute of the previous segment
+                if (tokens[0].equals("Rss:") && !segments.isEmpty()) {
+                    MemorySegment last = segments.remove(segments.size() - 1);
+                    long rss = Long.parseLong(tokens[1]) * 1024;
+                    segments.add(new MemorySegment(last.start, last.end, last.rawPermissions, last.offset, last.name, rss, last.anonHugePages));
+                } else if (tokens[0].equals("AnonHugePages:") && !segments.isEmpty()) {
+                    MemorySegment last = segments.remove(segments.size() - 1);
+                    long huge = Long.parseLong(tokens[1]) * 1024;
+                    segments.add(new MemorySegment(last.start, last.end, last.rawPermissions, last.offset, last.name, last.rss, huge));
+                }
+                continue;
+            }
             String[] addrs = tokens[0].split("-");
             long start = Long.parseUnsignedLong(addrs[0], 16);
             long end = Long.parseUnsignedLong(addrs[1], 16);
@@ -77,6 +90,18 @@ public class MemoryMap {
         }
     }
 
+    /**
+     * Reads /proc/self/smaps, which additionally provides the resident size and the amount of
+     * transparent huge pages of every segment.
+     */
+    public static MemoryMap smaps() throws IOException {
+        return new MemoryMap("/proc/self/smaps");
+    }
+
+    public static MemoryMap smaps(int pid) throws IOException {
+        return new MemoryMap("/proc/" + pid + "/smaps");
+    }
+
     public List<MemorySegment> getSegments() {
         return Collections.unmodifiableList(segments);
     }
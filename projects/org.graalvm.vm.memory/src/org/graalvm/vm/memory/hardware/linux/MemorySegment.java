@@ -48,8 +48,18 @@ public class MemorySegment {
     public final MemoryPermission permissions;
     public final long offset;
     public final String name;
+    public final long rss;
+    public final long anonHugePages;
 
     public MemorySegment(long start, long end, String permissions, long offset, String name) {
+        this(start, end, permissions, offset, name, 0);
+    }
+
+    public MemorySegment(long start, long end, String permissions, long offset, String name, long rss) {
+        this(start, end, permissions, offset, name, rss, 0);
+    }
+
+    public MemorySegment(long start, long end, String permissions, long offset, String name, long rss, long anonHugePages) {
         this.start = start;
         this.end = end;
         this.length = end - start;
@@ -57,6 +67,8 @@ public class MemorySegment {
         this.permissions = new MemoryPermission(permissions);
         this.offset = offset;
         this.name = name;
+        this.rss = rss;
+        this.anonHugePages = anonHugePages;
     }
 
     public boolean contains(long addr) {
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.posix.test.api.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import org.graalvm.vm.posix.api.BytePosixPointer;
+import org.graalvm.vm.posix.api.Errno;
+import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.posix.api.io.Epoll;
+import org.graalvm.vm.posix.api.io.EpollEvent;
+import org.graalvm.vm.posix.api.io.EpollStream;
+import org.graalvm.vm.posix.api.io.Fcntl;
+import org.graalvm.vm.posix.api.io.SelectorThread;
+import org.graalvm.vm.posix.api.net.Socket;
+import org.graalvm.vm.posix.api.net.SockaddrIn;
+import org.graalvm.vm.posix.api.net.StreamSocketStream;
+import org.graalvm.vm.util.io.Endianess;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EpollStreamTest {
+    private ServerSocketChannel server;
+    private SocketChannel peer;
+    private SelectorThread selector;
+    private StreamSocketStream socket;
+    private EpollStream epoll;
+
+    @Before
+    public void setup() throws Exception {
+        server = ServerSocketChannel.open();
+        // the port has to fit into a signed short
+        for (int port = 20000;; port++) {
+            try {
+                server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+                break;
+            } catch (IOException e) {
+                if (port == 32767) {
+                    throw e;
+                }
+            }
+        }
+
+        SockaddrIn addr = new SockaddrIn();
+        addr.sa_family = Socket.AF_INET;
+        addr.sin_port = (short) ((InetSocketAddress) server.getLocalAddress()).getPort();
+        addr.sin_addr = Endianess.get32bitBE(InetAddress.getLoopbackAddress().getAddress());
+        BytePosixPointer ptr = new BytePosixPointer(new byte[16]);
+        addr.write(ptr);
+
+        selector = new SelectorThread();
+        socket = new StreamSocketStream(selector);
+        assertEquals(0, socket.connect(ptr, 16));
+        peer = server.accept();
+        epoll = new EpollStream();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        epoll.close();
+        socket.close();
+        peer.close();
+        server.close();
+        selector.close();
+    }
+
+    private static EpollEvent event(int events, long data) {
+        EpollEvent event = new EpollEvent();
+        event.events = events;
+        event.data = data;
+        return event;
+    }
+
+    private static EpollEvent[] events(int n) {
+        EpollEvent[] events = new EpollEvent[n];
+        for (int i = 0; i < n; i++) {
+            events[i] = new EpollEvent();
+        }
+        return events;
+    }
+
+    private void send(String s) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(s.getBytes());
+        while (buf.hasRemaining()) {
+            peer.write(buf);
+        }
+    }
+
+    private String drain() throws PosixException {
+        StringBuilder result = new StringBuilder();
+        byte[] buf = new byte[16];
+        try {
+            while (true) {
+                int n = socket.read(buf, 0, buf.length);
+                result.append(new String(buf, 0, n));
+            }
+        } catch (PosixException e) {
+            assertEquals(Errno.EAGAIN, e.getErrno());
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void testCtl() throws Exception {
+        assertEquals(0, epoll.ctl(Epoll.EPOLL_CTL_ADD, 4, socket, event(Epoll.EPOLLIN, 0)));
+        try {
+            epoll.ctl(Epoll.EPOLL_CTL_ADD, 4, socket, event(Epoll.EPOLLIN, 0));
+            fail();
+        } catch (PosixException e) {
+            assertEquals(Errno.EEXIST, e.getErrno());
+        }
+        assertEquals(0, epoll.ctl(Epoll.EPOLL_CTL_DEL, 4, socket, null));
+        try {
+            epoll.ctl(Epoll.EPOLL_CTL_MOD, 4, socket, event(Epoll.EPOLLIN, 0));
+            fail();
+        } catch (PosixException e) {
+            assertEquals(Errno.ENOENT, e.getErrno());
+        }
+        // add again after delete
+        assertEquals(0, epoll.ctl(Epoll.EPOLL_CTL_ADD, 4, socket, event(Epoll.EPOLLIN, 0)));
+    }
+
+    @Test
+    public void testLevelTriggered() throws Exception {
+        socket.setFlags(Fcntl.O_NONBLOCK);
+        epoll.ctl(Epoll.EPOLL_CTL_ADD, 4, socket, event(Epoll.EPOLLIN, 0x1234567890L));
+        EpollEvent[] events = events(4);
+        assertEquals(0, epoll.wait(events, 4, 0));
+        send("hello");
+        assertEquals(1, epoll.wait(events, 4, 1000));
+        assertEquals(Epoll.EPOLLIN, events[0].events);
+        assertEquals(0x1234567890L, events[0].data);
+        // still readable
+        assertEquals(1, epoll.wait(events, 4, 0));
+        assertEquals("hello", drain());
+        assertEquals(0, epoll.wait(events, 4, 10));
+    }
+
+    @Test
+    public void testEdgeTriggered() throws Exception {
+        socket.setFlags(Fcntl.O_NONBLOCK);
+        epoll.ctl(Epoll.EPOLL_CTL_ADD, 4, socket, event(Epoll.EPOLLIN | Epoll.EPOLLET, 42));
+        EpollEvent[] events = events(4);
+        send("hello");
+        assertEquals(1, epoll.wait(events, 4, 1000));
+        assertEquals(Epoll.EPOLLIN, events[0].events);
+        // not reported again while the guest does not touch the socket
+        assertEquals(0, epoll.wait(events, 4, 10));
+        assertEquals("hello", drain());
+        assertEquals(0, epoll.wait(events, 4, 10));
+        send("world");
+        assertEquals(1, epoll.wait(events, 4, 1000));
+        assertEquals(42, events[0].data);
+        assertEquals("world", drain());
+    }
+
+    @Test
+    public void testOneShot() throws Exception {
+        socket.setFlags(Fcntl.O_NONBLOCK);
+        epoll.ctl(Epoll.EPOLL_CTL_ADD, 4, socket, event(Epoll.EPOLLIN | Epoll.EPOLLONESHOT, 0));
+        EpollEvent[] events = events(4);
+        send("hello");
+        assertEquals(1, epoll.wait(events, 4, 1000));
+        assertEquals("hello", drain());
+        send("world");
+        assertEquals(0, epoll.wait(events, 4, 10));
+        epoll.ctl(Epoll.EPOLL_CTL_MOD, 4, socket, event(Epoll.EPOLLIN | Epoll.EPOLLONESHOT, 0));
+        assertEquals(1, epoll.wait(events, 4, 1000));
+        assertEquals("world", drain());
+    }
+
+    @Test
+    public void testWritable() throws Exception {
+        epoll.ctl(Epoll.EPOLL_CTL_ADD, 4, socket, event(Epoll.EPOLLIN | Epoll.EPOLLOUT, 0));
+        EpollEvent[] events = events(4);
+        assertEquals(1, epoll.wait(events, 4, 1000));
+        assertEquals(Epoll.EPOLLOUT, events[0].events);
+    }
+
+    @Test
+    public void testWaitWakeup() throws Exception {
+        socket.setFlags(Fcntl.O_NONBLOCK);
+        EpollEvent[] events = events(4);
+        Thread t = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                // registering must not block behind the running epoll_wait
+                epoll.ctl(Epoll.EPOLL_CTL_ADD, 4, socket, event(Epoll.EPOLLIN, 7));
+                send("x");
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        t.start();
+        assertEquals(1, epoll.wait(events, 4, 5000));
+        assertEquals(7, events[0].data);
+        t.join();
+    }
+
+    @Test
+    public void testBlockingRead() throws Exception {
+        Thread t = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                send("hello");
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        t.start();
+        epoll.ctl(Epoll.EPOLL_CTL_ADD, 4, socket, event(Epoll.EPOLLIN, 0));
+        byte[] buf = new byte[5];
+        assertEquals(5, socket.read(buf, 0, 5));
+        assertEquals("hello", new String(buf));
+        t.join();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.posix.test.api.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.graalvm.vm.posix.api.Errno;
+import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.posix.api.io.EventFdStream;
+import org.graalvm.vm.posix.api.io.Poll;
+import org.graalvm.vm.util.io.Endianess;
+import org.junit.Test;
+
+public class EventFdStreamTest {
+    private static void write(EventFdStream efd, long value) throws PosixException {
+        byte[] buf = new byte[8];
+        Endianess.set64bitLE(buf, 0, value);
+        assertEquals(8, efd.write(buf, 0, 8));
+    }
+
+    private static long read(EventFdStream efd) throws PosixException {
+        byte[] buf = new byte[8];
+        assertEquals(8, efd.read(buf, 0, 8));
+        return Endianess.get64bitLE(buf, 0);
+    }
+
+    @Test
+    public void testCounter() throws Exception {
+        EventFdStream efd = new EventFdStream(3, EventFdStream.EFD_NONBLOCK);
+        write(efd, 4);
+        assertEquals(Poll.POLLIN | Poll.POLLOUT, efd.poll(Poll.POLLIN | Poll.POLLOUT));
+        assertEquals(7, read(efd));
+        assertEquals(Poll.POLLOUT, efd.poll(Poll.POLLIN | Poll.POLLOUT));
+        try {
+            read(efd);
+            fail();
+        } catch (PosixException e) {
+            assertEquals(Errno.EAGAIN, e.getErrno());
+        }
+    }
+
+    @Test
+    public void testSemaphore() throws Exception {
+        EventFdStream efd = new EventFdStream(2, EventFdStream.EFD_SEMAPHORE | EventFdStream.EFD_NONBLOCK);
+        assertEquals(1, read(efd));
+        assertEquals(1, read(efd));
+        try {
+            read(efd);
+            fail();
+        } catch (PosixException e) {
+            assertEquals(Errno.EAGAIN, e.getErrno());
+        }
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+        EventFdStream efd = new EventFdStream(0, EventFdStream.EFD_NONBLOCK);
+        write(efd, 0xFFFFFFFFFFFFFFFEL);
+        assertEquals(Poll.POLLIN, efd.poll(Poll.POLLIN | Poll.POLLOUT));
+        try {
+            write(efd, 1);
+            fail();
+        } catch (PosixException e) {
+            assertEquals(Errno.EAGAIN, e.getErrno());
+        }
+        try {
+            write(efd, -1);
+            fail();
+        } catch (PosixException e) {
+            assertEquals(Errno.EINVAL, e.getErrno());
+        }
+        try {
+            efd.read(new byte[4], 0, 4);
+            fail();
+        } catch (PosixException e) {
+            assertEquals(Errno.EINVAL, e.getErrno());
+        }
+    }
+
+    @Test
+    public void testBlockingRead() throws Exception {
+        EventFdStream efd = new EventFdStream(0, 0);
+        Thread writer = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+                write(efd, 42);
+            } catch (InterruptedException | PosixException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+        assertEquals(42, read(efd));
+        writer.join();
+    }
+}
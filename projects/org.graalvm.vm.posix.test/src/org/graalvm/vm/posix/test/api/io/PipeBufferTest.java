@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.posix.test.api.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.graalvm.vm.posix.api.Errno;
+import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.posix.api.io.Epoll;
+import org.graalvm.vm.posix.api.io.EpollEvent;
+import org.graalvm.vm.posix.api.io.EpollStream;
+import org.graalvm.vm.posix.api.io.Fcntl;
+import org.graalvm.vm.posix.api.io.PipeBuffer;
+import org.graalvm.vm.posix.api.io.Poll;
+import org.graalvm.vm.posix.api.io.Stream;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PipeBufferTest {
+    private Stream in;
+    private Stream out;
+
+    @Before
+    public void setup() {
+        PipeBuffer pipe = new PipeBuffer();
+        in = pipe.getReadEnd();
+        out = pipe.getWriteEnd();
+        in.addref();
+        out.addref();
+    }
+
+    private static void assertErrno(int errno, Action action) {
+        try {
+            action.run();
+            fail();
+        } catch (PosixException e) {
+            assertEquals(Errno.toString(errno), Errno.toString(e.getErrno()));
+        }
+    }
+
+    private interface Action {
+        void run() throws PosixException;
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+        byte[] buf = new byte[16];
+        assertEquals(5, out.write("hello".getBytes(), 0, 5));
+        assertEquals(3, in.read(buf, 0, 3));
+        assertEquals(2, in.read(buf, 3, 13));
+        assertEquals("hello", new String(buf, 0, 5));
+        assertErrno(Errno.EBADF, () -> in.write(buf, 0, 1));
+        assertErrno(Errno.EBADF, () -> out.read(buf, 0, 1));
+    }
+
+    @Test
+    public void testNonBlocking() throws Exception {
+        in.setFlags(Fcntl.O_RDONLY | Fcntl.O_NONBLOCK);
+        out.setFlags(Fcntl.O_WRONLY | Fcntl.O_NONBLOCK);
+        byte[] buf = new byte[PipeBuffer.CAPACITY + 10];
+        assertErrno(Errno.EAGAIN, () -> in.read(buf, 0, 1));
+        // a large write is partial, a small one is all or nothing
+        assertEquals(PipeBuffer.CAPACITY - 10, out.write(buf, 0, PipeBuffer.CAPACITY - 10));
+        assertErrno(Errno.EAGAIN, () -> out.write(buf, 0, 11));
+        assertEquals(10, out.write(buf, 0, PipeBuffer.CAPACITY));
+        assertErrno(Errno.EAGAIN, () -> out.write(buf, 0, PipeBuffer.CAPACITY));
+    }
+
+    @Test
+    public void testWrapAround() throws Exception {
+        byte[] data = new byte[PipeBuffer.CAPACITY / 3 + 7];
+        byte[] buf = new byte[data.length];
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) (round * 31 + i);
+            }
+            assertEquals(data.length, out.write(data, 0, data.length));
+            assertEquals(data.length, in.read(buf, 0, buf.length));
+            assertArrayEquals(data, buf);
+        }
+    }
+
+    @Test
+    public void testEof() throws Exception {
+        byte[] buf = new byte[16];
+        out.write("x".getBytes(), 0, 1);
+        out.delref();
+        assertEquals(Poll.POLLIN | Poll.POLLHUP, in.poll(Poll.POLLIN));
+        assertEquals(1, in.read(buf, 0, buf.length));
+        assertEquals(0, in.read(buf, 0, buf.length));
+    }
+
+    @Test
+    public void testBrokenPipe() throws Exception {
+        in.delref();
+        assertEquals(Poll.POLLOUT | Poll.POLLERR, out.poll(Poll.POLLOUT));
+        assertErrno(Errno.EPIPE, () -> out.write(new byte[1], 0, 1));
+    }
+
+    @Test
+    public void testBlockingTransfer() throws Exception {
+        int total = PipeBuffer.CAPACITY * 8;
+        Thread writer = new Thread(() -> {
+            byte[] chunk = new byte[1000];
+            try {
+                for (int pos = 0; pos < total; pos += chunk.length) {
+                    int n = Math.min(chunk.length, total - pos);
+                    for (int i = 0; i < n; i++) {
+                        chunk[i] = (byte) (pos + i);
+                    }
+                    assertEquals(n, out.write(chunk, 0, n));
+                }
+                out.delref();
+            } catch (PosixException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+        byte[] buf = new byte[777];
+        int pos = 0;
+        while (true) {
+            int n = in.read(buf, 0, buf.length);
+            if (n == 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                assertEquals((byte) (pos + i), buf[i]);
+            }
+            pos += n;
+        }
+        writer.join();
+        assertEquals(total, pos);
+    }
+
+    @Test
+    public void testTransferShortWrite() throws Exception {
+        PipeBuffer source = new PipeBuffer();
+        Stream src = source.getReadEnd();
+        Stream sink = source.getWriteEnd();
+        src.addref();
+        sink.addref();
+        byte[] data = new byte[5000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7);
+        }
+        assertEquals(data.length, sink.write(data, 0, data.length));
+
+        // leave room for only 100 bytes in the destination pipe
+        out.setFlags(Fcntl.O_WRONLY | Fcntl.O_NONBLOCK);
+        byte[] fill = new byte[PipeBuffer.CAPACITY - 100];
+        assertEquals(fill.length, out.write(fill, 0, fill.length));
+        assertEquals(100, src.transfer(-1, out, -1, data.length));
+        assertErrno(Errno.EAGAIN, () -> src.transfer(-1, out, -1, data.length));
+
+        // the bytes the destination did not accept are still in the source pipe
+        byte[] buf = new byte[1000];
+        assertEquals(buf.length, src.read(buf, 0, buf.length));
+        assertArrayEquals(Arrays.copyOfRange(data, 100, 1100), buf);
+
+        assertEquals(fill.length, in.read(fill, 0, fill.length));
+        assertEquals(data.length - 1100, src.transfer(-1, out, -1, data.length));
+        buf = new byte[data.length - 1000];
+        assertEquals(buf.length, in.read(buf, 0, buf.length));
+        assertArrayEquals(Arrays.copyOf(data, 100), Arrays.copyOf(buf, 100));
+        assertArrayEquals(Arrays.copyOfRange(data, 1100, data.length), Arrays.copyOfRange(buf, 100, buf.length));
+    }
+
+    @Test
+    public void testEpollWakeup() throws Exception {
+        EpollStream epoll = new EpollStream();
+        EpollEvent event = new EpollEvent();
+        event.events = Epoll.EPOLLIN;
+        event.data = 7;
+        epoll.ctl(Epoll.EPOLL_CTL_ADD, 3, in, event);
+        EpollEvent[] events = {new EpollEvent()};
+        assertEquals(0, epoll.wait(events, 1, 0));
+        Thread writer = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+                out.write(new byte[1], 0, 1);
+            } catch (InterruptedException | PosixException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+        long start = System.currentTimeMillis();
+        assertEquals(1, epoll.wait(events, 1, 10000));
+        // woken by the write, not by a timeout or a periodic check
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals(7, events[0].data);
+        writer.join();
+        epoll.close();
+    }
+}
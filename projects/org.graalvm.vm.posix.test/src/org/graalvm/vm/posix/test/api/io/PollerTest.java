@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.posix.test.api.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import org.graalvm.vm.posix.api.BytePosixPointer;
+import org.graalvm.vm.posix.api.io.PipeStream;
+import org.graalvm.vm.posix.api.io.Poll;
+import org.graalvm.vm.posix.api.io.Pollfd;
+import org.graalvm.vm.posix.api.io.Poller;
+import org.graalvm.vm.posix.api.io.SelectorThread;
+import org.graalvm.vm.posix.api.io.Stream;
+import org.graalvm.vm.posix.api.net.Socket;
+import org.graalvm.vm.posix.api.net.SockaddrIn;
+import org.graalvm.vm.posix.api.net.StreamSocketStream;
+import org.graalvm.vm.util.io.Endianess;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PollerTest {
+    // generous bound, the wakeup itself takes microseconds
+    private static final long MAX_LATENCY = 500;
+
+    private ServerSocketChannel server;
+    private SocketChannel peer;
+    private SelectorThread selector;
+    private Poller poller;
+    private StreamSocketStream socket;
+    private PipedOutputStream pipeOut;
+    private PipeStream pipe;
+    private PipedOutputStream signalOut;
+    private SignalStream signal;
+
+    private static class SignalStream extends PipeStream {
+        SignalStream(PipedInputStream in) {
+            super(in);
+        }
+
+        @Override
+        protected boolean hasWakeups() {
+            return true;
+        }
+
+        void signal() {
+            wakeup();
+        }
+    }
+
+    @Before
+    public void setup() throws Exception {
+        server = ServerSocketChannel.open();
+        // the port has to fit into a signed short
+        for (int port = 20000;; port++) {
+            try {
+                server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+                break;
+            } catch (IOException e) {
+                if (port == 32767) {
+                    throw e;
+                }
+            }
+        }
+
+        SockaddrIn addr = new SockaddrIn();
+        addr.sa_family = Socket.AF_INET;
+        addr.sin_port = (short) ((InetSocketAddress) server.getLocalAddress()).getPort();
+        addr.sin_addr = Endianess.get32bitBE(InetAddress.getLoopbackAddress().getAddress());
+        BytePosixPointer ptr = new BytePosixPointer(new byte[16]);
+        addr.write(ptr);
+
+        selector = new SelectorThread();
+        poller = new Poller(selector);
+        socket = new StreamSocketStream(selector);
+        assertEquals(0, socket.connect(ptr, 16));
+        peer = server.accept();
+
+        PipedInputStream pipeIn = new PipedInputStream();
+        pipeOut = new PipedOutputStream(pipeIn);
+        pipe = new PipeStream(pipeIn);
+        PipedInputStream signalIn = new PipedInputStream();
+        signalOut = new PipedOutputStream(signalIn);
+        signal = new SignalStream(signalIn);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        socket.close();
+        peer.close();
+        server.close();
+        pipe.close();
+        signal.close();
+        selector.close();
+    }
+
+    private static Pollfd[] pollfds(int... events) {
+        Pollfd[] pfds = new Pollfd[events.length];
+        for (int i = 0; i < events.length; i++) {
+            pfds[i] = new Pollfd();
+            pfds[i].fd = i;
+            pfds[i].events = (short) events[i];
+        }
+        return pfds;
+    }
+
+    private int poll(Stream[] streams, Pollfd[] pfds, int timeout) throws Exception {
+        return poller.poll(streams.clone(), pfds, pfds.length, timeout);
+    }
+
+    private static void later(long delay, Runnable action) {
+        Thread t = new Thread(() -> {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                return;
+            }
+            action.run();
+        });
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @Test
+    public void testMixedNotReady() throws Exception {
+        Stream[] streams = {socket, pipe, signal};
+        Pollfd[] pfds = pollfds(Poll.POLLIN, Poll.POLLIN, Poll.POLLIN);
+        assertEquals(0, poll(streams, pfds, 0));
+        long start = System.currentTimeMillis();
+        assertEquals(0, poll(streams, pfds, 50));
+        assertTrue(System.currentTimeMillis() - start >= 50);
+        for (Pollfd pfd : pfds) {
+            assertEquals(0, pfd.revents);
+        }
+    }
+
+    @Test
+    public void testMixedReady() throws Exception {
+        peer.write(ByteBuffer.wrap(new byte[]{1}));
+        pipeOut.write(2);
+        Stream[] streams = {socket, pipe, signal};
+        Pollfd[] pfds = pollfds(Poll.POLLIN | Poll.POLLOUT, Poll.POLLIN, Poll.POLLIN);
+        assertEquals(2, poll(streams, pfds, 1000));
+        assertEquals(Poll.POLLIN | Poll.POLLOUT, pfds[0].revents);
+        assertEquals(Poll.POLLIN, pfds[1].revents);
+        assertEquals(0, pfds[2].revents);
+    }
+
+    @Test
+    public void testSocketWakeup() throws Exception {
+        Stream[] streams = {socket, pipe, signal};
+        Pollfd[] pfds = pollfds(Poll.POLLIN, Poll.POLLIN, Poll.POLLIN);
+        later(20, () -> {
+            try {
+                peer.write(ByteBuffer.wrap(new byte[]{1}));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        long start = System.currentTimeMillis();
+        assertEquals(1, poll(streams, pfds, 10000));
+        assertTrue(System.currentTimeMillis() - start < 20 + MAX_LATENCY);
+        assertEquals(Poll.POLLIN, pfds[0].revents);
+    }
+
+    @Test
+    public void testHookWakeup() throws Exception {
+        Stream[] streams = {socket, signal};
+        Pollfd[] pfds = pollfds(Poll.POLLIN, Poll.POLLIN);
+        later(20, () -> {
+            try {
+                signalOut.write(1);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            signal.signal();
+        });
+        long start = System.currentTimeMillis();
+        assertEquals(1, poll(streams, pfds, 10000));
+        assertTrue(System.currentTimeMillis() - start < 20 + MAX_LATENCY);
+        assertEquals(Poll.POLLIN, pfds[1].revents);
+    }
+
+    @Test
+    public void testRecheckWakeup() throws Exception {
+        // host pipes cannot signal, they are picked up by the periodic recheck
+        Stream[] streams = {socket, pipe};
+        Pollfd[] pfds = pollfds(Poll.POLLIN, Poll.POLLIN);
+        later(20, () -> {
+            try {
+                pipeOut.write(1);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        long start = System.currentTimeMillis();
+        assertEquals(1, poll(streams, pfds, 10000));
+        assertTrue(System.currentTimeMillis() - start < 20 + Poller.RECHECK_INTERVAL + MAX_LATENCY);
+        assertEquals(Poll.POLLIN, pfds[1].revents);
+    }
+
+    @Test
+    public void testDuplicateSocket() throws Exception {
+        Stream[] streams = {socket, socket};
+        Pollfd[] pfds = pollfds(Poll.POLLIN, Poll.POLLOUT);
+        assertEquals(1, poll(streams, pfds, 1000));
+        assertEquals(0, pfds[0].revents);
+        assertEquals(Poll.POLLOUT, pfds[1].revents);
+        // the keys are cancelled again, so the socket can be polled once more
+        assertEquals(1, poll(streams, pfds, 1000));
+    }
+}
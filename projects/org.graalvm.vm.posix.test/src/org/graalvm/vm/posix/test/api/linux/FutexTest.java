@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.posix.test.api.linux;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.graalvm.vm.posix.api.BytePosixPointer;
+import org.graalvm.vm.posix.api.Errno;
+import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.posix.api.PosixPointer;
+import org.graalvm.vm.posix.api.Timespec;
+import org.graalvm.vm.posix.api.linux.Futex;
+import org.junit.Test;
+
+public class FutexTest {
+    private final Futex futex = new Futex();
+    private final byte[] memory = new byte[16];
+    private final PosixPointer f1 = new Address(memory, 0, 0x1000);
+    private final PosixPointer f2 = new Address(memory, 8, 0x1008);
+
+    // futexes are identified by their address
+    private static class Address extends BytePosixPointer {
+        private final long address;
+
+        Address(byte[] memory, int offset, long address) {
+            super(memory, offset, address);
+            this.address = address;
+        }
+
+        @Override
+        public long getAddress() {
+            return address;
+        }
+    }
+
+    private static PosixPointer timeout(long ms) {
+        PosixPointer ptr = new BytePosixPointer(new byte[16]);
+        new Timespec(ms / 1000, (ms % 1000) * 1_000_000).write64(ptr);
+        return ptr;
+    }
+
+    // for the requeue and wake-op commands, the timeout argument is a plain number
+    private static PosixPointer val2(int val) {
+        return new Address(new byte[0], 0, val);
+    }
+
+    private static void assertErrno(int errno, PosixException e) {
+        assertEquals(Errno.toString(errno), Errno.toString(e.getErrno()));
+    }
+
+    private List<Thread> waiters(int n, PosixPointer uaddr, int op, int val3, AtomicInteger done) {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    futex.futex(uaddr, op, 0, null, null, val3);
+                    done.incrementAndGet();
+                } catch (PosixException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            t.setDaemon(true);
+            t.start();
+            threads.add(t);
+        }
+        return threads;
+    }
+
+    // waits until n threads are parked; a wake before that would find nobody
+    private static void awaitParked(List<Thread> threads, int n) throws InterruptedException {
+        for (int i = 0; i < 1000; i++) {
+            int parked = 0;
+            for (Thread t : threads) {
+                if (t.getState() == Thread.State.WAITING || t.getState() == Thread.State.TIMED_WAITING) {
+                    parked++;
+                }
+            }
+            if (parked >= n) {
+                return;
+            }
+            Thread.sleep(1);
+        }
+        fail("threads did not block");
+    }
+
+    private static void awaitCount(AtomicInteger count, int n) throws InterruptedException {
+        for (int i = 0; i < 1000 && count.get() < n; i++) {
+            Thread.sleep(1);
+        }
+        assertEquals(n, count.get());
+    }
+
+    @Test
+    public void testWaitMismatch() throws Exception {
+        f1.setI32(1);
+        try {
+            futex.futex(f1, Futex.FUTEX_WAIT_PRIVATE, 0, null, null, 0);
+            fail();
+        } catch (PosixException e) {
+            assertErrno(Errno.EAGAIN, e);
+        }
+    }
+
+    @Test
+    public void testWaitTimeout() throws Exception {
+        long start = System.nanoTime();
+        try {
+            futex.futex(f1, Futex.FUTEX_WAIT_PRIVATE, 0, timeout(50), null, 0);
+            fail();
+        } catch (PosixException e) {
+            assertErrno(Errno.ETIMEDOUT, e);
+        }
+        assertTrue(System.nanoTime() - start >= 50_000_000L);
+        // the timed out waiter is gone
+        assertEquals(0, futex.futex(f1, Futex.FUTEX_WAKE_PRIVATE, 1, null, null, 0));
+    }
+
+    @Test
+    public void testWakeCount() throws Exception {
+        AtomicInteger done = new AtomicInteger();
+        List<Thread> threads = waiters(3, f1, Futex.FUTEX_WAIT_PRIVATE, 0, done);
+        awaitParked(threads, 3);
+        assertEquals(0, futex.futex(f2, Futex.FUTEX_WAKE_PRIVATE, 1, null, null, 0));
+        assertEquals(1, futex.futex(f1, Futex.FUTEX_WAKE_PRIVATE, 1, null, null, 0));
+        awaitCount(done, 1);
+        assertEquals(2, futex.futex(f1, Futex.FUTEX_WAKE_PRIVATE, Integer.MAX_VALUE, null, null, 0));
+        awaitCount(done, 3);
+        assertEquals(0, futex.futex(f1, Futex.FUTEX_WAKE_PRIVATE, 1, null, null, 0));
+    }
+
+    @Test
+    public void testBitset() throws Exception {
+        AtomicInteger done = new AtomicInteger();
+        List<Thread> threads = waiters(1, f1, Futex.FUTEX_WAIT_BITSET_PRIVATE, 0b01, done);
+        threads.addAll(waiters(1, f1, Futex.FUTEX_WAIT_BITSET_PRIVATE, 0b10, done));
+        awaitParked(threads, 2);
+        assertEquals(1, futex.futex(f1, Futex.FUTEX_WAKE_BITSET_PRIVATE, 2, null, null, 0b10));
+        awaitCount(done, 1);
+        assertEquals(Thread.State.WAITING, threads.get(0).getState());
+        assertEquals(1, futex.futex(f1, Futex.FUTEX_WAKE_PRIVATE, 2, null, null, 0));
+        awaitCount(done, 2);
+    }
+
+    @Test
+    public void testCmpRequeue() throws Exception {
+        AtomicInteger done = new AtomicInteger();
+        List<Thread> threads = waiters(4, f1, Futex.FUTEX_WAIT_PRIVATE, 0, done);
+        awaitParked(threads, 4);
+        try {
+            futex.futex(f1, Futex.FUTEX_CMP_REQUEUE_PRIVATE, 1, val2(2), f2, 1);
+            fail();
+        } catch (PosixException e) {
+            assertErrno(Errno.EAGAIN, e);
+        }
+        // wake one, move two, leave one
+        assertEquals(3, futex.futex(f1, Futex.FUTEX_CMP_REQUEUE_PRIVATE, 1, val2(2), f2, 0));
+        awaitCount(done, 1);
+        assertEquals(2, futex.futex(f2, Futex.FUTEX_WAKE_PRIVATE, Integer.MAX_VALUE, null, null, 0));
+        awaitCount(done, 3);
+        assertEquals(1, futex.futex(f1, Futex.FUTEX_WAKE_PRIVATE, Integer.MAX_VALUE, null, null, 0));
+        awaitCount(done, 4);
+    }
+
+    @Test
+    public void testWakeOp() throws Exception {
+        AtomicInteger done = new AtomicInteger();
+        List<Thread> threads = waiters(1, f1, Futex.FUTEX_WAIT_PRIVATE, 0, done);
+        threads.addAll(waiters(1, f2, Futex.FUTEX_WAIT_PRIVATE, 0, done));
+        awaitParked(threads, 2);
+        // *f2 += 5, wake f2 if the old value was > 0: it was not
+        int op = Futex.FUTEX_OP(Futex.FUTEX_OP_ADD, 5, Futex.FUTEX_OP_CMP_GT, 0);
+        assertEquals(1, futex.futex(f1, Futex.FUTEX_WAKE_OP_PRIVATE, 1, val2(1), f2, op));
+        assertEquals(5, f2.getI32());
+        awaitCount(done, 1);
+        // *f2 = 0, wake f2 if the old value was 5
+        op = Futex.FUTEX_OP(Futex.FUTEX_OP_SET, 0, Futex.FUTEX_OP_CMP_EQ, 5);
+        assertEquals(1, futex.futex(f1, Futex.FUTEX_WAKE_OP_PRIVATE, 1, val2(1), f2, op));
+        assertEquals(0, f2.getI32());
+        awaitCount(done, 2);
+    }
+}
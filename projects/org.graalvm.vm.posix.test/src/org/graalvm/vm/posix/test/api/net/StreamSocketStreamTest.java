@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.posix.test.api.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import org.graalvm.vm.posix.api.BytePosixPointer;
+import org.graalvm.vm.posix.api.Errno;
+import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.posix.api.io.Epoll;
+import org.graalvm.vm.posix.api.io.EpollEvent;
+import org.graalvm.vm.posix.api.io.EpollStream;
+import org.graalvm.vm.posix.api.io.Fcntl;
+import org.graalvm.vm.posix.api.io.SelectorThread;
+import org.graalvm.vm.posix.api.net.NetworkStream;
+import org.graalvm.vm.posix.api.net.Socket;
+import org.graalvm.vm.posix.api.net.SockaddrIn;
+import org.graalvm.vm.posix.api.net.StreamSocketStream;
+import org.graalvm.vm.util.io.Endianess;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamSocketStreamTest {
+    private SelectorThread selector;
+    private StreamSocketStream server;
+    private InetSocketAddress address;
+
+    @Before
+    public void setup() throws Exception {
+        SockaddrIn addr = new SockaddrIn();
+        addr.sa_family = Socket.AF_INET;
+        addr.sin_port = 0;
+        addr.sin_addr = Endianess.get32bitBE(InetAddress.getLoopbackAddress().getAddress());
+        BytePosixPointer ptr = new BytePosixPointer(new byte[16]);
+        addr.write(ptr);
+
+        selector = new SelectorThread();
+        server = new StreamSocketStream(selector);
+        assertEquals(0, server.bind(ptr, 16));
+        int port = Short.toUnsignedInt(((SockaddrIn) server.getsockname()).sin_port);
+        assertEquals(0, server.listen(16));
+        // listen keeps the bound address
+        assertEquals(port, Short.toUnsignedInt(((SockaddrIn) server.getsockname()).sin_port));
+        address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        server.close();
+        selector.close();
+    }
+
+    @Test
+    public void testAcceptNonBlocking() throws Exception {
+        server.setFlags(Fcntl.O_NONBLOCK);
+        try {
+            server.accept();
+            fail();
+        } catch (PosixException e) {
+            assertEquals(Errno.EAGAIN, e.getErrno());
+        }
+        try (SocketChannel client = SocketChannel.open(address)) {
+            NetworkStream conn = null;
+            for (int i = 0; i < 100 && conn == null; i++) {
+                try {
+                    conn = server.accept();
+                } catch (PosixException e) {
+                    assertEquals(Errno.EAGAIN, e.getErrno());
+                    Thread.sleep(10);
+                }
+            }
+            assertTrue(conn != null);
+            assertEquals(client.getLocalAddress(), new InetSocketAddress(InetAddress.getLoopbackAddress(), Short.toUnsignedInt(((SockaddrIn) conn.getpeername()).sin_port)));
+
+            client.write(ByteBuffer.wrap("hello".getBytes()));
+            byte[] buf = new byte[5];
+            assertEquals(5, conn.read(buf, 0, 5));
+            assertEquals("hello", new String(buf));
+            conn.close();
+        }
+    }
+
+    @Test
+    public void testAcceptBlocking() throws Exception {
+        Thread t = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                SocketChannel.open(address).close();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        t.start();
+        NetworkStream conn = server.accept();
+        conn.close();
+        t.join();
+    }
+
+    @Test
+    public void testBlockingReads() throws Exception {
+        // all blocking sockets wait through the one selector thread
+        try (SocketChannel c1 = SocketChannel.open(address); SocketChannel c2 = SocketChannel.open(address)) {
+            NetworkStream[] conns = {server.accept(), server.accept()};
+            int[] results = new int[2];
+            Thread[] readers = new Thread[2];
+            for (int i = 0; i < 2; i++) {
+                int id = i;
+                readers[i] = new Thread(() -> {
+                    try {
+                        results[id] = conns[id].read(new byte[16], 0, 16);
+                    } catch (PosixException e) {
+                        results[id] = -e.getErrno();
+                    }
+                });
+                readers[i].start();
+            }
+            Thread.sleep(50);
+            c2.write(ByteBuffer.wrap("ab".getBytes()));
+            c1.write(ByteBuffer.wrap("abc".getBytes()));
+            for (Thread t : readers) {
+                t.join(10000);
+                assertFalse(t.isAlive());
+            }
+            assertEquals(3, results[0]);
+            assertEquals(2, results[1]);
+            for (NetworkStream conn : conns) {
+                conn.close();
+            }
+        }
+    }
+
+    @Test
+    public void testCloseSelector() throws Exception {
+        int[] result = new int[1];
+        Thread t = new Thread(() -> {
+            try {
+                server.accept().close();
+            } catch (PosixException e) {
+                result[0] = e.getErrno();
+            }
+        });
+        t.start();
+        Thread.sleep(50);
+        // disposing the Posix instance releases threads which still wait
+        selector.close();
+        t.join(10000);
+        assertFalse(t.isAlive());
+        assertEquals(Errno.EBADF, result[0]);
+    }
+
+    @Test
+    public void testEpoll() throws Exception {
+        server.setFlags(Fcntl.O_NONBLOCK);
+        EpollStream epoll = new EpollStream();
+        EpollEvent event = new EpollEvent();
+        event.events = Epoll.EPOLLIN | Epoll.EPOLLET;
+        event.data = 3;
+        epoll.ctl(Epoll.EPOLL_CTL_ADD, 3, server, event);
+        EpollEvent[] events = {new EpollEvent()};
+        assertEquals(0, epoll.wait(events, 1, 0));
+        try (SocketChannel c1 = SocketChannel.open(address); SocketChannel c2 = SocketChannel.open(address)) {
+            assertEquals(1, epoll.wait(events, 1, 1000));
+            assertEquals(Epoll.EPOLLIN, events[0].events);
+            assertEquals(3, events[0].data);
+            int accepted = 0;
+            while (accepted < 2) {
+                try {
+                    server.accept().close();
+                    accepted++;
+                } catch (PosixException e) {
+                    assertEquals(Errno.EAGAIN, e.getErrno());
+                    assertEquals(1, epoll.wait(events, 1, 1000));
+                }
+            }
+        }
+        epoll.close();
+    }
+
+    @Test
+    public void testInterestOps() throws Exception {
+        assertEquals(SelectionKey.OP_ACCEPT, server.getInterestOps(Epoll.EPOLLIN | Epoll.EPOLLOUT));
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.posix.test.elf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.graalvm.vm.posix.elf.Elf;
+import org.graalvm.vm.posix.elf.ProgramHeader;
+import org.graalvm.vm.posix.elf.Symbol;
+import org.graalvm.vm.posix.elf.SymbolIndex;
+import org.graalvm.vm.posix.elf.SymbolTable;
+import org.graalvm.vm.util.ResourceLoader;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SymbolIndexTest {
+    private static final long BIAS = 0x20000000L;
+
+    private byte[] data;
+    private Elf elf;
+    private int reads;
+
+    private static byte[] readTestFile() throws IOException {
+        try (InputStream in = ResourceLoader.loadResource(SymbolIndexTest.class, "helloworld.elf");
+                        ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            byte[] buf = new byte[256];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    @Before
+    public void setup() throws IOException {
+        data = readTestFile();
+        elf = new Elf(data);
+        reads = 0;
+    }
+
+    private int pread(byte[] buf, int offset, int length, long fileOffset) {
+        reads += length;
+        int n = (int) Math.min(length, data.length - fileOffset);
+        System.arraycopy(data, (int) fileOffset, buf, offset, n);
+        return n;
+    }
+
+    @Test
+    public void testSegmentAddress() throws IOException {
+        for (ProgramHeader phdr : elf.getProgramHeaders()) {
+            if (phdr.p_type == Elf.PT_LOAD) {
+                assertEquals(phdr.p_vaddr, SymbolIndex.getSegmentAddress(this::pread, phdr.p_offset));
+            }
+        }
+        assertEquals(-1, SymbolIndex.getSegmentAddress(this::pread, 0x12345));
+    }
+
+    @Test
+    public void testSymbols() throws IOException {
+        SymbolIndex index = SymbolIndex.load(this::pread, 0, BIAS, BIAS);
+        assertTrue(reads < data.length);
+        assertTrue(index.size() > 0);
+
+        for (Symbol sym : elf.getSymbolTable().getSymbols()) {
+            if (sym.getSectionIndex() == Symbol.SHN_UNDEF) {
+                continue;
+            }
+            long addr = sym.getValue() + BIAS;
+            Symbol exact = index.getSymbolExact(addr);
+            assertNotNull(exact);
+            assertEquals(addr, exact.getValue());
+            if (!sym.getName().isEmpty() && exact.getName().equals(sym.getName())) {
+                assertEquals(sym.getSize(), exact.getSize());
+                assertEquals(sym.getBind(), exact.getBind());
+                assertEquals(sym.getType(), exact.getType());
+                assertEquals(sym.getSectionIndex(), exact.getSectionIndex());
+            }
+            if (sym.getBind() == Symbol.GLOBAL && sym.getSize() > 1) {
+                Symbol inside = index.getSymbol(addr + sym.getSize() - 1);
+                assertNotNull(inside);
+                assertEquals(Symbol.GLOBAL, inside.getBind());
+            }
+        }
+
+        Symbol main = elf.getSymbolTable().getSymbol("main");
+        Symbol sym = index.getSymbol(main.getValue() + BIAS);
+        assertEquals("main", sym.getName());
+        assertEquals(main.getValue() + BIAS, sym.getValue());
+        assertNull(index.getSymbol(index.getHigh()));
+    }
+
+    @Test
+    public void testDuplicateAddresses() throws IOException {
+        SymbolIndex index = SymbolIndex.load(this::pread, 0, BIAS, BIAS);
+        // for symbols with the same address the one defined last is kept
+        Map<Long, Symbol> last = new HashMap<>();
+        for (SymbolTable symtab : new SymbolTable[]{elf.getSymbolTable(), elf.getDynamicSymbolTable()}) {
+            for (Symbol sym : symtab.getSymbols()) {
+                if (sym.getSectionIndex() != Symbol.SHN_UNDEF) {
+                    last.put(sym.getValue() + BIAS, sym);
+                }
+            }
+        }
+        long prev = 0;
+        for (Symbol sym : index.getSymbols()) {
+            assertTrue(Long.compareUnsigned(prev, sym.getValue()) <= 0);
+            prev = sym.getValue();
+            assertEquals(last.get(sym.getValue()).getName(), sym.getName());
+        }
+        assertEquals(last.size(), index.size());
+    }
+
+    @Test
+    public void testDynamicSymbols() throws IOException {
+        // strip the file by turning .symtab into an unused section header
+        ByteBuffer ehdr = ByteBuffer.wrap(data);
+        int shoff = ehdr.getInt(0x20);
+        int shentsize = ehdr.getShort(0x2E);
+        int shnum = ehdr.getShort(0x30);
+        for (int i = 0; i < shnum; i++) {
+            if (ehdr.getInt(shoff + i * shentsize + 4) == Elf.SHT_SYMTAB) {
+                ehdr.putInt(shoff + i * shentsize + 4, Elf.SHT_NULL);
+            }
+        }
+
+        SymbolIndex index = SymbolIndex.load(this::pread, 0, BIAS, BIAS);
+        int defined = 0;
+        for (Symbol sym : elf.getDynamicSymbolTable().getSymbols()) {
+            if (sym.getSectionIndex() == Symbol.SHN_UNDEF) {
+                continue;
+            }
+            defined++;
+            Symbol exact = index.getSymbolExact(sym.getValue() + BIAS);
+            assertNotNull(exact);
+            assertEquals(sym.getName(), exact.getName());
+        }
+        assertTrue(defined > 0);
+        assertEquals(defined, index.size());
+        assertNull(index.getSymbol(elf.getSymbolTable().getSymbol("main").getValue() + BIAS));
+    }
+
+    @Test
+    public void testRange() throws IOException {
+        Symbol main = elf.getSymbolTable().getSymbol("main");
+        SymbolIndex index = SymbolIndex.load(this::pread, main.getValue(), main.getSize(), 0);
+        assertEquals(main.getValue(), index.getLow());
+        assertEquals("main", index.getSymbol(main.getValue()).getName());
+        assertNull(index.getSymbol(main.getValue() - 1));
+    }
+}
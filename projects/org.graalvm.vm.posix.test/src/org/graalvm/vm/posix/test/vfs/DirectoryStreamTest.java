@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.posix.test.vfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.graalvm.vm.posix.api.BytePosixPointer;
+import org.graalvm.vm.posix.api.Dirent;
+import org.graalvm.vm.posix.api.Errno;
+import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.posix.api.io.DirectoryStream;
+import org.graalvm.vm.posix.api.io.Fcntl;
+import org.graalvm.vm.posix.api.io.Stream;
+import org.graalvm.vm.posix.vfs.NativeFileSystem;
+import org.graalvm.vm.posix.vfs.Tmpfs;
+import org.graalvm.vm.posix.vfs.VFS;
+import org.junit.Test;
+
+public class DirectoryStreamTest {
+    private static final int COUNT = 100;
+
+    private static class Entry {
+        final long off;
+        final String name;
+
+        Entry(long off, String name) {
+            this.off = off;
+            this.name = name;
+        }
+    }
+
+    private static List<Entry> getdents(DirectoryStream stream, int size) throws PosixException {
+        byte[] buf = new byte[size];
+        long n = stream.getdents(new BytePosixPointer(buf), size, Dirent.DIRENT64);
+        List<Entry> result = new ArrayList<>();
+        ByteBuffer bb = ByteBuffer.wrap(buf, 0, (int) n);
+        while (bb.hasRemaining()) {
+            int start = bb.position();
+            bb.getLong(); // d_ino
+            long off = bb.getLong();
+            int reclen = Short.toUnsignedInt(bb.getShort());
+            bb.get(); // d_type
+            StringBuilder name = new StringBuilder();
+            for (byte b = bb.get(); b != 0; b = bb.get()) {
+                name.append((char) b);
+            }
+            result.add(new Entry(off, name.toString()));
+            bb.position(start + reclen);
+        }
+        return result;
+    }
+
+    private static List<Entry> readAll(DirectoryStream stream, int size) throws PosixException {
+        List<Entry> result = new ArrayList<>();
+        List<Entry> entries;
+        while (!(entries = getdents(stream, size)).isEmpty()) {
+            result.addAll(entries);
+        }
+        return result;
+    }
+
+    private static void check(DirectoryStream stream) throws PosixException {
+        // a small buffer needs many calls, each of which continues where the last one stopped
+        List<Entry> entries = readAll(stream, 64);
+        assertEquals(COUNT + 2, entries.size());
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(i + 1, entries.get(i).off);
+            assertTrue(names.add(entries.get(i).name));
+        }
+        assertTrue(names.contains("."));
+        assertTrue(names.contains(".."));
+        for (int i = 0; i < COUNT; i++) {
+            assertTrue(names.contains("file" + i));
+        }
+
+        // seekdir to the offset of an entry continues behind it
+        Entry entry = entries.get(50);
+        assertEquals(entry.off, stream.lseek(entry.off, Stream.SEEK_SET));
+        assertEquals(entries.get(51).name, getdents(stream, 64).get(0).name);
+
+        // rewinddir
+        assertEquals(0, stream.lseek(0, Stream.SEEK_SET));
+        assertEquals(COUNT + 2, readAll(stream, 4096).size());
+
+        try {
+            stream.lseek(0, Stream.SEEK_SET);
+            getdents(stream, 8);
+            fail();
+        } catch (PosixException e) {
+            assertEquals(Errno.EINVAL, e.getErrno());
+        }
+        assertEquals(0, stream.close());
+    }
+
+    @Test
+    public void testTmpfs() throws PosixException {
+        VFS vfs = new VFS();
+        vfs.mkdir("/tmp", 0, 0, 0755);
+        vfs.mount("/tmp", new Tmpfs(vfs));
+        for (int i = 0; i < COUNT; i++) {
+            vfs.mkfile("/tmp/file" + i, 0, 0, 0644);
+        }
+        check((DirectoryStream) vfs.open("/tmp", Fcntl.O_RDONLY | Fcntl.O_DIRECTORY, 0));
+    }
+
+    @Test
+    public void testNative() throws PosixException, IOException {
+        Path dir = Files.createTempDirectory("getdents");
+        try {
+            for (int i = 0; i < COUNT; i++) {
+                Files.createFile(dir.resolve("file" + i));
+            }
+            VFS vfs = new VFS();
+            vfs.mkdir("/mnt", 0, 0, 0755);
+            vfs.mount("/mnt", new NativeFileSystem(vfs, dir.toString()));
+            check((DirectoryStream) vfs.open("/mnt", Fcntl.O_RDONLY | Fcntl.O_DIRECTORY, 0));
+        } finally {
+            for (int i = 0; i < COUNT; i++) {
+                Files.deleteIfExists(dir.resolve("file" + i));
+            }
+            Files.delete(dir);
+        }
+    }
+}
@@ -40,15 +40,27 @@
  */
 package org.graalvm.vm.posix.test.vfs;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
 
 import org.graalvm.vm.posix.api.Errno;
 import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.posix.api.PosixPointer;
 import org.graalvm.vm.posix.api.io.Fcntl;
+import org.graalvm.vm.posix.api.io.Stream;
+import org.graalvm.vm.posix.api.mem.CopyOnWriteMapping;
+import org.graalvm.vm.posix.api.mem.CopyOnWritePosixPointer;
+import org.graalvm.vm.posix.api.mem.Mman;
 import org.graalvm.vm.posix.vfs.NativeFileStream;
+import org.graalvm.vm.util.io.Endianess;
 import org.junit.Test;
 
 public class NativeFileStreamTest {
@@ -68,4 +80,320 @@ public class NativeFileStreamTest {
             assertEquals(Errno.ENOENT, e.getErrno());
         }
     }
+
+    @Test
+    public void testMmapPrivateLarge() throws Exception {
+        // map a large (sparse) file and touch only every 256th page: only the touched pages may
+        // be copied, everything else has to stay backed by the file. This is what guest accesses
+        // see with JavaVirtualMemory, NativeVirtualMemory copies the whole mapping when it is added
+        long size = 256 * 1024 * 1024;
+        int pageSize = CopyOnWriteMapping.PAGE_SIZE;
+        int stride = 256 * pageSize;
+        Path path = Files.createTempFile("vmx86", ".bin");
+        try {
+            try (RandomAccessFile f = new RandomAccessFile(path.toFile(), "rw")) {
+                f.setLength(size);
+                for (long off = 0; off < size; off += stride) {
+                    f.seek(off + 8);
+                    f.writeLong(off);
+                }
+            }
+
+            NativeFileStream stream = new NativeFileStream(path, Fcntl.O_RDONLY);
+            PosixPointer ptr = stream.mmap(size, Mman.PROT_READ | Mman.PROT_WRITE, Mman.MAP_PRIVATE, 0);
+            int touched = 0;
+            for (long off = 0; off < size; off += stride) {
+                PosixPointer p = ptr.add((int) off);
+                assertEquals(off, p.add(8).getI64());
+                p.setI64(~off);
+                touched++;
+            }
+            assertEquals(0, stream.close());
+
+            CopyOnWriteMapping mapping = ((CopyOnWritePosixPointer) ptr).getMapping();
+            assertEquals(touched, mapping.getPrivatePageCount());
+            assertEquals((long) touched * pageSize, mapping.getPrivateSize());
+            for (long off = 0; off < size; off += stride) {
+                assertEquals(~off, mapping.getI64(off));
+                assertEquals(off, mapping.getI64(off + 8));
+                assertEquals(0, mapping.getI64(off + pageSize));
+            }
+
+            // private writes must never reach the file
+            try (RandomAccessFile f = new RandomAccessFile(path.toFile(), "r")) {
+                f.seek(stride);
+                assertEquals(0, f.readLong());
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testMmapPrivateUnaligned() throws Exception {
+        Path path = Files.createTempFile("vmx86", ".bin");
+        try {
+            byte[] data = new byte[6000];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) i;
+            }
+            Files.write(path, data);
+
+            NativeFileStream stream = new NativeFileStream(path, Fcntl.O_RDONLY);
+            PosixPointer ptr = stream.mmap(data.length, Mman.PROT_READ | Mman.PROT_WRITE, Mman.MAP_PRIVATE, 0);
+            assertEquals(0, stream.close());
+            assertEquals(8192, ptr.size());
+
+            // access across the page boundary
+            assertEquals(0xFC_FD_FE_FF_00_01_02_03L, ptr.add(4092).getI64());
+            ptr.add(4094).setI32(0xCAFEBABE);
+            assertEquals(0xFC_FD_CA_FE_BA_BE_02_03L, ptr.add(4092).getI64());
+            assertEquals(2, ((CopyOnWritePosixPointer) ptr).getMapping().getPrivatePageCount());
+
+            // tail of the last page beyond EOF reads as zero
+            assertEquals((byte) 0x6F, ptr.add(5999).getI8());
+            assertEquals(0, ptr.add(6000).getI32());
+            assertEquals(0x6F00000000000000L, ptr.add(5999).getI64());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testMmapPrivateReadOnlyEOF() throws Exception {
+        // read-only private mappings (e.g. ELF segments) of a file whose size is not a multiple of
+        // 8: the rest of the last page reads as zero, also in bulk copies up to the end
+        Path path = Files.createTempFile("vmx86", ".bin");
+        try {
+            byte[] data = new byte[6001];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) i;
+            }
+            Files.write(path, data);
+
+            NativeFileStream stream = new NativeFileStream(path, Fcntl.O_RDONLY);
+            PosixPointer ptr = stream.mmap(data.length, Mman.PROT_READ, Mman.MAP_PRIVATE, 0);
+            assertEquals(0, stream.close());
+            assertEquals(8192, ptr.size());
+
+            assertEquals(0x6E_6F_70_00_00_00_00_00L, ptr.add(5998).getI64());
+            assertEquals(0x6F_70_00_00, ptr.add(5999).getI32());
+            assertEquals(0x70_00, ptr.add(6000).getI16());
+
+            byte[] buf = new byte[8192];
+            Arrays.fill(buf, (byte) 0xFF);
+            assertEquals(4096, ptr.add(4096).getBytes(buf, 0, 4096));
+            for (int i = 0; i < 4096; i++) {
+                assertEquals(i + 4096 < data.length ? data[i + 4096] : 0, buf[i]);
+            }
+            assertEquals(0, ptr.add(8192).size());
+
+            // like on Linux, the rest of the last page shows the file even beyond the requested
+            // length
+            stream = new NativeFileStream(path, Fcntl.O_RDONLY);
+            ptr = stream.mmap(100, Mman.PROT_READ, Mman.MAP_PRIVATE, 0);
+            assertEquals(0, stream.close());
+            assertEquals(4096, ptr.size());
+            assertEquals(data[100], ptr.add(100).getI8());
+            assertEquals(data[4095], ptr.add(4095).getI8());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testMmapShared() throws Exception {
+        Path path = Files.createTempFile("vmx86", ".bin");
+        try {
+            Files.write(path, new byte[8192]);
+
+            NativeFileStream stream = new NativeFileStream(path, Fcntl.O_RDWR);
+            int prot = Mman.PROT_READ | Mman.PROT_WRITE;
+            PosixPointer map1 = stream.mmap(8192, prot, Mman.MAP_SHARED, 0);
+            PosixPointer map2 = stream.mmap(4096, prot, Mman.MAP_SHARED, 4096);
+
+            // writes through one mapping are visible in the other mapping and via pread
+            map1.add(4096 + 16).setI64(0x0123456789ABCDEFL);
+            assertEquals(0x0123456789ABCDEFL, map2.add(16).getI64());
+            map2.add(32).setI32(0xCAFEBABE);
+            assertEquals(0xCAFEBABE, map1.add(4096 + 32).getI32());
+
+            byte[] buf = new byte[4];
+            assertEquals(4, stream.pread(buf, 0, 4, 4096 + 32));
+            assertEquals(0xCAFEBABE, Endianess.get32bitBE(buf));
+
+            // and pwrite is visible in the mappings
+            Endianess.set32bitBE(buf, 0, 0xDEADBEEF);
+            assertEquals(4, stream.pwrite(buf, 0, 4, 64));
+            assertEquals(0xDEADBEEF, map1.add(64).getI32());
+
+            map1.msync(8192, Mman.MS_SYNC);
+            assertEquals(0, stream.close());
+
+            try (RandomAccessFile f = new RandomAccessFile(path.toFile(), "r")) {
+                f.seek(4096 + 16);
+                assertEquals(0x0123456789ABCDEFL, f.readLong());
+                assertEquals(8192, f.length());
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testMmapSharedReadOnly() throws Exception {
+        Path path = Files.createTempFile("vmx86", ".bin");
+        try {
+            Files.write(path, new byte[4096]);
+            NativeFileStream stream = new NativeFileStream(path, Fcntl.O_RDONLY);
+            try {
+                stream.mmap(4096, Mman.PROT_READ | Mman.PROT_WRITE, Mman.MAP_SHARED, 0);
+                fail();
+            } catch (PosixException e) {
+                assertEquals(Errno.EACCES, e.getErrno());
+            }
+            PosixPointer ptr = stream.mmap(4096, Mman.PROT_READ, Mman.MAP_SHARED, 0);
+            assertEquals(0, ptr.getI64());
+            assertEquals(0, stream.close());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testMmapSharedEOF() throws Exception {
+        // the file size is not a multiple of 8: accesses straddling EOF must neither fault nor
+        // extend the file
+        Path path = Files.createTempFile("vmx86", ".bin");
+        try {
+            byte[] data = new byte[4099];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) i;
+            }
+            Files.write(path, data);
+
+            NativeFileStream stream = new NativeFileStream(path, Fcntl.O_RDWR);
+            PosixPointer ptr = stream.mmap(data.length, Mman.PROT_READ | Mman.PROT_WRITE, Mman.MAP_SHARED, 0);
+            assertEquals(8192, ptr.size());
+
+            assertEquals(0x00_01_02_00_00_00_00_00L, ptr.add(4096).getI64());
+            assertEquals(0x01_02_00_00, ptr.add(4097).getI32());
+            assertEquals(0x02_00, ptr.add(4098).getI16());
+            assertEquals(0, ptr.add(4099).getI64());
+
+            ptr.add(4094).setI64(0x1122334455667788L);
+            assertEquals(0x1122334455000000L, ptr.add(4094).getI64());
+            ptr.add(4097).setI32(0xAABBCCDD);
+            ptr.add(4098).setI16((short) 0xEEFF);
+            assertEquals(0x11_22_33_AA_EE_00_00_00L, ptr.add(4094).getI64());
+            try {
+                ptr.add(4099).setI16((short) 0);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+                // beyond EOF
+            }
+
+            ptr.msync(data.length, Mman.MS_SYNC);
+            assertEquals(0, stream.close());
+
+            byte[] result = Files.readAllBytes(path);
+            assertEquals(data.length, result.length);
+            assertEquals((byte) 0x33, result[4096]);
+            assertEquals((byte) 0xAA, result[4097]);
+            assertEquals((byte) 0xEE, result[4098]);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testMmapSharedRecords() throws Exception {
+        // LMDB style workload: random record updates through a shared mapping, checked via pread
+        int records = 16384;
+        int recordSize = 64;
+        long size = (long) records * recordSize;
+        Path path = Files.createTempFile("vmx86", ".db");
+        try {
+            try (RandomAccessFile f = new RandomAccessFile(path.toFile(), "rw")) {
+                f.setLength(size);
+            }
+            NativeFileStream stream = new NativeFileStream(path, Fcntl.O_RDWR);
+            PosixPointer db = stream.mmap(size, Mman.PROT_READ | Mman.PROT_WRITE, Mman.MAP_SHARED, 0);
+            Random rnd = new Random(42);
+            long[] values = new long[records];
+            for (int i = 0; i < 100000; i++) {
+                int rec = rnd.nextInt(records);
+                long value = rnd.nextLong();
+                db.add(rec * recordSize).setI64(value);
+                values[rec] = value;
+            }
+            db.msync(size, Mman.MS_SYNC);
+            byte[] buf = new byte[8];
+            for (int rec = 0; rec < records; rec++) {
+                assertEquals(8, stream.pread(buf, 0, 8, (long) rec * recordSize));
+                assertEquals(values[rec], Endianess.get64bitBE(buf));
+                assertEquals(values[rec], db.add(rec * recordSize).getI64());
+            }
+            assertEquals(0, stream.close());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testTransfer() throws Exception {
+        Path src = Files.createTempFile("vmx86", ".bin");
+        Path dst = Files.createTempFile("vmx86", ".bin");
+        try {
+            byte[] data = new byte[200000];
+            new Random(42).nextBytes(data);
+            Files.write(src, data);
+
+            NativeFileStream in = new NativeFileStream(src, Fcntl.O_RDONLY);
+            NativeFileStream out = new NativeFileStream(dst, Fcntl.O_RDWR);
+
+            // sendfile with an explicit offset leaves the file position alone
+            assertEquals(1000, in.sendfile(out, 100, 1000));
+            assertEquals(0, in.lseek(0, Stream.SEEK_CUR));
+            assertEquals(1000, out.lseek(0, Stream.SEEK_CUR));
+
+            // without an offset both file positions advance
+            assertEquals(100000, in.transfer(-1, out, -1, 100000));
+            assertEquals(100000, in.lseek(0, Stream.SEEK_CUR));
+            assertEquals(101000, out.lseek(0, Stream.SEEK_CUR));
+
+            // like copy_file_range with both offsets, short at the end of the input
+            assertEquals(data.length - 150000, in.transfer(150000, out, 50, data.length));
+            assertEquals(100000, in.lseek(0, Stream.SEEK_CUR));
+            assertEquals(101000, out.lseek(0, Stream.SEEK_CUR));
+            assertEquals(0, in.transfer(data.length, out, -1, 10));
+
+            // an explicit output offset behind the end of the output grows it
+            assertEquals(0, in.lseek(0, Stream.SEEK_SET));
+            assertEquals(10, in.transfer(-1, out, 300000, 10));
+            assertEquals(10, in.lseek(0, Stream.SEEK_CUR));
+            assertEquals(101000, out.lseek(0, Stream.SEEK_CUR));
+            byte[] tail = new byte[10];
+            assertEquals(tail.length, out.pread(tail, 0, tail.length, 300000));
+            assertArrayEquals(Arrays.copyOf(data, 10), tail);
+
+            byte[] buf = new byte[101000];
+            assertEquals(buf.length, out.pread(buf, 0, buf.length, 0));
+            for (int i = 0; i < 50; i++) {
+                assertEquals(data[100 + i], buf[i]);
+            }
+            for (int i = 50; i < 50 + data.length - 150000; i++) {
+                assertEquals(data[150000 + i - 50], buf[i]);
+            }
+            for (int i = 50 + data.length - 150000; i < 101000; i++) {
+                assertEquals(i < 1000 ? data[100 + i] : data[i - 1000], buf[i]);
+            }
+
+            assertEquals(0, in.close());
+            assertEquals(0, out.close());
+        } finally {
+            Files.delete(src);
+            Files.delete(dst);
+        }
+    }
 }
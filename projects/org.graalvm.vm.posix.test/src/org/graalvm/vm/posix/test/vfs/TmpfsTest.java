@@ -48,8 +48,11 @@ import org.graalvm.vm.posix.api.BytePosixPointer;
 import org.graalvm.vm.posix.api.PosixException;
 import org.graalvm.vm.posix.api.PosixPointer;
 import org.graalvm.vm.posix.api.io.Fcntl;
+import org.graalvm.vm.posix.api.io.PipeBuffer;
+import org.graalvm.vm.posix.api.mem.Mman;
 import org.graalvm.vm.posix.api.io.Stream;
 import org.graalvm.vm.posix.vfs.Tmpfs;
+import org.graalvm.vm.posix.vfs.TmpfsFile;
 import org.graalvm.vm.posix.vfs.VFS;
 import org.graalvm.vm.posix.vfs.VFSDirectory;
 import org.graalvm.vm.posix.vfs.VFSFile;
@@ -109,4 +112,167 @@ public class TmpfsTest {
         assertArrayEquals(data, read);
         assertEquals(data.length, stream.lseek(0, Stream.SEEK_CUR));
     }
+
+    private VFSFile create() throws PosixException {
+        VFSDirectory dir = vfs.get("/tmp");
+        dir.mkfile("test", 0, 0, 0644);
+        return vfs.get("/tmp/test");
+    }
+
+    @Test
+    public void testOverwrite() throws PosixException {
+        VFSFile file = create();
+        Stream stream = file.open(Fcntl.O_RDWR);
+        byte[] data = "Hello world!".getBytes();
+        assertEquals(data.length, stream.write(data, 0, data.length));
+        byte[] patch = "W".getBytes();
+        assertEquals(1, stream.pwrite(patch, 0, 1, 6));
+        assertEquals(data.length, file.size());
+
+        byte[] read = new byte[data.length];
+        assertEquals(data.length, stream.pread(read, 0, read.length, 0));
+        assertArrayEquals("Hello World!".getBytes(), read);
+    }
+
+    @Test
+    public void testTransferShortWrite() throws PosixException {
+        VFSFile file = create();
+        Stream stream = file.open(Fcntl.O_RDWR);
+        byte[] data = new byte[5000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7);
+        }
+        assertEquals(data.length, stream.write(data, 0, data.length));
+        assertEquals(0, stream.lseek(0, Stream.SEEK_SET));
+
+        PipeBuffer pipe = new PipeBuffer();
+        Stream in = pipe.getReadEnd();
+        Stream out = pipe.getWriteEnd();
+        in.addref();
+        out.addref();
+        out.setFlags(Fcntl.O_WRONLY | Fcntl.O_NONBLOCK);
+        byte[] fill = new byte[PipeBuffer.CAPACITY - 100];
+        assertEquals(fill.length, out.write(fill, 0, fill.length));
+
+        // the file position only advances by what the pipe accepted
+        assertEquals(100, stream.transfer(-1, out, -1, data.length));
+        assertEquals(100, stream.lseek(0, Stream.SEEK_CUR));
+        assertEquals(fill.length, in.read(fill, 0, fill.length));
+        assertEquals(data.length - 100, stream.transfer(-1, out, -1, data.length));
+        assertEquals(data.length, stream.lseek(0, Stream.SEEK_CUR));
+
+        byte[] buf = new byte[data.length];
+        assertEquals(data.length, in.read(buf, 0, buf.length));
+        assertArrayEquals(data, buf);
+    }
+
+    @Test
+    public void testAppendAcrossChunks() throws PosixException {
+        VFSFile file = create();
+        Stream stream = file.open(Fcntl.O_RDWR);
+        byte[] buf = new byte[4096];
+        int count = 3 * TmpfsFile.CHUNK_SIZE / buf.length + 1;
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < buf.length; j++) {
+                buf[j] = (byte) (i + j);
+            }
+            assertEquals(buf.length, stream.write(buf, 0, buf.length));
+        }
+        assertEquals((long) count * buf.length, file.size());
+
+        // read a block which straddles a chunk boundary
+        byte[] read = new byte[100];
+        long off = TmpfsFile.CHUNK_SIZE - 50;
+        assertEquals(read.length, stream.pread(read, 0, read.length, off));
+        for (int j = 0; j < read.length; j++) {
+            long pos = off + j;
+            int i = (int) (pos / buf.length);
+            assertEquals((byte) (i + pos % buf.length), read[j]);
+        }
+    }
+
+    @Test
+    public void testSparse() throws PosixException {
+        VFSFile file = create();
+        Stream stream = file.open(Fcntl.O_RDWR);
+        long off = 1L << 40;
+        byte[] data = "end".getBytes();
+        assertEquals(off, stream.lseek(off, Stream.SEEK_SET));
+        assertEquals(data.length, stream.write(data, 0, data.length));
+        assertEquals(off + data.length, file.size());
+
+        byte[] read = new byte[16];
+        assertEquals(read.length, stream.pread(read, 0, read.length, 12345));
+        assertArrayEquals(new byte[16], read);
+        assertEquals(data.length, stream.pread(read, 0, read.length, off));
+        assertEquals('e', read[0]);
+        assertEquals('d', read[2]);
+    }
+
+    @Test
+    public void testTruncate() throws PosixException {
+        VFSFile file = create();
+        Stream stream = file.open(Fcntl.O_RDWR);
+        byte[] buf = new byte[2 * TmpfsFile.CHUNK_SIZE];
+        for (int i = 0; i < buf.length; i++) {
+            buf[i] = 1;
+        }
+        assertEquals(buf.length, stream.write(buf, 0, buf.length));
+        stream.ftruncate(10);
+        assertEquals(10, file.size());
+        stream.ftruncate(buf.length);
+        assertEquals(buf.length, file.size());
+
+        byte[] read = new byte[buf.length];
+        assertEquals(read.length, stream.pread(read, 0, read.length, 0));
+        for (int i = 0; i < read.length; i++) {
+            assertEquals(i < 10 ? 1 : 0, read[i]);
+        }
+    }
+
+    @Test
+    public void testMmap() throws PosixException {
+        VFSFile file = create();
+        Stream stream = file.open(Fcntl.O_RDWR);
+        stream.ftruncate(2 * TmpfsFile.CHUNK_SIZE);
+        PosixPointer map = stream.mmap(2 * TmpfsFile.CHUNK_SIZE, Mman.PROT_READ | Mman.PROT_WRITE, Mman.MAP_SHARED, 0);
+        assertEquals(2 * TmpfsFile.CHUNK_SIZE, map.size());
+
+        PosixPointer p = map.add(TmpfsFile.CHUNK_SIZE - 2);
+        assertEquals(0, p.getI32());
+        p.setI32(0x11223344);
+        assertEquals(0x11223344, p.getI32());
+
+        byte[] read = new byte[4];
+        assertEquals(4, stream.pread(read, 0, read.length, TmpfsFile.CHUNK_SIZE - 2));
+        assertArrayEquals(new byte[]{0x11, 0x22, 0x33, 0x44}, read);
+
+        byte[] data = "mapped".getBytes();
+        assertEquals(data.length, stream.pwrite(data, 0, data.length, 16));
+        PosixPointer q = map.add(16);
+        assertEquals(true, q.hasMemory(data.length));
+        byte[] mem = q.getMemory();
+        assertEquals('m', mem[q.getOffset()]);
+    }
+
+    @Test
+    public void testMmapWritePastEOF() throws PosixException {
+        VFSFile file = create();
+        Stream stream = file.open(Fcntl.O_RDWR);
+        stream.ftruncate(10);
+        PosixPointer map = stream.mmap(4096, Mman.PROT_READ | Mman.PROT_WRITE, Mman.MAP_SHARED, 0);
+        map.add(8).setI64(0x1122334455667788L);
+        map.add(100).setI32(0x11223344);
+        assertEquals(10, file.size());
+
+        // growing the file must not expose what the mapping wrote behind the old end
+        stream.ftruncate(20);
+        byte[] read = new byte[12];
+        assertEquals(read.length, stream.pread(read, 0, read.length, 8));
+        assertArrayEquals(new byte[]{0x11, 0x22, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}, read);
+        assertEquals(1, stream.pwrite(new byte[]{0x55}, 0, 1, 110));
+        read = new byte[4];
+        assertEquals(read.length, stream.pread(read, 0, read.length, 100));
+        assertArrayEquals(new byte[4], read);
+    }
 }
@@ -48,6 +48,7 @@ import static org.junit.Assert.fail;
 
 import org.graalvm.vm.posix.api.Errno;
 import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.posix.vfs.DentryCache;
 import org.graalvm.vm.posix.vfs.Tmpfs;
 import org.graalvm.vm.posix.vfs.VFS;
 import org.graalvm.vm.posix.vfs.VFSDirectory;
@@ -252,4 +253,88 @@ public class VFSTest {
         assertEquals("/tmp/dir/file", vfs.realpath("/tmp/dir/file"));
         assertEquals("/tmp/dir/file", vfs.realpath("/tmp/link/file"));
     }
+
+    @Test
+    public void normalize014() {
+        assertEquals("/usr/lib/libc.so", VFS.normalize("/usr/lib/libc.so"));
+        assertEquals("/usr/lib/.hidden", VFS.normalize("/usr/lib/.hidden"));
+        assertEquals("/usr/lib/...", VFS.normalize("/usr/lib/..."));
+    }
+
+    @Test
+    public void testDentryCache001() throws PosixException {
+        vfs.mkdir("/tmp", 0, 0, 0755);
+        vfs.mkfile("/tmp/file", 0, 0, 0755);
+        DentryCache cache = vfs.getDentryCache();
+
+        VFSEntry first = vfs.get("/tmp/file");
+        long hits = cache.getPathHits();
+        assertSame(first, vfs.get("/tmp/file"));
+        assertEquals(hits + 1, cache.getPathHits());
+    }
+
+    @Test
+    public void testDentryCache002() throws PosixException {
+        vfs.mkdir("/tmp", 0, 0, 0755);
+        DentryCache cache = vfs.getDentryCache();
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                vfs.get("/tmp/file");
+                fail();
+            } catch (PosixException e) {
+                assertEquals(Errno.ENOENT, e.getErrno());
+            }
+        }
+        assertEquals(1, cache.getPathNegativeHits());
+
+        // creating the file has to invalidate the negative entry
+        vfs.mkfile("/tmp/file", 0, 0, 0755);
+        assertNotNull(vfs.get("/tmp/file"));
+
+        vfs.unlink("/tmp/file");
+        try {
+            vfs.get("/tmp/file");
+            fail();
+        } catch (PosixException e) {
+            assertEquals(Errno.ENOENT, e.getErrno());
+        }
+    }
+
+    @Test
+    public void testDentryCache003() throws PosixException {
+        vfs.mkdir("/tmp", 0, 0, 0755);
+        vfs.mkdir("/tmp/a", 0, 0, 0755);
+        vfs.mkdir("/tmp/b", 0, 0, 0755);
+        vfs.mkfile("/tmp/a/file", 0, 0, 0755);
+        vfs.symlink("/tmp/link", 0, 0, 0755, "/tmp/a");
+        VFSEntry file = vfs.get("/tmp/link/file");
+        assertSame(file, vfs.get("/tmp/a/file"));
+
+        // a change behind the symlink invalidates paths through the symlink
+        vfs.unlink("/tmp/a/file");
+        try {
+            vfs.get("/tmp/link/file");
+            fail();
+        } catch (PosixException e) {
+            assertEquals(Errno.ENOENT, e.getErrno());
+        }
+    }
+
+    @Test
+    public void testDentryCache004() throws PosixException {
+        vfs.mkdir("/tmp", 0, 0, 0755);
+        vfs.mkfile("/tmp/file", 0, 0, 0755);
+        VFSEntry file = vfs.get("/tmp/file");
+
+        // mounting hides the old content of the directory
+        vfs.mount("/tmp", new Tmpfs(vfs));
+        try {
+            vfs.get("/tmp/file");
+            fail();
+        } catch (PosixException e) {
+            assertEquals(Errno.ENOENT, e.getErrno());
+        }
+        assertNotNull(file);
+    }
 }
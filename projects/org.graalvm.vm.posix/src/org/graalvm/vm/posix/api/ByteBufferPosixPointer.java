@@ -42,6 +42,8 @@ package org.graalvm.vm.posix.api;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.util.Arrays;
 
 public class ByteBufferPosixPointer implements PosixPointer {
     private final ByteBuffer buffer;
@@ -55,7 +57,8 @@ public class ByteBufferPosixPointer implements PosixPointer {
     }
 
     public ByteBufferPosixPointer(ByteBuffer buffer, long offset, long size, long realSize, String name) {
-        assert size > 0;
+        // size is 0 for a pointer to the end of the mapping (e.g. after a byte-wise copy)
+        assert size >= 0;
         assert realSize > 0;
         this.buffer = buffer;
         this.offset = offset;
@@ -72,6 +75,27 @@ public class ByteBufferPosixPointer implements PosixPointer {
         return new ByteBufferPosixPointer(buffer, offset + off, size - off, realSize, name);
     }
 
+    // Accesses which straddle realSize (EOF) are assembled byte by byte: the part beyond EOF reads
+    // as zero and is not stored on write.
+    private long slowGet(int len) {
+        long value = 0;
+        for (int i = 0; i < len; i++) {
+            long off = offset + i;
+            byte b = off < realSize ? buffer.get((int) off) : 0;
+            value = (value << 8) | Byte.toUnsignedLong(b);
+        }
+        return value;
+    }
+
+    private void slowSet(int len, long value) {
+        for (int i = 0; i < len; i++) {
+            long off = offset + i;
+            if (off < realSize) {
+                buffer.put((int) off, (byte) (value >>> (8 * (len - i - 1))));
+            }
+        }
+    }
+
     @Override
     public byte getI8() {
         if (offset >= realSize) {
@@ -83,28 +107,34 @@ public class ByteBufferPosixPointer implements PosixPointer {
 
     @Override
     public short getI16() {
-        if (offset >= realSize) {
+        if (offset + 2 <= realSize) {
+            return buffer.getShort((int) offset);
+        } else if (offset >= realSize) {
             return 0;
         } else {
-            return buffer.getShort((int) offset);
+            return (short) slowGet(2);
         }
     }
 
     @Override
     public int getI32() {
-        if (offset >= realSize) {
+        if (offset + 4 <= realSize) {
+            return buffer.getInt((int) offset);
+        } else if (offset >= realSize) {
             return 0;
         } else {
-            return buffer.getInt((int) offset);
+            return (int) slowGet(4);
         }
     }
 
     @Override
     public long getI64() {
-        if (offset >= realSize) {
+        if (offset + 8 <= realSize) {
+            return buffer.getLong((int) offset);
+        } else if (offset >= realSize) {
             return 0;
         } else {
-            return buffer.getLong((int) offset);
+            return slowGet(8);
         }
     }
 
@@ -119,8 +149,10 @@ public class ByteBufferPosixPointer implements PosixPointer {
 
     @Override
     public void setI16(short val) {
-        if (offset < realSize) {
+        if (offset + 2 <= realSize) {
             buffer.putShort((int) offset, val);
+        } else if (offset < realSize) {
+            slowSet(2, val);
         } else {
             throw new IndexOutOfBoundsException();
         }
@@ -128,8 +160,10 @@ public class ByteBufferPosixPointer implements PosixPointer {
 
     @Override
     public void setI32(int val) {
-        if (offset < realSize) {
+        if (offset + 4 <= realSize) {
             buffer.putInt((int) offset, val);
+        } else if (offset < realSize) {
+            slowSet(4, val);
         } else {
             throw new IndexOutOfBoundsException();
         }
@@ -137,13 +171,39 @@ public class ByteBufferPosixPointer implements PosixPointer {
 
     @Override
     public void setI64(long val) {
-        if (offset < realSize) {
+        if (offset + 8 <= realSize) {
             buffer.putLong((int) offset, val);
+        } else if (offset < realSize) {
+            slowSet(8, val);
         } else {
             throw new IndexOutOfBoundsException();
         }
     }
 
+    @Override
+    public int getBytes(byte[] dst, int off, int length) {
+        int n = (int) Math.max(0, Math.min(length, realSize - offset));
+        if (n > 0) {
+            ByteBuffer buf = buffer.duplicate();
+            buf.position((int) offset);
+            buf.get(dst, off, n);
+        }
+        Arrays.fill(dst, off + n, off + length, (byte) 0);
+        return length;
+    }
+
+    @Override
+    public int setBytes(byte[] src, int off, int length) {
+        if (offset >= realSize) {
+            throw new IndexOutOfBoundsException();
+        }
+        int n = (int) Math.min(length, realSize - offset);
+        ByteBuffer buf = buffer.duplicate();
+        buf.position((int) offset);
+        buf.put(src, off, n);
+        return length;
+    }
+
     @Override
     public long size() {
         return size;
@@ -153,4 +213,15 @@ public class ByteBufferPosixPointer implements PosixPointer {
     public String getName() {
         return name;
     }
+
+    @Override
+    public void msync(long length, int flags) throws PosixException {
+        if (buffer instanceof MappedByteBuffer && !buffer.isReadOnly()) {
+            try {
+                ((MappedByteBuffer) buffer).force();
+            } catch (RuntimeException e) {
+                throw new PosixException(Errno.EIO);
+            }
+        }
+    }
 }
@@ -40,15 +40,12 @@
  */
 package org.graalvm.vm.posix.api;
 
-import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.channels.DatagramChannel;
-import java.nio.channels.SelectableChannel;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
-import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -56,14 +53,22 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.graalvm.vm.posix.api.io.DirectoryStream;
+import org.graalvm.vm.posix.api.io.Epoll;
+import org.graalvm.vm.posix.api.io.EpollEvent;
+import org.graalvm.vm.posix.api.io.EpollStream;
+import org.graalvm.vm.posix.api.io.EventFdStream;
 import org.graalvm.vm.posix.api.io.Fcntl;
+import org.graalvm.vm.posix.api.io.FdSet;
 import org.graalvm.vm.posix.api.io.FileDescriptor;
 import org.graalvm.vm.posix.api.io.FileDescriptorManager;
 import org.graalvm.vm.posix.api.io.Ioctls;
 import org.graalvm.vm.posix.api.io.Iovec;
+import org.graalvm.vm.posix.api.io.PipeBuffer;
 import org.graalvm.vm.posix.api.io.PipeStream;
 import org.graalvm.vm.posix.api.io.Poll;
+import org.graalvm.vm.posix.api.io.Poller;
 import org.graalvm.vm.posix.api.io.Pollfd;
+import org.graalvm.vm.posix.api.io.SelectorThread;
 import org.graalvm.vm.posix.api.io.Stat;
 import org.graalvm.vm.posix.api.io.Stream;
 import org.graalvm.vm.posix.api.io.tty.TTYStream;
@@ -97,6 +102,8 @@ public class Posix {
     private final Linux linux;
     private final Info processInfo;
     private final Socket socket;
+    private final SelectorThread selector;
+    private final Poller poller;
     private final Timers timers;
 
     private Stack sigaltstack;
@@ -126,7 +133,9 @@ public class Posix {
         times = new Times(clock);
         linux = new Linux();
         processInfo = new Info();
-        socket = new Socket();
+        selector = new SelectorThread();
+        socket = new Socket(selector);
+        poller = new Poller(selector);
         sigaltstack = null;
         sigmask = new Sigset();
         timers = new Timers();
@@ -379,6 +388,43 @@ public class Posix {
         return copied;
     }
 
+    public long splice(int fd_in, PosixPointer off_in, int fd_out, PosixPointer off_out, long len, int flags) throws PosixException {
+        if (strace) {
+            log.log(Levels.INFO, () -> String.format("splice(%d, %s, %d, %s, %d, %d)", fd_in, off_in, fd_out, off_out, len, flags));
+        }
+        Stream in = fds.getStream(fd_in);
+        Stream out = fds.getStream(fd_out);
+        return transfer(in, off_in, out, off_out, len);
+    }
+
+    public long copy_file_range(int fd_in, PosixPointer off_in, int fd_out, PosixPointer off_out, long len, int flags) throws PosixException {
+        if (strace) {
+            log.log(Levels.INFO, () -> String.format("copy_file_range(%d, %s, %d, %s, %d, %d)", fd_in, off_in, fd_out, off_out, len, flags));
+        }
+        if (flags != 0) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        Stream in = fds.getStream(fd_in);
+        Stream out = fds.getStream(fd_out);
+        return transfer(in, off_in, out, off_out, len);
+    }
+
+    private static long transfer(Stream in, PosixPointer off_in, Stream out, PosixPointer off_out, long len) throws PosixException {
+        long inOffset = off_in == null ? -1 : off_in.getI64();
+        long outOffset = off_out == null ? -1 : off_out.getI64();
+        if ((off_in != null && inOffset < 0) || (off_out != null && outOffset < 0)) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        long copied = in.transfer(inOffset, out, outOffset, len);
+        if (off_in != null) {
+            off_in.setI64(inOffset + copied);
+        }
+        if (off_out != null) {
+            off_out.setI64(outOffset + copied);
+        }
+        return copied;
+    }
+
     public long fcntl(int fildes, int cmd, int arg) throws PosixException {
         if (strace) {
             log.log(Levels.INFO, () -> String.format("fcntl(%d, %s, %d)", fildes, Fcntl.fcntl(cmd), arg));
@@ -711,7 +757,7 @@ public class Posix {
         }
         if (BitTest.test(flags, Mman.MAP_ANONYMOUS)) {
             throw new PosixException(Errno.ENOMEM);
-        } else if (BitTest.test(flags, Mman.MAP_PRIVATE)) {
+        } else if (BitTest.test(flags, Mman.MAP_PRIVATE) || BitTest.test(flags, Mman.MAP_SHARED)) {
             Stream stream = fds.getStream(fildes);
             return stream.mmap(length, prot, flags, offset);
         }
@@ -1037,11 +1083,61 @@ public class Posix {
         return 0;
     }
 
-    // TODO: implement
-    // public int select(int nfds, FdSet readfds, FdSet writefds, FdSet errorfds, Timeval timeout)
-    // throws PosixException {
-    // return -1;
-    // }
+    public int select(int nfds, FdSet readfds, FdSet writefds, FdSet exceptfds, int timeout) throws PosixException {
+        if (strace) {
+            log.log(Levels.INFO, () -> String.format("select(%d, %s, %s, %s, %d)", nfds, readfds, writefds, exceptfds, timeout));
+        }
+        if (nfds < 0 || nfds > FdSet.FD_SETSIZE) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        List<Pollfd> pfds = new ArrayList<>();
+        for (int fd = 0; fd < nfds; fd++) {
+            short events = 0;
+            if (readfds != null && readfds.isSet(fd)) {
+                events |= Poll.POLLIN;
+            }
+            if (writefds != null && writefds.isSet(fd)) {
+                events |= Poll.POLLOUT;
+            }
+            if (exceptfds != null && exceptfds.isSet(fd)) {
+                events |= Poll.POLLPRI;
+            }
+            if (events != 0) {
+                Pollfd pfd = new Pollfd();
+                pfd.fd = fd;
+                pfd.events = events;
+                pfds.add(pfd);
+            }
+        }
+        Stream[] streams = new Stream[pfds.size()];
+        for (int i = 0; i < streams.length; i++) {
+            streams[i] = fds.getStream(pfds.get(i).fd);
+        }
+
+        poller.poll(streams, pfds.toArray(new Pollfd[streams.length]), streams.length, timeout);
+
+        int result = 0;
+        for (FdSet set : new FdSet[]{readfds, writefds, exceptfds}) {
+            if (set != null) {
+                set.zero();
+            }
+        }
+        for (Pollfd pfd : pfds) {
+            if (readfds != null && (pfd.revents & (Poll.POLLIN | Poll.POLLHUP | Poll.POLLERR)) != 0 && BitTest.test(pfd.events, Poll.POLLIN)) {
+                readfds.set(pfd.fd);
+                result++;
+            }
+            if (writefds != null && (pfd.revents & (Poll.POLLOUT | Poll.POLLERR)) != 0 && BitTest.test(pfd.events, Poll.POLLOUT)) {
+                writefds.set(pfd.fd);
+                result++;
+            }
+            if (exceptfds != null && BitTest.test(pfd.revents, Poll.POLLPRI)) {
+                exceptfds.set(pfd.fd);
+                result++;
+            }
+        }
+        return result;
+    }
 
     public int poll(Pollfd[] pfds, int nfds, int timeout) throws PosixException {
         if (strace) {
@@ -1051,124 +1147,119 @@ public class Posix {
             throw new PosixException(Errno.EFAULT);
         }
         Stream[] streams = new Stream[nfds];
-        boolean sockets = false;
-        boolean other = false;
         for (int i = 0; i < nfds; i++) {
-            streams[i] = fds.getStream(pfds[i].fd);
-            if (streams[i] instanceof NetworkStream) {
-                sockets = true;
-            } else {
-                other = true;
+            pfds[i].revents = 0;
+            if (pfds[i].fd >= 0) {
+                try {
+                    streams[i] = fds.getStream(pfds[i].fd);
+                } catch (PosixException e) {
+                    pfds[i].revents = Poll.POLLNVAL;
+                }
             }
         }
-        if (sockets && !other) {
-            Selector selector;
-            try {
-                selector = Selector.open();
-            } catch (IOException e) {
-                log.log(Level.WARNING, "Failed to create selector: " + e.getMessage(), e);
-                throw new PosixException(Errno.EIO);
-            }
+        return poller.poll(streams, pfds, nfds, timeout);
+    }
 
-            boolean[] wasBlocking = new boolean[nfds];
-            // register channels
-            for (int i = 0; i < nfds; i++) {
-                NetworkStream s = (NetworkStream) streams[i];
-                Pollfd fd = pfds[i];
-                SelectableChannel ch = s.getChannel();
-                wasBlocking[i] = ch.isBlocking();
-                int ops = 0;
-                if (BitTest.test(fd.events, Poll.POLLIN)) {
-                    ops |= SelectionKey.OP_READ;
-                }
-                if (BitTest.test(fd.events, Poll.POLLOUT)) {
-                    ops |= SelectionKey.OP_WRITE;
-                }
-                try {
-                    ch.configureBlocking(false);
-                    ch.register(selector, ops, i);
-                } catch (IOException e) {
-                    log.log(Level.WARNING, "Failed to register channel: " + e.getMessage(), e);
-                    for (SelectionKey key : selector.keys()) {
-                        key.cancel();
-                    }
-                    for (int j = 0; j <= i; j++) {
-                        NetworkStream stream = (NetworkStream) streams[j];
-                        try {
-                            stream.getChannel().configureBlocking(wasBlocking[j]);
-                        } catch (IOException ex) {
-                            log.log(Level.WARNING, "Cannot reset blocking configuration of channel: " + ex.getMessage(), ex);
-                        }
-                    }
-                    try {
-                        selector.close();
-                    } catch (IOException ex) {
-                        log.log(Level.WARNING, "Failed to close selector: " + ex.getMessage(), ex);
-                    }
-                    throw new PosixException(Errno.EINVAL);
-                }
+    public int pipe2(int[] fildes, int flags) throws PosixException {
+        if (strace) {
+            log.log(Levels.INFO, () -> String.format("pipe2(%s)", Fcntl.flags(flags)));
+        }
+        if ((flags & ~(Fcntl.O_NONBLOCK | Fcntl.O_CLOEXEC)) != 0) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        if (fds.count() + 2 > processInfo.rlimit_nofile) {
+            throw new PosixException(Errno.EMFILE);
+        }
+        PipeBuffer pipe = new PipeBuffer();
+        Stream in = pipe.getReadEnd();
+        Stream out = pipe.getWriteEnd();
+        in.setFlags(Fcntl.O_RDONLY | (flags & Fcntl.O_NONBLOCK));
+        out.setFlags(Fcntl.O_WRONLY | (flags & Fcntl.O_NONBLOCK));
+        fildes[0] = fds.allocate(in);
+        fildes[1] = fds.allocate(out);
+        if (BitTest.test(flags, Fcntl.O_CLOEXEC)) {
+            for (int fd : fildes) {
+                FileDescriptor fildesc = fds.getFileDescriptor(fd);
+                fildesc.setFlags(fildesc.getFlags() | Fcntl.FD_CLOEXEC);
             }
+        }
+        return 0;
+    }
 
-            // select
-            int result;
-            try {
-                if (timeout < 0) {
-                    result = selector.select(0);
-                } else if (timeout > 0) {
-                    result = selector.select(timeout);
-                } else {
-                    result = selector.selectNow();
-                }
+    public int eventfd(int initval, int flags) throws PosixException {
+        if (strace) {
+            log.log(Levels.INFO, () -> String.format("eventfd2(%d, %s)", Integer.toUnsignedLong(initval), Fcntl.flags(flags)));
+        }
+        if ((flags & ~(EventFdStream.EFD_SEMAPHORE | EventFdStream.EFD_NONBLOCK | EventFdStream.EFD_CLOEXEC)) != 0) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        if (fds.count() >= processInfo.rlimit_nofile) {
+            throw new PosixException(Errno.EMFILE);
+        }
+        int fd = fds.allocate(new EventFdStream(initval, flags));
+        if (BitTest.test(flags, EventFdStream.EFD_CLOEXEC)) {
+            FileDescriptor fildes = fds.getFileDescriptor(fd);
+            fildes.setFlags(fildes.getFlags() | Fcntl.FD_CLOEXEC);
+        }
+        return fd;
+    }
 
-                for (SelectionKey key : selector.selectedKeys()) {
-                    int i = (int) key.attachment();
-                    Pollfd fd = pfds[i];
-                    fd.revents = 0;
-                    if (BitTest.test(fd.events, Poll.POLLIN)) {
-                        if (key.isReadable()) {
-                            fd.revents |= Poll.POLLIN;
-                        }
+    public int epoll_create(int size) throws PosixException {
+        if (strace) {
+            log.log(Levels.INFO, () -> String.format("epoll_create(%d)", size));
+        }
+        if (size <= 0) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        return allocateEpoll(0);
+    }
 
-                        // if the stream can "accept", also check isAcceptable
-                        NetworkStream stream = (NetworkStream) streams[i];
-                        SelectableChannel ch = stream.getChannel();
-                        if ((ch instanceof DatagramChannel || ch instanceof ServerSocketChannel) && key.isAcceptable()) {
-                            fd.revents |= Poll.POLLIN;
-                        }
-                    }
-                    if (BitTest.test(fd.events, Poll.POLLOUT) && key.isWritable()) {
-                        fd.revents |= Poll.POLLOUT;
-                    }
-                }
-            } catch (IOException e) {
-                log.log(Level.INFO, "Error in poll: " + e.getMessage());
-                throw new PosixException(Errno.EIO);
-            } finally {
-                // unregister all channels again
-                for (SelectionKey key : selector.keys()) {
-                    key.cancel();
-                }
-                for (int i = 0; i < nfds; i++) {
-                    NetworkStream stream = (NetworkStream) streams[i];
-                    try {
-                        stream.getChannel().configureBlocking(wasBlocking[i]);
-                    } catch (IOException ex) {
-                        log.log(Level.WARNING, "Cannot reset blocking configuration of channel: " + ex.getMessage(), ex);
-                    }
-                }
+    public int epoll_create1(int flags) throws PosixException {
+        if (strace) {
+            log.log(Levels.INFO, () -> String.format("epoll_create1(%s)", BitTest.test(flags, Epoll.EPOLL_CLOEXEC) ? "EPOLL_CLOEXEC" : Integer.toString(flags)));
+        }
+        if ((flags & ~Epoll.EPOLL_CLOEXEC) != 0) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        return allocateEpoll(flags);
+    }
 
-                // close selector
-                try {
-                    selector.close();
-                } catch (IOException ex) {
-                    log.log(Level.WARNING, "Failed to close selector: " + ex.getMessage(), ex);
-                }
-            }
-            return result;
-        } else {
-            log.log(Level.WARNING, "Cannot poll on non-socket streams");
+    private int allocateEpoll(int flags) throws PosixException {
+        if (fds.count() >= processInfo.rlimit_nofile) {
+            throw new PosixException(Errno.EMFILE);
+        }
+        int fd = fds.allocate(new EpollStream());
+        if (BitTest.test(flags, Epoll.EPOLL_CLOEXEC)) {
+            FileDescriptor fildes = fds.getFileDescriptor(fd);
+            fildes.setFlags(fildes.getFlags() | Fcntl.FD_CLOEXEC);
+        }
+        return fd;
+    }
+
+    public int epoll_ctl(int epfd, int op, int fd, EpollEvent event) throws PosixException {
+        if (strace) {
+            log.log(Levels.INFO, () -> String.format("epoll_ctl(%d, %s, %d, %s)", epfd, Epoll.op(op), fd, event));
+        }
+        Stream epoll = fds.getStream(epfd);
+        Stream stream = fds.getStream(fd);
+        if (!(epoll instanceof EpollStream)) {
             throw new PosixException(Errno.EINVAL);
         }
+        if (event == null && op != Epoll.EPOLL_CTL_DEL) {
+            throw new PosixException(Errno.EFAULT);
+        }
+        return ((EpollStream) epoll).ctl(op, fd, stream, event);
+    }
+
+    public int epoll_wait(int epfd, EpollEvent[] events, int maxevents, int timeout) throws PosixException {
+        if (strace) {
+            log.log(Levels.INFO, () -> String.format("epoll_wait(%d, ..., %d, %d)", epfd, maxevents, timeout));
+        }
+        Stream epoll = fds.getStream(epfd);
+        if (!(epoll instanceof EpollStream)) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        return ((EpollStream) epoll).wait(events, maxevents, timeout);
     }
 
     public int setsockopt(int sock, int level, int option_name, int option_value) throws PosixException {
@@ -1369,6 +1460,61 @@ public class Posix {
         }
     }
 
+    public int accept(int sockfd, PosixPointer address, PosixPointer addressLen) throws PosixException {
+        if (strace) {
+            log.log(Levels.INFO, () -> String.format("accept(%d, %s, %s)", sockfd, address, addressLen));
+        }
+        return accept(sockfd, address, addressLen, 0);
+    }
+
+    public int accept4(int sockfd, PosixPointer address, PosixPointer addressLen, int flags) throws PosixException {
+        if (strace) {
+            log.log(Levels.INFO, () -> String.format("accept4(%d, %s, %s, 0%o)", sockfd, address, addressLen, flags));
+        }
+        if ((flags & ~(Socket.SOCK_NONBLOCK | Socket.SOCK_CLOEXEC)) != 0) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        return accept(sockfd, address, addressLen, flags);
+    }
+
+    private int accept(int sockfd, PosixPointer address, PosixPointer addressLen, int flags) throws PosixException {
+        Stream stream = fds.getStream(sockfd);
+        if (!(stream instanceof NetworkStream)) {
+            throw new PosixException(Errno.ENOTSOCK);
+        }
+        int len = 0;
+        if (address != null) {
+            if (addressLen == null) {
+                throw new PosixException(Errno.EFAULT);
+            }
+            len = addressLen.getI32();
+            if (len < 0) {
+                throw new PosixException(Errno.EINVAL);
+            }
+        }
+        if (fds.count() >= processInfo.rlimit_nofile) {
+            throw new PosixException(Errno.EMFILE);
+        }
+        NetworkStream sock = ((NetworkStream) stream).accept();
+        if (BitTest.test(flags, Socket.SOCK_NONBLOCK)) {
+            sock.setFlags(Fcntl.O_NONBLOCK);
+        }
+        int fd = fds.allocate(sock);
+        if (BitTest.test(flags, Socket.SOCK_CLOEXEC)) {
+            FileDescriptor fildes = fds.getFileDescriptor(fd);
+            fildes.setFlags(fildes.getFlags() | Fcntl.FD_CLOEXEC);
+        }
+        if (address != null) {
+            Sockaddr sa = sock.getpeername();
+            // a too small buffer gets nothing instead of a truncated address
+            if (len >= sa.getSize()) {
+                sa.write(address);
+            }
+            addressLen.setI32(sa.getSize());
+        }
+        return fd;
+    }
+
     // Linux specific functions
     public int sysinfo(Sysinfo info) throws PosixException {
         if (strace) {
@@ -1502,6 +1648,37 @@ public class Posix {
                 break;
             }
         }
+
+        // virtual threads are not part of any thread group
+        Set<Thread> joined = new HashSet<>();
+        while (true) {
+            List<Thread> pending = new ArrayList<>();
+            synchronized (threads) {
+                for (Thread t : threads.values()) {
+                    if (t != self && t.isAlive() && !joined.contains(t)) {
+                        pending.add(t);
+                    }
+                }
+            }
+            if (pending.isEmpty()) {
+                break;
+            }
+            for (Thread t : pending) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+                joined.add(t);
+            }
+        }
+    }
+
+    /**
+     * Releases the host resources which all guest threads share. No guest thread may run anymore.
+     */
+    public void dispose() {
+        selector.close();
     }
 
     public ThreadGroup getThreadGroup() {
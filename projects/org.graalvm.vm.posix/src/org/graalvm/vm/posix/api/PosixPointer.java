@@ -40,6 +40,8 @@
  */
 package org.graalvm.vm.posix.api;
 
+import java.nio.ByteBuffer;
+
 public interface PosixPointer {
     PosixPointer add(int off);
 
@@ -59,6 +61,94 @@ public interface PosixPointer {
 
     void setI64(long val) throws MemoryFaultException;
 
+    /**
+     * Copies length bytes starting at this pointer to dst[off]. Returns the number of bytes which
+     * were copied; this is less than length only if the copy ran into a fault after the first byte.
+     */
+    default int getBytes(byte[] dst, int off, int length) throws MemoryFaultException {
+        PosixPointer p = this;
+        int i = 0;
+        try {
+            for (i = 0; i < length; i++) {
+                dst[off + i] = p.getI8();
+                p = p.add(1);
+            }
+        } catch (MemoryFaultException e) {
+            if (i == 0) {
+                throw e;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Copies length bytes from src[off] to the memory starting at this pointer. Returns the number
+     * of bytes which were copied; this is less than length only if the copy ran into a fault after
+     * the first byte.
+     */
+    default int setBytes(byte[] src, int off, int length) throws MemoryFaultException {
+        PosixPointer p = this;
+        int i = 0;
+        try {
+            for (i = 0; i < length; i++) {
+                p.setI8(src[off + i]);
+                p = p.add(1);
+            }
+        } catch (MemoryFaultException e) {
+            if (i == 0) {
+                throw e;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Copies up to length bytes starting at this pointer into dst and advances its position.
+     */
+    default int getBytes(ByteBuffer dst, int length) throws MemoryFaultException {
+        int n;
+        if (dst.hasArray()) {
+            n = getBytes(dst.array(), dst.arrayOffset() + dst.position(), length);
+            dst.position(dst.position() + n);
+        } else {
+            byte[] buf = new byte[length];
+            n = getBytes(buf, 0, length);
+            dst.put(buf, 0, n);
+        }
+        return n;
+    }
+
+    /**
+     * Copies the remaining bytes of src to the memory starting at this pointer and advances the
+     * position of src by the number of bytes copied.
+     */
+    default int setBytes(ByteBuffer src) throws MemoryFaultException {
+        int length = src.remaining();
+        int n;
+        if (src.hasArray()) {
+            n = setBytes(src.array(), src.arrayOffset() + src.position(), length);
+        } else {
+            byte[] buf = new byte[length];
+            src.duplicate().get(buf);
+            n = setBytes(buf, 0, length);
+        }
+        src.position(src.position() + n);
+        return n;
+    }
+
+    /**
+     * Replaces the 32bit value at this pointer with x if it currently is expected. Pointers into
+     * memory which other threads can modify concurrently have to do this atomically.
+     */
+    default boolean cmpxchgI32(int expected, int x) throws MemoryFaultException {
+        if (getI32() == expected) {
+            setI32(x);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
     default long getAddress() {
         throw new AssertionError("not implemented");
     }
@@ -82,4 +172,18 @@ public interface PosixPointer {
     default String getName() {
         return "[posix-pointer]";
     }
+
+    @SuppressWarnings("unused")
+    default void msync(long length, int flags) throws PosixException {
+        // memory which is not backed by a file has nothing to synchronize
+    }
+
+    @SuppressWarnings("unused")
+    default void discard(long length) {
+        // file contents stay as they are, like MADV_DONTNEED on a shared mapping
+    }
+
+    default long getResidentSize() {
+        return size();
+    }
 }
@@ -70,5 +70,5 @@ public abstract class DirectoryStream extends Stream {
         throw new PosixException(Errno.EINVAL);
     }
 
-    public abstract long getdents(PosixPointer ptr, long count, int size);
+    public abstract long getdents(PosixPointer ptr, long count, int size) throws PosixException;
 }
@@ -0,0 +1,437 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.posix.api.io;
+
+import static org.graalvm.vm.posix.api.io.Stat.S_IRUSR;
+import static org.graalvm.vm.posix.api.io.Stat.S_IWUSR;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.graalvm.vm.posix.api.Errno;
+import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.posix.api.Timespec;
+import org.graalvm.vm.posix.api.net.NetworkStream;
+import org.graalvm.vm.util.BitTest;
+import org.graalvm.vm.util.log.Trace;
+
+/**
+ * An epoll instance. The interest list lives in a single selector for the whole lifetime of the
+ * instance, so epoll_ctl only touches the affected channel and epoll_wait does not have to register
+ * anything. Other pollable streams are checked with {@link Stream#poll} and interrupt the selector
+ * through their wakeup hook.
+ *
+ * Edge triggered registrations are not reported again until the stream runs its wakeup hook, which
+ * for sockets happens whenever the guest reads or writes. One-shot registrations stay disabled
+ * until EPOLL_CTL_MOD.
+ */
+public class EpollStream extends Stream {
+    private static final Logger log = Trace.create(EpollStream.class);
+
+    private final Selector selector;
+    private final Map<Integer, Entry> entries = new HashMap<>();
+
+    // pollable streams other than sockets
+    private final List<Entry> polled = new CopyOnWriteArrayList<>();
+    private volatile int unhooked;
+
+    // epoll_ctl takes this lock while it registers channels, epoll_wait must not enter select then
+    private final Object guard = new Object();
+
+    private class Entry implements Runnable {
+        final int fd;
+        final Stream stream;
+        int events;
+        long data;
+        SelectionKey key;
+        boolean hooked;
+        boolean disarmed;
+
+        Entry(int fd, Stream stream, int events, long data) {
+            this.fd = fd;
+            this.stream = stream;
+            this.events = events;
+            this.data = data;
+        }
+
+        int getInterestOps() {
+            return ((NetworkStream) stream).getInterestOps(events);
+        }
+
+        boolean isEdgeTriggered() {
+            return BitTest.test(events, Epoll.EPOLLET);
+        }
+
+        boolean isOneShot() {
+            return BitTest.test(events, Epoll.EPOLLONESHOT);
+        }
+
+        boolean isStale() {
+            return key != null ? !key.isValid() : stream.isClosed();
+        }
+
+        // the readiness of the stream may have changed
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (disarmed && !isOneShot()) {
+                    disarmed = false;
+                    if (key != null) {
+                        try {
+                            key.interestOps(getInterestOps());
+                        } catch (CancelledKeyException e) {
+                            return;
+                        }
+                    }
+                } else if (key != null) {
+                    // the selector sees everything else on a socket
+                    return;
+                }
+            }
+            selector.wakeup();
+        }
+    }
+
+    public EpollStream() throws PosixException {
+        try {
+            selector = Selector.open();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Cannot create selector: " + e.getMessage(), e);
+            throw new PosixException(Errno.ENOMEM);
+        }
+    }
+
+    public int ctl(int op, int fd, Stream stream, EpollEvent event) throws PosixException {
+        if (stream == this) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        synchronized (entries) {
+            Entry entry = entries.get(fd);
+            if (entry != null && (entry.stream != stream || entry.isStale())) {
+                // the file descriptor was closed and possibly reused since it was added
+                remove(entry);
+                entry = null;
+            }
+            switch (op) {
+                case Epoll.EPOLL_CTL_ADD:
+                    if (entry != null) {
+                        throw new PosixException(Errno.EEXIST);
+                    }
+                    if (!stream.isPollable()) {
+                        throw new PosixException(Errno.EPERM);
+                    }
+                    entry = new Entry(fd, stream, event.events, event.data);
+                    if (stream instanceof NetworkStream) {
+                        entry.key = register(entry);
+                        if (entry.isEdgeTriggered()) {
+                            entry.hooked = stream.addWakeup(entry);
+                        }
+                    } else {
+                        entry.hooked = stream.addWakeup(entry);
+                        if (!entry.hooked) {
+                            unhooked++;
+                        }
+                        polled.add(entry);
+                        selector.wakeup();
+                    }
+                    entries.put(fd, entry);
+                    return 0;
+                case Epoll.EPOLL_CTL_MOD:
+                    if (entry == null) {
+                        throw new PosixException(Errno.ENOENT);
+                    }
+                    if (BitTest.test(event.events, Epoll.EPOLLEXCLUSIVE)) {
+                        throw new PosixException(Errno.EINVAL);
+                    }
+                    synchronized (entry) {
+                        entry.events = event.events;
+                        entry.data = event.data;
+                        entry.disarmed = false;
+                        if (entry.key != null) {
+                            entry.key.interestOps(entry.getInterestOps());
+                            if (entry.isEdgeTriggered() && !entry.hooked) {
+                                entry.hooked = stream.addWakeup(entry);
+                            } else if (!entry.isEdgeTriggered() && entry.hooked) {
+                                stream.removeWakeup(entry);
+                                entry.hooked = false;
+                            }
+                        }
+                    }
+                    selector.wakeup();
+                    return 0;
+                case Epoll.EPOLL_CTL_DEL:
+                    if (entry == null) {
+                        throw new PosixException(Errno.ENOENT);
+                    }
+                    remove(entry);
+                    return 0;
+                default:
+                    throw new PosixException(Errno.EINVAL);
+            }
+        }
+    }
+
+    private SelectionKey register(Entry entry) throws PosixException {
+        SelectableChannel channel = ((NetworkStream) entry.stream).getChannel();
+        synchronized (guard) {
+            // a thread blocked in epoll_wait holds the selector's key set
+            selector.wakeup();
+            try {
+                try {
+                    return channel.register(selector, entry.getInterestOps(), entry);
+                } catch (CancelledKeyException e) {
+                    // the channel was removed from this instance before, flush the old key
+                    selector.selectNow();
+                    selector.selectedKeys().clear();
+                    return channel.register(selector, entry.getInterestOps(), entry);
+                }
+            } catch (ClosedChannelException e) {
+                throw new PosixException(Errno.EBADF);
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Failed to register channel: " + e.getMessage(), e);
+                throw new PosixException(Errno.ENOMEM);
+            }
+        }
+    }
+
+    private void remove(Entry entry) {
+        entries.remove(entry.fd);
+        if (entry.key != null) {
+            entry.key.cancel();
+        } else {
+            polled.remove(entry);
+            if (!entry.hooked) {
+                unhooked--;
+            }
+        }
+        if (entry.hooked) {
+            entry.stream.removeWakeup(entry);
+        }
+    }
+
+    /**
+     * Waits up to timeout milliseconds for events on the interest list. A negative timeout waits
+     * forever.
+     */
+    public int wait(EpollEvent[] events, int maxevents, int timeout) throws PosixException {
+        if (maxevents <= 0 || events.length < maxevents) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        long deadline = System.nanoTime() + timeout * 1_000_000L;
+        try {
+            selector.selectNow();
+            while (true) {
+                int n = collect(events, maxevents);
+                if (n > 0 || timeout == 0) {
+                    return n;
+                }
+                long wait = 0;
+                if (timeout > 0) {
+                    wait = (deadline - System.nanoTime() + 999_999L) / 1_000_000L;
+                    if (wait <= 0) {
+                        return 0;
+                    }
+                }
+                if (unhooked > 0 && (wait == 0 || wait > Poller.RECHECK_INTERVAL)) {
+                    wait = Poller.RECHECK_INTERVAL;
+                }
+                synchronized (guard) {
+                    // wait for a concurrent epoll_ctl
+                }
+                // woken up early by epoll_ctl or by a wakeup hook
+                selector.select(wait);
+                if (Thread.interrupted()) {
+                    throw new PosixException(Errno.EINTR);
+                }
+            }
+        } catch (IOException e) {
+            log.log(Level.INFO, "Error in epoll_wait: " + e.getMessage());
+            throw new PosixException(Errno.EIO);
+        }
+    }
+
+    private int collect(EpollEvent[] events, int maxevents) throws PosixException {
+        int n = 0;
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext() && n < maxevents) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Entry entry = (Entry) key.attachment();
+            synchronized (entry) {
+                if ((entry.disarmed && entry.isOneShot()) || !key.isValid()) {
+                    continue;
+                }
+                int readyOps = key.readyOps();
+                int revents = ((NetworkStream) entry.stream).getPollEvents(readyOps) & (entry.events | Epoll.EPOLLERR | Epoll.EPOLLHUP);
+                try {
+                    if (entry.isOneShot()) {
+                        entry.disarmed = true;
+                        key.interestOps(0);
+                    } else if (entry.isEdgeTriggered()) {
+                        entry.disarmed = true;
+                        key.interestOps(key.interestOps() & ~readyOps);
+                    } else if (key.interestOps() != entry.getInterestOps()) {
+                        // a pending connect completed
+                        key.interestOps(entry.getInterestOps());
+                    }
+                } catch (CancelledKeyException e) {
+                    continue;
+                }
+                if (revents == 0) {
+                    continue;
+                }
+                EpollEvent event = events[n++];
+                event.events = revents;
+                event.data = entry.data;
+            }
+        }
+        // keys which did not fit are still ready and get selected again
+        selector.selectedKeys().clear();
+
+        for (Entry entry : polled) {
+            if (n >= maxevents) {
+                break;
+            }
+            if (entry.stream.isClosed()) {
+                synchronized (entries) {
+                    if (entries.get(entry.fd) == entry) {
+                        remove(entry);
+                    }
+                }
+                continue;
+            }
+            synchronized (entry) {
+                // edge triggered streams without wakeups behave like level triggered ones
+                if (entry.disarmed && (entry.isOneShot() || entry.hooked)) {
+                    continue;
+                }
+                int revents = entry.stream.poll(entry.events) & (entry.events | Epoll.EPOLLERR | Epoll.EPOLLHUP);
+                if (revents == 0) {
+                    continue;
+                }
+                if (entry.isOneShot() || entry.isEdgeTriggered()) {
+                    entry.disarmed = true;
+                }
+                EpollEvent event = events[n++];
+                event.events = revents;
+                event.data = entry.data;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public int read(byte[] buf, int offset, int length) throws PosixException {
+        throw new PosixException(Errno.EINVAL);
+    }
+
+    @Override
+    public int write(byte[] buf, int offset, int length) throws PosixException {
+        throw new PosixException(Errno.EINVAL);
+    }
+
+    @Override
+    public int pread(byte[] buf, int offset, int length, long fileOffset) throws PosixException {
+        throw new PosixException(Errno.ESPIPE);
+    }
+
+    @Override
+    public int pwrite(byte[] buf, int offset, int length, long fileOffset) throws PosixException {
+        throw new PosixException(Errno.ESPIPE);
+    }
+
+    @Override
+    public int close() throws PosixException {
+        synchronized (entries) {
+            for (Entry entry : entries.values()) {
+                if (entry.hooked) {
+                    entry.stream.removeWakeup(entry);
+                }
+            }
+            entries.clear();
+            polled.clear();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            throw new PosixException(Errno.EIO);
+        }
+        return 0;
+    }
+
+    @Override
+    public long lseek(long offset, int whence) throws PosixException {
+        throw new PosixException(Errno.ESPIPE);
+    }
+
+    @Override
+    public void stat(Stat buf) throws PosixException {
+        buf.st_dev = 0; // TODO
+        buf.st_ino = 0; // TODO
+        buf.st_mode = S_IRUSR | S_IWUSR;
+        buf.st_nlink = 1;
+        buf.st_uid = 0; // TODO
+        buf.st_gid = 0; // TODO
+        buf.st_rdev = 0; // TODO
+        buf.st_size = 0;
+        buf.st_blksize = 4096;
+        buf.st_blocks = 0;
+        buf.st_atim = new Timespec(); // TODO
+        buf.st_mtim = new Timespec(); // TODO
+        buf.st_ctim = new Timespec(); // TODO
+    }
+
+    @Override
+    public void ftruncate(long size) throws PosixException {
+        throw new PosixException(Errno.EINVAL);
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.posix.api.io;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.graalvm.vm.posix.api.Errno;
+import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.posix.api.Timespec;
+import org.graalvm.vm.util.BitTest;
+import org.graalvm.vm.util.io.Endianess;
+
+/**
+ * An eventfd: a 64bit counter which is read and written as 8 byte values in guest byte order.
+ * Reading returns the counter and resets it (or decrements it in semaphore mode), writing adds to
+ * it. Both block while the counter is zero or would overflow.
+ */
+public class EventFdStream extends Stream {
+    public static final int EFD_SEMAPHORE = 00000001;
+    public static final int EFD_NONBLOCK = Fcntl.O_NONBLOCK;
+    public static final int EFD_CLOEXEC = Fcntl.O_CLOEXEC;
+
+    // largest value the counter can hold, as unsigned number
+    private static final long MAX = 0xFFFFFFFFFFFFFFFEL;
+
+    private final AtomicLong count;
+    private final boolean semaphore;
+
+    private final WaitQueue readers = new WaitQueue();
+    private final WaitQueue writers = new WaitQueue();
+
+    public EventFdStream(int initval, int flags) {
+        count = new AtomicLong(Integer.toUnsignedLong(initval));
+        semaphore = BitTest.test(flags, EFD_SEMAPHORE);
+        statusFlags = Fcntl.O_RDWR | (flags & EFD_NONBLOCK);
+    }
+
+    private boolean isBlocking() {
+        return !BitTest.test(statusFlags, Fcntl.O_NONBLOCK);
+    }
+
+    private static boolean canAdd(long value, long add) {
+        return Long.compareUnsigned(add, MAX - value) <= 0;
+    }
+
+    @Override
+    public int read(byte[] buf, int offset, int length) throws PosixException {
+        if (length < 8) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        while (true) {
+            long value = count.get();
+            if (value != 0) {
+                if (count.compareAndSet(value, semaphore ? value - 1 : 0)) {
+                    Endianess.set64bitLE(buf, offset, semaphore ? 1 : value);
+                    writers.wake();
+                    wakeup();
+                    return 8;
+                }
+            } else if (isBlocking()) {
+                readers.await(() -> count.get() != 0);
+            } else {
+                throw new PosixException(Errno.EAGAIN);
+            }
+        }
+    }
+
+    @Override
+    public int write(byte[] buf, int offset, int length) throws PosixException {
+        if (length < 8) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        long add = Endianess.get64bitLE(buf, offset);
+        if (add == -1) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        while (true) {
+            long value = count.get();
+            if (canAdd(value, add)) {
+                if (count.compareAndSet(value, value + add)) {
+                    if (add != 0) {
+                        readers.wake();
+                        wakeup();
+                    }
+                    return 8;
+                }
+            } else if (isBlocking()) {
+                writers.await(() -> canAdd(count.get(), add));
+            } else {
+                throw new PosixException(Errno.EAGAIN);
+            }
+        }
+    }
+
+    @Override
+    public int pread(byte[] buf, int offset, int length, long fileOffset) throws PosixException {
+        throw new PosixException(Errno.ESPIPE);
+    }
+
+    @Override
+    public int pwrite(byte[] buf, int offset, int length, long fileOffset) throws PosixException {
+        throw new PosixException(Errno.ESPIPE);
+    }
+
+    @Override
+    public boolean isPollable() {
+        return true;
+    }
+
+    @Override
+    public int poll(int events) throws PosixException {
+        long value = count.get();
+        int revents = 0;
+        if (value != 0) {
+            revents |= events & (Poll.POLLIN | Poll.POLLRDNORM);
+        }
+        if (value != MAX) {
+            revents |= events & (Poll.POLLOUT | Poll.POLLWRNORM);
+        }
+        return revents;
+    }
+
+    @Override
+    protected boolean hasWakeups() {
+        return true;
+    }
+
+    @Override
+    public int close() throws PosixException {
+        return 0;
+    }
+
+    @Override
+    public long lseek(long offset, int whence) throws PosixException {
+        throw new PosixException(Errno.ESPIPE);
+    }
+
+    @Override
+    public void stat(Stat buf) throws PosixException {
+        buf.st_dev = 0;
+        buf.st_ino = 0;
+        buf.st_mode = Stat.S_IRUSR | Stat.S_IWUSR;
+        buf.st_nlink = 1;
+        buf.st_uid = 0;
+        buf.st_gid = 0;
+        buf.st_rdev = 0;
+        buf.st_size = 0;
+        buf.st_blksize = 4096;
+        buf.st_blocks = 0;
+        buf.st_atim = new Timespec();
+        buf.st_mtim = new Timespec();
+        buf.st_ctim = new Timespec();
+    }
+
+    @Override
+    public void ftruncate(long length) throws PosixException {
+        throw new PosixException(Errno.EINVAL);
+    }
+
+    @Override
+    public String toString() {
+        return "eventfd[" + Long.toUnsignedString(count.get()) + "]";
+    }
+}
@@ -48,7 +48,69 @@ public class FdSet implements Struct {
 
     public final long[] fds_bits = new long[FD_SETSIZE / (8 * 8)];
 
+    public boolean isSet(int fd) {
+        return (fds_bits[fd / 64] & (1L << (fd % 64))) != 0;
+    }
+
+    public void set(int fd) {
+        fds_bits[fd / 64] |= 1L << (fd % 64);
+    }
+
+    public void clear(int fd) {
+        fds_bits[fd / 64] &= ~(1L << (fd % 64));
+    }
+
+    public void zero() {
+        for (int i = 0; i < fds_bits.length; i++) {
+            fds_bits[i] = 0;
+        }
+    }
+
+    // only the words which cover the first nfds descriptors are accessed, like the kernel does
+    private static int words(int nfds) {
+        return (nfds + 63) / 64;
+    }
+
+    public PosixPointer read(PosixPointer ptr, int nfds) {
+        PosixPointer p = ptr;
+        zero();
+        for (int i = 0; i < words(nfds); i++) {
+            fds_bits[i] = p.getI64();
+            p = p.add(8);
+        }
+        return p;
+    }
+
+    public PosixPointer write(PosixPointer ptr, int nfds) {
+        PosixPointer p = ptr;
+        for (int i = 0; i < words(nfds); i++) {
+            p.setI64(fds_bits[i]);
+            p = p.add(8);
+        }
+        return p;
+    }
+
+    @Override
     public PosixPointer read(PosixPointer ptr) {
-        return null;
+        return read(ptr, FD_SETSIZE);
+    }
+
+    @Override
+    public PosixPointer write(PosixPointer ptr) {
+        return write(ptr, FD_SETSIZE);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder("[");
+        for (int fd = 0; fd < FD_SETSIZE; fd++) {
+            if (isSet(fd)) {
+                if (buf.length() > 1) {
+                    buf.append(' ');
+                }
+                buf.append(fd);
+            }
+        }
+        return buf.append(']').toString();
     }
 }
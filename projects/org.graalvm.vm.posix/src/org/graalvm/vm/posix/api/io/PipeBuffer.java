@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.posix.api.io;
+
+import org.graalvm.vm.posix.api.Errno;
+import org.graalvm.vm.posix.api.PosixException;
+
+/**
+ * The buffer of a pipe which lives entirely inside the VM. The data is kept in a ring buffer where
+ * only readers advance the head and only writers advance the tail, so a reader and a writer never
+ * contend for a lock. Concurrent readers (or writers) are serialized among themselves.
+ */
+public class PipeBuffer {
+    public static final int PIPE_BUF = 4096;
+    public static final int CAPACITY = 65536;
+
+    private static final int MASK = CAPACITY - 1;
+
+    private final byte[] data = new byte[CAPACITY];
+
+    // total number of bytes read and written so far
+    private volatile long head = 0;
+    private volatile long tail = 0;
+
+    private final Object readLock = new Object();
+    private final Object writeLock = new Object();
+
+    private final WaitQueue readers = new WaitQueue();
+    private final WaitQueue writers = new WaitQueue();
+
+    private volatile boolean readClosed = false;
+    private volatile boolean writeClosed = false;
+
+    private final PipeEndStream readEnd;
+    private final PipeEndStream writeEnd;
+
+    public PipeBuffer() {
+        readEnd = new PipeEndStream(this, true);
+        writeEnd = new PipeEndStream(this, false);
+    }
+
+    public PipeEndStream getReadEnd() {
+        return readEnd;
+    }
+
+    public PipeEndStream getWriteEnd() {
+        return writeEnd;
+    }
+
+    public int available() {
+        return (int) (tail - head);
+    }
+
+    int space() {
+        return CAPACITY - available();
+    }
+
+    private int take(byte[] buf, int offset, int length) {
+        long h = head;
+        int n = Math.min((int) (tail - h), length);
+        int pos = (int) (h & MASK);
+        int first = Math.min(n, CAPACITY - pos);
+        System.arraycopy(data, pos, buf, offset, first);
+        System.arraycopy(data, 0, buf, offset + first, n - first);
+        // publishes the free space only after the data was copied out
+        head = h + n;
+        return n;
+    }
+
+    // copies up to length bytes to buf without consuming them
+    private int peek(byte[] buf, int length) {
+        long h = head;
+        int n = Math.min((int) (tail - h), length);
+        int pos = (int) (h & MASK);
+        int first = Math.min(n, CAPACITY - pos);
+        System.arraycopy(data, pos, buf, 0, first);
+        System.arraycopy(data, 0, buf, first, n - first);
+        return n;
+    }
+
+    private int put(byte[] buf, int offset, int length, boolean atomic) {
+        long t = tail;
+        int free = CAPACITY - (int) (t - head);
+        if (atomic && free < length) {
+            return 0;
+        }
+        int n = Math.min(free, length);
+        int pos = (int) (t & MASK);
+        int first = Math.min(n, CAPACITY - pos);
+        System.arraycopy(buf, offset, data, pos, first);
+        System.arraycopy(buf, offset + first, data, 0, n - first);
+        tail = t + n;
+        return n;
+    }
+
+    public int read(byte[] buf, int offset, int length, boolean block) throws PosixException {
+        if (length == 0) {
+            return 0;
+        }
+        while (true) {
+            // everything written before the last writer went away is still delivered
+            boolean eof = writeClosed;
+            int n;
+            synchronized (readLock) {
+                n = take(buf, offset, length);
+            }
+            if (n > 0) {
+                writers.wake();
+                writeEnd.wakeup();
+                return n;
+            }
+            if (eof) {
+                return 0;
+            }
+            if (!block) {
+                throw new PosixException(Errno.EAGAIN);
+            }
+            readers.await(() -> available() > 0 || writeClosed);
+        }
+    }
+
+    /**
+     * Passes up to length bytes to sink and consumes only the bytes the sink took, the rest stays in
+     * the pipe. Other readers wait while the sink runs.
+     */
+    int read(Stream.Sink sink, int length, boolean block) throws PosixException {
+        if (length == 0) {
+            return 0;
+        }
+        while (true) {
+            boolean eof = writeClosed;
+            int n;
+            int taken = 0;
+            synchronized (readLock) {
+                byte[] buf = Stream.staging(length);
+                n = peek(buf, length);
+                if (n > 0) {
+                    taken = sink.accept(buf, 0, n);
+                    head += taken;
+                }
+            }
+            if (taken > 0) {
+                writers.wake();
+                writeEnd.wakeup();
+            }
+            if (n > 0) {
+                return taken;
+            }
+            if (eof) {
+                return 0;
+            }
+            if (!block) {
+                throw new PosixException(Errno.EAGAIN);
+            }
+            readers.await(() -> available() > 0 || writeClosed);
+        }
+    }
+
+    /**
+     * Writes of up to {@link #PIPE_BUF} bytes are never interleaved with other writes. A blocking
+     * write returns only after all data was written, a non-blocking write may be partial.
+     */
+    public int write(byte[] buf, int offset, int length, boolean block) throws PosixException {
+        boolean atomic = length <= PIPE_BUF;
+        int written = 0;
+        while (written < length) {
+            if (readClosed) {
+                if (written > 0) {
+                    return written;
+                }
+                throw new PosixException(Errno.EPIPE);
+            }
+            int n;
+            synchronized (writeLock) {
+                n = put(buf, offset + written, length - written, atomic);
+            }
+            if (n > 0) {
+                written += n;
+                readers.wake();
+                readEnd.wakeup();
+                continue;
+            }
+            if (!block) {
+                if (written > 0) {
+                    return written;
+                }
+                throw new PosixException(Errno.EAGAIN);
+            }
+            int needed = atomic ? length : 1;
+            try {
+                writers.await(() -> space() >= needed || readClosed);
+            } catch (PosixException e) {
+                if (written > 0) {
+                    return written;
+                }
+                throw e;
+            }
+        }
+        return written;
+    }
+
+    public int poll(boolean read, int events) {
+        int revents = 0;
+        if (read) {
+            if (available() > 0) {
+                revents |= events & (Poll.POLLIN | Poll.POLLRDNORM);
+            }
+            if (writeClosed) {
+                revents |= Poll.POLLHUP;
+            }
+        } else {
+            if (space() >= PIPE_BUF) {
+                revents |= events & (Poll.POLLOUT | Poll.POLLWRNORM);
+            }
+            if (readClosed) {
+                revents |= Poll.POLLERR;
+            }
+        }
+        return revents;
+    }
+
+    public void close(boolean read) {
+        if (read) {
+            readClosed = true;
+            writers.wake();
+            writeEnd.wakeup();
+        } else {
+            writeClosed = true;
+            readers.wake();
+            readEnd.wakeup();
+        }
+    }
+}
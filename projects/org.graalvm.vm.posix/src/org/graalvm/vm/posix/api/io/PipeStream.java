@@ -52,6 +52,7 @@ import java.io.OutputStream;
 import org.graalvm.vm.posix.api.Errno;
 import org.graalvm.vm.posix.api.PosixException;
 import org.graalvm.vm.posix.api.Timespec;
+import org.graalvm.vm.util.BitTest;
 
 public class PipeStream extends Stream {
     private final InputStream in;
@@ -104,6 +105,30 @@ public class PipeStream extends Stream {
         }
     }
 
+    @Override
+    public boolean isPollable() {
+        return true;
+    }
+
+    // host streams cannot signal new data, so waiters check available() periodically
+    @Override
+    public int poll(int events) throws PosixException {
+        int revents = 0;
+        if (in != null && BitTest.test(events, Poll.POLLIN)) {
+            try {
+                if (in.available() > 0) {
+                    revents |= Poll.POLLIN;
+                }
+            } catch (IOException e) {
+                revents |= Poll.POLLERR;
+            }
+        }
+        if (out != null && BitTest.test(events, Poll.POLLOUT)) {
+            revents |= Poll.POLLOUT;
+        }
+        return revents;
+    }
+
     @Override
     public int pread(byte[] buf, int offset, int length, long fileOffset) throws PosixException {
         throw new PosixException(Errno.ESPIPE);
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.posix.api.io;
+
+import java.util.concurrent.locks.LockSupport;
+
+import org.graalvm.vm.posix.api.Errno;
+import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.posix.api.net.NetworkStream;
+
+/**
+ * Waits until any of a set of streams becomes ready. Sockets are watched by the
+ * {@link SelectorThread} of the Posix instance. Every other stream reports its readiness through
+ * {@link Stream#poll} and unparks the waiting thread through a wakeup hook. Streams without
+ * wakeups, like host pipes, are checked again every {@link #RECHECK_INTERVAL} milliseconds.
+ */
+public class Poller {
+    public static final long RECHECK_INTERVAL = 10;
+
+    private final SelectorThread selector;
+
+    public Poller(SelectorThread selector) {
+        this.selector = selector;
+    }
+
+    /**
+     * Waits up to timeout milliseconds until one of the streams is ready for the events of the
+     * corresponding pollfd and stores the result in revents. A negative timeout waits forever. A
+     * null stream keeps the revents it already has, which is how the caller reports POLLNVAL.
+     */
+    public int poll(Stream[] streams, Pollfd[] pfds, int nfds, int timeout) throws PosixException {
+        Thread self = Thread.currentThread();
+        Runnable hook = () -> LockSupport.unpark(self);
+        SelectorThread.Request[] requests = new SelectorThread.Request[nfds];
+        boolean[] hooked = new boolean[nfds];
+        boolean recheck = false;
+        long deadline = System.nanoTime() + timeout * 1_000_000L;
+        try {
+            // register before the first check, a change in between then unparks this thread
+            for (int i = 0; i < nfds; i++) {
+                Stream stream = streams[i];
+                if (stream instanceof NetworkStream) {
+                    NetworkStream socket = (NetworkStream) stream;
+                    requests[i] = selector.add(socket.getChannel(), socket.getInterestOps(pfds[i].events), hook);
+                } else if (stream != null && stream.isPollable()) {
+                    hooked[i] = stream.addWakeup(hook);
+                    recheck |= !hooked[i];
+                }
+            }
+
+            while (!isChecked(requests)) {
+                park(0);
+            }
+            while (true) {
+                int n = collect(streams, requests, pfds, nfds);
+                if (n > 0 || timeout == 0) {
+                    return n;
+                }
+                long wait = 0;
+                if (timeout > 0) {
+                    wait = deadline - System.nanoTime();
+                    if (wait <= 0) {
+                        return 0;
+                    }
+                }
+                if (recheck && (wait == 0 || wait > RECHECK_INTERVAL * 1_000_000L)) {
+                    wait = RECHECK_INTERVAL * 1_000_000L;
+                }
+                park(wait);
+            }
+        } finally {
+            for (int i = 0; i < nfds; i++) {
+                if (requests[i] != null) {
+                    selector.remove(requests[i]);
+                } else if (hooked[i]) {
+                    streams[i].removeWakeup(hook);
+                }
+            }
+        }
+    }
+
+    // parks for up to nanos nanoseconds, or until unparked if nanos is 0
+    private void park(long nanos) throws PosixException {
+        if (nanos == 0) {
+            LockSupport.park(this);
+        } else {
+            LockSupport.parkNanos(this, nanos);
+        }
+        if (Thread.interrupted()) {
+            throw new PosixException(Errno.EINTR);
+        }
+    }
+
+    // the selector thread looked at every socket at least once
+    private static boolean isChecked(SelectorThread.Request[] requests) {
+        for (SelectorThread.Request request : requests) {
+            if (request != null && !request.isChecked()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int collect(Stream[] streams, SelectorThread.Request[] requests, Pollfd[] pfds, int nfds) throws PosixException {
+        int n = 0;
+        for (int i = 0; i < nfds; i++) {
+            Pollfd pfd = pfds[i];
+            SelectorThread.Request request = requests[i];
+            if (request != null) {
+                int revents = 0;
+                if (request.isInvalid()) {
+                    revents = Poll.POLLNVAL;
+                } else if (request.isReady()) {
+                    NetworkStream stream = (NetworkStream) streams[i];
+                    revents = stream.getPollEvents(request.getReadyOps()) & (pfd.events | Poll.POLLERR | Poll.POLLHUP);
+                }
+                pfd.revents = (short) revents;
+            } else if (streams[i] != null) {
+                pfd.revents = (short) streams[i].poll(pfd.events);
+            }
+            if (pfd.revents != 0) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.posix.api.io;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.graalvm.vm.posix.api.Errno;
+import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.util.log.Trace;
+
+/**
+ * The single selector of a {@link org.graalvm.vm.posix.api.Posix} instance which waits for socket
+ * readiness on behalf of guest threads. A guest thread adds a one-shot {@link Request} and parks
+ * until the selector thread completes it, so a virtual thread does not hold on to its carrier while
+ * it waits. The selector and its thread are created on first use and go away with {@link #close}.
+ */
+public class SelectorThread {
+    private static final Logger log = Trace.create(SelectorThread.class);
+
+    private final Queue<Request> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Request> removed = new ConcurrentLinkedQueue<>();
+
+    private Selector selector;
+    private Thread thread;
+    private boolean closed;
+
+    /**
+     * Interest in the readiness of one channel. A request is checked once the selector looked at
+     * the channel at least once after it was added, and it is ready once one of its operations was
+     * selected. The callback runs whenever one of these changes.
+     */
+    public static class Request {
+        private final SelectableChannel channel;
+        private final int ops;
+        private final Runnable callback;
+
+        private volatile boolean checked;
+        private volatile int readyOps;
+        private volatile boolean invalid;
+
+        private Request(SelectableChannel channel, int ops, Runnable callback) {
+            this.channel = channel;
+            this.ops = ops;
+            this.callback = callback;
+        }
+
+        public boolean isChecked() {
+            return checked;
+        }
+
+        public boolean isReady() {
+            return readyOps != 0;
+        }
+
+        public int getReadyOps() {
+            return readyOps;
+        }
+
+        /**
+         * Returns true if the channel was closed before it became ready.
+         */
+        public boolean isInvalid() {
+            return invalid;
+        }
+
+        boolean isDone() {
+            return readyOps != 0 || invalid;
+        }
+
+        void check() {
+            checked = true;
+            callback.run();
+        }
+
+        void complete(int ready) {
+            readyOps = ready;
+            checked = true;
+            callback.run();
+        }
+
+        void invalidate() {
+            invalid = true;
+            checked = true;
+            callback.run();
+        }
+    }
+
+    /**
+     * Starts to wait until channel is ready for one of ops and runs callback on the selector thread
+     * when that or the first check happens. The request has to be passed to {@link #remove} if it
+     * is no longer needed before it is done.
+     */
+    public Request add(SelectableChannel channel, int ops, Runnable callback) throws PosixException {
+        Request request = new Request(channel, ops, callback);
+        Selector sel;
+        synchronized (this) {
+            // once closed is set, the selector thread drains every request added before
+            sel = start();
+            added.add(request);
+        }
+        sel.wakeup();
+        return request;
+    }
+
+    public void remove(Request request) {
+        if (request.isDone()) {
+            return;
+        }
+        Selector sel;
+        synchronized (this) {
+            sel = selector;
+        }
+        if (sel != null) {
+            removed.add(request);
+            sel.wakeup();
+        }
+    }
+
+    /**
+     * Parks the calling thread until channel is ready for one of ops. Returns the ready operations.
+     */
+    public int await(SelectableChannel channel, int ops) throws PosixException {
+        Request request = park(channel, ops, false);
+        if (request.isInvalid()) {
+            throw new PosixException(Errno.EBADF);
+        }
+        return request.getReadyOps();
+    }
+
+    /**
+     * Returns the operations of ops which the channel is ready for right now, or -1 if the channel
+     * is closed.
+     */
+    public int check(SelectableChannel channel, int ops) throws PosixException {
+        Request request = park(channel, ops, true);
+        return request.isInvalid() ? -1 : request.getReadyOps();
+    }
+
+    private Request park(SelectableChannel channel, int ops, boolean once) throws PosixException {
+        Thread self = Thread.currentThread();
+        Request request = add(channel, ops, () -> LockSupport.unpark(self));
+        try {
+            while (once ? !request.isChecked() : !request.isDone()) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new PosixException(Errno.EINTR);
+                }
+            }
+            return request;
+        } finally {
+            remove(request);
+        }
+    }
+
+    private synchronized Selector start() throws PosixException {
+        if (closed) {
+            throw new PosixException(Errno.EBADF);
+        }
+        if (selector == null) {
+            try {
+                selector = Selector.open();
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Cannot create selector: " + e.getMessage(), e);
+                throw new PosixException(Errno.ENOMEM);
+            }
+            Selector sel = selector;
+            thread = new Thread(() -> run(sel), "socket-selector");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return selector;
+    }
+
+    /**
+     * Closes the selector and stops its thread. Pending requests are invalidated.
+     */
+    public void close() {
+        Selector sel;
+        Thread t;
+        synchronized (this) {
+            closed = true;
+            sel = selector;
+            t = thread;
+            selector = null;
+            thread = null;
+        }
+        if (sel == null) {
+            return;
+        }
+        try {
+            sel.close();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Cannot close selector: " + e.getMessage(), e);
+        }
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Request> waiters(SelectionKey key) {
+        return (List<Request>) key.attachment();
+    }
+
+    // the union of the operations which the remaining waiters of key are interested in
+    private static void update(SelectionKey key) {
+        int ops = 0;
+        for (Request request : waiters(key)) {
+            ops |= request.ops;
+        }
+        try {
+            key.interestOps(ops);
+        } catch (CancelledKeyException e) {
+            // the channel was closed, its waiters are invalidated after the next select
+        }
+    }
+
+    private void run(Selector sel) {
+        // keys with at least one waiter; a closed channel drops its key without ever selecting it
+        Set<SelectionKey> waiting = new HashSet<>();
+        List<Request> fresh = new ArrayList<>();
+        try {
+            while (true) {
+                for (Request request = added.poll(); request != null; request = added.poll()) {
+                    SelectionKey key = request.channel.keyFor(sel);
+                    try {
+                        if (key == null) {
+                            List<Request> waiters = new ArrayList<>();
+                            waiters.add(request);
+                            key = request.channel.register(sel, request.ops, waiters);
+                        } else {
+                            waiters(key).add(request);
+                            key.interestOps(key.interestOps() | request.ops);
+                        }
+                    } catch (ClosedChannelException | CancelledKeyException e) {
+                        request.invalidate();
+                        continue;
+                    }
+                    waiting.add(key);
+                    fresh.add(request);
+                }
+                for (Request request = removed.poll(); request != null; request = removed.poll()) {
+                    SelectionKey key = request.channel.keyFor(sel);
+                    if (key != null && waiters(key).remove(request)) {
+                        update(key);
+                    }
+                }
+
+                // new requests have to be checked before the selector may block
+                if (fresh.isEmpty()) {
+                    sel.select();
+                } else {
+                    sel.selectNow();
+                }
+
+                for (SelectionKey key : sel.selectedKeys()) {
+                    int ready;
+                    try {
+                        ready = key.readyOps();
+                    } catch (CancelledKeyException e) {
+                        continue;
+                    }
+                    for (Iterator<Request> i = waiters(key).iterator(); i.hasNext();) {
+                        Request request = i.next();
+                        if ((request.ops & ready) != 0) {
+                            i.remove();
+                            request.complete(request.ops & ready);
+                        }
+                    }
+                    update(key);
+                }
+                sel.selectedKeys().clear();
+
+                for (Iterator<SelectionKey> i = waiting.iterator(); i.hasNext();) {
+                    SelectionKey key = i.next();
+                    if (!key.isValid()) {
+                        for (Request request : waiters(key)) {
+                            request.invalidate();
+                        }
+                        waiters(key).clear();
+                    }
+                    if (waiters(key).isEmpty()) {
+                        i.remove();
+                    }
+                }
+
+                for (Request request : fresh) {
+                    if (!request.isDone()) {
+                        request.check();
+                    }
+                }
+                fresh.clear();
+            }
+        } catch (ClosedSelectorException e) {
+            // closed by close()
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Selector failed: " + e.getMessage(), e);
+        } finally {
+            for (SelectionKey key : waiting) {
+                for (Request request : waiters(key)) {
+                    request.invalidate();
+                }
+            }
+            for (Request request = added.poll(); request != null; request = added.poll()) {
+                request.invalidate();
+            }
+        }
+    }
+}
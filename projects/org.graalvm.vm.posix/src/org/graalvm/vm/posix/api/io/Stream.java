@@ -40,11 +40,20 @@
  */
 package org.graalvm.vm.posix.api.io;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import org.graalvm.vm.posix.api.Errno;
 import org.graalvm.vm.posix.api.MemoryFaultException;
 import org.graalvm.vm.posix.api.PosixException;
 import org.graalvm.vm.posix.api.PosixPointer;
 import org.graalvm.vm.posix.api.io.tty.Kd;
+import org.graalvm.vm.util.BitTest;
 
 public abstract class Stream {
     public static final int SEEK_SET = 0;
@@ -53,7 +62,28 @@ public abstract class Stream {
 
     protected long statusFlags;
 
+    private final List<Runnable> wakeups = new CopyOnWriteArrayList<>();
+
     private int refcnt = 0;
+    private volatile boolean closed = false;
+
+    // bounce buffer for pointers which do not expose their memory as a single array
+    private static final int MAX_STAGING_SIZE = 1024 * 1024;
+    private static final int TRANSFER_CHUNK = 64 * 1024;
+    private static final ThreadLocal<byte[]> staging = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    protected static byte[] staging(int length) {
+        byte[] buf = staging.get();
+        if (buf.length >= length) {
+            return buf;
+        } else if (length > MAX_STAGING_SIZE) {
+            return new byte[length];
+        } else {
+            buf = new byte[Math.max(length, Math.min(buf.length * 2, MAX_STAGING_SIZE))];
+            staging.set(buf);
+            return buf;
+        }
+    }
 
     public void addref() {
         refcnt++;
@@ -63,10 +93,23 @@ public abstract class Stream {
         assert refcnt > 0;
         refcnt--;
         if (refcnt == 0) {
-            close();
+            closed = true;
+            try {
+                close();
+            } finally {
+                // let waiters drop this stream
+                wakeup();
+            }
         }
     }
 
+    /**
+     * Returns true once the last file descriptor referring to this stream was closed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
     public int read(PosixPointer buf, int length) throws PosixException {
         if (buf == null) {
             if (length == 0) {
@@ -79,14 +122,18 @@ public abstract class Stream {
         if (buf.hasMemory(length)) {
             return read(buf.getMemory(), buf.getOffset(), length);
         } else {
-            byte[] b = new byte[length];
-            int val = read(b, 0, length);
-            PosixPointer p = buf;
-            for (int i = 0; i < val; i++) {
-                p.setI8(b[i]);
-                p = p.add(1);
-            }
-            return val;
+            // if a fault happens, only the bytes stored before it are consumed
+            return read((b, off, len) -> store(buf, b, off, len), length);
+        }
+    }
+
+    // copies up to length bytes to buf and stops at a fault
+    private static int store(PosixPointer buf, byte[] b, int offset, int length) throws PosixException {
+        try {
+            return buf.setBytes(b, offset, length);
+        } catch (MemoryFaultException e) {
+            // setBytes only faults if not even the first byte could be stored
+            throw new PosixException(Errno.EFAULT);
         }
     }
 
@@ -102,24 +149,16 @@ public abstract class Stream {
         if (buf.hasMemory(length)) {
             return write(buf.getMemory(), buf.getOffset(), length);
         } else {
-            byte[] b = new byte[length];
-            PosixPointer p = buf;
-            int i = 0;
+            byte[] b = staging(length);
+            int n;
             try {
-                for (i = 0; i < length; i++) {
-                    b[i] = p.getI8();
-                    p = p.add(1);
-                }
-            } catch (MemoryFaultException e) {
                 // if a fault happens, stop writing there
+                n = buf.getBytes(b, 0, length);
+            } catch (MemoryFaultException e) {
                 // only throw exception if no data could be read
-                if (i == 0) {
-                    throw new PosixException(Errno.EFAULT);
-                } else {
-                    return write(b, 0, i);
-                }
+                throw new PosixException(Errno.EFAULT);
             }
-            return write(b, 0, length);
+            return write(b, 0, n);
         }
     }
 
@@ -135,14 +174,12 @@ public abstract class Stream {
         if (buf.hasMemory(length)) {
             return pread(buf.getMemory(), buf.getOffset(), length, offset);
         } else {
-            byte[] b = new byte[length];
+            byte[] b = staging(length);
             int val = pread(b, 0, length, offset);
-            PosixPointer p = buf;
-            for (int i = 0; i < val; i++) {
-                p.setI8(b[i]);
-                p = p.add(1);
+            if (val <= 0) {
+                return val;
             }
-            return val;
+            return store(buf, b, 0, val);
         }
     }
 
@@ -158,13 +195,14 @@ public abstract class Stream {
         if (buf.hasMemory(length)) {
             return pwrite(buf.getMemory(), buf.getOffset(), length, offset);
         } else {
-            byte[] b = new byte[length];
-            PosixPointer p = buf;
-            for (int i = 0; i < length; i++) {
-                b[i] = p.getI8();
-                p = p.add(1);
+            byte[] b = staging(length);
+            int n;
+            try {
+                n = buf.getBytes(b, 0, length);
+            } catch (MemoryFaultException e) {
+                throw new PosixException(Errno.EFAULT);
             }
-            return pwrite(b, 0, length, offset);
+            return pwrite(b, 0, n, offset);
         }
     }
 
@@ -232,6 +270,55 @@ public abstract class Stream {
         statusFlags = flags;
     }
 
+    /**
+     * Returns true if the readiness of this stream can change. Regular files are always ready for
+     * reading and writing, and epoll refuses them.
+     */
+    public boolean isPollable() {
+        return false;
+    }
+
+    /**
+     * Returns the subset of events (POLLIN, POLLOUT) for which this stream is ready right now,
+     * together with POLLERR and POLLHUP if they apply. This never blocks.
+     */
+    @SuppressWarnings("unused")
+    public int poll(int events) throws PosixException {
+        return events & (Poll.POLLIN | Poll.POLLOUT | Poll.POLLRDNORM | Poll.POLLWRNORM);
+    }
+
+    /**
+     * Returns true if this stream runs its wakeup hooks whenever its readiness may have changed.
+     * Streams which cannot tell have to be checked with {@link #poll} periodically while waiting.
+     */
+    protected boolean hasWakeups() {
+        return false;
+    }
+
+    /**
+     * Registers a hook which runs whenever the readiness of this stream may have changed. Returns
+     * false and does not register anything if the stream has no wakeups.
+     */
+    public boolean addWakeup(Runnable hook) {
+        if (!hasWakeups()) {
+            return false;
+        }
+        wakeups.add(hook);
+        return true;
+    }
+
+    public void removeWakeup(Runnable hook) {
+        wakeups.remove(hook);
+    }
+
+    protected void wakeup() {
+        if (!wakeups.isEmpty()) {
+            for (Runnable hook : wakeups) {
+                hook.run();
+            }
+        }
+    }
+
     @SuppressWarnings("unused")
     public PosixPointer mmap(long size, int prot, int flags, long off) throws PosixException {
         throw new PosixException(Errno.ENOMEM);
@@ -246,39 +333,188 @@ public abstract class Stream {
         throw new PosixException(Errno.EINVAL);
     }
 
+    /**
+     * Returns a channel which reads this stream at the current file position, or null if there is
+     * none. A {@link FileChannel} allows {@link #transfer} to hand the data to the host kernel.
+     */
+    protected ReadableByteChannel getReadableChannel() {
+        return null;
+    }
+
+    /**
+     * Returns a channel which writes this stream at the current file position, or null if there is
+     * none.
+     */
+    protected WritableByteChannel getWritableChannel() {
+        return null;
+    }
+
+    /**
+     * Blocks until the channel returned by {@link #getWritableChannel} accepts data again. Only
+     * streams whose channel is non-blocking have to wait here.
+     */
+    @SuppressWarnings("unused")
+    protected void awaitWritable() throws PosixException {
+        // nothing to do
+    }
+
+    /**
+     * Returns how many bytes a write to this stream could take right now, or
+     * {@link Integer#MAX_VALUE} if this is not known.
+     */
+    protected int getWriteSpace() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Consumer for {@link Stream#read(Sink, int)}.
+     */
+    protected interface Sink {
+        /**
+         * Takes up to length bytes from buf and returns how many were taken.
+         */
+        int accept(byte[] buf, int offset, int length) throws PosixException;
+    }
+
+    /**
+     * Reads up to length bytes at the file position, passes them to sink and returns how many bytes
+     * the sink took. Only those bytes are consumed: seekable streams move their file position back
+     * by the rest, other streams which can give data back override this.
+     */
+    protected int read(Sink sink, int length) throws PosixException {
+        byte[] buf = staging(length);
+        int n = read(buf, 0, length);
+        if (n <= 0) {
+            return n;
+        }
+        int taken;
+        try {
+            taken = sink.accept(buf, 0, n);
+        } catch (PosixException | RuntimeException e) {
+            unread(n);
+            throw e;
+        }
+        if (taken < n) {
+            unread(n - taken);
+        }
+        return taken;
+    }
+
+    private void unread(int length) {
+        try {
+            lseek(-length, SEEK_CUR);
+        } catch (PosixException e) {
+            // cannot give the data back, it is lost
+        }
+    }
+
     public long sendfile(Stream out, long offset, long count) throws PosixException {
-        byte[] buf = new byte[8192];
+        return transfer(offset, out, -1, count);
+    }
+
+    /**
+     * Copies up to count bytes from this stream to out. An offset of -1 reads or writes at the file
+     * position of the stream and advances it, any other offset leaves the file position untouched.
+     * If this stream is backed by a file and out by a host channel, the data never enters the Java
+     * heap.
+     */
+    public long transfer(long inOffset, Stream out, long outOffset, long count) throws PosixException {
+        ReadableByteChannel src = getReadableChannel();
+        WritableByteChannel dst = out.getWritableChannel();
+        if (src instanceof FileChannel && dst != null && (outOffset == -1 || dst instanceof FileChannel)) {
+            try {
+                return transferTo((FileChannel) src, inOffset, out, dst, outOffset, count);
+            } catch (IOException e) {
+                throw new PosixException(Errno.EIO);
+            }
+        } else {
+            return copy(inOffset, out, outOffset, count);
+        }
+    }
+
+    private static long transferTo(FileChannel in, long inOffset, Stream out, WritableByteChannel dst, long outOffset, long count) throws IOException, PosixException {
+        long pos = inOffset == -1 ? in.position() : inOffset;
+        long n;
+        if (outOffset == -1) {
+            n = in.transferTo(pos, count, dst);
+            while (n == 0 && count > 0 && pos < in.size() && !BitTest.test(out.statusFlags, Fcntl.O_NONBLOCK)) {
+                out.awaitWritable();
+                n = in.transferTo(pos, count, dst);
+            }
+        } else {
+            // FileChannel.transferFrom does not write beyond the end of dst, so copy positionally
+            n = copyPositional(in, pos, (FileChannel) dst, outOffset, count);
+        }
+        if (n == 0 && count > 0 && pos < in.size() && BitTest.test(out.statusFlags, Fcntl.O_NONBLOCK)) {
+            throw new PosixException(Errno.EAGAIN);
+        }
+        if (inOffset == -1) {
+            in.position(pos + n);
+        }
+        return n;
+    }
+
+    // copies with positional reads and writes only, so the position of out stays untouched for
+    // concurrent writes
+    private static long copyPositional(FileChannel in, long inOffset, FileChannel out, long outOffset, long count) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(TRANSFER_CHUNK, count));
         long bytes = 0;
-        long oldoff = 0;
-        if (offset != -1) {
-            oldoff = lseek(0, SEEK_CUR);
+        while (bytes < count) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), count - bytes));
+            if (in.read(buf, inOffset + bytes) <= 0) {
+                break;
+            }
+            buf.flip();
+            while (buf.hasRemaining()) {
+                bytes += out.write(buf, outOffset + bytes);
+            }
         }
+        return bytes;
+    }
+
+    private long copy(long inOffset, Stream out, long outOffset, long count) throws PosixException {
+        boolean nonblocking = BitTest.test(out.statusFlags, Fcntl.O_NONBLOCK);
+        byte[] buf = inOffset == -1 ? null : staging(TRANSFER_CHUNK);
+        long bytes = 0;
         while (bytes < count) {
-            if (bytes + buf.length <= count) {
-                int n = read(buf, 0, buf.length);
-                if (n == 0) {
+            int len = (int) Math.min(TRANSFER_CHUNK, count - bytes);
+            if (nonblocking) {
+                // never read more than the output takes, not every input can give data back
+                len = Math.min(len, out.getWriteSpace());
+                if (len == 0) {
+                    if (bytes == 0) {
+                        throw new PosixException(Errno.EAGAIN);
+                    }
                     break;
                 }
-                assert n <= buf.length;
-                out.write(buf, 0, n);
-                bytes += n;
-                if (n != buf.length) {
-                    break;
+            }
+            long pos = outOffset == -1 ? -1 : outOffset + bytes;
+            int n;
+            try {
+                if (inOffset == -1) {
+                    n = read((b, off, length) -> pos == -1 ? out.write(b, off, length) : out.pwrite(b, off, length, pos), len);
+                } else {
+                    int read = pread(buf, 0, len, inOffset + bytes);
+                    if (read <= 0) {
+                        break;
+                    }
+                    n = pos == -1 ? out.write(buf, 0, read) : out.pwrite(buf, 0, read, pos);
                 }
-            } else {
-                long cnt = count - bytes;
-                assert cnt < buf.length;
-                int n = read(buf, 0, (int) cnt);
-                if (n == 0) {
-                    break;
+            } catch (PosixException e) {
+                if (bytes == 0) {
+                    throw e;
+                } else {
+                    return bytes;
                 }
-                out.write(buf, 0, n);
-                bytes += n;
+            }
+            if (n <= 0) {
+                break;
+            }
+            bytes += n;
+            if (n != len) {
                 break;
             }
-        }
-        if (offset != -1) {
-            lseek(oldoff, SEEK_SET);
         }
         return bytes;
     }
@@ -40,12 +40,17 @@
  */
 package org.graalvm.vm.posix.api.linux;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
 
 import org.graalvm.vm.posix.api.Errno;
+import org.graalvm.vm.posix.api.MemoryFaultException;
 import org.graalvm.vm.posix.api.PosixException;
 import org.graalvm.vm.posix.api.PosixPointer;
+import org.graalvm.vm.posix.api.Timespec;
+import org.graalvm.vm.util.BitTest;
 
 public class Futex {
     // @formatter:off
@@ -138,52 +143,332 @@ public class Futex {
     }
     // @formatter:on
 
-    private final Map<Long, Object> futexes = new ConcurrentHashMap<>();
+    private static final int BUCKET_BITS = 8;
+    private static final int BUCKET_COUNT = 1 << BUCKET_BITS;
+
+    /**
+     * A thread blocked in FUTEX_WAIT. The address changes when the waiter is requeued. Both fields
+     * are only modified while holding the lock of the bucket the waiter is in.
+     */
+    private static class Waiter {
+        final Thread thread = Thread.currentThread();
+        final int bitset;
+        volatile long address;
+        volatile Bucket bucket;
+        volatile boolean woken;
+
+        Waiter(long address, int bitset, Bucket bucket) {
+            this.address = address;
+            this.bitset = bitset;
+            this.bucket = bucket;
+        }
+    }
+
+    private static class Bucket {
+        final int index;
+        final List<Waiter> waiters = new ArrayList<>();
+
+        Bucket(int index) {
+            this.index = index;
+        }
+    }
+
+    private final Bucket[] buckets = new Bucket[BUCKET_COUNT];
+
+    public Futex() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new Bucket(i);
+        }
+    }
+
+    private Bucket bucket(long address) {
+        long h = address * 0x9E3779B97F4A7C15L;
+        return buckets[(int) (h >>> (64 - BUCKET_BITS))];
+    }
 
-    @SuppressWarnings("unused")
     public int futex(PosixPointer uaddr, int futex_op, int val, PosixPointer timeout, PosixPointer uaddr2, int val3) throws PosixException {
-        switch (futex_op) {
-            case FUTEX_WAKE:
-            case FUTEX_WAKE_PRIVATE: {
-                Object o = futexes.remove(uaddr.getAddress());
-                if (o != null) {
-                    synchronized (o) {
-                        if (val == 1) {
-                            o.notify();
-                        } else {
-                            o.notifyAll();
-                        }
-                    }
-                    return val;
-                } else {
-                    return 0;
+        if (uaddr == null) {
+            throw new PosixException(Errno.EFAULT);
+        }
+        boolean realtime = BitTest.test(futex_op, FUTEX_CLOCK_REALTIME);
+        int cmd = futex_op & FUTEX_CMD_MASK;
+        if (realtime && cmd != FUTEX_WAIT && cmd != FUTEX_WAIT_BITSET) {
+            throw new PosixException(Errno.ENOSYS);
+        }
+        try {
+            switch (cmd) {
+                case FUTEX_WAIT:
+                    return wait(uaddr, val, getDeadline(timeout, false, false), FUTEX_BITSET_MATCH_ANY);
+                case FUTEX_WAIT_BITSET:
+                    return wait(uaddr, val, getDeadline(timeout, true, realtime), val3);
+                case FUTEX_WAKE:
+                    return wake(uaddr.getAddress(), val, FUTEX_BITSET_MATCH_ANY);
+                case FUTEX_WAKE_BITSET:
+                    return wake(uaddr.getAddress(), val, val3);
+                case FUTEX_REQUEUE:
+                    return requeue(uaddr, val, val2(timeout), uaddr2, false, 0);
+                case FUTEX_CMP_REQUEUE:
+                    return requeue(uaddr, val, val2(timeout), uaddr2, true, val3);
+                case FUTEX_WAKE_OP:
+                    return wakeOp(uaddr, val, val2(timeout), uaddr2, val3);
+                default:
+                    throw new PosixException(Errno.ENOSYS);
+            }
+        } catch (MemoryFaultException e) {
+            throw new PosixException(Errno.EFAULT);
+        }
+    }
+
+    // the requeue and wake-op commands pass a second count instead of a timeout
+    private static int val2(PosixPointer timeout) {
+        return timeout == null ? 0 : (int) timeout.getAddress();
+    }
+
+    // deadline in System.nanoTime, or 0 to wait forever
+    private static long getDeadline(PosixPointer timeout, boolean absolute, boolean realtime) throws PosixException {
+        if (timeout == null) {
+            return 0;
+        }
+        Timespec ts = new Timespec();
+        ts.read64(timeout);
+        if (ts.tv_sec < 0 || ts.tv_nsec < 0 || ts.tv_nsec >= 1_000_000_000L) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        long now = System.nanoTime();
+        long nanos = ts.tv_sec * 1_000_000_000L + ts.tv_nsec;
+        if (absolute) {
+            // CLOCK_MONOTONIC is System.nanoTime
+            nanos = realtime ? nanos - System.currentTimeMillis() * 1_000_000L : nanos - now;
+        }
+        long deadline = now + nanos;
+        return deadline == 0 ? 1 : deadline;
+    }
+
+    private int wait(PosixPointer uaddr, int val, long deadline, int bitset) throws PosixException {
+        if (bitset == 0) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        Bucket bucket = bucket(uaddr.getAddress());
+        Waiter waiter = new Waiter(uaddr.getAddress(), bitset, bucket);
+        synchronized (bucket) {
+            // a waker has to take the same lock, so it cannot slip in between check and enqueue
+            if (uaddr.getI32() != val) {
+                throw new PosixException(Errno.EAGAIN);
+            }
+            bucket.waiters.add(waiter);
+        }
+
+        int errno = 0;
+        while (!waiter.woken) {
+            if (deadline != 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    errno = Errno.ETIMEDOUT;
+                    break;
                 }
+                LockSupport.parkNanos(this, remaining);
+            } else {
+                LockSupport.park(this);
             }
-            case FUTEX_WAIT:
-            case FUTEX_WAIT_PRIVATE: {
-                // is this racy?
-                Object newo = new Object();
-                Object o = futexes.putIfAbsent(uaddr.getAddress(), newo);
-                if (o == null) {
-                    o = newo;
+            if (Thread.interrupted()) {
+                errno = Errno.EINTR;
+                break;
+            }
+        }
+
+        if (errno != 0 && !dequeue(waiter)) {
+            // woken concurrently, the wakeup counts
+            return 0;
+        }
+        if (errno != 0) {
+            throw new PosixException(errno);
+        }
+        return 0;
+    }
+
+    // removes a waiter which gave up; returns false if it was woken in the meantime
+    private static boolean dequeue(Waiter waiter) {
+        while (true) {
+            Bucket bucket = waiter.bucket;
+            synchronized (bucket) {
+                if (waiter.bucket != bucket) {
+                    // requeued concurrently
+                    continue;
                 }
-                synchronized (o) {
-                    if (uaddr.getI32() != val) {
-                        if (o == newo) {
-                            futexes.remove(uaddr.getAddress());
-                        }
-                        throw new PosixException(Errno.EAGAIN);
-                    }
-                    try {
-                        o.wait();
-                    } catch (InterruptedException e) {
-                        // nothing
+                if (waiter.woken) {
+                    return false;
+                }
+                bucket.waiters.remove(waiter);
+                return true;
+            }
+        }
+    }
+
+    // removes up to n matching waiters from the bucket; the caller holds the lock of the bucket
+    private static int wake(Bucket bucket, long address, int n, int bitset, List<Waiter> woken) {
+        int count = 0;
+        Iterator<Waiter> it = bucket.waiters.iterator();
+        while (count < n && it.hasNext()) {
+            Waiter waiter = it.next();
+            if (waiter.address == address && (waiter.bitset & bitset) != 0) {
+                it.remove();
+                waiter.woken = true;
+                woken.add(waiter);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void unpark(List<Waiter> woken) {
+        for (Waiter waiter : woken) {
+            LockSupport.unpark(waiter.thread);
+        }
+    }
+
+    private int wake(long address, int n, int bitset) throws PosixException {
+        if (bitset == 0) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        if (n <= 0) {
+            return 0;
+        }
+        Bucket bucket = bucket(address);
+        List<Waiter> woken = new ArrayList<>();
+        int count;
+        synchronized (bucket) {
+            count = wake(bucket, address, n, bitset, woken);
+        }
+        unpark(woken);
+        return count;
+    }
+
+    /**
+     * Runs the action with the locks of both buckets held. The locks are always taken in the order
+     * of the bucket index, so two threads operating on the same pair of futexes cannot deadlock.
+     */
+    private static <T> T locked(Bucket b1, Bucket b2, Locked<T> action) throws PosixException {
+        Bucket first = b1.index <= b2.index ? b1 : b2;
+        Bucket second = b1.index <= b2.index ? b2 : b1;
+        synchronized (first) {
+            synchronized (second) {
+                return action.run();
+            }
+        }
+    }
+
+    private interface Locked<T> {
+        T run() throws PosixException;
+    }
+
+    private int requeue(PosixPointer uaddr, int nrWake, int nrRequeue, PosixPointer uaddr2, boolean cmp, int val3) throws PosixException {
+        if (nrWake < 0 || nrRequeue < 0) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        if (uaddr2 == null) {
+            throw new PosixException(Errno.EFAULT);
+        }
+        long address = uaddr.getAddress();
+        long address2 = uaddr2.getAddress();
+        Bucket from = bucket(address);
+        Bucket to = bucket(address2);
+        List<Waiter> woken = new ArrayList<>();
+        int[] requeued = {0};
+        int count = locked(from, to, () -> {
+            if (cmp && uaddr.getI32() != val3) {
+                throw new PosixException(Errno.EAGAIN);
+            }
+            int n = wake(from, address, nrWake, FUTEX_BITSET_MATCH_ANY, woken);
+            Iterator<Waiter> it = from.waiters.iterator();
+            while (requeued[0] < nrRequeue && it.hasNext()) {
+                Waiter waiter = it.next();
+                if (waiter.address == address) {
+                    waiter.address = address2;
+                    if (to != from) {
+                        it.remove();
+                        waiter.bucket = to;
+                        to.waiters.add(waiter);
                     }
+                    requeued[0]++;
+                }
+            }
+            return n;
+        });
+        unpark(woken);
+        // unlike FUTEX_REQUEUE, FUTEX_CMP_REQUEUE also counts the requeued waiters
+        return cmp ? count + requeued[0] : count;
+    }
+
+    private int wakeOp(PosixPointer uaddr, int nrWake, int nrWake2, PosixPointer uaddr2, int val3) throws PosixException {
+        if (uaddr2 == null) {
+            throw new PosixException(Errno.EFAULT);
+        }
+        int op = (val3 >>> 28) & 0x7;
+        boolean shift = BitTest.test(val3 >>> 28, FUTEX_OP_OPARG_SHIFT);
+        int cmp = (val3 >>> 24) & 0xf;
+        int oparg = (val3 << 8) >> 20;
+        int cmparg = (val3 << 20) >> 20;
+        if (shift) {
+            oparg = 1 << (oparg & 31);
+        }
+        if (op > FUTEX_OP_XOR || cmp > FUTEX_OP_CMP_GE) {
+            throw new PosixException(Errno.ENOSYS);
+        }
+
+        long address = uaddr.getAddress();
+        long address2 = uaddr2.getAddress();
+        Bucket b1 = bucket(address);
+        Bucket b2 = bucket(address2);
+        List<Waiter> woken = new ArrayList<>();
+        int arg = oparg;
+        int count = locked(b1, b2, () -> {
+            int oldval;
+            int newval;
+            do {
+                oldval = uaddr2.getI32();
+                switch (op) {
+                    case FUTEX_OP_SET:
+                        newval = arg;
+                        break;
+                    case FUTEX_OP_ADD:
+                        newval = oldval + arg;
+                        break;
+                    case FUTEX_OP_OR:
+                        newval = oldval | arg;
+                        break;
+                    case FUTEX_OP_ANDN:
+                        newval = oldval & ~arg;
+                        break;
+                    default:
+                        newval = oldval ^ arg;
+                        break;
                 }
-                return 0;
+            } while (!uaddr2.cmpxchgI32(oldval, newval));
+
+            int n = wake(b1, address, nrWake, FUTEX_BITSET_MATCH_ANY, woken);
+            if (compare(cmp, oldval, cmparg)) {
+                n += wake(b2, address2, nrWake2, FUTEX_BITSET_MATCH_ANY, woken);
             }
+            return n;
+        });
+        unpark(woken);
+        return count;
+    }
+
+    private static boolean compare(int cmp, int oldval, int cmparg) {
+        switch (cmp) {
+            case FUTEX_OP_CMP_EQ:
+                return oldval == cmparg;
+            case FUTEX_OP_CMP_NE:
+                return oldval != cmparg;
+            case FUTEX_OP_CMP_LT:
+                return oldval < cmparg;
+            case FUTEX_OP_CMP_LE:
+                return oldval <= cmparg;
+            case FUTEX_OP_CMP_GT:
+                return oldval > cmparg;
             default:
-                throw new PosixException(Errno.ENOSYS);
+                return oldval >= cmparg;
         }
     }
 
@@ -224,7 +509,7 @@ public class Futex {
             case FUTEX_CMP_REQUEUE_PRIVATE:
                 return "FUTEX_CMP_REQUEUE_PRIVATE";
             case FUTEX_WAKE_OP_PRIVATE:
-                return "FUTEX_CMP_REQUEUE_PRIVATE";
+                return "FUTEX_WAKE_OP_PRIVATE";
             case FUTEX_LOCK_PI_PRIVATE:
                 return "FUTEX_LOCK_PI_PRIVATE";
             case FUTEX_UNLOCK_PI_PRIVATE:
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.posix.api.mem;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.graalvm.vm.util.io.Endianess;
+
+/**
+ * Private (MAP_PRIVATE) mapping of a file region. Reads are served from a read-only buffer which is
+ * typically backed by the OS page cache. On the first write to a page, the page is copied into a
+ * private array and all further accesses to that page use the private copy. Pages which are never
+ * written therefore never occupy any Java heap.
+ *
+ * The accessors use big endian byte order, like all other {@link org.graalvm.vm.posix.api.PosixPointer
+ * PosixPointer} implementations.
+ */
+public class CopyOnWriteMapping {
+    public static final int PAGE_SHIFT = 12;
+    public static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_OFFSET_MASK = PAGE_SIZE - 1;
+
+    private final ByteBuffer source;
+    private final int sourceSize;
+    private final long size;
+    private final AtomicReferenceArray<byte[]> pages;
+    private int privatePages;
+
+    public CopyOnWriteMapping(ByteBuffer source, long size) {
+        assert size == (int) size;
+        assert source.capacity() <= size;
+        this.source = source;
+        this.source.order(ByteOrder.BIG_ENDIAN);
+        this.sourceSize = source.capacity();
+        this.size = size;
+        this.pages = new AtomicReferenceArray<>((int) ((size + PAGE_SIZE - 1) >>> PAGE_SHIFT));
+        this.privatePages = 0;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of pages which were copied into private memory so far.
+     */
+    public synchronized int getPrivatePageCount() {
+        return privatePages;
+    }
+
+    public long getPrivateSize() {
+        return (long) getPrivatePageCount() * PAGE_SIZE;
+    }
+
+    /**
+     * Drops the private copies of all pages which lie completely within [offset, offset + length),
+     * so they show the file contents again (MADV_DONTNEED semantics for private file mappings).
+     */
+    public synchronized void discard(long offset, long length) {
+        long end = Math.min(offset + length, size);
+        int first = page(offset + PAGE_SIZE - 1);
+        int last = end == size ? page(end + PAGE_SIZE - 1) : page(end);
+        for (int idx = first; idx < last; idx++) {
+            if (pages.getAndSet(idx, null) != null) {
+                privatePages--;
+            }
+        }
+    }
+
+    private static int page(long offset) {
+        return (int) (offset >>> PAGE_SHIFT);
+    }
+
+    private static int pageOffset(long offset) {
+        return (int) offset & PAGE_OFFSET_MASK;
+    }
+
+    private static boolean crossesPage(long offset, int len) {
+        return pageOffset(offset) + len > PAGE_SIZE;
+    }
+
+    private void check(long offset, int len) {
+        if (offset < 0 || offset + len > size) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    private synchronized byte[] copy(int idx) {
+        byte[] page = pages.get(idx);
+        if (page != null) {
+            return page;
+        }
+        page = new byte[PAGE_SIZE];
+        long start = (long) idx << PAGE_SHIFT;
+        if (start < sourceSize) {
+            int len = (int) Math.min(PAGE_SIZE, sourceSize - start);
+            ByteBuffer buf = source.duplicate();
+            buf.position((int) start);
+            buf.get(page, 0, len);
+        }
+        pages.set(idx, page);
+        privatePages++;
+        return page;
+    }
+
+    private byte[] writablePage(long offset) {
+        int idx = page(offset);
+        byte[] page = pages.get(idx);
+        if (page == null) {
+            return copy(idx);
+        } else {
+            return page;
+        }
+    }
+
+    private byte source8(long offset) {
+        if (offset < sourceSize) {
+            return source.get((int) offset);
+        } else {
+            return 0;
+        }
+    }
+
+    private long slowGet(long offset, int len) {
+        long value = 0;
+        for (int i = 0; i < len; i++) {
+            value = (value << 8) | Byte.toUnsignedLong(getI8(offset + i));
+        }
+        return value;
+    }
+
+    private void slowSet(long offset, int len, long value) {
+        for (int i = 0; i < len; i++) {
+            setI8(offset + i, (byte) (value >>> (8 * (len - i - 1))));
+        }
+    }
+
+    public byte getI8(long offset) {
+        check(offset, 1);
+        byte[] page = pages.get(page(offset));
+        if (page != null) {
+            return page[pageOffset(offset)];
+        } else {
+            return source8(offset);
+        }
+    }
+
+    public short getI16(long offset) {
+        check(offset, 2);
+        if (crossesPage(offset, 2)) {
+            return (short) slowGet(offset, 2);
+        }
+        byte[] page = pages.get(page(offset));
+        if (page != null) {
+            return Endianess.get16bitBE(page, pageOffset(offset));
+        } else if (offset + 2 <= sourceSize) {
+            return source.getShort((int) offset);
+        } else {
+            return (short) slowGet(offset, 2);
+        }
+    }
+
+    public int getI32(long offset) {
+        check(offset, 4);
+        if (crossesPage(offset, 4)) {
+            return (int) slowGet(offset, 4);
+        }
+        byte[] page = pages.get(page(offset));
+        if (page != null) {
+            return Endianess.get32bitBE(page, pageOffset(offset));
+        } else if (offset + 4 <= sourceSize) {
+            return source.getInt((int) offset);
+        } else {
+            return (int) slowGet(offset, 4);
+        }
+    }
+
+    public long getI64(long offset) {
+        check(offset, 8);
+        if (crossesPage(offset, 8)) {
+            return slowGet(offset, 8);
+        }
+        byte[] page = pages.get(page(offset));
+        if (page != null) {
+            return Endianess.get64bitBE(page, pageOffset(offset));
+        } else if (offset + 8 <= sourceSize) {
+            return source.getLong((int) offset);
+        } else {
+            return slowGet(offset, 8);
+        }
+    }
+
+    public void setI8(long offset, byte val) {
+        check(offset, 1);
+        writablePage(offset)[pageOffset(offset)] = val;
+    }
+
+    public void setI16(long offset, short val) {
+        check(offset, 2);
+        if (crossesPage(offset, 2)) {
+            slowSet(offset, 2, val);
+        } else {
+            Endianess.set16bitBE(writablePage(offset), pageOffset(offset), val);
+        }
+    }
+
+    public void setI32(long offset, int val) {
+        check(offset, 4);
+        if (crossesPage(offset, 4)) {
+            slowSet(offset, 4, val);
+        } else {
+            Endianess.set32bitBE(writablePage(offset), pageOffset(offset), val);
+        }
+    }
+
+    public void setI64(long offset, long val) {
+        check(offset, 8);
+        if (crossesPage(offset, 8)) {
+            slowSet(offset, 8, val);
+        } else {
+            Endianess.set64bitBE(writablePage(offset), pageOffset(offset), val);
+        }
+    }
+}
@@ -163,4 +163,59 @@ public class Mman {
         }
         return result.stream().collect(Collectors.joining("|"));
     }
+
+    public static String msync(int flags) {
+        List<String> result = new ArrayList<>();
+        if (BitTest.test(flags, MS_ASYNC)) {
+            result.add("MS_ASYNC");
+        }
+        if (BitTest.test(flags, MS_INVALIDATE)) {
+            result.add("MS_INVALIDATE");
+        }
+        if (BitTest.test(flags, MS_SYNC)) {
+            result.add("MS_SYNC");
+        }
+        return result.stream().collect(Collectors.joining("|"));
+    }
+
+    public static String madvise(int advice) {
+        switch (advice) {
+            case MADV_NORMAL:
+                return "MADV_NORMAL";
+            case MADV_RANDOM:
+                return "MADV_RANDOM";
+            case MADV_SEQUENTIAL:
+                return "MADV_SEQUENTIAL";
+            case MADV_WILLNEED:
+                return "MADV_WILLNEED";
+            case MADV_DONTNEED:
+                return "MADV_DONTNEED";
+            case MADV_FREE:
+                return "MADV_FREE";
+            case MADV_REMOVE:
+                return "MADV_REMOVE";
+            case MADV_DONTFORK:
+                return "MADV_DONTFORK";
+            case MADV_DOFORK:
+                return "MADV_DOFORK";
+            case MADV_HWPOISON:
+                return "MADV_HWPOISON";
+            case MADV_SOFT_OFFLINE:
+                return "MADV_SOFT_OFFLINE";
+            case MADV_MERGEABLE:
+                return "MADV_MERGEABLE";
+            case MADV_UNMERGEABLE:
+                return "MADV_UNMERGEABLE";
+            case MADV_HUGEPAGE:
+                return "MADV_HUGEPAGE";
+            case MADV_NOHUGEPAGE:
+                return "MADV_NOHUGEPAGE";
+            case MADV_DONTDUMP:
+                return "MADV_DONTDUMP";
+            case MADV_DODUMP:
+                return "MADV_DODUMP";
+            default:
+                return Integer.toString(advice);
+        }
+    }
 }
@@ -53,6 +53,7 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ConnectionPendingException;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.NotYetConnectedException;
+import java.nio.channels.SelectionKey;
 import java.nio.channels.UnsupportedAddressTypeException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -60,9 +61,8 @@ import java.util.logging.Logger;
 import org.graalvm.vm.posix.api.Errno;
 import org.graalvm.vm.posix.api.PosixException;
 import org.graalvm.vm.posix.api.PosixPointer;
-import org.graalvm.vm.posix.api.io.Fcntl;
 import org.graalvm.vm.posix.api.io.Iovec;
-import org.graalvm.vm.util.BitTest;
+import org.graalvm.vm.posix.api.io.SelectorThread;
 import org.graalvm.vm.util.io.Endianess;
 import org.graalvm.vm.util.log.Trace;
 
@@ -71,30 +71,17 @@ public class DatagramSocketStream extends NetworkStream {
 
     private DatagramChannel socket;
 
-    public DatagramSocketStream() throws PosixException {
+    public DatagramSocketStream(SelectorThread selector) throws PosixException {
+        super(selector);
         try {
             socket = DatagramChannel.open();
+            socket.configureBlocking(false);
         } catch (IOException e) {
             log.log(Level.WARNING, "Cannot create socket: " + e.getMessage(), e);
             throw new PosixException(Errno.ENOMEM);
         }
     }
 
-    @Override
-    public void setFlags(int flags) throws PosixException {
-        try {
-            if (BitTest.test(flags, Fcntl.O_NONBLOCK) && socket.isBlocking()) {
-                socket.configureBlocking(false);
-            } else if (!BitTest.test(flags, Fcntl.O_NONBLOCK) && !socket.isBlocking()) {
-                socket.configureBlocking(true);
-            }
-        } catch (IOException e) {
-            log.log(Level.WARNING, "Error while changing stream flags: " + e.getMessage(), e);
-            throw new PosixException(Errno.EIO);
-        }
-        super.setFlags(flags);
-    }
-
     @Override
     public int setsockopt(int level, int option_name, int option_value) throws PosixException {
         try {
@@ -264,11 +251,60 @@ public class DatagramSocketStream extends NetworkStream {
         throw new PosixException(Errno.EOPNOTSUPP);
     }
 
+    private int read(ByteBuffer buf) throws IOException, PosixException {
+        touch();
+        int result = socket.read(buf);
+        while (result == 0 && isBlocking() && buf.hasRemaining()) {
+            await(SelectionKey.OP_READ);
+            result = socket.read(buf);
+        }
+        return result;
+    }
+
+    private int write(ByteBuffer buf) throws IOException, PosixException {
+        touch();
+        int result = socket.write(buf);
+        while (result == 0 && isBlocking() && buf.hasRemaining()) {
+            await(SelectionKey.OP_WRITE);
+            result = socket.write(buf);
+        }
+        if (result == 0 && buf.hasRemaining()) {
+            throw new PosixException(Errno.EAGAIN);
+        }
+        return result;
+    }
+
+    private SocketAddress receive(ByteBuffer buf) throws IOException, PosixException {
+        touch();
+        SocketAddress addr = socket.receive(buf);
+        while (addr == null) {
+            if (!isBlocking()) {
+                throw new PosixException(Errno.EAGAIN);
+            }
+            await(SelectionKey.OP_READ);
+            addr = socket.receive(buf);
+        }
+        return addr;
+    }
+
+    private int send(ByteBuffer buf, SocketAddress target) throws IOException, PosixException {
+        touch();
+        int result = socket.send(buf, target);
+        while (result == 0 && isBlocking() && buf.hasRemaining()) {
+            await(SelectionKey.OP_WRITE);
+            result = socket.send(buf, target);
+        }
+        if (result == 0 && buf.hasRemaining()) {
+            throw new PosixException(Errno.EAGAIN);
+        }
+        return result;
+    }
+
     @Override
     public int read(byte[] buf, int offset, int length) throws PosixException {
         ByteBuffer b = ByteBuffer.wrap(buf, offset, length);
         try {
-            int result = socket.read(b);
+            int result = read(b);
             if (result > 0) {
                 return result;
             } else if (result == 0) {
@@ -286,7 +322,7 @@ public class DatagramSocketStream extends NetworkStream {
     public int write(byte[] buf, int offset, int length) throws PosixException {
         ByteBuffer b = ByteBuffer.wrap(buf, offset, length);
         try {
-            return socket.write(b);
+            return write(b);
         } catch (NotYetConnectedException e) {
             throw new PosixException(Errno.ECONNRESET);
         } catch (IOException e) {
@@ -313,17 +349,10 @@ public class DatagramSocketStream extends NetworkStream {
             len += message.msg_iov[i].iov_len;
         }
         ByteBuffer buf = ByteBuffer.allocate(len);
-        for (int i = 0; i < message.msg_iovlen; i++) {
-            Iovec iov = message.msg_iov[i];
-            PosixPointer ptr = iov.iov_base;
-            for (int n = 0; n < iov.iov_len; n++) {
-                buf.put(ptr.getI8());
-                ptr = ptr.add(1);
-            }
-        }
+        gather(message.msg_iov, message.msg_iovlen, buf);
         buf.flip();
         try {
-            return socket.write(buf);
+            return write(buf);
         } catch (NotYetConnectedException e) {
             throw new PosixException(Errno.ECONNRESET);
         } catch (IOException e) {
@@ -346,18 +375,14 @@ public class DatagramSocketStream extends NetworkStream {
         if (message.hasMemory((int) length)) {
             buf = ByteBuffer.wrap(message.getMemory(), message.getOffset(), (int) length);
         } else {
-            byte[] b = new byte[(int) length];
-            PosixPointer p = message;
-            for (int i = 0; i < length; i++) {
-                b[i] = p.getI8();
-                p = p.add(1);
-            }
-            buf = ByteBuffer.wrap(b, 0, (int) length);
+            buf = ByteBuffer.allocate((int) length);
+            message.getBytes(buf, (int) length);
+            buf.flip();
         }
 
         SocketAddress target = getSocketAddress(dest_addr);
         try {
-            return socket.send(buf, target);
+            return send(buf, target);
         } catch (NotYetConnectedException e) {
             throw new PosixException(Errno.ENOTCONN);
         } catch (ClosedChannelException e) {
@@ -373,16 +398,11 @@ public class DatagramSocketStream extends NetworkStream {
         ByteBuffer buf = ByteBuffer.allocate((int) length);
         RecvResult result = new RecvResult();
         try {
-            SocketAddress addr = socket.receive(buf);
-            result.length = buf.position();
+            SocketAddress addr = receive(buf);
 
-            // transfer buffer
+            // transfer buffer; a fault after the first byte truncates the result
             buf.flip();
-            PosixPointer ptr = buffer;
-            for (int i = 0; i < result.length; i++) {
-                ptr.setI8(buf.get());
-                ptr = ptr.add(1);
-            }
+            result.length = buffer.setBytes(buf);
 
             if (addr instanceof InetSocketAddress) {
                 result.sa = getSockaddr(addr);
@@ -409,24 +429,12 @@ public class DatagramSocketStream extends NetworkStream {
 
         ByteBuffer buf = ByteBuffer.allocate(length);
         try {
-            SocketAddress addr = socket.receive(buf);
+            SocketAddress addr = receive(buf);
             length = buf.position();
 
-            // transfer buffer
+            // transfer buffer; a fault after the first byte truncates the result
             buf.flip();
-            int iovid = 0;
-            int iovpos = 0;
-            PosixPointer ptr = message.msg_iov[iovid].iov_base;
-            for (int i = 0; i < length; i++) {
-                ptr.setI8(buf.get());
-                ptr = ptr.add(1);
-                iovpos++;
-                if (iovpos >= message.msg_iov[iovid].iov_len) {
-                    iovid++;
-                    iovpos = 0;
-                    ptr = message.msg_iov[iovid].iov_base;
-                }
-            }
+            length = scatter(buf, message.msg_iov, message.msg_iov.length);
 
             message.msg_name = getSockaddr(addr);
             message.msg_control = null;
@@ -49,17 +49,35 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
 
 import org.graalvm.vm.posix.api.Errno;
 import org.graalvm.vm.posix.api.PosixException;
 import org.graalvm.vm.posix.api.PosixPointer;
 import org.graalvm.vm.posix.api.Timespec;
+import org.graalvm.vm.posix.api.io.Fcntl;
+import org.graalvm.vm.posix.api.io.Iovec;
+import org.graalvm.vm.posix.api.io.Poll;
+import org.graalvm.vm.posix.api.io.SelectorThread;
 import org.graalvm.vm.posix.api.io.Stat;
 import org.graalvm.vm.posix.api.io.Stream;
+import org.graalvm.vm.util.BitTest;
 import org.graalvm.vm.util.io.Endianess;
 
+/**
+ * Base class of all sockets. The host channel is always in non-blocking mode so that it can stay
+ * registered with the selector of an epoll instance; blocking sockets park in {@link #await} until
+ * the {@link SelectorThread} of the Posix instance reports readiness.
+ */
 public abstract class NetworkStream extends Stream {
+    protected final SelectorThread selector;
+
+    protected NetworkStream(SelectorThread selector) {
+        this.selector = selector;
+    }
+
     public abstract int setsockopt(int level, int option_name, int option_value) throws PosixException;
 
     public abstract int connect(PosixPointer address, int addressLen) throws PosixException;
@@ -68,6 +86,10 @@ public abstract class NetworkStream extends Stream {
 
     public abstract int listen(int backlog) throws PosixException;
 
+    public NetworkStream accept() throws PosixException {
+        throw new PosixException(Errno.EOPNOTSUPP);
+    }
+
     @Override
     public int pread(byte[] buf, int offset, int length, long fileOffset) throws PosixException {
         throw new PosixException(Errno.ESPIPE);
@@ -107,6 +129,87 @@ public abstract class NetworkStream extends Stream {
 
     public abstract SelectableChannel getChannel();
 
+    protected boolean isBlocking() {
+        return !BitTest.test(statusFlags, Fcntl.O_NONBLOCK);
+    }
+
+    /**
+     * Parks the calling thread until the channel is ready for at least one of the operations in
+     * ops.
+     */
+    protected void await(int ops) throws PosixException {
+        selector.await(getChannel(), ops);
+    }
+
+    @Override
+    protected void awaitWritable() throws PosixException {
+        await(SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Returns true while a non-blocking connect is in progress.
+     */
+    protected boolean isConnectPending() {
+        return false;
+    }
+
+    /**
+     * Translates poll events into the selection key operations which signal them for this socket.
+     */
+    public int getInterestOps(int events) {
+        SelectableChannel channel = getChannel();
+        int valid = channel.validOps();
+        int ops = 0;
+        if (BitTest.test(events, Poll.POLLIN)) {
+            ops |= valid & (SelectionKey.OP_READ | SelectionKey.OP_ACCEPT);
+        }
+        if (BitTest.test(events, Poll.POLLOUT)) {
+            ops |= valid & (isConnectPending() ? SelectionKey.OP_CONNECT : SelectionKey.OP_WRITE);
+        }
+        return ops;
+    }
+
+    /**
+     * Translates the ready operations of a selection key back into poll events.
+     */
+    public int getPollEvents(int readyOps) {
+        int events = 0;
+        if ((readyOps & (SelectionKey.OP_READ | SelectionKey.OP_ACCEPT)) != 0) {
+            events |= Poll.POLLIN;
+        }
+        if ((readyOps & (SelectionKey.OP_WRITE | SelectionKey.OP_CONNECT)) != 0) {
+            events |= Poll.POLLOUT;
+        }
+        return events;
+    }
+
+    @Override
+    public boolean isPollable() {
+        return true;
+    }
+
+    @Override
+    public int poll(int events) throws PosixException {
+        int ready = selector.check(getChannel(), getInterestOps(events));
+        if (ready < 0) {
+            return Poll.POLLNVAL;
+        }
+        return getPollEvents(ready) & (events | Poll.POLLERR | Poll.POLLHUP);
+    }
+
+    /**
+     * The wakeup hooks of a socket run whenever the guest reads from or writes to it. Readiness
+     * changes caused by the peer are only visible to a selector.
+     */
+    @Override
+    protected boolean hasWakeups() {
+        return true;
+    }
+
+    protected void touch() {
+        wakeup();
+    }
+
     public abstract long send(PosixPointer buffer, long length, int flags) throws PosixException;
 
     public abstract long recv(PosixPointer buffer, long length, int flags) throws PosixException;
@@ -140,6 +243,39 @@ public abstract class NetworkStream extends Stream {
 
     public abstract int shutdown(int how) throws PosixException;
 
+    // distribute the remaining bytes of buf over the buffers of iov; stops at the first fault and
+    // returns the number of bytes stored
+    protected static int scatter(ByteBuffer buf, Iovec[] iov, int iovlen) {
+        int total = 0;
+        for (int i = 0; i < iovlen && buf.hasRemaining(); i++) {
+            int n = Math.min(iov[i].iov_len, buf.remaining());
+            if (n == 0) {
+                continue;
+            }
+            ByteBuffer chunk = buf.duplicate();
+            chunk.limit(chunk.position() + n);
+            int stored = iov[i].iov_base.setBytes(chunk);
+            buf.position(buf.position() + stored);
+            total += stored;
+            if (stored < n) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    // collect the buffers of iov into buf; stops at the first fault
+    protected static void gather(Iovec[] iov, int iovlen, ByteBuffer buf) {
+        for (int i = 0; i < iovlen; i++) {
+            if (iov[i].iov_len == 0) {
+                continue;
+            }
+            if (iov[i].iov_base.getBytes(buf, iov[i].iov_len) < iov[i].iov_len) {
+                break;
+            }
+        }
+    }
+
     protected Sockaddr getSockaddr(SocketAddress addr) {
         if (addr instanceof InetSocketAddress) {
             InetSocketAddress iaddr = (InetSocketAddress) addr;
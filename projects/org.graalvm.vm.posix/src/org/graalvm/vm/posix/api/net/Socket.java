@@ -40,24 +40,20 @@
  */
 package org.graalvm.vm.posix.api.net;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import org.graalvm.vm.posix.api.Errno;
 import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.posix.api.io.Fcntl;
+import org.graalvm.vm.posix.api.io.SelectorThread;
 import org.graalvm.vm.posix.api.io.Stream;
 import org.graalvm.vm.util.BitTest;
-import org.graalvm.vm.util.log.Trace;
 
 public class Socket {
-    private static final Logger log = Trace.create(Socket.class);
-
     // @formatter:off
     // For setsockopt(2)
     public static final int SOL_SOCKET      = 1;
@@ -444,6 +440,12 @@ public class Socket {
         sockoptSoOption.put(SO_ATTACH_REUSEPORT_EBPF, "SO_ATTACH_REUSEPORT_EBPF");
     }
 
+    private final SelectorThread selector;
+
+    public Socket(SelectorThread selector) {
+        this.selector = selector;
+    }
+
     public Stream socket(int domain, int type, int protocol) throws PosixException {
         NetworkStream socket;
         switch (domain) {
@@ -452,14 +454,14 @@ public class Socket {
                 switch (type & SOCK_MASK) {
                     case SOCK_STREAM:
                         if (protocol == In.IPPROTO_IP || protocol == In.IPPROTO_TCP) {
-                            socket = new StreamSocketStream();
+                            socket = new StreamSocketStream(selector);
                         } else {
                             throw new PosixException(Errno.EPROTONOSUPPORT);
                         }
                         break;
                     case SOCK_DGRAM:
                         if (protocol == In.IPPROTO_IP || protocol == In.IPPROTO_UDP) {
-                            socket = new DatagramSocketStream();
+                            socket = new DatagramSocketStream(selector);
                         } else {
                             throw new PosixException(Errno.EPROTONOSUPPORT);
                         }
@@ -473,13 +475,7 @@ public class Socket {
         }
 
         if (BitTest.test(type, SOCK_NONBLOCK)) {
-            try {
-                socket.getChannel().configureBlocking(true);
-            } catch (IOException e) {
-                log.log(Level.WARNING, "Cannot set socket to non-blocking: " + e.getMessage(), e);
-                socket.close();
-                throw new PosixException(Errno.EIO);
-            }
+            socket.setFlags(Fcntl.O_NONBLOCK);
         }
         return socket;
     }
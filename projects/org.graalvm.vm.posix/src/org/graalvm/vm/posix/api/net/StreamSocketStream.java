@@ -41,6 +41,7 @@
 package org.graalvm.vm.posix.api.net;
 
 import java.io.IOException;
+import java.net.BindException;
 import java.net.ConnectException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -53,8 +54,12 @@ import java.nio.channels.AlreadyConnectedException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ConnectionPendingException;
 import java.nio.channels.NotYetConnectedException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.UnsupportedAddressTypeException;
+import java.nio.channels.WritableByteChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -63,6 +68,8 @@ import org.graalvm.vm.posix.api.PosixException;
 import org.graalvm.vm.posix.api.PosixPointer;
 import org.graalvm.vm.posix.api.io.Fcntl;
 import org.graalvm.vm.posix.api.io.Iovec;
+import org.graalvm.vm.posix.api.io.Poll;
+import org.graalvm.vm.posix.api.io.SelectorThread;
 import org.graalvm.vm.util.BitTest;
 import org.graalvm.vm.util.io.Endianess;
 import org.graalvm.vm.util.log.Trace;
@@ -71,33 +78,45 @@ public class StreamSocketStream extends NetworkStream {
     private static final Logger log = Trace.create(StreamSocketStream.class);
 
     private SocketChannel socket;
+    private int connectError;
 
-    public StreamSocketStream() throws PosixException {
+    // set by listen, replaces socket
+    private ServerSocketChannel server;
+    private boolean acceptKeepAlive;
+    private boolean acceptNoDelay;
+
+    public StreamSocketStream(SelectorThread selector) throws PosixException {
+        super(selector);
         try {
             socket = SocketChannel.open();
+            socket.configureBlocking(false);
         } catch (IOException e) {
             log.log(Level.WARNING, "Cannot create socket: " + e.getMessage(), e);
             throw new PosixException(Errno.ENOMEM);
         }
     }
 
-    @Override
-    public void setFlags(int flags) throws PosixException {
+    protected StreamSocketStream(SelectorThread selector, SocketChannel socket) throws PosixException {
+        super(selector);
+        this.socket = socket;
         try {
-            if (BitTest.test(flags, Fcntl.O_NONBLOCK) && socket.isBlocking()) {
-                socket.configureBlocking(false);
-            } else if (!BitTest.test(flags, Fcntl.O_NONBLOCK) && !socket.isBlocking()) {
-                socket.configureBlocking(true);
-            }
+            socket.configureBlocking(false);
         } catch (IOException e) {
-            log.log(Level.WARNING, "Error while changing stream flags: " + e.getMessage(), e);
+            log.log(Level.WARNING, "Cannot configure socket: " + e.getMessage(), e);
             throw new PosixException(Errno.EIO);
         }
-        super.setFlags(flags);
+    }
+
+    @Override
+    protected WritableByteChannel getWritableChannel() {
+        return socket.isConnected() ? socket : null;
     }
 
     @Override
     public int setsockopt(int level, int option_name, int option_value) throws PosixException {
+        if (server != null) {
+            return setServerOption(level, option_name, option_value);
+        }
         try {
             switch (level) {
                 case Socket.SOL_SOCKET:
@@ -134,8 +153,33 @@ public class StreamSocketStream extends NetworkStream {
         }
     }
 
+    // options of a listening socket which only matter for the accepted connections are inherited
+    private int setServerOption(int level, int option_name, int option_value) throws PosixException {
+        if (level == Socket.SOL_SOCKET && option_name == Socket.SO_KEEPALIVE) {
+            acceptKeepAlive = option_value != 0;
+            return 0;
+        } else if (level == Tcp.SOL_TCP && option_name == Tcp.TCP_NODELAY) {
+            acceptNoDelay = option_value != 0;
+            return 0;
+        } else if (level == Socket.SOL_SOCKET && option_name == Socket.SO_REUSEADDR) {
+            try {
+                server.setOption(StandardSocketOptions.SO_REUSEADDR, option_value != 0);
+                return 0;
+            } catch (IOException e) {
+                throw new PosixException(Errno.EIO);
+            }
+        } else if (level == Socket.SOL_SOCKET || level == Tcp.SOL_TCP) {
+            throw new PosixException(Errno.EINVAL);
+        } else {
+            throw new PosixException(Errno.ENOPROTOOPT);
+        }
+    }
+
     @Override
     public int connect(PosixPointer address, int addressLen) throws PosixException {
+        if (server != null) {
+            throw new PosixException(Errno.EISCONN);
+        }
         Sockaddr saddr = Sockaddr.get(address, addressLen);
         if (saddr instanceof SockaddrIn) {
             SockaddrIn addr = (SockaddrIn) saddr;
@@ -152,22 +196,7 @@ public class StreamSocketStream extends NetworkStream {
             }
             int port = addr.sin_port;
             SocketAddress remote = new InetSocketAddress(remoteAddr, port);
-            try {
-                socket.connect(remote);
-                return 0;
-            } catch (AlreadyConnectedException e) {
-                throw new PosixException(Errno.EISCONN);
-            } catch (ConnectionPendingException e) {
-                throw new PosixException(Errno.EALREADY);
-            } catch (UnsupportedAddressTypeException e) {
-                throw new PosixException(Errno.EAFNOSUPPORT);
-            } catch (ClosedChannelException e) {
-                throw new PosixException(Errno.EBADF);
-            } catch (ConnectException e) {
-                throw new PosixException(Errno.ECONNREFUSED);
-            } catch (IOException e) {
-                throw new PosixException(Errno.EIO);
-            }
+            return connect(remote);
         } else if (saddr instanceof SockaddrIn6) {
             SockaddrIn6 addr = (SockaddrIn6) saddr;
             if (addr.sa_family != Socket.AF_INET6) {
@@ -181,24 +210,127 @@ public class StreamSocketStream extends NetworkStream {
             }
             int port = addr.sin6_port;
             SocketAddress remote = new InetSocketAddress(remoteAddr, port);
-            try {
-                socket.connect(remote);
+            return connect(remote);
+        } else {
+            throw new PosixException(Errno.EAFNOSUPPORT);
+        }
+    }
+
+    private int connect(SocketAddress remote) throws PosixException {
+        try {
+            if (socket.connect(remote)) {
                 return 0;
-            } catch (AlreadyConnectedException e) {
-                throw new PosixException(Errno.EISCONN);
-            } catch (ConnectionPendingException e) {
-                throw new PosixException(Errno.EALREADY);
-            } catch (UnsupportedAddressTypeException e) {
-                throw new PosixException(Errno.EAFNOSUPPORT);
-            } catch (ClosedChannelException e) {
-                throw new PosixException(Errno.EBADF);
-            } catch (ConnectException e) {
-                throw new PosixException(Errno.ECONNREFUSED);
-            } catch (IOException e) {
-                throw new PosixException(Errno.EIO);
             }
-        } else {
+            if (!isBlocking()) {
+                throw new PosixException(Errno.EINPROGRESS);
+            }
+            while (!socket.finishConnect()) {
+                await(SelectionKey.OP_CONNECT);
+            }
+            return 0;
+        } catch (AlreadyConnectedException e) {
+            throw new PosixException(Errno.EISCONN);
+        } catch (ConnectionPendingException e) {
+            throw new PosixException(Errno.EALREADY);
+        } catch (UnsupportedAddressTypeException e) {
             throw new PosixException(Errno.EAFNOSUPPORT);
+        } catch (ClosedChannelException e) {
+            throw new PosixException(Errno.EBADF);
+        } catch (ConnectException e) {
+            throw new PosixException(Errno.ECONNREFUSED);
+        } catch (IOException e) {
+            throw new PosixException(Errno.EIO);
+        }
+    }
+
+    // complete a non-blocking connect once the selector reported it
+    private void finishConnect() throws PosixException {
+        if (!socket.isConnectionPending()) {
+            return;
+        }
+        try {
+            while (!socket.finishConnect()) {
+                if (!isBlocking()) {
+                    throw new PosixException(Errno.EAGAIN);
+                }
+                await(SelectionKey.OP_CONNECT);
+            }
+        } catch (ConnectException e) {
+            connectError = Errno.ECONNREFUSED;
+        } catch (IOException e) {
+            connectError = Errno.EIO;
+        }
+    }
+
+    @Override
+    protected boolean isConnectPending() {
+        return socket.isConnectionPending();
+    }
+
+    @Override
+    public int getPollEvents(int readyOps) {
+        if (BitTest.test(readyOps, SelectionKey.OP_CONNECT)) {
+            try {
+                finishConnect();
+            } catch (PosixException e) {
+                return 0;
+            }
+            if (connectError != 0) {
+                return Poll.POLLOUT | Poll.POLLERR;
+            }
+        }
+        return super.getPollEvents(readyOps);
+    }
+
+    private int read(ByteBuffer buf) throws PosixException {
+        touch();
+        finishConnect();
+        if (connectError != 0) {
+            int errno = connectError;
+            connectError = 0;
+            throw new PosixException(errno);
+        }
+        try {
+            int result = socket.read(buf);
+            while (result == 0 && isBlocking() && buf.hasRemaining()) {
+                await(SelectionKey.OP_READ);
+                result = socket.read(buf);
+            }
+            return result;
+        } catch (NotYetConnectedException e) {
+            throw new PosixException(Errno.ENOTCONN);
+        } catch (ClosedChannelException e) {
+            throw new PosixException(Errno.EBADF);
+        } catch (IOException e) {
+            throw new PosixException(Errno.EIO);
+        }
+    }
+
+    private int write(ByteBuffer buf) throws PosixException {
+        touch();
+        finishConnect();
+        if (connectError != 0) {
+            int errno = connectError;
+            connectError = 0;
+            throw new PosixException(errno);
+        }
+        try {
+            int result = socket.write(buf);
+            // a blocking write only returns once everything is written
+            while (isBlocking() && buf.hasRemaining()) {
+                await(SelectionKey.OP_WRITE);
+                result += socket.write(buf);
+            }
+            if (result == 0 && buf.hasRemaining()) {
+                throw new PosixException(Errno.EAGAIN);
+            }
+            return result;
+        } catch (NotYetConnectedException e) {
+            throw new PosixException(Errno.ECONNRESET);
+        } catch (ClosedChannelException e) {
+            throw new PosixException(Errno.EPIPE);
+        } catch (IOException e) {
+            throw new PosixException(Errno.EIO);
         }
     }
 
@@ -269,44 +401,103 @@ public class StreamSocketStream extends NetworkStream {
         }
     }
 
+    /**
+     * Java keeps listening sockets in a different channel type, so the bound socket channel is
+     * replaced by a server socket channel on the same local address.
+     */
     @Override
     public int listen(int backlog) throws PosixException {
-        if (socket.isConnected()) {
+        if (server != null) {
+            return 0;
+        }
+        if (socket.isConnected() || socket.isConnectionPending()) {
             throw new PosixException(Errno.EINVAL);
         }
-        throw new PosixException(Errno.EOPNOTSUPP);
+        ServerSocketChannel channel = null;
+        try {
+            SocketAddress local = socket.getLocalAddress();
+            acceptKeepAlive = socket.getOption(StandardSocketOptions.SO_KEEPALIVE);
+            acceptNoDelay = socket.getOption(StandardSocketOptions.TCP_NODELAY);
+            channel = ServerSocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            // release the port before it is bound again
+            socket.close();
+            channel.bind(local, backlog);
+            server = channel;
+            return 0;
+        } catch (BindException e) {
+            close(channel);
+            throw new PosixException(Errno.EADDRINUSE);
+        } catch (ClosedChannelException e) {
+            close(channel);
+            throw new PosixException(Errno.EBADF);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Cannot listen: " + e.getMessage(), e);
+            close(channel);
+            throw new PosixException(Errno.EIO);
+        }
+    }
+
+    private static void close(ServerSocketChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Cannot close channel: " + e.getMessage(), e);
+            }
+        }
     }
 
     @Override
-    public int read(byte[] buf, int offset, int length) throws PosixException {
-        ByteBuffer b = ByteBuffer.wrap(buf, offset, length);
+    public NetworkStream accept() throws PosixException {
+        if (server == null) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        touch();
         try {
-            int result = socket.read(b);
-            if (result > 0) {
-                return result;
-            } else if (result == 0) {
-                throw new PosixException(Errno.EAGAIN);
-            } else {
-                // -1 in Java = eof
-                return 0;
+            SocketChannel channel = server.accept();
+            while (channel == null) {
+                if (!isBlocking()) {
+                    throw new PosixException(Errno.EAGAIN);
+                }
+                await(SelectionKey.OP_ACCEPT);
+                channel = server.accept();
+            }
+            StreamSocketStream stream = new StreamSocketStream(selector, channel);
+            if (acceptKeepAlive) {
+                channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+            }
+            if (acceptNoDelay) {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
             }
+            return stream;
+        } catch (ClosedChannelException e) {
+            throw new PosixException(Errno.EBADF);
         } catch (IOException e) {
-            throw new PosixException(Errno.EIO);
+            log.log(Level.INFO, "I/O error in accept: " + e.getMessage(), e);
+            throw new PosixException(Errno.ECONNABORTED);
         }
     }
 
     @Override
-    public int write(byte[] buf, int offset, int length) throws PosixException {
-        ByteBuffer b = ByteBuffer.wrap(buf, offset, length);
-        try {
-            return socket.write(b);
-        } catch (NotYetConnectedException e) {
-            throw new PosixException(Errno.ECONNRESET);
-        } catch (IOException e) {
-            throw new PosixException(Errno.EIO);
+    public int read(byte[] buf, int offset, int length) throws PosixException {
+        int result = read(ByteBuffer.wrap(buf, offset, length));
+        if (result > 0) {
+            return result;
+        } else if (result == 0) {
+            throw new PosixException(Errno.EAGAIN);
+        } else {
+            // -1 in Java = eof
+            return 0;
         }
     }
 
+    @Override
+    public int write(byte[] buf, int offset, int length) throws PosixException {
+        return write(ByteBuffer.wrap(buf, offset, length));
+    }
+
     @Override
     public long send(PosixPointer buffer, long length, int flags) throws PosixException {
         return write(buffer, (int) length);
@@ -345,16 +536,15 @@ public class StreamSocketStream extends NetworkStream {
         ByteBuffer buf = ByteBuffer.allocate((int) length);
         RecvResult result = new RecvResult();
         try {
-            result.length = socket.read(buf);
+            int n = read(buf);
+            if (n == 0 && length > 0) {
+                throw new PosixException(Errno.EAGAIN);
+            }
             SocketAddress addr = socket.getRemoteAddress();
 
-            // transfer buffer
+            // transfer buffer; a fault after the first byte truncates the result
             buf.flip();
-            PosixPointer ptr = buffer;
-            for (int i = 0; i < result.length; i++) {
-                ptr.setI8(buf.get());
-                ptr = ptr.add(1);
-            }
+            result.length = buffer.setBytes(buf);
 
             if (addr instanceof InetSocketAddress) {
                 result.sa = getSockaddr(addr);
@@ -383,7 +573,7 @@ public class StreamSocketStream extends NetworkStream {
 
         length = 0;
         try {
-            length = socket.read(buf);
+            length = read(buf);
             if (length == -1) {
                 return 0;
             }
@@ -394,26 +584,9 @@ public class StreamSocketStream extends NetworkStream {
             }
             SocketAddress addr = socket.getRemoteAddress();
 
-            // transfer buffer
+            // transfer buffer; a fault after the first byte truncates the result
             buf.flip();
-            int iovid = 0;
-            int iovpos = 0;
-            PosixPointer ptr = message.msg_iov[iovid].iov_base;
-            for (int i = 0; i < length; i++) {
-                ptr.setI8(buf.get());
-                ptr = ptr.add(1);
-                iovpos++;
-                if (iovpos >= message.msg_iov[iovid].iov_len) {
-                    iovid++;
-                    iovpos = 0;
-                    // avoid out of bounds access to msg_iov[iovid]
-                    if (iovid >= message.msg_iov.length) {
-                        ptr = null;
-                    } else {
-                        ptr = message.msg_iov[iovid].iov_base;
-                    }
-                }
-            }
+            length = scatter(buf, message.msg_iov, message.msg_iov.length);
 
             message.msg_name = getSockaddr(addr);
             message.msg_control = null;
@@ -428,7 +601,7 @@ public class StreamSocketStream extends NetworkStream {
     @Override
     public Sockaddr getsockname() throws PosixException {
         try {
-            SocketAddress addr = socket.getLocalAddress();
+            SocketAddress addr = server != null ? server.getLocalAddress() : socket.getLocalAddress();
             Sockaddr sa = getSockaddr(addr);
             if (sa == null) {
                 throw new PosixException(Errno.EOPNOTSUPP);
@@ -489,6 +662,9 @@ public class StreamSocketStream extends NetworkStream {
     @Override
     public int close() throws PosixException {
         try {
+            if (server != null) {
+                server.close();
+            }
             socket.close();
             return 0;
         } catch (IOException e) {
@@ -497,7 +673,7 @@ public class StreamSocketStream extends NetworkStream {
     }
 
     @Override
-    public SocketChannel getChannel() {
-        return socket;
+    public SelectableChannel getChannel() {
+        return server != null ? server : socket;
     }
 }
@@ -389,6 +389,14 @@ public class Elf {
     public SymbolTable dynsym;
 
     public Elf(byte[] data) throws IOException {
+        this(data, true);
+    }
+
+    /**
+     * Parses an ELF file. If {@code parseSections} is false, only the ELF header and the program
+     * headers are parsed and {@code data} may end right after the program headers.
+     */
+    public Elf(byte[] data, boolean parseSections) throws IOException {
         int magic = Endianess.get32bitBE(data, 0);
         if (magic != MAGIC) {
             throw new IOException("Invalid magic");
@@ -477,6 +485,10 @@ public class Elf {
         }
 
         sections = new ArrayList<>();
+        if (!parseSections) {
+            return;
+        }
+
         for (int i = 0; i < e_shnum; i++) {
             int off = (int) (e_shoff + i * e_shentsize);
             sections.add(new Section(this, off));
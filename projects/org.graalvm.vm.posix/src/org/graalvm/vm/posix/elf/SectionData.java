@@ -46,6 +46,6 @@ public abstract class SectionData {
 
     public SectionData(Section section) {
         this.section = section;
-        this.elf = section.getElf();
+        this.elf = section == null ? null : section.getElf();
     }
 }
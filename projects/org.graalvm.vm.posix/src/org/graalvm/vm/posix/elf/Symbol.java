@@ -131,6 +131,17 @@ public class Symbol extends SectionData {
         }
     }
 
+    // symbol which is not backed by a parsed section, see SymbolIndex
+    protected Symbol(int index, long st_value, long st_size, byte st_info, short st_shndx) {
+        super(null);
+        this.index = index;
+        this.st_value = st_value;
+        this.st_size = st_size;
+        this.st_info = st_info;
+        this.st_other = DEFAULT;
+        this.st_shndx = st_shndx;
+    }
+
     protected Symbol(Symbol sym) {
         super(sym.section);
         this.index = sym.index;
@@ -0,0 +1,449 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.posix.elf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.graalvm.vm.posix.libc.CString;
+import org.graalvm.vm.util.io.Endianess;
+
+/**
+ * Compact address index over the symbols of an ELF file. Instead of reading and parsing the whole
+ * file, only the ELF header, the section headers, the symbol tables and their string tables are
+ * read.
+ * The symbols are kept in primitive arrays sorted by address, and {@link Symbol} objects including
+ * their names are only created when a lookup actually returns them.
+ */
+public class SymbolIndex {
+    public interface Reader {
+        int pread(byte[] buf, int offset, int length, long fileOffset) throws IOException;
+    }
+
+    private final long[] address;
+    private final long[] size;
+    private final int[] name;
+    private final byte[] info;
+    private final short[] shndx;
+    private final int[] globals;
+    private final byte[] strtab;
+
+    private final long lo;
+    private final long hi;
+
+    private SymbolIndex(long[] address, long[] size, int[] name, byte[] info, short[] shndx, byte[] strtab) {
+        this.address = address;
+        this.size = size;
+        this.name = name;
+        this.info = info;
+        this.shndx = shndx;
+        this.strtab = strtab;
+
+        int count = 0;
+        for (int i = 0; i < info.length; i++) {
+            if (bind(i) == Symbol.GLOBAL) {
+                count++;
+            }
+        }
+        globals = new int[count];
+        for (int i = 0, n = 0; i < info.length; i++) {
+            if (bind(i) == Symbol.GLOBAL) {
+                globals[n++] = i;
+            }
+        }
+
+        long min = -1;
+        long max = 0;
+        for (int i = 0; i < address.length; i++) {
+            if (Long.compareUnsigned(address[i], min) < 0) {
+                min = address[i];
+            }
+            long end = address[i] + Math.max(size[i], 1);
+            if (Long.compareUnsigned(end, max) > 0) {
+                max = end;
+            }
+        }
+        lo = address.length == 0 ? 0 : min;
+        hi = max;
+    }
+
+    private static void readFully(Reader reader, byte[] buf, long fileOffset) throws IOException {
+        int done = 0;
+        while (done < buf.length) {
+            int n = reader.pread(buf, done, buf.length - done, fileOffset + done);
+            if (n <= 0) {
+                throw new IOException("unexpected end of file");
+            }
+            done += n;
+        }
+    }
+
+    private static byte[] read(Reader reader, long fileOffset, long length) throws IOException {
+        if (length < 0 || length != (int) length) {
+            throw new IOException("invalid section size");
+        }
+        byte[] buf = new byte[(int) length];
+        readFully(reader, buf, fileOffset);
+        return buf;
+    }
+
+    private static long get(byte[] data, int offset, int bytes, boolean be) {
+        switch (bytes) {
+            case 2:
+                return Short.toUnsignedLong(be ? Endianess.get16bitBE(data, offset) : Endianess.get16bitLE(data, offset));
+            case 4:
+                return Integer.toUnsignedLong(be ? Endianess.get32bitBE(data, offset) : Endianess.get32bitLE(data, offset));
+            case 8:
+                return be ? Endianess.get64bitBE(data, offset) : Endianess.get64bitLE(data, offset);
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+
+    private static byte[] readHeader(Reader reader) throws IOException {
+        byte[] ehdr = new byte[64];
+        int n = reader.pread(ehdr, 0, ehdr.length, 0);
+        if (n < 52 || Endianess.get32bitBE(ehdr) != Elf.MAGIC) {
+            throw new IOException("not an ELF file");
+        }
+        if (ehdr[4] != Elf.ELFCLASS32 && ehdr[4] != Elf.ELFCLASS64) {
+            throw new IOException("unknown ei_class: " + ehdr[4]);
+        }
+        return ehdr;
+    }
+
+    /**
+     * Returns the virtual address of the segment which is loaded from the given file offset, or -1
+     * if there is no such segment. Only the ELF header and the program headers are read.
+     */
+    public static long getSegmentAddress(Reader reader, long offset) throws IOException {
+        byte[] ehdr = readHeader(reader);
+        boolean is64 = ehdr[4] == Elf.ELFCLASS64;
+        boolean be = ehdr[5] == Elf.ELFDATA2MSB;
+        long phoff = is64 ? get(ehdr, 0x20, 8, be) : get(ehdr, 0x1C, 4, be);
+        int phentsize = (int) (is64 ? get(ehdr, 0x36, 2, be) : get(ehdr, 0x2A, 2, be));
+        int phnum = (int) (is64 ? get(ehdr, 0x38, 2, be) : get(ehdr, 0x2C, 2, be));
+        if (phoff == 0 || phnum == 0) {
+            return -1;
+        }
+        byte[] phdrs = read(reader, phoff, (long) phnum * phentsize);
+        for (int i = 0; i < phnum; i++) {
+            int ph = i * phentsize;
+            long p_offset = is64 ? get(phdrs, ph + 0x08, 8, be) : get(phdrs, ph + 0x04, 4, be);
+            if (p_offset == offset) {
+                return is64 ? get(phdrs, ph + 0x10, 8, be) : get(phdrs, ph + 0x08, 4, be);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Builds the index for the defined symbols whose value lies in [offset, offset + length). The
+     * addresses in the index are the symbol values plus {@code loadBias}. Both the symbol table
+     * ({@code .symtab}) and the dynamic symbol table are indexed, so a stripped file still has its
+     * exported symbols.
+     */
+    public static SymbolIndex load(Reader reader, long offset, long length, long loadBias) throws IOException {
+        byte[] ehdr = readHeader(reader);
+        boolean is64 = ehdr[4] == Elf.ELFCLASS64;
+        boolean be = ehdr[5] == Elf.ELFDATA2MSB;
+        long shoff = is64 ? get(ehdr, 0x28, 8, be) : get(ehdr, 0x20, 4, be);
+        int shentsize = (int) (is64 ? get(ehdr, 0x3A, 2, be) : get(ehdr, 0x2E, 2, be));
+        int shnum = (int) (is64 ? get(ehdr, 0x3C, 2, be) : get(ehdr, 0x30, 2, be));
+        if (shoff == 0 || shnum == 0) {
+            return new SymbolIndex(new long[0], new long[0], new int[0], new byte[0], new short[0], new byte[0]);
+        }
+        byte[] shdrs = read(reader, shoff, (long) shnum * shentsize);
+
+        // .symtab first and .dynsym second, so that a dynamic symbol wins like in ElfLoader
+        int[] tables = new int[2];
+        int ntables = 0;
+        for (int type : new int[]{Elf.SHT_SYMTAB, Elf.SHT_DYNSYM}) {
+            for (int i = 0; i < shnum; i++) {
+                if ((int) get(shdrs, i * shentsize + 4, 4, be) == type) {
+                    tables[ntables++] = i;
+                    break;
+                }
+            }
+        }
+        if (ntables == 0) {
+            return new SymbolIndex(new long[0], new long[0], new int[0], new byte[0], new short[0], new byte[0]);
+        }
+
+        // the string tables are concatenated, name offsets are shifted by the start of their table
+        byte[][] syms = new byte[ntables][];
+        byte[][] strs = new byte[ntables][];
+        int[] entsizes = new int[ntables];
+        int count = 0;
+        int strLength = 0;
+        for (int t = 0; t < ntables; t++) {
+            int sh = tables[t] * shentsize;
+            long symOffset = is64 ? get(shdrs, sh + 0x18, 8, be) : get(shdrs, sh + 0x10, 4, be);
+            long symSize = is64 ? get(shdrs, sh + 0x20, 8, be) : get(shdrs, sh + 0x14, 4, be);
+            int link = (int) get(shdrs, sh + (is64 ? 0x28 : 0x18), 4, be);
+            int entsize = (int) (is64 ? get(shdrs, sh + 0x38, 8, be) : get(shdrs, sh + 0x24, 4, be));
+            if (entsize == 0 || link >= shnum) {
+                throw new IOException("invalid symbol table");
+            }
+            int st = link * shentsize;
+            long strOffset = is64 ? get(shdrs, st + 0x18, 8, be) : get(shdrs, st + 0x10, 4, be);
+            long strSize = is64 ? get(shdrs, st + 0x20, 8, be) : get(shdrs, st + 0x14, 4, be);
+
+            syms[t] = read(reader, symOffset, symSize);
+            strs[t] = read(reader, strOffset, strSize);
+            entsizes[t] = entsize;
+            count += (int) (symSize / entsize);
+            strLength += strs[t].length;
+        }
+        byte[] strings = new byte[strLength];
+
+        long[] values = new long[count];
+        long[] sizes = new long[count];
+        int[] names = new int[count];
+        byte[] infos = new byte[count];
+        short[] sections = new short[count];
+        int defined = 0;
+        int strBase = 0;
+        for (int t = 0; t < ntables; t++) {
+            byte[] table = syms[t];
+            int entsize = entsizes[t];
+            System.arraycopy(strs[t], 0, strings, strBase, strs[t].length);
+            for (int i = 0; i < table.length / entsize; i++) {
+                int off = i * entsize;
+                long value;
+                long sz;
+                byte inf;
+                short idx;
+                if (is64) {
+                    inf = table[off + 0x04];
+                    idx = (short) get(table, off + 0x06, 2, be);
+                    value = get(table, off + 0x08, 8, be);
+                    sz = get(table, off + 0x10, 8, be);
+                } else {
+                    value = get(table, off + 0x04, 4, be);
+                    sz = get(table, off + 0x08, 4, be);
+                    inf = table[off + 0x0C];
+                    idx = (short) get(table, off + 0x0E, 2, be);
+                }
+                if (idx == Symbol.SHN_UNDEF || value < offset || value >= offset + length) {
+                    continue;
+                }
+                int nameOffset = (int) get(table, off, 4, be);
+                values[defined] = value + loadBias;
+                sizes[defined] = sz;
+                // an offset outside of its own table resolves to an empty name
+                names[defined] = nameOffset < strs[t].length ? strBase + nameOffset : strLength;
+                infos[defined] = inf;
+                sections[defined] = idx;
+                defined++;
+            }
+            strBase += strs[t].length;
+        }
+
+        // sort by address; for duplicate addresses the symbol defined last wins
+        int[] order = sortByAddress(values, defined);
+        int unique = 0;
+        for (int i = 0; i < defined; i++) {
+            if (i + 1 < defined && values[order[i]] == values[order[i + 1]]) {
+                continue;
+            }
+            order[unique++] = order[i];
+        }
+        long[] address = new long[unique];
+        long[] size = new long[unique];
+        int[] name = new int[unique];
+        byte[] info = new byte[unique];
+        short[] shndx = new short[unique];
+        for (int i = 0; i < unique; i++) {
+            int j = order[i];
+            address[i] = values[j];
+            size[i] = sizes[j];
+            name[i] = names[j];
+            info[i] = infos[j];
+            shndx[i] = sections[j];
+        }
+        return new SymbolIndex(address, size, name, info, shndx, strings);
+    }
+
+    /**
+     * Returns the indices 0..n-1 ordered by the unsigned value in values. This is a stable merge
+     * sort, so indices with the same value stay in ascending order.
+     */
+    private static int[] sortByAddress(long[] values, int n) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        int[] tmp = new int[n];
+        for (long width = 1; width < n; width *= 2) {
+            for (long lo = 0; lo + width < n; lo += 2 * width) {
+                int mid = (int) (lo + width);
+                int hi = (int) Math.min(lo + 2 * width, n);
+                int a = (int) lo;
+                int b = mid;
+                int k = (int) lo;
+                while (a < mid && b < hi) {
+                    if (Long.compareUnsigned(values[order[b]], values[order[a]]) < 0) {
+                        tmp[k++] = order[b++];
+                    } else {
+                        tmp[k++] = order[a++];
+                    }
+                }
+                while (a < mid) {
+                    tmp[k++] = order[a++];
+                }
+                while (b < hi) {
+                    tmp[k++] = order[b++];
+                }
+                System.arraycopy(tmp, (int) lo, order, (int) lo, hi - (int) lo);
+            }
+        }
+        return order;
+    }
+
+    private int bind(int i) {
+        return (info[i] & 0xFF) >>> 4;
+    }
+
+    public int size() {
+        return address.length;
+    }
+
+    /**
+     * Lowest symbol address in this index.
+     */
+    public long getLow() {
+        return lo;
+    }
+
+    /**
+     * End of the highest symbol in this index.
+     */
+    public long getHigh() {
+        return hi;
+    }
+
+    // index of the last symbol at or below pc, in the address order given by positions
+    private int floor(long pc, int[] positions, int count) {
+        int low = 0;
+        int high = count - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long addr = address[positions == null ? mid : positions[mid]];
+            if (Long.compareUnsigned(addr, pc) <= 0) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    private boolean covers(int i, long pc) {
+        return address[i] == pc || Long.compareUnsigned(pc - address[i], size[i]) < 0;
+    }
+
+    /**
+     * Returns the symbol covering pc, preferring global symbols like {@code SymbolResolver}.
+     */
+    public Symbol getSymbol(long pc) {
+        int g = floor(pc, globals, globals.length);
+        if (g != -1 && covers(globals[g], pc)) {
+            return symbol(globals[g]);
+        }
+        int i = floor(pc, null, address.length);
+        if (i != -1 && covers(i, pc)) {
+            return symbol(i);
+        }
+        return null;
+    }
+
+    public Symbol getSymbolExact(long pc) {
+        int i = floor(pc, null, address.length);
+        if (i != -1 && address[i] == pc) {
+            return symbol(i);
+        }
+        return null;
+    }
+
+    /**
+     * Creates all symbols of this index in address order. The names are still resolved lazily.
+     */
+    public List<Symbol> getSymbols() {
+        List<Symbol> result = new ArrayList<>(address.length);
+        for (int i = 0; i < address.length; i++) {
+            result.add(symbol(i));
+        }
+        return result;
+    }
+
+    private Symbol symbol(int i) {
+        return new IndexedSymbol(i, address[i], size[i], info[i], shndx[i], strtab, name[i]);
+    }
+
+    private static class IndexedSymbol extends Symbol {
+        private final byte[] strtab;
+        private final int nameOffset;
+        private String name;
+
+        IndexedSymbol(int index, long value, long size, byte info, short shndx, byte[] strtab, int nameOffset) {
+            super(index, value, size, info, shndx);
+            this.strtab = strtab;
+            this.nameOffset = nameOffset;
+        }
+
+        @Override
+        public String getName() {
+            if (name == null) {
+                name = nameOffset < strtab.length ? CString.str(strtab, nameOffset) : "";
+            }
+            return name;
+        }
+
+        @Override
+        public Symbol offset(long off) {
+            return new IndexedSymbol(getIndex(), getValue() + off, getSize(), (byte) ((getBind() << 4) | getType()), getSectionIndex(), strtab, nameOffset);
+        }
+    }
+}
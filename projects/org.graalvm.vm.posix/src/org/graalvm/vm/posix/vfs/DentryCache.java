@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.posix.vfs;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.graalvm.vm.posix.api.Errno;
+
+/**
+ * Caches the result of path lookups in a {@link VFS}. There are two levels: every cacheable
+ * {@link VFSDirectory} remembers the entries (or their absence) it returned for single names, and
+ * this class maps whole normalized paths to the entry they resolved to.
+ *
+ * Every change to the namespace (creating or deleting an entry, mounting a file system) bumps a
+ * generation counter which invalidates all path entries at once, since a change can affect any
+ * path which passes through a symlink. The directory level is invalidated precisely by the
+ * directory which changed, so rebuilding a path entry afterwards only costs hash lookups.
+ *
+ * Changes made behind the back of the VFS, e.g. by another process on the host, are not seen.
+ * Setting the system property {@code posix.vfs.nocache} disables the cache.
+ */
+public class DentryCache {
+    public static final boolean ENABLED = System.getProperty("posix.vfs.nocache") == null;
+
+    private static final int MAX_PATHS = 64 * 1024;
+
+    private final Map<String, Dentry> resolved = new ConcurrentHashMap<>();
+    private final Map<String, Dentry> unresolved = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder pathHits = new LongAdder();
+    private final LongAdder pathNegativeHits = new LongAdder();
+    private final LongAdder pathMisses = new LongAdder();
+    private final LongAdder nameHits = new LongAdder();
+    private final LongAdder nameNegativeHits = new LongAdder();
+    private final LongAdder nameMisses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    static final class Dentry {
+        final long generation;
+        final VFSEntry entry;
+        final int errno;
+
+        Dentry(long generation, VFSEntry entry, int errno) {
+            this.generation = generation;
+            this.entry = entry;
+            this.errno = errno;
+        }
+
+        boolean isNegative() {
+            return entry == null;
+        }
+    }
+
+    long generation() {
+        return generation.get();
+    }
+
+    Dentry get(String path, boolean resolve) {
+        Dentry dentry = (resolve ? resolved : unresolved).get(path);
+        if (dentry == null || dentry.generation != generation.get()) {
+            pathMisses.increment();
+            return null;
+        }
+        if (dentry.isNegative()) {
+            pathNegativeHits.increment();
+        } else {
+            pathHits.increment();
+        }
+        return dentry;
+    }
+
+    void put(String path, boolean resolve, long gen, VFSEntry entry) {
+        put(resolve ? resolved : unresolved, path, new Dentry(gen, entry, 0));
+    }
+
+    void putNegative(String path, boolean resolve, long gen, int errno) {
+        // only remember errors which depend on nothing but the namespace
+        if (errno == Errno.ENOENT || errno == Errno.ENOTDIR) {
+            put(resolve ? resolved : unresolved, path, new Dentry(gen, null, errno));
+        }
+    }
+
+    private void put(Map<String, Dentry> map, String path, Dentry dentry) {
+        if (dentry.generation != generation.get()) {
+            return;
+        }
+        if (map.size() >= MAX_PATHS) {
+            map.clear();
+        }
+        map.put(path, dentry);
+    }
+
+    /**
+     * Invalidates all cached paths. Called after every change to the namespace.
+     */
+    void invalidate() {
+        generation.incrementAndGet();
+        invalidations.increment();
+    }
+
+    void nameHit(boolean negative) {
+        if (negative) {
+            nameNegativeHits.increment();
+        } else {
+            nameHits.increment();
+        }
+    }
+
+    void nameMiss() {
+        nameMisses.increment();
+    }
+
+    public long getPathHits() {
+        return pathHits.sum();
+    }
+
+    public long getPathNegativeHits() {
+        return pathNegativeHits.sum();
+    }
+
+    public long getPathMisses() {
+        return pathMisses.sum();
+    }
+
+    public long getNameHits() {
+        return nameHits.sum();
+    }
+
+    public long getNameNegativeHits() {
+        return nameNegativeHits.sum();
+    }
+
+    public long getNameMisses() {
+        return nameMisses.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Dentry cache: paths %d hits, %d negative hits, %d misses; names %d hits, %d negative hits, %d misses; %d invalidations",
+                        getPathHits(), getPathNegativeHits(), getPathMisses(), getNameHits(), getNameNegativeHits(), getNameMisses(), getInvalidations());
+    }
+}
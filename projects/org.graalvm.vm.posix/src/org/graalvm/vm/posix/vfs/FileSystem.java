@@ -73,22 +73,22 @@ public abstract class FileSystem {
 
             @Override
             public VFSDirectory createDirectory(String name, long uid, long gid, long permissions) throws PosixException {
-                return root.createDirectory(name, uid, gid, permissions);
+                return root.mkdir(name, uid, gid, permissions);
             }
 
             @Override
             public VFSFile createFile(String name, long uid, long gid, long permissions) throws PosixException {
-                return root.createFile(name, uid, gid, permissions);
+                return root.mkfile(name, uid, gid, permissions);
             }
 
             @Override
             public VFSSymlink createSymlink(String name, long uid, long gid, long permissions, String target) throws PosixException {
-                return root.createSymlink(name, uid, gid, permissions, target);
+                return root.symlink(name, uid, gid, permissions, target);
             }
 
             @Override
             public void delete(String name) throws PosixException {
-                root.delete(name);
+                root.unlink(name);
             }
 
             @Override
@@ -96,6 +96,12 @@ public abstract class FileSystem {
                 return root.get(name);
             }
 
+            @Override
+            boolean cacheable() {
+                // lookups are cached by the root directory of the file system itself
+                return root.cacheable();
+            }
+
             @Override
             public List<VFSEntry> list() throws PosixException {
                 return root.list();
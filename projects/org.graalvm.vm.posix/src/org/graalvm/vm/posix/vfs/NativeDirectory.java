@@ -55,10 +55,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
+import org.graalvm.vm.posix.api.Dirent;
 import org.graalvm.vm.posix.api.Errno;
 import org.graalvm.vm.posix.api.Posix;
 import org.graalvm.vm.posix.api.PosixException;
@@ -91,6 +93,11 @@ public class NativeDirectory extends VFSDirectory {
         }
     }
 
+    @Override
+    protected boolean isCacheable() {
+        return true;
+    }
+
     @Override
     public void create(VFSEntry file) throws PosixException {
         throw new PosixException(Errno.EPERM);
@@ -181,6 +188,58 @@ public class NativeDirectory extends VFSDirectory {
         return Collections.unmodifiableList(result);
     }
 
+    @Override
+    protected DirectoryCursor openCursor() throws PosixException {
+        DirectoryStream<Path> stream;
+        try {
+            stream = Files.newDirectoryStream(absolutePath);
+        } catch (NoSuchFileException e) {
+            throw new PosixException(Errno.ENOENT);
+        } catch (IOException e) {
+            throw new PosixException(Errno.EIO);
+        }
+        Iterator<Path> entries = stream.iterator();
+        return new DirectoryCursor() {
+            @Override
+            public Dirent next() throws PosixException {
+                while (true) {
+                    Path path;
+                    try {
+                        if (!entries.hasNext()) {
+                            return null;
+                        }
+                        path = entries.next();
+                    } catch (DirectoryIteratorException e) {
+                        throw new PosixException(Errno.EIO);
+                    }
+                    Dirent dirent = new Dirent();
+                    dirent.d_name = getName(path);
+                    try {
+                        Map<String, Object> attrs = Files.readAttributes(path, "unix:ino,mode", NOFOLLOW_LINKS);
+                        dirent.d_ino = (long) attrs.get("ino");
+                        dirent.d_type = Dirent.IFTODT((int) attrs.get("mode"));
+                    } catch (NoSuchFileException e) {
+                        // deleted while the directory is read
+                        continue;
+                    } catch (IOException | UnsupportedOperationException e) {
+                        dirent.d_ino = 1;
+                        dirent.d_type = Dirent.DT_UNKNOWN;
+                    }
+                    return dirent;
+                }
+            }
+
+            @Override
+            public void close() throws PosixException {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    throw new PosixException(Errno.EIO);
+                }
+            }
+        };
+    }
+
     @Override
     public void chown(long owner, long group) throws PosixException {
         throw new PosixException(Errno.EPERM);
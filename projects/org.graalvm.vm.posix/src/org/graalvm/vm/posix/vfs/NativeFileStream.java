@@ -52,6 +52,8 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
 import java.util.logging.Logger;
 
@@ -62,6 +64,8 @@ import org.graalvm.vm.posix.api.PosixException;
 import org.graalvm.vm.posix.api.PosixPointer;
 import org.graalvm.vm.posix.api.io.Stat;
 import org.graalvm.vm.posix.api.io.Stream;
+import org.graalvm.vm.posix.api.mem.CopyOnWriteMapping;
+import org.graalvm.vm.posix.api.mem.CopyOnWritePosixPointer;
 import org.graalvm.vm.posix.api.mem.Mman;
 import org.graalvm.vm.util.BitTest;
 import org.graalvm.vm.util.log.Levels;
@@ -198,6 +202,16 @@ public class NativeFileStream extends Stream {
         }
     }
 
+    @Override
+    protected ReadableByteChannel getReadableChannel() {
+        return r ? file.getChannel() : null;
+    }
+
+    @Override
+    protected WritableByteChannel getWritableChannel() {
+        return w ? file.getChannel() : null;
+    }
+
     @Override
     public int close() throws PosixException {
         try {
@@ -295,21 +309,36 @@ public class NativeFileStream extends Stream {
             // realsize = rem;
             // }
             if (BitTest.test(flags, Mman.MAP_PRIVATE) && BitTest.test(prot, Mman.PROT_WRITE)) {
-                assert size == (int) size;
-                ByteBuffer buf = ByteBuffer.allocate((int) realsize);
-                chan.read(buf, off);
-                // ByteBuffer buf = chan.map(MapMode.PRIVATE, off, size);
-                return new ByteBufferPosixPointer(buf, 0, roundToPageSize(size), realsize, path.toAbsolutePath().normalize().toString());
+                if (realsize != (int) realsize) {
+                    throw new PosixException(Errno.ENOMEM);
+                }
+                // map the file read-only and copy pages on first write; the part of the mapping
+                // beyond the end of the file reads as zero
+                long filesize = Math.min(rem, realsize);
+                ByteBuffer buf = chan.map(MapMode.READ_ONLY, off, filesize);
+                CopyOnWriteMapping mapping = new CopyOnWriteMapping(buf, realsize);
+                return new CopyOnWritePosixPointer(mapping, path.toAbsolutePath().normalize().toString());
             } else if (BitTest.test(flags, Mman.MAP_SHARED)) {
-                // TODO: implement properly
-                assert size == (int) size;
-                ByteBuffer buf = ByteBuffer.allocate((int) realsize);
-                chan.read(buf, off);
-                return new ByteBufferPosixPointer(buf, 0, roundToPageSize(size), realsize, path.toAbsolutePath().normalize().toString());
+                if (!r || (!w && BitTest.test(prot, Mman.PROT_WRITE))) {
+                    throw new PosixException(Errno.EACCES);
+                }
+                if (realsize != (int) realsize) {
+                    throw new PosixException(Errno.ENOMEM);
+                }
+                // All mappings of a file share the OS page cache, so writes are immediately visible
+                // to every other mapping and to read/pread. Writable files are always mapped
+                // read-write so that a later mprotect(PROT_WRITE) works. The mapping never extends
+                // the file: accesses beyond EOF read as zero and fail on write.
+                long filesize = Math.min(rem, realsize);
+                MapMode mode = w ? MapMode.READ_WRITE : MapMode.READ_ONLY;
+                ByteBuffer buf = chan.map(mode, off, filesize);
+                return new ByteBufferPosixPointer(buf, 0, realsize, filesize, path.toAbsolutePath().normalize().toString());
             } else {
-                // TODO: implement write mode
-                ByteBuffer buf = chan.map(MapMode.READ_ONLY, off, size);
-                return new ByteBufferPosixPointer(buf, 0, roundToPageSize(size), realsize, path.toAbsolutePath().normalize().toString());
+                // private read-only mapping: like above, never map beyond the end of the file and
+                // let the rest of the last page read as zero
+                long filesize = Math.min(rem, realsize);
+                ByteBuffer buf = chan.map(MapMode.READ_ONLY, off, filesize);
+                return new ByteBufferPosixPointer(buf, 0, realsize, filesize, path.toAbsolutePath().normalize().toString());
             }
         } catch (IOException e) {
             e.printStackTrace();
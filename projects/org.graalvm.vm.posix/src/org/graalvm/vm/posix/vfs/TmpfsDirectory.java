@@ -70,6 +70,11 @@ public class TmpfsDirectory extends VFSDirectory {
         ctime = atime;
     }
 
+    @Override
+    protected boolean isCacheable() {
+        return true;
+    }
+
     @Override
     protected void create(VFSEntry file) {
         mtime = new Date();
@@ -47,8 +47,20 @@ import org.graalvm.vm.posix.api.Errno;
 import org.graalvm.vm.posix.api.PosixException;
 import org.graalvm.vm.posix.api.io.Stream;
 
+/**
+ * A file which lives entirely in memory. The content is stored in chunks of {@link #CHUNK_SIZE}
+ * bytes which are only allocated once they are written, so appending never copies the existing
+ * content and holes in sparse files do not take up any memory.
+ */
 public class TmpfsFile extends VFSFile {
-    private byte[] data;
+    public static final int CHUNK_BITS = 16;
+    public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    public static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final long MAX_SIZE = (long) Integer.MAX_VALUE << CHUNK_BITS;
+
+    private byte[][] chunks;
+    private long size;
     private Date atime;
     private Date mtime;
     private Date ctime;
@@ -58,50 +70,168 @@ public class TmpfsFile extends VFSFile {
         atime = new Date();
         mtime = atime;
         ctime = atime;
-        data = new byte[0];
+        chunks = new byte[0][];
+        size = 0;
     }
 
-    public void setContent(byte[] data) {
+    public synchronized void setContent(byte[] data) {
         mtime = new Date();
-        this.data = data;
+        chunks = new byte[0][];
+        size = 0;
+        write(0, data, 0, data.length);
     }
 
-    public byte[] getContent() {
+    public synchronized byte[] getContent() {
+        if (size != (int) size) {
+            throw new OutOfMemoryError("file too large");
+        }
+        byte[] data = new byte[(int) size];
+        read(0, data, 0, data.length);
         return data;
     }
 
-    int read(int pos, byte[] buf, int offset, int length) {
-        int len = length;
-        if (pos + length > data.length) {
-            len = data.length - pos;
+    private static int chunkIndex(long pos) {
+        return (int) (pos >>> CHUNK_BITS);
+    }
+
+    private static int chunkOffset(long pos) {
+        return (int) (pos & CHUNK_MASK);
+    }
+
+    /**
+     * Returns the chunk which contains pos or null if this part of the file was never written.
+     */
+    synchronized byte[] getChunk(long pos) {
+        int idx = chunkIndex(pos);
+        if (idx < chunks.length) {
+            return chunks[idx];
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the chunk which contains pos and allocates it if necessary. The file size is not
+     * changed.
+     */
+    synchronized byte[] allocateChunk(long pos) {
+        int idx = chunkIndex(pos);
+        if (idx >= chunks.length) {
+            int capacity = Math.max(chunks.length * 2, 4);
+            while (capacity <= idx) {
+                capacity *= 2;
+            }
+            chunks = Arrays.copyOf(chunks, capacity);
         }
-        if (len < 0) {
+        byte[] chunk = chunks[idx];
+        if (chunk == null) {
+            chunk = new byte[CHUNK_SIZE];
+            chunks[idx] = chunk;
+        }
+        return chunk;
+    }
+
+    synchronized int read(long pos, byte[] buf, int offset, int length) {
+        if (pos >= size || length <= 0) {
             return 0;
         }
-        System.arraycopy(data, pos, buf, offset, len);
+        int len = (int) Math.min(length, size - pos);
+        int done = 0;
+        while (done < len) {
+            long p = pos + done;
+            int off = chunkOffset(p);
+            int n = Math.min(len - done, CHUNK_SIZE - off);
+            byte[] chunk = getChunk(p);
+            if (chunk == null) {
+                Arrays.fill(buf, offset + done, offset + done + n, (byte) 0);
+            } else {
+                System.arraycopy(chunk, off, buf, offset + done, n);
+            }
+            done += n;
+        }
         return len;
     }
 
-    void append(byte[] buf, int offset, int length) {
-        mtime = new Date();
-        int pos = data.length;
-        data = Arrays.copyOf(data, data.length + length);
-        System.arraycopy(buf, offset, data, pos, length);
+    /**
+     * Clears the bytes in [from, to) which are about to become part of the file. Shared mappings
+     * can write to the chunks behind the end of the file, this must not show up as file content.
+     */
+    private void clear(long from, long to) {
+        long end = Math.min(to, (long) chunks.length << CHUNK_BITS);
+        long pos = from;
+        while (pos < end) {
+            int off = chunkOffset(pos);
+            int n = (int) Math.min(end - pos, CHUNK_SIZE - off);
+            byte[] chunk = chunks[chunkIndex(pos)];
+            if (chunk != null) {
+                Arrays.fill(chunk, off, off + n, (byte) 0);
+            }
+            pos += n;
+        }
     }
 
-    void insert(int pos, byte[] buf, int offset, int length) {
+    synchronized void write(long pos, byte[] buf, int offset, int length) {
         mtime = new Date();
-        byte[] oldData = data;
-        data = Arrays.copyOf(data, data.length + length);
-        System.arraycopy(buf, offset, data, pos, length);
-        System.arraycopy(oldData, pos, data, pos + length, oldData.length - pos);
+        if (pos > size) {
+            clear(size, pos);
+        }
+        int done = 0;
+        while (done < length) {
+            long p = pos + done;
+            int off = chunkOffset(p);
+            int n = Math.min(length - done, CHUNK_SIZE - off);
+            System.arraycopy(buf, offset + done, allocateChunk(p), off, n);
+            done += n;
+        }
+        if (pos + length > size) {
+            size = pos + length;
+        }
+    }
+
+    synchronized long append(byte[] buf, int offset, int length) {
+        long pos = size;
+        write(pos, buf, offset, length);
+        return pos;
     }
 
-    void truncate(int length) throws PosixException {
+    synchronized void truncate(long length) throws PosixException {
         if (length < 0) {
             throw new PosixException(Errno.EINVAL);
         }
-        this.data = Arrays.copyOf(data, length);
+        if (length > MAX_SIZE) {
+            throw new PosixException(Errno.EFBIG);
+        }
+        mtime = new Date();
+        if (length < size) {
+            // drop all chunks behind the new end and clear the rest of the last one, so that
+            // growing the file again yields zeros
+            int last = chunkIndex(length + CHUNK_MASK);
+            if (last < chunks.length) {
+                Arrays.fill(chunks, last, chunks.length, null);
+            }
+            int off = chunkOffset(length);
+            if (off != 0) {
+                byte[] chunk = getChunk(length);
+                if (chunk != null) {
+                    Arrays.fill(chunk, off, CHUNK_SIZE, (byte) 0);
+                }
+            }
+            if (last < chunks.length / 4) {
+                chunks = Arrays.copyOf(chunks, Math.max(last, 4));
+            }
+        } else {
+            clear(size, length);
+        }
+        size = length;
+    }
+
+    /**
+     * Checks that a write of length bytes at pos keeps the file within the maximum file size.
+     */
+    static void checkWrite(long pos, int length) throws PosixException {
+        if (pos + length < pos || pos + length > MAX_SIZE) {
+            throw new PosixException(Errno.EFBIG);
+        }
     }
 
     @Override
@@ -111,8 +241,8 @@ public class TmpfsFile extends VFSFile {
     }
 
     @Override
-    public long size() {
-        return data.length;
+    public synchronized long size() {
+        return size;
     }
 
     @Override
@@ -40,51 +40,179 @@
  */
 package org.graalvm.vm.posix.vfs;
 
+import java.util.Arrays;
+
 import org.graalvm.vm.posix.api.PosixPointer;
 import org.graalvm.vm.util.io.Endianess;
 
+/**
+ * A shared mapping of a {@link TmpfsFile}. Accesses go directly to the chunks of the file, so
+ * changes are immediately visible to read/write and to every other mapping of the same file.
+ */
 public class TmpfsFileMemory implements PosixPointer {
-    private TmpfsFile file;
-    private long offset;
+    private final TmpfsFile file;
+    private final long offset;
+    private final long size;
 
-    public TmpfsFileMemory(TmpfsFile file, long offset) {
+    public TmpfsFileMemory(TmpfsFile file, long offset, long size) {
         this.file = file;
         this.offset = offset;
+        this.size = size;
     }
 
+    @Override
     public PosixPointer add(int off) {
-        return new TmpfsFileMemory(file, offset + off);
+        return new TmpfsFileMemory(file, offset + off, size - off);
+    }
+
+    private static int chunkOffset(long pos) {
+        return (int) (pos & TmpfsFile.CHUNK_MASK);
+    }
+
+    private static boolean inChunk(long pos, int length) {
+        return chunkOffset(pos) + length <= TmpfsFile.CHUNK_SIZE;
     }
 
+    private long getBE(int length) {
+        long val = 0;
+        for (int i = 0; i < length; i++) {
+            long pos = offset + i;
+            byte[] chunk = file.getChunk(pos);
+            byte b = chunk == null ? 0 : chunk[chunkOffset(pos)];
+            val = (val << 8) | Byte.toUnsignedLong(b);
+        }
+        return val;
+    }
+
+    private void setBE(int length, long val) {
+        for (int i = 0; i < length; i++) {
+            long pos = offset + i;
+            file.allocateChunk(pos)[chunkOffset(pos)] = (byte) (val >>> (8 * (length - i - 1)));
+        }
+    }
+
+    @Override
     public byte getI8() {
-        return file.getContent()[(int) offset];
+        byte[] chunk = file.getChunk(offset);
+        return chunk == null ? 0 : chunk[chunkOffset(offset)];
     }
 
+    @Override
     public short getI16() {
-        return Endianess.get16bitBE(file.getContent(), (int) offset);
+        if (inChunk(offset, 2)) {
+            byte[] chunk = file.getChunk(offset);
+            return chunk == null ? 0 : Endianess.get16bitBE(chunk, chunkOffset(offset));
+        } else {
+            return (short) getBE(2);
+        }
     }
 
+    @Override
     public int getI32() {
-        return Endianess.get32bitBE(file.getContent(), (int) offset);
+        if (inChunk(offset, 4)) {
+            byte[] chunk = file.getChunk(offset);
+            return chunk == null ? 0 : Endianess.get32bitBE(chunk, chunkOffset(offset));
+        } else {
+            return (int) getBE(4);
+        }
     }
 
+    @Override
     public long getI64() {
-        return Endianess.get64bitBE(file.getContent(), (int) offset);
+        if (inChunk(offset, 8)) {
+            byte[] chunk = file.getChunk(offset);
+            return chunk == null ? 0 : Endianess.get64bitBE(chunk, chunkOffset(offset));
+        } else {
+            return getBE(8);
+        }
     }
 
+    @Override
     public void setI8(byte val) {
-        file.getContent()[(int) offset] = val;
+        file.allocateChunk(offset)[chunkOffset(offset)] = val;
     }
 
+    @Override
     public void setI16(short val) {
-        Endianess.set16bitBE(file.getContent(), (int) offset, val);
+        if (inChunk(offset, 2)) {
+            Endianess.set16bitBE(file.allocateChunk(offset), chunkOffset(offset), val);
+        } else {
+            setBE(2, val);
+        }
     }
 
+    @Override
     public void setI32(int val) {
-        Endianess.set32bitBE(file.getContent(), (int) offset, val);
+        if (inChunk(offset, 4)) {
+            Endianess.set32bitBE(file.allocateChunk(offset), chunkOffset(offset), val);
+        } else {
+            setBE(4, val);
+        }
     }
 
+    @Override
     public void setI64(long val) {
-        Endianess.set64bitBE(file.getContent(), (int) offset, val);
+        if (inChunk(offset, 8)) {
+            Endianess.set64bitBE(file.allocateChunk(offset), chunkOffset(offset), val);
+        } else {
+            setBE(8, val);
+        }
+    }
+
+    @Override
+    public int getBytes(byte[] dst, int off, int length) {
+        int done = 0;
+        while (done < length) {
+            long pos = offset + done;
+            int chunkOff = chunkOffset(pos);
+            int n = Math.min(length - done, TmpfsFile.CHUNK_SIZE - chunkOff);
+            byte[] chunk = file.getChunk(pos);
+            if (chunk == null) {
+                Arrays.fill(dst, off + done, off + done + n, (byte) 0);
+            } else {
+                System.arraycopy(chunk, chunkOff, dst, off + done, n);
+            }
+            done += n;
+        }
+        return length;
+    }
+
+    @Override
+    public int setBytes(byte[] src, int off, int length) {
+        int done = 0;
+        while (done < length) {
+            long pos = offset + done;
+            int chunkOff = chunkOffset(pos);
+            int n = Math.min(length - done, TmpfsFile.CHUNK_SIZE - chunkOff);
+            System.arraycopy(src, off + done, file.allocateChunk(pos), chunkOff, n);
+            done += n;
+        }
+        return length;
+    }
+
+    @Override
+    public boolean hasMemory(int length) {
+        // holes are only materialized on the first write, so they cannot be handed out directly
+        return inChunk(offset, length) && file.getChunk(offset) != null;
+    }
+
+    @Override
+    public byte[] getMemory() {
+        return file.getChunk(offset);
+    }
+
+    @Override
+    public int getOffset() {
+        return chunkOffset(offset);
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public String getName() {
+        return file.getPath();
     }
 }
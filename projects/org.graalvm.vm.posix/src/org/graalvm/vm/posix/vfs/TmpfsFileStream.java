@@ -48,7 +48,10 @@ import org.graalvm.vm.posix.api.io.Stat;
 import org.graalvm.vm.posix.api.io.Stream;
 
 public class TmpfsFileStream extends Stream {
-    private int pos;
+    private static final long PAGE_SIZE = 4096;
+    private static final long PAGE_MASK = ~(PAGE_SIZE - 1);
+
+    private long pos;
     private TmpfsFile file;
     private boolean r;
     private boolean w;
@@ -82,7 +85,8 @@ public class TmpfsFileStream extends Stream {
         if (!w) {
             throw new PosixException(Errno.EBADF);
         }
-        file.insert(pos, buf, offset, length);
+        TmpfsFile.checkWrite(pos, length);
+        file.write(pos, buf, offset, length);
         pos += length;
         return length;
     }
@@ -92,10 +96,10 @@ public class TmpfsFileStream extends Stream {
         if (!r) {
             throw new PosixException(Errno.EBADF);
         }
-        if ((int) fileOffset != fileOffset) {
-            throw new PosixException(Errno.EOVERFLOW);
+        if (fileOffset < 0) {
+            throw new PosixException(Errno.EINVAL);
         }
-        int bytes = file.read((int) fileOffset, buf, offset, length);
+        int bytes = file.read(fileOffset, buf, offset, length);
         return bytes;
     }
 
@@ -104,10 +108,11 @@ public class TmpfsFileStream extends Stream {
         if (!w) {
             throw new PosixException(Errno.EBADF);
         }
-        if ((int) fileOffset != fileOffset) {
-            throw new PosixException(Errno.EOVERFLOW);
+        if (fileOffset < 0) {
+            throw new PosixException(Errno.EINVAL);
         }
-        file.insert((int) fileOffset, buf, offset, length);
+        TmpfsFile.checkWrite(fileOffset, length);
+        file.write(fileOffset, buf, offset, length);
         return length;
     }
 
@@ -138,11 +143,7 @@ public class TmpfsFileStream extends Stream {
         if (newpos < 0) {
             throw new PosixException(Errno.EINVAL);
         }
-        // truncate to int
-        if ((int) newpos != newpos) {
-            throw new PosixException(Errno.EOVERFLOW);
-        }
-        pos = (int) newpos;
+        pos = newpos;
         return pos;
     }
 
@@ -153,14 +154,14 @@ public class TmpfsFileStream extends Stream {
 
     @Override
     public void ftruncate(long length) throws PosixException {
-        if (length != (int) length) {
-            throw new PosixException(Errno.EFBIG);
-        }
-        file.truncate((int) length);
+        file.truncate(length);
     }
 
     @Override
     public PosixPointer mmap(long size, int prot, int flags, long off) throws PosixException {
-        return new TmpfsFileMemory(file, off);
+        if ((off & ~PAGE_MASK) != 0) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        return new TmpfsFileMemory(file, off, size);
     }
 }
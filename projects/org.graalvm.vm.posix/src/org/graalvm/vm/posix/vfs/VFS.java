@@ -59,15 +59,21 @@ import org.graalvm.vm.util.BitTest;
 public class VFS {
     private VFSDirectory directory;
     private Map<String, FileSystem> mounts;
+    private final DentryCache dentries;
 
     private String cwd;
 
     public VFS() {
         directory = new TmpfsDirectory(this, "", 0, 0, 0755); // "/" folder
         mounts = new HashMap<>();
+        dentries = new DentryCache();
         cwd = "/";
     }
 
+    public DentryCache getDentryCache() {
+        return dentries;
+    }
+
     public String realpath(String path) throws PosixException {
         return realpath(path, cwd);
     }
@@ -130,12 +136,56 @@ public class VFS {
         return find(path, true);
     }
 
+    @SuppressWarnings("unchecked")
     private <T extends VFSEntry> T find(String path, boolean resolve) throws PosixException {
-        return find(path, resolve, directory);
+        if (!DentryCache.ENABLED) {
+            return find(path, resolve, directory, null);
+        }
+        DentryCache.Dentry dentry = dentries.get(path, resolve);
+        if (dentry != null) {
+            if (dentry.isNegative()) {
+                throw new PosixException(dentry.errno);
+            }
+            return (T) dentry.entry;
+        }
+        long generation = dentries.generation();
+        Lookup lookup = new Lookup();
+        T entry;
+        try {
+            entry = find(path, resolve, directory, lookup);
+        } catch (PosixException e) {
+            if (lookup.cacheable) {
+                dentries.putNegative(path, resolve, generation, e.getErrno());
+            }
+            throw e;
+        }
+        if (lookup.cacheable) {
+            dentries.put(path, resolve, generation, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Records whether all directories which took part in a lookup are cacheable.
+     */
+    private static class Lookup {
+        boolean cacheable = true;
+
+        void visit(VFSEntry entry) {
+            if (entry instanceof VFSDirectory) {
+                cacheable &= ((VFSDirectory) entry).cacheable();
+            } else if (entry != null && entry.getParent() != null) {
+                cacheable &= entry.getParent().cacheable();
+            }
+        }
     }
 
-    @SuppressWarnings("unchecked")
     private static <T extends VFSEntry> T find(String path, boolean resolve, VFSDirectory root) throws PosixException {
+        return find(path, resolve, root, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends VFSEntry> T find(String path, boolean resolve, VFSDirectory root, Lookup lookup) throws PosixException {
         if (path.equals("")) {
             return (T) root;
         }
@@ -144,6 +194,9 @@ public class VFS {
         int i = 0;
         for (String part : parts) {
             i++;
+            if (lookup != null) {
+                lookup.visit(dir);
+            }
             VFSEntry entry = dir.get(part);
             if (entry == null) {
                 throw new PosixException(Errno.ENOENT);
@@ -158,6 +211,9 @@ public class VFS {
                 while (entry instanceof VFSSymlink) {
                     entry = link.getTarget();
                 }
+                if (lookup != null) {
+                    lookup.visit(entry);
+                }
                 if (entry instanceof VFSDirectory) {
                     dir = (VFSDirectory) entry;
                 } else { // VFSFile, VFSSpecialFile
@@ -185,7 +241,36 @@ public class VFS {
         dir.unlink(filename);
     }
 
+    /**
+     * Checks if an absolute path is already in the form returned by normalize, which is the case
+     * for most paths passed by programs.
+     */
+    private static boolean isNormalized(String path) {
+        int len = path.length();
+        if (len < 2 || path.charAt(0) != '/' || path.charAt(len - 1) == '/') {
+            return false;
+        }
+        int start = 1;
+        for (int i = 1; i <= len; i++) {
+            if (i == len || path.charAt(i) == '/') {
+                int n = i - start;
+                if (n == 0) {
+                    return false;
+                } else if (n == 1 && path.charAt(start) == '.') {
+                    return false;
+                } else if (n == 2 && path.charAt(start) == '.' && path.charAt(start + 1) == '.') {
+                    return false;
+                }
+                start = i + 1;
+            }
+        }
+        return true;
+    }
+
     public static String normalize(String path) {
+        if (isNormalized(path)) {
+            return path;
+        }
         String[] parts = Arrays.stream(path.split("/")).filter((x) -> x.length() > 0).filter((x) -> !x.equals(".")).toArray(String[]::new);
         List<String> normalized = new ArrayList<>();
         for (String part : parts) {
@@ -402,6 +487,7 @@ public class VFS {
         VFSDirectory dir = getDirectory(path);
         dir.mount(fs.createMountPoint(this, path));
         mounts.put(path, fs);
+        dentries.invalidate();
     }
 
     @Override
@@ -40,18 +40,28 @@
  */
 package org.graalvm.vm.posix.vfs;
 
-import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.graalvm.vm.posix.api.Dirent;
+import org.graalvm.vm.posix.api.Errno;
 import org.graalvm.vm.posix.api.PosixException;
 import org.graalvm.vm.posix.api.io.Stat;
 import org.graalvm.vm.posix.api.io.Stream;
 
 public abstract class VFSDirectory extends VFSEntry {
+    private static final int MAX_DENTRIES = 16 * 1024;
+    private static final Object NEGATIVE = new Object();
+
     private VFSDirectory mount;
 
+    // name lookups of cacheable directories; NEGATIVE marks names which do not exist
+    private final Map<String, Object> dentries = new ConcurrentHashMap<>();
+    private long dentryGeneration = 0;
+
     public VFSDirectory(VFS vfs, String path, long uid, long gid, long permissions) {
         super(vfs, path, uid, gid, permissions);
         mount = null;
@@ -71,6 +81,82 @@ public abstract class VFSDirectory extends VFSEntry {
         mount = null;
     }
 
+    /**
+     * Returns true if lookups in this directory stay valid until the directory is changed through
+     * the VFS, so that their results can be cached.
+     */
+    protected boolean isCacheable() {
+        return false;
+    }
+
+    boolean cacheable() {
+        if (mount != null) {
+            return mount.cacheable();
+        } else {
+            return isCacheable();
+        }
+    }
+
+    private DentryCache getDentryCache() {
+        VFS vfs = getVFS();
+        return vfs == null ? null : vfs.getDentryCache();
+    }
+
+    private void changed(String name) {
+        synchronized (dentries) {
+            dentryGeneration++;
+            dentries.remove(name);
+        }
+        DentryCache cache = getDentryCache();
+        if (cache != null) {
+            cache.invalidate();
+        }
+    }
+
+    private void remember(String name, Object entry, long generation) {
+        synchronized (dentries) {
+            // a concurrent change may have happened while the entry was looked up
+            if (generation == dentryGeneration) {
+                if (dentries.size() >= MAX_DENTRIES) {
+                    dentries.clear();
+                }
+                dentries.put(name, entry);
+            }
+        }
+    }
+
+    private VFSEntry lookup(String name) throws PosixException {
+        DentryCache cache = getDentryCache();
+        Object cached = dentries.get(name);
+        if (cached != null) {
+            if (cache != null) {
+                cache.nameHit(cached == NEGATIVE);
+            }
+            if (cached == NEGATIVE) {
+                throw new PosixException(Errno.ENOENT);
+            }
+            return (VFSEntry) cached;
+        }
+        if (cache != null) {
+            cache.nameMiss();
+        }
+        long generation;
+        synchronized (dentries) {
+            generation = dentryGeneration;
+        }
+        VFSEntry entry;
+        try {
+            entry = getEntry(name);
+        } catch (PosixException e) {
+            if (e.getErrno() == Errno.ENOENT) {
+                remember(name, NEGATIVE, generation);
+            }
+            throw e;
+        }
+        remember(name, entry == null ? NEGATIVE : entry, generation);
+        return entry;
+    }
+
     protected abstract void create(VFSEntry file) throws PosixException;
 
     protected abstract VFSDirectory createDirectory(String name, long uid, long gid, long permissions) throws PosixException;
@@ -85,35 +171,29 @@ public abstract class VFSDirectory extends VFSEntry {
 
     protected abstract List<VFSEntry> list() throws PosixException;
 
-    protected Stream opendir(@SuppressWarnings("unused") int flags, @SuppressWarnings("unused") int mode) throws PosixException {
-        List<Dirent> entries = new ArrayList<>();
-        Dirent self = new Dirent();
+    /**
+     * Opens a cursor over the entries of this directory. The default implementation lists the
+     * whole directory up front, which is fine for directories that live in memory anyway.
+     */
+    protected DirectoryCursor openCursor() throws PosixException {
+        Iterator<VFSEntry> entries = list().iterator();
         Stat stat = new Stat();
-        stat(stat);
-        self.d_ino = stat.st_ino;
-        self.d_off = 0;
-        self.d_type = Dirent.DT_DIR;
-        self.d_name = ".";
-        entries.add(self);
-        Dirent parent = new Dirent();
-        parent.d_ino = self.d_ino;
-        parent.d_off = 1;
-        parent.d_type = Dirent.DT_DIR;
-        parent.d_name = "..";
-        entries.add(parent);
-
-        long off = 2;
-        for (VFSEntry entry : list()) {
-            Dirent dirent = new Dirent();
+        return () -> {
+            if (!entries.hasNext()) {
+                return null;
+            }
+            VFSEntry entry = entries.next();
             entry.stat(stat);
+            Dirent dirent = new Dirent();
             dirent.d_ino = stat.st_ino;
-            dirent.d_off = off;
             dirent.d_type = Dirent.IFTODT(stat.st_mode);
             dirent.d_name = entry.getName();
-            entries.add(dirent);
-            off++;
-        }
-        return new GenericDirectoryStream(this, entries.iterator());
+            return dirent;
+        };
+    }
+
+    protected Stream opendir(@SuppressWarnings("unused") int flags, @SuppressWarnings("unused") int mode) throws PosixException {
+        return new GenericDirectoryStream(this);
     }
 
     public final Stream open(int flags, int mode) throws PosixException {
@@ -128,7 +208,11 @@ public abstract class VFSDirectory extends VFSEntry {
         if (mount != null) {
             return mount.mkdir(name, uid, gid, permissions);
         } else {
-            return createDirectory(name, uid, gid, permissions);
+            try {
+                return createDirectory(name, uid, gid, permissions);
+            } finally {
+                changed(name);
+            }
         }
     }
 
@@ -136,16 +220,24 @@ public abstract class VFSDirectory extends VFSEntry {
         if (mount != null) {
             return mount.mkfile(name, uid, gid, permissions);
         } else {
-            return createFile(name, uid, gid, permissions);
+            try {
+                return createFile(name, uid, gid, permissions);
+            } finally {
+                changed(name);
+            }
         }
     }
 
     public final VFSSymlink symlink(String name, long uid, long gid, long permissions, String target)
                     throws PosixException {
         if (mount != null) {
-            return mount.createSymlink(name, uid, gid, permissions, target);
+            return mount.symlink(name, uid, gid, permissions, target);
         } else {
-            return createSymlink(name, uid, gid, permissions, target);
+            try {
+                return createSymlink(name, uid, gid, permissions, target);
+            } finally {
+                changed(name);
+            }
         }
     }
 
@@ -153,7 +245,11 @@ public abstract class VFSDirectory extends VFSEntry {
         if (mount != null) {
             mount.unlink(name);
         } else {
-            delete(name);
+            try {
+                delete(name);
+            } finally {
+                changed(name);
+            }
         }
     }
 
@@ -168,6 +264,8 @@ public abstract class VFSDirectory extends VFSEntry {
     public final VFSEntry get(String name) throws PosixException {
         if (mount != null) {
             return mount.get(name);
+        } else if (DentryCache.ENABLED && isCacheable()) {
+            return lookup(name);
         } else {
             return getEntry(name);
         }
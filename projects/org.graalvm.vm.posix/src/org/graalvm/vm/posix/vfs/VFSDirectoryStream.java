@@ -40,84 +40,152 @@
  */
 package org.graalvm.vm.posix.vfs;
 
-import java.util.Iterator;
-
 import org.graalvm.vm.posix.api.Dirent;
+import org.graalvm.vm.posix.api.Errno;
 import org.graalvm.vm.posix.api.PosixException;
 import org.graalvm.vm.posix.api.PosixPointer;
 import org.graalvm.vm.posix.api.io.DirectoryStream;
 import org.graalvm.vm.posix.api.io.Stat;
 
+/**
+ * Reads a directory through a {@link DirectoryCursor} which stays open across getdents calls. The
+ * file offset of the stream is the index of the next entry, with "." and ".." at 0 and 1, and d_off
+ * of every entry is the offset of the entry behind it. Seeking forward skips entries, seeking
+ * backwards reopens the cursor, so rewinddir also picks up entries which were created since.
+ */
 public abstract class VFSDirectoryStream extends DirectoryStream {
-    private VFSDirectory dir;
-    private Iterator<Dirent> iterator;
-    private Dirent last = null;
+    private static final long FIRST_ENTRY = 2;
 
-    public VFSDirectoryStream(VFSDirectory dir, Iterator<Dirent> iterator) {
+    private final VFSDirectory dir;
+    private DirectoryCursor cursor;
+    private long cursorPosition;
+    private long position;
+    private Dirent pending;
+
+    public VFSDirectoryStream(VFSDirectory dir) {
         this.dir = dir;
-        this.iterator = iterator;
+        cursor = null;
+        position = 0;
+        pending = null;
     }
 
-    private Dirent peek() {
-        if (last != null) {
-            return last;
+    private Dirent read(long off) throws PosixException {
+        Dirent dirent;
+        if (off < FIRST_ENTRY) {
+            Stat stat = new Stat();
+            dir.stat(stat);
+            dirent = new Dirent();
+            dirent.d_ino = stat.st_ino;
+            dirent.d_type = Dirent.DT_DIR;
+            dirent.d_name = off == 0 ? "." : "..";
         } else {
-            last = iterator.next();
-            return last;
+            if (cursor == null || off < cursorPosition) {
+                closeCursor();
+                cursor = dir.openCursor();
+                cursorPosition = FIRST_ENTRY;
+            }
+            while (cursorPosition < off) {
+                if (cursor.next() == null) {
+                    return null;
+                }
+                cursorPosition++;
+            }
+            dirent = cursor.next();
+            if (dirent == null) {
+                return null;
+            }
+            cursorPosition++;
         }
+        dirent.d_off = off + 1;
+        return dirent;
+    }
+
+    private Dirent peek() throws PosixException {
+        if (pending == null) {
+            pending = read(position);
+        }
+        return pending;
     }
 
     private void next() {
-        assert last != null;
-        last = null;
+        assert pending != null;
+        pending = null;
+        position++;
     }
 
-    private boolean hasNext() {
-        return last != null || iterator.hasNext();
+    private void closeCursor() throws PosixException {
+        if (cursor != null) {
+            DirectoryCursor c = cursor;
+            cursor = null;
+            c.close();
+        }
     }
 
     @Override
-    public long getdents(PosixPointer ptr, long count, int type) {
+    public synchronized long getdents(PosixPointer ptr, long count, int type) throws PosixException {
         long total = 0;
         PosixPointer p = ptr;
-        while (hasNext()) {
-            Dirent dirent = peek();
-            if (type == Dirent.DIRENT_64) {
-                int size = dirent.size64();
-                if (total + size <= count) {
-                    p = dirent.write64(p);
-                    total += size;
-                    next();
-                } else {
-                    break;
-                }
-            } else if (type == Dirent.DIRENT_32) {
-                int size = dirent.size32();
-                if (total + size <= count) {
-                    p = dirent.write32(p);
-                    total += size;
-                    next();
-                } else {
-                    break;
-                }
-            } else if (type == Dirent.DIRENT64) {
-                int size = dirent.size64();
-                if (total + size <= count) {
-                    p = dirent.writeDirent64(p);
-                    total += size;
-                    next();
-                } else {
-                    break;
-                }
+        Dirent dirent;
+        while ((dirent = peek()) != null) {
+            int size;
+            if (type == Dirent.DIRENT_32) {
+                size = dirent.size32();
+            } else if (type == Dirent.DIRENT_64 || type == Dirent.DIRENT64) {
+                size = dirent.size64();
             } else {
                 throw new IllegalArgumentException("unknown type");
             }
+            if (total + size > count) {
+                if (total == 0) {
+                    // not even a single entry fits into the buffer
+                    throw new PosixException(Errno.EINVAL);
+                }
+                break;
+            }
+            if (type == Dirent.DIRENT_32) {
+                p = dirent.write32(p);
+            } else if (type == Dirent.DIRENT_64) {
+                p = dirent.write64(p);
+            } else {
+                p = dirent.writeDirent64(p);
+            }
+            total += size;
+            next();
         }
         return total;
     }
 
     @Override
-    public long lseek(long offset, int whence) throws PosixException {
+    public synchronized long lseek(long offset, int whence) throws PosixException {
+        long newpos;
+        switch (whence) {
+            case SEEK_SET:
+                newpos = offset;
+                break;
+            case SEEK_CUR:
+                newpos = position + offset;
+                break;
+            default:
+                throw new PosixException(Errno.EINVAL);
+        }
+        if (newpos < 0) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        if (newpos != position || newpos == 0) {
+            // seeking to 0 always rewinds, even if nothing was read yet
+            pending = null;
+            position = newpos;
+            if (newpos == 0) {
+                closeCursor();
+            }
+        }
+        return position;
+    }
+
+    @Override
+    public synchronized int close() throws PosixException {
+        pending = null;
+        closeCursor();
         return 0;
     }
 
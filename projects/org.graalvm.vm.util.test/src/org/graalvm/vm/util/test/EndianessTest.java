@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.util.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.graalvm.vm.util.io.ByteArrayAccess;
+import org.graalvm.vm.util.io.Endianess;
+import org.junit.Test;
+
+public class EndianessTest {
+    private static byte[] data() {
+        byte[] data = new byte[32];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 0x11 + 0x80);
+        }
+        return data;
+    }
+
+    private static long readLE(byte[] data, int offset, int size) {
+        long value = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            value = (value << 8) | Byte.toUnsignedLong(data[offset + i]);
+        }
+        return value;
+    }
+
+    private static long readBE(byte[] data, int offset, int size) {
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = (value << 8) | Byte.toUnsignedLong(data[offset + i]);
+        }
+        return value;
+    }
+
+    @Test
+    public void testGet() {
+        byte[] data = data();
+        for (int i = 0; i <= data.length - 8; i++) {
+            assertEquals((short) readLE(data, i, 2), Endianess.get16bitLE(data, i));
+            assertEquals((short) readBE(data, i, 2), Endianess.get16bitBE(data, i));
+            assertEquals((int) readLE(data, i, 4), Endianess.get32bitLE(data, i));
+            assertEquals((int) readBE(data, i, 4), Endianess.get32bitBE(data, i));
+            assertEquals(readLE(data, i, 8), Endianess.get64bitLE(data, i));
+            assertEquals(readBE(data, i, 8), Endianess.get64bitBE(data, i));
+        }
+    }
+
+    @Test
+    public void testSet() {
+        for (int i = 0; i <= 24; i++) {
+            byte[] data = new byte[32];
+            Endianess.set64bitLE(data, i, 0x0123456789ABCDEFL);
+            assertEquals(0x0123456789ABCDEFL, readLE(data, i, 8));
+            Endianess.set64bitBE(data, i, 0x0123456789ABCDEFL);
+            assertEquals(0x0123456789ABCDEFL, readBE(data, i, 8));
+            Endianess.set32bitLE(data, i, 0xCAFEBABE);
+            assertEquals(0xCAFEBABEL, readLE(data, i, 4));
+            Endianess.set32bitBE(data, i, 0xCAFEBABE);
+            assertEquals(0xCAFEBABEL, readBE(data, i, 4));
+            Endianess.set16bitLE(data, i, (short) 0xBEEF);
+            assertEquals(0xBEEFL, readLE(data, i, 2));
+            Endianess.set16bitBE(data, i, (short) 0xBEEF);
+            assertEquals(0xBEEFL, readBE(data, i, 2));
+        }
+    }
+
+    @Test
+    public void testBounds() {
+        byte[] data = new byte[8];
+        int[] offsets = {-1, 5, 8, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        int[] writeOffsets = {-1, 5, 7, Integer.MAX_VALUE - 1, Integer.MIN_VALUE};
+        for (int offset : offsets) {
+            try {
+                Endianess.get64bitLE(data, offset);
+                fail("read at " + offset + " succeeded");
+            } catch (ArrayIndexOutOfBoundsException e) {
+                // expected
+            }
+        }
+        for (int offset : writeOffsets) {
+            try {
+                Endianess.set32bitLE(data, offset, 0xFFFFFFFF);
+                fail("write at " + offset + " succeeded");
+            } catch (ArrayIndexOutOfBoundsException e) {
+                // expected
+            }
+        }
+        if (ByteArrayAccess.ENABLED) {
+            // the fast path checks bounds before writing anything
+            for (byte b : data) {
+                assertEquals(0, b);
+            }
+        }
+    }
+
+    @Test
+    public void testAtomic() {
+        if (!ByteArrayAccess.ENABLED) {
+            return;
+        }
+        byte[] data = new byte[32];
+        int offset = 0;
+        while (!ByteArrayAccess.isAtomic(data, offset, 8)) {
+            offset++;
+        }
+        assertFalse(ByteArrayAccess.isAtomic(data, offset + 1, 8));
+        assertTrue(ByteArrayAccess.casI64LE(data, offset, 0, 0x1122334455667788L));
+        assertFalse(ByteArrayAccess.casI64LE(data, offset, 0, 1));
+        assertEquals(0x1122334455667788L, Endianess.get64bitLE(data, offset));
+        assertEquals(0x1122334455667788L, ByteArrayAccess.getAndAddI64LE(data, offset, 8));
+        assertEquals(0x1122334455667790L, ByteArrayAccess.getI64LEAcquire(data, offset));
+        ByteArrayAccess.setI32LERelease(data, offset, 0x7FFFFFFF);
+        assertEquals(0x7FFFFFFF, ByteArrayAccess.getAndAddI32LE(data, offset, 1));
+        assertEquals(0x80000000, ByteArrayAccess.getI32LEAcquire(data, offset));
+        assertTrue(ByteArrayAccess.casI32BE(data, offset, 0x00000080, 0x01020304));
+        assertEquals(0x01020304, Endianess.get32bitBE(data, offset));
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.util.io;
+
+import java.nio.ByteOrder;
+
+import org.graalvm.vm.util.UnsafeHolder;
+
+import sun.misc.Unsafe;
+
+/**
+ * Multi-byte accesses to byte arrays which compile to a single host load/store. This fills the role
+ * of byte array view VarHandles on Java 8: plain little/big endian accesses, acquire/release
+ * accesses and CAS/fetch-and-add for naturally aligned offsets.
+ *
+ * All accessors check the bounds explicitly and throw {@link ArrayIndexOutOfBoundsException} like
+ * the plain array accesses in {@link Endianess}. Callers must check {@link #ENABLED} before using
+ * the plain accessors and {@link #isAtomic(byte[], int, int)} before using the atomic ones.
+ */
+public class ByteArrayAccess {
+    private static final Unsafe unsafe;
+    private static final long BASE;
+    private static final boolean HOST_LE = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * Whether unaligned accesses via Unsafe are supported on this host.
+     */
+    public static final boolean ENABLED;
+
+    static {
+        String arch = System.getProperty("os.arch");
+        boolean unaligned = arch.equals("amd64") || arch.equals("x86_64") || arch.equals("aarch64") || arch.equals("x86") || arch.equals("i386");
+        Unsafe u = null;
+        if (unaligned) {
+            try {
+                u = UnsafeHolder.getUnsafe();
+            } catch (RuntimeException e) {
+                u = null;
+            }
+        }
+        unsafe = u;
+        ENABLED = u != null;
+        BASE = u != null ? Unsafe.ARRAY_BYTE_BASE_OFFSET : 0;
+    }
+
+    private static long check(byte[] data, int offset, int size) {
+        if (offset < 0 || offset > data.length - size) {
+            throw new ArrayIndexOutOfBoundsException(offset);
+        }
+        return BASE + offset;
+    }
+
+    private static short le(short value) {
+        return HOST_LE ? value : Short.reverseBytes(value);
+    }
+
+    private static int le(int value) {
+        return HOST_LE ? value : Integer.reverseBytes(value);
+    }
+
+    private static long le(long value) {
+        return HOST_LE ? value : Long.reverseBytes(value);
+    }
+
+    private static short be(short value) {
+        return HOST_LE ? Short.reverseBytes(value) : value;
+    }
+
+    private static int be(int value) {
+        return HOST_LE ? Integer.reverseBytes(value) : value;
+    }
+
+    private static long be(long value) {
+        return HOST_LE ? Long.reverseBytes(value) : value;
+    }
+
+    // plain accesses
+    public static short getI16LE(byte[] data, int offset) {
+        return le(unsafe.getShort(data, check(data, offset, 2)));
+    }
+
+    public static short getI16BE(byte[] data, int offset) {
+        return be(unsafe.getShort(data, check(data, offset, 2)));
+    }
+
+    public static int getI32LE(byte[] data, int offset) {
+        return le(unsafe.getInt(data, check(data, offset, 4)));
+    }
+
+    public static int getI32BE(byte[] data, int offset) {
+        return be(unsafe.getInt(data, check(data, offset, 4)));
+    }
+
+    public static long getI64LE(byte[] data, int offset) {
+        return le(unsafe.getLong(data, check(data, offset, 8)));
+    }
+
+    public static long getI64BE(byte[] data, int offset) {
+        return be(unsafe.getLong(data, check(data, offset, 8)));
+    }
+
+    public static void setI16LE(byte[] data, int offset, short value) {
+        unsafe.putShort(data, check(data, offset, 2), le(value));
+    }
+
+    public static void setI16BE(byte[] data, int offset, short value) {
+        unsafe.putShort(data, check(data, offset, 2), be(value));
+    }
+
+    public static void setI32LE(byte[] data, int offset, int value) {
+        unsafe.putInt(data, check(data, offset, 4), le(value));
+    }
+
+    public static void setI32BE(byte[] data, int offset, int value) {
+        unsafe.putInt(data, check(data, offset, 4), be(value));
+    }
+
+    public static void setI64LE(byte[] data, int offset, long value) {
+        unsafe.putLong(data, check(data, offset, 8), le(value));
+    }
+
+    public static void setI64BE(byte[] data, int offset, long value) {
+        unsafe.putLong(data, check(data, offset, 8), be(value));
+    }
+
+    // atomic accesses, only valid if isAtomic(data, offset, size) holds
+
+    /**
+     * Returns true if an atomic access of {@code size} bytes at {@code offset} can use the atomic
+     * accessors. 4 and 8 byte accesses have to be naturally aligned in host memory, 1 and 2 byte
+     * accesses have to lie within one aligned 4 byte word of the array.
+     */
+    public static boolean isAtomic(byte[] data, int offset, int size) {
+        if (!ENABLED || offset < 0 || offset > data.length - size) {
+            return false;
+        }
+        long address = BASE + offset;
+        if (size < 4) {
+            long word = address & ~3L;
+            return HOST_LE && word >= BASE && word + 4 <= BASE + data.length && ((address + size - 1) & ~3L) == word;
+        } else {
+            return (address & (size - 1)) == 0;
+        }
+    }
+
+    // CAS on the aligned word which contains [address, address + bits / 8)
+    private static boolean casSubword(byte[] data, long address, int bits, int expected, int value) {
+        long word = address & ~3L;
+        int shift = (int) (address - word) << 3;
+        int mask = (int) ((1L << bits) - 1) << shift;
+        int exp = (expected << shift) & mask;
+        int val = (value << shift) & mask;
+        while (true) {
+            int old = unsafe.getIntVolatile(data, word);
+            if ((old & mask) != exp) {
+                return false;
+            }
+            if (unsafe.compareAndSwapInt(data, word, old, (old & ~mask) | val)) {
+                return true;
+            }
+        }
+    }
+
+    public static boolean casI8(byte[] data, int offset, byte expected, byte value) {
+        return casSubword(data, check(data, offset, 1), 8, expected, value);
+    }
+
+    public static boolean casI16LE(byte[] data, int offset, short expected, short value) {
+        return casSubword(data, check(data, offset, 2), 16, expected, value);
+    }
+
+    public static boolean casI16BE(byte[] data, int offset, short expected, short value) {
+        return casSubword(data, check(data, offset, 2), 16, Short.reverseBytes(expected), Short.reverseBytes(value));
+    }
+
+    public static int getI32LEAcquire(byte[] data, int offset) {
+        return le(unsafe.getIntVolatile(data, check(data, offset, 4)));
+    }
+
+    public static long getI64LEAcquire(byte[] data, int offset) {
+        return le(unsafe.getLongVolatile(data, check(data, offset, 8)));
+    }
+
+    public static void setI32LERelease(byte[] data, int offset, int value) {
+        unsafe.putOrderedInt(data, check(data, offset, 4), le(value));
+    }
+
+    public static void setI64LERelease(byte[] data, int offset, long value) {
+        unsafe.putOrderedLong(data, check(data, offset, 8), le(value));
+    }
+
+    public static boolean casI32LE(byte[] data, int offset, int expected, int value) {
+        return unsafe.compareAndSwapInt(data, check(data, offset, 4), le(expected), le(value));
+    }
+
+    public static boolean casI64LE(byte[] data, int offset, long expected, long value) {
+        return unsafe.compareAndSwapLong(data, check(data, offset, 8), le(expected), le(value));
+    }
+
+    public static boolean casI32BE(byte[] data, int offset, int expected, int value) {
+        return unsafe.compareAndSwapInt(data, check(data, offset, 4), be(expected), be(value));
+    }
+
+    public static boolean casI64BE(byte[] data, int offset, long expected, long value) {
+        return unsafe.compareAndSwapLong(data, check(data, offset, 8), be(expected), be(value));
+    }
+
+    public static int getAndAddI32LE(byte[] data, int offset, int delta) {
+        long address = check(data, offset, 4);
+        if (HOST_LE) {
+            return unsafe.getAndAddInt(data, address, delta);
+        }
+        int old;
+        do {
+            old = unsafe.getIntVolatile(data, address);
+        } while (!unsafe.compareAndSwapInt(data, address, old, le(le(old) + delta)));
+        return le(old);
+    }
+
+    public static long getAndAddI64LE(byte[] data, int offset, long delta) {
+        long address = check(data, offset, 8);
+        if (HOST_LE) {
+            return unsafe.getAndAddLong(data, address, delta);
+        }
+        long old;
+        do {
+            old = unsafe.getLongVolatile(data, address);
+        } while (!unsafe.compareAndSwapLong(data, address, old, le(le(old) + delta)));
+        return le(old);
+    }
+}
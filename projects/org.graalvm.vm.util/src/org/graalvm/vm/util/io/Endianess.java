@@ -46,6 +46,9 @@ public class Endianess {
     }
 
     public static short get16bitBE(byte[] data, int offset) {
+        if (ByteArrayAccess.ENABLED) {
+            return ByteArrayAccess.getI16BE(data, offset);
+        }
         return (short) (Byte.toUnsignedInt(data[offset]) << 8 | Byte.toUnsignedInt(data[offset + 1]));
     }
 
@@ -66,6 +69,9 @@ public class Endianess {
     }
 
     public static int get32bitBE(byte[] data, int offset) {
+        if (ByteArrayAccess.ENABLED) {
+            return ByteArrayAccess.getI32BE(data, offset);
+        }
         return Byte.toUnsignedInt(data[offset]) << 24 | Byte.toUnsignedInt(data[offset + 1]) << 16 | Byte.toUnsignedInt(data[offset + 2]) << 8 | Byte.toUnsignedInt(data[offset + 3]);
     }
 
@@ -78,6 +84,9 @@ public class Endianess {
     }
 
     public static long get64bitBE(byte[] data, int offset) {
+        if (ByteArrayAccess.ENABLED) {
+            return ByteArrayAccess.getI64BE(data, offset);
+        }
         return Byte.toUnsignedLong(data[offset]) << 56 |
                         Byte.toUnsignedLong(data[offset + 1]) << 48 |
                         Byte.toUnsignedLong(data[offset + 2]) << 40 |
@@ -93,6 +102,9 @@ public class Endianess {
     }
 
     public static short get16bitLE(byte[] data, int offset) {
+        if (ByteArrayAccess.ENABLED) {
+            return ByteArrayAccess.getI16LE(data, offset);
+        }
         return (short) (Byte.toUnsignedInt(data[offset]) | Byte.toUnsignedInt(data[offset + 1]) << 8);
     }
 
@@ -101,6 +113,9 @@ public class Endianess {
     }
 
     public static int get32bitLE(byte[] data, int offset) {
+        if (ByteArrayAccess.ENABLED) {
+            return ByteArrayAccess.getI32LE(data, offset);
+        }
         return Byte.toUnsignedInt(data[offset]) | Byte.toUnsignedInt(data[offset + 1]) << 8 | Byte.toUnsignedInt(data[offset + 2]) << 16 | Byte.toUnsignedInt(data[offset + 3]) << 24;
     }
 
@@ -109,6 +124,9 @@ public class Endianess {
     }
 
     public static long get64bitLE(byte[] data, int offset) {
+        if (ByteArrayAccess.ENABLED) {
+            return ByteArrayAccess.getI64LE(data, offset);
+        }
         return Byte.toUnsignedLong(data[offset]) |
                         Byte.toUnsignedLong(data[offset + 1]) << 8 |
                         Byte.toUnsignedLong(data[offset + 2]) << 16 |
@@ -120,12 +138,20 @@ public class Endianess {
     }
 
     public static byte[] set16bitBE(byte[] data, int offset, short value) {
+        if (ByteArrayAccess.ENABLED) {
+            ByteArrayAccess.setI16BE(data, offset, value);
+            return data;
+        }
         data[offset] = (byte) (value >> 8);
         data[offset + 1] = (byte) value;
         return data;
     }
 
     public static byte[] set32bitBE(byte[] data, int offset, int value) {
+        if (ByteArrayAccess.ENABLED) {
+            ByteArrayAccess.setI32BE(data, offset, value);
+            return data;
+        }
         data[offset] = (byte) (value >> 24);
         data[offset + 1] = (byte) (value >> 16);
         data[offset + 2] = (byte) (value >> 8);
@@ -139,6 +165,10 @@ public class Endianess {
     }
 
     public static byte[] set64bitBE(byte[] data, int offset, long value) {
+        if (ByteArrayAccess.ENABLED) {
+            ByteArrayAccess.setI64BE(data, offset, value);
+            return data;
+        }
         data[offset] = (byte) (value >> 56);
         data[offset + 1] = (byte) (value >> 48);
         data[offset + 2] = (byte) (value >> 40);
@@ -156,12 +186,20 @@ public class Endianess {
     }
 
     public static byte[] set16bitLE(byte[] data, int offset, short value) {
+        if (ByteArrayAccess.ENABLED) {
+            ByteArrayAccess.setI16LE(data, offset, value);
+            return data;
+        }
         data[offset] = (byte) value;
         data[offset + 1] = (byte) (value >> 8);
         return data;
     }
 
     public static byte[] set32bitLE(byte[] data, int offset, int value) {
+        if (ByteArrayAccess.ENABLED) {
+            ByteArrayAccess.setI32LE(data, offset, value);
+            return data;
+        }
         data[offset] = (byte) value;
         data[offset + 1] = (byte) (value >> 8);
         data[offset + 2] = (byte) (value >> 16);
@@ -175,6 +213,10 @@ public class Endianess {
     }
 
     public static byte[] set64bitLE(byte[] data, int offset, long value) {
+        if (ByteArrayAccess.ENABLED) {
+            ByteArrayAccess.setI64LE(data, offset, value);
+            return data;
+        }
         data[offset] = (byte) value;
         data[offset + 1] = (byte) (value >> 8);
         data[offset + 2] = (byte) (value >> 16);
@@ -236,4 +236,7 @@ public class Ptrace implements Closeable {
         return (int) sc(Syscalls.SYS_mprotect, addr, len, prot, 0, 0, 0);
     }
 
+    public int madvise(long addr, long len, int advice) throws PosixException {
+        return (int) sc(Syscalls.SYS_madvise, addr, len, advice, 0, 0, 0);
+    }
 }
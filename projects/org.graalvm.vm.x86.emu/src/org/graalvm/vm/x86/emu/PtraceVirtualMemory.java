@@ -48,6 +48,7 @@ import java.util.logging.Logger;
 import org.graalvm.vm.memory.ByteMemory;
 import org.graalvm.vm.memory.Memory;
 import org.graalvm.vm.memory.MemoryPage;
+import org.graalvm.vm.memory.PagedMemory;
 import org.graalvm.vm.memory.PosixMemory;
 import org.graalvm.vm.memory.VirtualMemory;
 import org.graalvm.vm.memory.exception.SegmentationViolation;
@@ -240,7 +241,7 @@ public class PtraceVirtualMemory extends VirtualMemory {
             MemoryPage pag = new MemoryPage(memory, page.base, page.size, page.name, page.fileOffset);
             add(pag);
             return;
-        } else if (!(mem instanceof ByteMemory) && !(mem instanceof NullMemory)) {
+        } else if (!(mem instanceof ByteMemory) && !(mem instanceof PagedMemory) && !(mem instanceof NullMemory)) {
             throw new IllegalArgumentException("not a ByteMemory");
         }
         boolean ok = Long.compareUnsigned(page.end, pointerBase) <= 0 || Long.compareUnsigned(page.end, pointerEnd) > 0;
@@ -262,7 +263,7 @@ public class PtraceVirtualMemory extends VirtualMemory {
         // start, start + size);
 
         // copy page content to native memory
-        if (mem instanceof ByteMemory) {
+        if (mem instanceof ByteMemory || (mem instanceof PagedMemory && mem.getResidentSize() != 0)) {
             int i = 0;
             try {
                 for (i = 0; i < page.size - 8; i += 8) {
@@ -397,6 +398,25 @@ public class PtraceVirtualMemory extends VirtualMemory {
         return true; // TODO: not correct but also not too harmful
     }
 
+    @Override
+    public void madvise(long address, long len, int advice) throws PosixException {
+        ptrace.madvise(addr(address), len, advice);
+    }
+
+    @Override
+    public long getResidentSize() {
+        try {
+            long size = 0;
+            for (MemorySegment segment : MemoryMap.smaps(ptrace.getPid()).getSegments()) {
+                size += segment.rss;
+            }
+            return size;
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Cannot retrieve memory region info", e);
+            return 0;
+        }
+    }
+
     @Override
     public void printMaps(PrintStream out) {
         try {
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.x86.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.graalvm.vm.memory.ByteMemory;
+import org.graalvm.vm.memory.JavaVirtualMemory;
+import org.graalvm.vm.memory.MemoryPage;
+import org.graalvm.vm.memory.MemoryView;
+import org.graalvm.vm.memory.PagedMemory;
+import org.graalvm.vm.memory.VirtualMemory;
+import org.graalvm.vm.memory.exception.SegmentationViolation;
+import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.util.io.Endianess;
+import org.graalvm.vm.x86.isa.CodeMemoryReader;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CodeMemoryReaderTest {
+    private static final long BASE = 0x400000;
+    private static final int SIZE = 4 * 4096;
+
+    private VirtualMemory vm;
+    private byte[] code;
+
+    @Before
+    public void setup() {
+        vm = new JavaVirtualMemory();
+        code = new byte[SIZE];
+        new Random(42).nextBytes(code);
+    }
+
+    // read the code with a mix of access sizes, including accesses across page boundaries
+    private static void readAll(CodeMemoryReader reader, byte[] code, int start) {
+        Random rng = new Random(0);
+        int pos = start;
+        while (pos < code.length - 8) {
+            assertEquals(BASE + pos, reader.getPC());
+            switch (rng.nextInt(4)) {
+                case 0:
+                    assertEquals(code[pos], reader.peek8(0));
+                    assertEquals(code[pos], reader.read8());
+                    pos++;
+                    break;
+                case 1:
+                    assertEquals(Endianess.get16bitLE(code, pos), reader.read16());
+                    pos += 2;
+                    break;
+                case 2:
+                    assertEquals(Endianess.get32bitLE(code, pos), reader.read32());
+                    pos += 4;
+                    break;
+                case 3:
+                    assertEquals(Endianess.get64bitLE(code, pos), reader.read64());
+                    pos += 8;
+                    break;
+            }
+        }
+    }
+
+    @Test
+    public void testByteMemory() {
+        vm.add(new MemoryPage(new ByteMemory(code, false), BASE, SIZE));
+        MemoryView view = vm.getCodeView(BASE + 100);
+        assertNotNull(view);
+        assertEquals(BASE, view.base);
+        assertEquals(BASE + SIZE, view.end);
+        CodeMemoryReader reader = new CodeMemoryReader(vm, BASE);
+        readAll(reader, code, 0);
+        reader.setPC(BASE + 4093);
+        readAll(reader, code, 4093);
+    }
+
+    @Test
+    public void testPagedMemory() {
+        PagedMemory mem = new PagedMemory(SIZE, false);
+        MemoryPage page = new MemoryPage(mem, BASE, SIZE);
+        vm.add(page);
+        assertNull(vm.getCodeView(BASE));
+        for (int i = 0; i < SIZE; i++) {
+            vm.setI8(BASE + i, code[i]);
+        }
+        MemoryView view = vm.getCodeView(BASE + 4096 + 10);
+        assertNotNull(view);
+        assertEquals(BASE + 4096, view.base);
+        assertEquals(BASE + 8192, view.end);
+        readAll(new CodeMemoryReader(vm, BASE), code, 0);
+    }
+
+    @Test
+    public void testProtection() throws PosixException {
+        vm.add(new MemoryPage(new ByteMemory(code, false), BASE, SIZE));
+        vm.mprotect(BASE + 2 * 4096, 4096, true, false, false);
+        MemoryView view = vm.getCodeView(BASE + 4096);
+        assertEquals(BASE + 4096, view.base);
+        assertEquals(BASE + 2 * 4096, view.end);
+        assertNull(vm.getCodeView(BASE + 2 * 4096));
+
+        CodeMemoryReader reader = new CodeMemoryReader(vm, BASE);
+        reader.setPC(BASE + 2 * 4096 - 2);
+        assertEquals(code[2 * 4096 - 2], reader.read8());
+        assertEquals(code[2 * 4096 - 1], reader.read8());
+        try {
+            reader.read8();
+            fail();
+        } catch (SegmentationViolation e) {
+            // expected
+        }
+
+        // protection changes are picked up when the next block is decoded
+        vm.mprotect(BASE, SIZE, true, false, true);
+        reader.setPC(BASE + 2 * 4096 - 2);
+        readAll(reader, code, 2 * 4096 - 2);
+    }
+}
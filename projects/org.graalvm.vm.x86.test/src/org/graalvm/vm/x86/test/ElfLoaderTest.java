@@ -198,4 +198,41 @@ public class ElfLoaderTest {
         envp += 8;
         assertEquals(0, mem.getI64(envp));
     }
+
+    @Test
+    public void testLoadData() throws Exception {
+        // the executable is only available in memory, the segments are copied
+        byte[] program = TestDataLoader.loadFile("bin/helloworld.elf");
+        loader.setArguments("./test");
+        loader.setProgramName("./test");
+        loader.load(program, "./test");
+
+        assertEquals(0x4000b0, loader.getPC());
+        assertEquals("_start", loader.getSymbols().get(0x4000b0L).getName());
+        assertEquals((byte) 0x31, mem.getI8(0x4000b0));
+        assertEquals("Hello world!\n", readString(0x6000cd, 13));
+
+        // the rest of the last page of the data segment is zero
+        assertEquals(0, mem.getI8(0x6000da));
+        assertEquals(0, mem.getI8(0x600fff));
+    }
+
+    @Test
+    public void testDataPrivate() throws Exception {
+        // writes to the data segment must not change the executable
+        loader.setArguments("./test");
+        loader.setProgramName("./test");
+        loader.load("./test");
+
+        assertEquals(0, mem.getI8(0x6000da));
+        mem.setI8(0x6000cd, (byte) 'J');
+        assertEquals('J', mem.getI8(0x6000cd));
+
+        Posix posix = env.getPosix();
+        int fd = posix.open("./test", Fcntl.O_RDONLY, 0);
+        byte[] data = new byte[1];
+        posix.pread64(fd, new BytePosixPointer(data), 1, 0xcd);
+        posix.close(fd);
+        assertEquals('H', data[0]);
+    }
 }
@@ -42,10 +42,13 @@ package org.graalvm.vm.x86.test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import org.graalvm.vm.posix.api.ProcessExitException;
+import org.graalvm.vm.posix.elf.Elf;
+import org.graalvm.vm.posix.elf.Symbol;
 import org.graalvm.vm.x86.AMD64Register;
 import org.graalvm.vm.x86.ArchitecturalState;
 import org.graalvm.vm.x86.RegisterAccessFactory;
@@ -57,6 +60,7 @@ import org.graalvm.vm.x86.node.RegisterWriteNode;
 import org.graalvm.vm.x86.substitution.Signature;
 import org.graalvm.vm.x86.substitution.Substitution;
 import org.graalvm.vm.x86.substitution.SubstitutionRegistry;
+import org.graalvm.vm.x86.substitution.vdso.Vdso;
 import org.junit.Test;
 
 import com.oracle.truffle.api.frame.VirtualFrame;
@@ -159,4 +163,25 @@ public class SubstitutionTest {
         insn = exit0.createNode(reader.getPC(), reader);
         assertEquals("exit\t0", insn.getDisassembly());
     }
+
+    @Test
+    public void checkVdso() throws Exception {
+        SubstitutionRegistry registry = new SubstitutionRegistry();
+        byte[] image = Vdso.getImage();
+        Elf elf = new Elf(image);
+        int count = 0;
+        for (Symbol sym : elf.getDynamicSymbolTable().getSymbols()) {
+            if (sym.getSectionIndex() == Symbol.SHN_UNDEF) {
+                continue;
+            }
+            CodeReader reader = new CodeArrayReader(image, (int) sym.getValue());
+            Substitution substitution = registry.getSubstitution(reader);
+            assertNotNull(sym.getName(), substitution);
+            AMD64Instruction insn = substitution.createNode(reader.getPC(), reader);
+            assertEquals(sym.getName(), insn.getDisassembly());
+            assertEquals(sym.getValue() + sym.getSize(), reader.getPC());
+            count++;
+        }
+        assertEquals(4, count);
+    }
 }
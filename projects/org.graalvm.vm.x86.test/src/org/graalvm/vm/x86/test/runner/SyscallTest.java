@@ -126,4 +126,16 @@ public class SyscallTest {
     public void testWriteStdin() throws Exception {
         TestRunner.run("write-stdin.asm.elf", new String[0], "", "this is hot shit!\n", "", 0);
     }
+
+    @Test
+    public void msync() throws Exception {
+        String stdout = "Running test case \"(p = mmap(NULL, 3 * 4096, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS, -1, 0)) != MAP_FAILED\"\n" +
+                        "Running test case \"msync(p, 3 * 4096, MS_SYNC) == 0\"\n" +
+                        "Running test case \"munmap(p + 4096, 4096) == 0\"\n" +
+                        "Running test case \"msync(p, 4096, MS_SYNC) == 0\"\n" +
+                        "Running test case \"msync(p, 3 * 4096, MS_SYNC) == -1 && errno == ENOMEM\"\n" +
+                        "Running test case \"msync(p + 2 * 4096, 4096, MS_ASYNC) == 0\"\n" +
+                        "EXIT()\n";
+        TestRunner.run("msync.elf", new String[0], "", stdout, "", 0);
+    }
 }
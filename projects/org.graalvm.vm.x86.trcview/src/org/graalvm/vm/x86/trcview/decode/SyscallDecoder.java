@@ -156,6 +156,10 @@ public class SyscallDecoder {
                 return "writev(" + a1 + ", 0x" + hex(a2) + ", " + a3 + ")";
             case Syscalls.SYS_access:
                 return "access(0x" + hex(a1) + ", " + Unistd.amode((int) a2) + ")";
+            case Syscalls.SYS_msync:
+                return "msync(0x" + hex(a1) + ", " + a2 + ", " + Mman.msync((int) a3) + ")";
+            case Syscalls.SYS_madvise:
+                return "madvise(0x" + hex(a1) + ", " + a2 + ", " + Mman.madvise((int) a3) + ")";
             case Syscalls.SYS_dup:
                 return "dup(" + a1 + ")";
             case Syscalls.SYS_dup2:
@@ -56,11 +56,10 @@ import org.graalvm.vm.x86.posix.PosixEnvironment;
 import org.graalvm.vm.x86.posix.SyscallException;
 import org.graalvm.vm.x86.substitution.SubstitutionRegistry;
 
-import com.oracle.truffle.api.Assumption;
 import com.oracle.truffle.api.CallTarget;
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
-import com.oracle.truffle.api.Truffle;
+import com.oracle.truffle.api.TruffleContext;
 import com.oracle.truffle.api.TruffleLanguage;
 import com.oracle.truffle.api.TruffleLanguage.Env;
 import com.oracle.truffle.api.frame.FrameDescriptor;
@@ -69,6 +68,8 @@ import com.oracle.truffle.api.frame.FrameSlotKind;
 
 public class AMD64Context {
     private static final String ARCH_NAME = "x86_64";
+
+    private static final boolean VIRTUAL_THREADS = Options.getBoolean(Options.VIRTUAL_THREADS);
     private static final String[] REGISTER_NAMES = {"rax", "rcx", "rdx", "rbx", "rsp", "rbp", "rsi", "rdi", "r8", "r9", "r10", "r11", "r12", "r13", "r14", "r15"};
 
     private Env env;
@@ -127,8 +128,6 @@ public class AMD64Context {
 
     @CompilationFinal private CallTarget interpreterMain;
 
-    private final Assumption singleThreadedAssumption;
-
     public AMD64Context(TruffleLanguage<AMD64Context> language, Env env, FrameDescriptor fd) {
         this(language, env, fd, null, null);
     }
@@ -189,7 +188,6 @@ public class AMD64Context {
         gprMask = frameDescriptor.addFrameSlot("gprmask", FrameSlotKind.Object);
         avxMask = frameDescriptor.addFrameSlot("avxmask", FrameSlotKind.Object);
 
-        singleThreadedAssumption = Truffle.getRuntime().createAssumption("single threaded");
         traces = new TraceRegistry(language, frameDescriptor);
         substitutions = new SubstitutionRegistry();
         state = new ArchitecturalState(this);
@@ -198,10 +196,6 @@ public class AMD64Context {
         scratchMemory = 0;
     }
 
-    public void initialize() {
-        traces.initialize();
-    }
-
     public void patch(Env newEnv) {
         this.env = newEnv;
         posix.setStandardIO(newEnv.in(), newEnv.out(), newEnv.err());
@@ -440,8 +434,23 @@ public class AMD64Context {
     }
 
     public Thread createThread(int tid, Runnable runnable) {
-        ThreadGroup group = posix.getThreadGroup();
-        Thread thread = env.createThread(runnable, null, group);
+        Thread thread = null;
+        if (VIRTUAL_THREADS) {
+            // a virtual thread is not created by Truffle, so it has to enter the context itself
+            TruffleContext context = env.getContext();
+            thread = VirtualThreads.create(() -> {
+                Object prev = context.enter();
+                try {
+                    runnable.run();
+                } finally {
+                    context.leave(prev);
+                }
+            });
+        }
+        if (thread == null) {
+            ThreadGroup group = posix.getThreadGroup();
+            thread = env.createThread(runnable, null, group);
+        }
         posix.addThread(tid, thread);
         return thread;
     }
@@ -453,8 +462,4 @@ public class AMD64Context {
     public CallTarget getInterpreter() {
         return interpreterMain;
     }
-
-    public Assumption getSingleThreadedAssumption() {
-        return singleThreadedAssumption;
-    }
 }
@@ -99,12 +99,6 @@ public abstract class AMD64Language extends TruffleLanguage<AMD64Context> {
     protected void initializeContext(AMD64Context ctx) {
         InterpreterThreadRootNode interpreter = new InterpreterThreadRootNode(this, fd);
         ctx.setInterpreter(Truffle.getRuntime().createCallTarget(interpreter));
-        ctx.initialize();
-    }
-
-    @Override
-    protected void initializeMultiThreading(AMD64Context context) {
-        context.getSingleThreadedAssumption().invalidate();
     }
 
     @Override
@@ -122,6 +116,7 @@ public abstract class AMD64Language extends TruffleLanguage<AMD64Context> {
     protected void disposeContext(AMD64Context ctx) {
         ExecutionTraceWriter trace = ctx.getTraceWriter();
         Logger.getLogger("").removeHandler(ctx.getLogHandler());
+        ctx.getPosixEnvironment().getPosix().dispose();
         if (trace != null) {
             try {
                 trace.close();
@@ -46,7 +46,6 @@ import org.graalvm.vm.x86.node.MemoryWriteNode;
 import org.graalvm.vm.x86.node.flow.TraceRegistry;
 import org.graalvm.vm.x86.substitution.SubstitutionRegistry;
 
-import com.oracle.truffle.api.Assumption;
 import com.oracle.truffle.api.frame.FrameSlot;
 
 public class ArchitecturalState {
@@ -57,7 +56,6 @@ public class ArchitecturalState {
     private final FrameSlot trace;
     private final TraceRegistry traces;
     private final SubstitutionRegistry substitutions;
-    private final Assumption singleThreaded;
 
     public ArchitecturalState(AMD64Context context) {
         registerAccess = new RegisterAccessFactory(context.getGPRs(), context.getZMMs(), context.getXMMs(), context.getXMMF32(), context.getXMMF64(), context.getXMMType(), context.getFS(),
@@ -69,7 +67,6 @@ public class ArchitecturalState {
         trace = context.getDispatchTrace();
         traces = context.getTraceRegistry();
         substitutions = context.getSubstitutionRegistry();
-        singleThreaded = context.getSingleThreadedAssumption();
     }
 
     public RegisterAccessFactory getRegisters() {
@@ -107,8 +104,4 @@ public class ArchitecturalState {
     public SubstitutionRegistry getSubstitutions() {
         return substitutions;
     }
-
-    public Assumption getSingleThreadedAssumption() {
-        return singleThreaded;
-    }
 }
@@ -53,25 +53,31 @@ import java.util.TreeMap;
 import java.util.logging.Logger;
 
 import org.graalvm.vm.memory.ByteMemory;
+import org.graalvm.vm.memory.Memory;
 import org.graalvm.vm.memory.MemoryPage;
+import org.graalvm.vm.memory.PagedMemory;
+import org.graalvm.vm.memory.PosixMemory;
 import org.graalvm.vm.memory.VirtualMemory;
-import org.graalvm.vm.posix.api.BytePosixPointer;
 import org.graalvm.vm.posix.api.Errno;
 import org.graalvm.vm.posix.api.Posix;
 import org.graalvm.vm.posix.api.PosixException;
+import org.graalvm.vm.posix.api.PosixPointer;
 import org.graalvm.vm.posix.api.io.Fcntl;
-import org.graalvm.vm.posix.api.io.Stat;
+import org.graalvm.vm.posix.api.io.Stream;
 import org.graalvm.vm.posix.api.mem.Mman;
 import org.graalvm.vm.posix.elf.Elf;
 import org.graalvm.vm.posix.elf.ProgramHeader;
 import org.graalvm.vm.posix.elf.Symbol;
+import org.graalvm.vm.posix.elf.SymbolIndex;
 import org.graalvm.vm.posix.elf.SymbolTable;
 import org.graalvm.vm.posix.libc.CString;
 import org.graalvm.vm.util.HexFormatter;
+import org.graalvm.vm.util.io.Endianess;
 import org.graalvm.vm.util.log.Levels;
 import org.graalvm.vm.util.log.Trace;
 import org.graalvm.vm.x86.node.debug.trace.ExecutionTraceWriter;
 import org.graalvm.vm.x86.posix.PosixEnvironment;
+import org.graalvm.vm.x86.substitution.vdso.Vdso;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 
@@ -126,6 +132,7 @@ public class ElfLoader {
 
     private static final boolean DEBUG = Options.getBoolean(Options.DEBUG_EXEC);
     private static final boolean DEBUG_STATIC_ENV = Options.getBoolean(Options.DEBUG_STATIC_ENV);
+    private static final boolean USE_VDSO = Options.getBoolean(Options.USE_VDSO);
 
     public static final String PLATFORM = "x86_64";
     public static final int RANDOM_SIZE = 16;
@@ -156,6 +163,7 @@ public class ElfLoader {
     public static final int AT_RANDOM = 25;
     public static final int AT_HWCAP2 = 26;
     public static final int AT_EXECFN = 31;
+    public static final int AT_SYSINFO_EHDR = 33;
 
     public static final long LOAD_BIAS = getLong(Options.LOAD_BIAS);
 
@@ -246,7 +254,11 @@ public class ElfLoader {
     }
 
     public void load(byte[] data, String filename) throws IOException {
-        elf = new Elf(data);
+        load(new Elf(data), -1, filename);
+    }
+
+    private void load(Elf executable, int fd, String filename) throws IOException {
+        elf = executable;
 
         if (elf.ei_class != Elf.ELFCLASS64) {
             throw new IllegalArgumentException("32bit binary not supported");
@@ -269,175 +281,45 @@ public class ElfLoader {
 
         symbols = new TreeMap<>();
 
-        for (ProgramHeader hdr : elf.getProgramHeaders()) {
-            if (hdr.getType() == Elf.PT_LOAD || hdr.getType() == Elf.PT_PHDR) {
-                long size = hdr.getMemorySize();
-                long offset = load_bias + hdr.getVirtualAddress();
-                long fileOffset = hdr.getOffset();
-                long segmentEnd = offset + size;
-                long pageEnd = memory.roundToPageSize(segmentEnd);
-                size += pageEnd - segmentEnd;
-
-                long start = memory.pageStart(offset);
-                long off = fileOffset - (offset - start);
-
-                assert start <= offset;
-                assert (offset - start) >= 0;
-
-                byte[] segment = new byte[(int) size];
-                hdr.load(segment);
-
-                // fill start of page with zero if necessary
-                size += offset - start;
-                byte[] load = new byte[(int) size];
-                System.arraycopy(segment, 0, load, (int) (offset - start), segment.length);
-
-                MemoryPage p = new MemoryPage(new ByteMemory(load, false), start, load.length, filename, off);
-                p.r = hdr.getFlag(Elf.PF_R);
-                p.w = hdr.getFlag(Elf.PF_W);
-                p.x = hdr.getFlag(Elf.PF_X);
-                memory.add(p);
-
-                if (hdr.getType() == Elf.PT_PHDR) {
-                    phoff = offset;
-                }
-
-                if (traceWriter != null) {
-                    int prot = 0;
-                    if (p.r) {
-                        prot |= Mman.PROT_READ;
-                    }
-                    if (p.w) {
-                        prot |= Mman.PROT_WRITE;
-                    }
-                    if (p.x) {
-                        prot |= Mman.PROT_EXEC;
+        try {
+            for (ProgramHeader hdr : elf.getProgramHeaders()) {
+                if (hdr.getType() == Elf.PT_LOAD || hdr.getType() == Elf.PT_PHDR) {
+                    long offset = load_bias + hdr.getVirtualAddress();
+                    long end;
+                    if (fd == -1) {
+                        end = copySegment(hdr, load_bias, filename);
+                    } else {
+                        end = mapSegment(fd, hdr, load_bias, filename);
                     }
-                    traceWriter.mmap(start, p.size, prot, Mman.MAP_PRIVATE | Mman.MAP_FIXED, -1, off, p.base, load);
-                }
-
-                long end = load_bias + hdr.getVirtualAddress() + segment.length;
-                if (brk < load_bias + hdr.getVirtualAddress() + hdr.getMemorySize()) {
-                    brk = end;
-                }
-            }
-        }
 
-        SymbolTable symtab = elf.getSymbolTable();
-        if (symtab != null) {
-            for (Symbol sym : symtab.getSymbols()) {
-                if (sym.getSectionIndex() != Symbol.SHN_UNDEF) {
-                    symbols.put(sym.getValue() + load_bias, sym.offset(load_bias));
-                    if (DEBUG) {
-                        log.log(Levels.DEBUG, "Adding symbol " + sym + " for address 0x" + HexFormatter.tohex(sym.getValue() + load_bias, 16));
+                    if (hdr.getType() == Elf.PT_PHDR) {
+                        phoff = offset;
                     }
-                }
-            }
-        }
 
-        symtab = elf.getDynamicSymbolTable();
-        if (symtab != null) {
-            for (Symbol sym : symtab.getSymbols()) {
-                if (sym.getSectionIndex() != Symbol.SHN_UNDEF) {
-                    symbols.put(sym.getValue() + load_bias, sym.offset(load_bias));
-                    if (DEBUG) {
-                        log.log(Levels.DEBUG, "Adding symbol " + sym + " for address 0x" + HexFormatter.tohex(sym.getValue() + load_bias, 16));
+                    if (brk < offset + hdr.getMemorySize()) {
+                        brk = end;
                     }
                 }
             }
-        }
 
-        entry = load_bias + elf.getEntryPoint();
-        pc = entry;
+            addSymbols(elf, fd, load_bias);
 
-        Optional<ProgramHeader> interp = elf.getProgramHeaders().stream().filter((x) -> x.getType() == Elf.PT_INTERP).findAny();
-        if (interp.isPresent()) {
-            base = 0xf8000000L;
-            ProgramHeader phinterp = interp.get();
-            byte[] segment = new byte[(int) phinterp.getFileSize()];
-            phinterp.load(segment);
-            String interpreter = CString.str(segment, 0);
-            byte[] interpbin;
-            try {
-                interpbin = loadFile(interpreter);
-            } catch (PosixException e) {
-                throw new IOException(Errno.toString(e.getErrno()));
-            }
-            Elf interpelf = new Elf(interpbin);
-            if (elf.ei_class != interpelf.ei_class) {
-                throw new IOException("invalid interpreter ELFCLASS");
-            }
-
-            if (elf.e_machine != interpelf.e_machine) {
-                throw new IOException("invalid interpreter machine id");
-            }
+            entry = load_bias + elf.getEntryPoint();
+            pc = entry;
 
-            if (interpelf.e_type == Elf.ET_DYN) {
-                long low = getLowAddress(interpelf);
-                base -= low;
-            } else {
-                base = 0;
-            }
-
-            for (ProgramHeader hdr : interpelf.getProgramHeaders()) {
-                if (hdr.getType() == Elf.PT_LOAD) {
-                    // round size to page size
-                    long size = hdr.getMemorySize();
-                    long offset = base + hdr.getVirtualAddress();
-                    long fileOffset = hdr.getOffset();
-                    long end = offset + size;
-                    long pageEnd = memory.roundToPageSize(end);
-                    size += pageEnd - end;
-
-                    segment = new byte[(int) size];
-                    hdr.load(segment);
-                    MemoryPage p = new MemoryPage(new ByteMemory(segment, false), base + hdr.getVirtualAddress(), segment.length, interpreter, fileOffset);
-                    p.r = hdr.getFlag(Elf.PF_R);
-                    p.w = hdr.getFlag(Elf.PF_W);
-                    p.x = hdr.getFlag(Elf.PF_X);
-                    memory.add(p);
-
-                    if (traceWriter != null) {
-                        int prot = 0;
-                        if (p.r) {
-                            prot |= Mman.PROT_READ;
-                        }
-                        if (p.w) {
-                            prot |= Mman.PROT_WRITE;
-                        }
-                        if (p.x) {
-                            prot |= Mman.PROT_EXEC;
-                        }
-                        traceWriter.mmap(base + hdr.getVirtualAddress(), p.size, prot, Mman.MAP_PRIVATE | Mman.MAP_FIXED, -1, fileOffset, p.base, segment);
-                    }
-                }
-            }
-
-            pc = base + interpelf.getEntryPoint();
-
-            symtab = interpelf.getSymbolTable();
-            if (symtab != null) {
-                for (Symbol sym : symtab.getSymbols()) {
-                    if (sym.getSectionIndex() != Symbol.SHN_UNDEF) {
-                        symbols.put(sym.getValue() + base, sym.offset(base));
-                        if (DEBUG) {
-                            log.log(Levels.DEBUG, "Adding symbol " + sym + " for address 0x" + HexFormatter.tohex(sym.getValue() + base, 16));
-                        }
-                    }
-                }
+            Optional<ProgramHeader> interp = elf.getProgramHeaders().stream().filter((x) -> x.getType() == Elf.PT_INTERP).findAny();
+            if (interp.isPresent()) {
+                base = 0xf8000000L;
+                byte[] segment = readSegment(fd, interp.get());
+                String interpreter = CString.str(segment, 0);
+                loadInterpreter(interpreter);
             }
+        } catch (PosixException e) {
+            throw new IOException(filename + ": " + Errno.toString(e.getErrno()));
+        }
 
-            symtab = interpelf.getDynamicSymbolTable();
-            if (symtab != null) {
-                for (Symbol sym : symtab.getSymbols()) {
-                    if (sym.getSectionIndex() != Symbol.SHN_UNDEF) {
-                        symbols.put(sym.getValue() + base, sym.offset(base));
-                        if (DEBUG) {
-                            log.log(Levels.DEBUG, "Adding symbol " + sym + " for address 0x" + HexFormatter.tohex(sym.getValue() + base, 16));
-                        }
-                    }
-                }
-            }
+        if (USE_VDSO) {
+            loadVdso();
         }
 
         long pad = pad(brk);
@@ -716,6 +598,9 @@ public class ElfLoader {
         // ptr = setPair(mem, ptr, AT_DCACHEBSIZE, Power.DCACHE_LINE_SIZE);
         // ptr = setPair(mem, ptr, AT_ICACHEBSIZE, Power.ICACHE_LINE_SIZE);
         // ptr = setPair(mem, ptr, AT_UCACHEBSIZE, 0);
+        if (USE_VDSO) {
+            ptr = setPair64(mem, ptr, AT_SYSINFO_EHDR, Vdso.VDSO_BASE);
+        }
         if (phoff != -1) {
             ptr = setPair64(mem, ptr, AT_PHDR, phoff);
         }
@@ -763,30 +648,297 @@ public class ElfLoader {
         env = environ.entrySet().stream().map((e) -> e.getKey() + "=" + e.getValue()).toArray(String[]::new);
     }
 
-    private byte[] loadFile(String path) throws PosixException {
+    private void loadInterpreter(String interpreter) throws IOException, PosixException {
         @SuppressWarnings("hiding")
         Posix posix = this.posix.getPosix();
-        int fd = posix.open(path, Fcntl.O_RDONLY, 0);
-        Stat stat = new Stat();
-        byte[] data = null;
+        int fd = posix.open(interpreter, Fcntl.O_RDONLY, 0);
         try {
-            posix.fstat(fd, stat);
-            data = new byte[(int) stat.st_size];
-            int read = posix.read(fd, new BytePosixPointer(data), data.length);
-            if (read != data.length) {
-                throw new PosixException(Errno.EIO);
+            Elf interpelf = readHeaders(fd);
+            if (elf.ei_class != interpelf.ei_class) {
+                throw new IOException("invalid interpreter ELFCLASS");
+            }
+
+            if (elf.e_machine != interpelf.e_machine) {
+                throw new IOException("invalid interpreter machine id");
             }
+
+            if (interpelf.e_type == Elf.ET_DYN) {
+                long low = getLowAddress(interpelf);
+                base -= low;
+            } else {
+                base = 0;
+            }
+
+            for (ProgramHeader hdr : interpelf.getProgramHeaders()) {
+                if (hdr.getType() == Elf.PT_LOAD) {
+                    mapSegment(fd, hdr, base, interpreter);
+                }
+            }
+            pc = base + interpelf.getEntryPoint();
+            addSymbols(interpelf, fd, base);
         } finally {
             posix.close(fd);
         }
-        return data;
+    }
+
+    private void loadVdso() throws IOException {
+        byte[] image = Vdso.getImage();
+        byte[] data = new byte[PAGE_SIZE];
+        System.arraycopy(image, 0, data, 0, image.length);
+        MemoryPage p = new MemoryPage(new ByteMemory(data, false), Vdso.VDSO_BASE, data.length, "[vdso]");
+        p.r = true;
+        p.w = false;
+        p.x = true;
+        memory.add(p);
+        if (traceWriter != null) {
+            traceWriter.mmap(p.base, p.size, prot(p), Mman.MAP_PRIVATE | Mman.MAP_FIXED | Mman.MAP_ANONYMOUS, -1, 0, p.base, data);
+        }
+        try {
+            addSymbols(new Elf(image), -1, Vdso.VDSO_BASE);
+        } catch (PosixException e) {
+            throw new IOException("[vdso]: " + Errno.toString(e.getErrno()));
+        }
+    }
+
+    private SymbolIndex.Reader reader(int fd) throws PosixException {
+        Stream stream = posix.getPosix().getStream(fd);
+        return (buf, offset, length, fileOffset) -> {
+            try {
+                return stream.pread(buf, offset, length, fileOffset);
+            } catch (PosixException e) {
+                throw new IOException(Errno.toString(e.getErrno()), e);
+            }
+        };
+    }
+
+    // only the ELF header and the program headers are read, the rest of the file is mapped
+    private Elf readHeaders(int fd) throws IOException, PosixException {
+        Stream stream = posix.getPosix().getStream(fd);
+        byte[] data = new byte[PAGE_SIZE];
+        int read = stream.pread(data, 0, data.length, 0);
+        if (read < 64) {
+            throw new IOException("invalid ELF file");
+        }
+
+        // the program headers usually are in the first page
+        boolean is64 = data[4] == Elf.ELFCLASS64;
+        boolean be = data[5] == Elf.ELFDATA2MSB;
+        long phoff;
+        int phentsize;
+        int phnum;
+        if (is64) {
+            phoff = be ? Endianess.get64bitBE(data, 0x20) : Endianess.get64bitLE(data, 0x20);
+            phentsize = Short.toUnsignedInt(be ? Endianess.get16bitBE(data, 0x36) : Endianess.get16bitLE(data, 0x36));
+            phnum = Short.toUnsignedInt(be ? Endianess.get16bitBE(data, 0x38) : Endianess.get16bitLE(data, 0x38));
+        } else {
+            phoff = Integer.toUnsignedLong(be ? Endianess.get32bitBE(data, 0x1C) : Endianess.get32bitLE(data, 0x1C));
+            phentsize = Short.toUnsignedInt(be ? Endianess.get16bitBE(data, 0x2A) : Endianess.get16bitLE(data, 0x2A));
+            phnum = Short.toUnsignedInt(be ? Endianess.get16bitBE(data, 0x2C) : Endianess.get16bitLE(data, 0x2C));
+        }
+        long size = phoff + (long) phnum * phentsize;
+        if (size < 0 || size != (int) size) {
+            throw new IOException("invalid program header offset");
+        }
+        if (size > read) {
+            data = new byte[(int) size];
+            if (stream.pread(data, 0, data.length, 0) != data.length) {
+                throw new IOException("invalid ELF file");
+            }
+        }
+        return new Elf(data, false);
+    }
+
+    private byte[] readSegment(int fd, ProgramHeader hdr) throws PosixException {
+        byte[] segment = new byte[(int) hdr.getFileSize()];
+        if (fd == -1) {
+            System.arraycopy(hdr.getElf().getData(), (int) hdr.getOffset(), segment, 0, segment.length);
+        } else {
+            Stream stream = posix.getPosix().getStream(fd);
+            int read = stream.pread(segment, 0, segment.length, hdr.getOffset());
+            if (read != segment.length) {
+                throw new PosixException(Errno.EIO);
+            }
+        }
+        return segment;
+    }
+
+    private void addSymbols(Elf file, int fd, long bias) throws IOException, PosixException {
+        if (fd != -1) {
+            SymbolIndex index = SymbolIndex.load(reader(fd), 0, Long.MAX_VALUE, bias);
+            for (Symbol sym : index.getSymbols()) {
+                symbols.put(sym.getValue(), sym);
+                if (DEBUG) {
+                    log.log(Levels.DEBUG, "Adding symbol " + sym + " for address 0x" + HexFormatter.tohex(sym.getValue(), 16));
+                }
+            }
+            return;
+        }
+
+        SymbolTable symtab = file.getSymbolTable();
+        if (symtab != null) {
+            for (Symbol sym : symtab.getSymbols()) {
+                if (sym.getSectionIndex() != Symbol.SHN_UNDEF) {
+                    symbols.put(sym.getValue() + bias, sym.offset(bias));
+                    if (DEBUG) {
+                        log.log(Levels.DEBUG, "Adding symbol " + sym + " for address 0x" + HexFormatter.tohex(sym.getValue() + bias, 16));
+                    }
+                }
+            }
+        }
+
+        symtab = file.getDynamicSymbolTable();
+        if (symtab != null) {
+            for (Symbol sym : symtab.getSymbols()) {
+                if (sym.getSectionIndex() != Symbol.SHN_UNDEF) {
+                    symbols.put(sym.getValue() + bias, sym.offset(bias));
+                    if (DEBUG) {
+                        log.log(Levels.DEBUG, "Adding symbol " + sym + " for address 0x" + HexFormatter.tohex(sym.getValue() + bias, 16));
+                    }
+                }
+            }
+        }
+    }
+
+    private static int prot(MemoryPage p) {
+        int prot = 0;
+        if (p.r) {
+            prot |= Mman.PROT_READ;
+        }
+        if (p.w) {
+            prot |= Mman.PROT_WRITE;
+        }
+        if (p.x) {
+            prot |= Mman.PROT_EXEC;
+        }
+        return prot;
+    }
+
+    // copy a segment from an ELF file which is only available as byte array; returns the page
+    // aligned end of the segment
+    private long copySegment(ProgramHeader hdr, long bias, String filename) {
+        long size = hdr.getMemorySize();
+        long offset = bias + hdr.getVirtualAddress();
+        long fileOffset = hdr.getOffset();
+        long segmentEnd = offset + size;
+        long pageEnd = memory.roundToPageSize(segmentEnd);
+
+        long start = memory.pageStart(offset);
+        long off = fileOffset - (offset - start);
+
+        assert start <= offset;
+        assert (offset - start) >= 0;
+
+        // fill start of page with zero if necessary
+        byte[] load = new byte[(int) (pageEnd - start)];
+        if (hdr.getFileSize() > 0) {
+            System.arraycopy(hdr.getElf().getData(), (int) fileOffset, load, (int) (offset - start), (int) hdr.getFileSize());
+        }
+
+        MemoryPage p = new MemoryPage(new ByteMemory(load, false), start, load.length, filename, off);
+        p.r = hdr.getFlag(Elf.PF_R);
+        p.w = hdr.getFlag(Elf.PF_W);
+        p.x = hdr.getFlag(Elf.PF_X);
+        memory.add(p);
+
+        if (traceWriter != null) {
+            traceWriter.mmap(start, p.size, prot(p), Mman.MAP_PRIVATE | Mman.MAP_FIXED, -1, off, p.base, load);
+        }
+        return pageEnd;
+    }
+
+    /*
+     * Map a segment like the kernel does. Read-only segments are a private file mapping and are
+     * never copied to the Java heap, except for a partial last file page which has to end in zeros.
+     * Only the file part of writable segments is copied, the bss beyond the last file page is
+     * anonymous memory which is allocated on first use. Returns the page aligned end of the
+     * segment.
+     */
+    private long mapSegment(int fd, ProgramHeader hdr, long bias, String filename) throws PosixException {
+        @SuppressWarnings("hiding")
+        Posix posix = this.posix.getPosix();
+
+        long offset = bias + hdr.getVirtualAddress();
+        long start = memory.pageStart(offset);
+        long off = hdr.getOffset() - (offset - start);
+        long fileEnd = offset + hdr.getFileSize();
+        long filePageEnd = memory.roundToPageSize(fileEnd);
+        long pageEnd = memory.roundToPageSize(offset + hdr.getMemorySize());
+
+        boolean r = hdr.getFlag(Elf.PF_R);
+        boolean w = hdr.getFlag(Elf.PF_W);
+        boolean x = hdr.getFlag(Elf.PF_X);
+
+        if (off < 0 || memory.pageStart(off) != off) {
+            throw new PosixException(Errno.EINVAL);
+        }
+
+        if (hdr.getFileSize() > 0) {
+            // Writable segments are copied completely. The rest of the last file page is part of
+            // the bss and therefore zero, so this page is copied for read-only segments too: a
+            // file mapping would show the following bytes of the file there.
+            long tail = w ? start : memory.pageStart(fileEnd);
+            if (tail > start) {
+                int prot = (r ? Mman.PROT_READ : 0) | (x ? Mman.PROT_EXEC : 0);
+                PosixPointer ptr = posix.mmap(null, tail - start, prot, Mman.MAP_PRIVATE, fd, off);
+                Memory mem = new PosixMemory(ptr, false, true);
+                MemoryPage p = new MemoryPage(mem, start, tail - start, filename, off);
+                p.r = r;
+                p.w = w;
+                p.x = x;
+                memory.add(p);
+
+                if (traceWriter != null) {
+                    traceWriter.mmap(start, p.size, prot(p), Mman.MAP_PRIVATE | Mman.MAP_FIXED, fd, off, p.base, mem.get(0, p.size));
+                }
+            }
+            if (filePageEnd > tail) {
+                byte[] data = new byte[(int) (filePageEnd - tail)];
+                int length = (int) (fileEnd - tail);
+                long tailOffset = off + (tail - start);
+                int read = posix.getStream(fd).pread(data, 0, length, tailOffset);
+                if (read != length) {
+                    throw new PosixException(Errno.EIO);
+                }
+                MemoryPage p = new MemoryPage(new ByteMemory(data, false), tail, data.length, filename, tailOffset);
+                p.r = r;
+                p.w = w;
+                p.x = x;
+                memory.add(p);
+
+                if (traceWriter != null) {
+                    traceWriter.mmap(tail, p.size, prot(p), Mman.MAP_PRIVATE | Mman.MAP_FIXED, fd, tailOffset, p.base, data);
+                }
+            }
+        } else {
+            filePageEnd = start;
+        }
+
+        if (pageEnd > filePageEnd) {
+            long size = pageEnd - filePageEnd;
+            MemoryPage bss = new MemoryPage(new PagedMemory(size, false), filePageEnd, size, filename);
+            bss.r = r;
+            bss.w = w;
+            bss.x = x;
+            memory.add(bss);
+
+            if (traceWriter != null) {
+                traceWriter.mmap(filePageEnd, size, prot(bss), Mman.MAP_PRIVATE | Mman.MAP_FIXED | Mman.MAP_ANONYMOUS, -1, 0, bss.base, new byte[(int) size]);
+            }
+        }
+        return pageEnd;
     }
 
     @TruffleBoundary
     public void load(String filename) throws IOException {
+        @SuppressWarnings("hiding")
+        Posix posix = this.posix.getPosix();
         try {
-            byte[] file = loadFile(filename);
-            load(file, filename);
+            int fd = posix.open(filename, Fcntl.O_RDONLY, 0);
+            try {
+                load(readHeaders(fd), fd, filename);
+            } finally {
+                posix.close(fd);
+            }
         } catch (PosixException e) {
             throw new IOException(filename + ": " + Errno.toString(e.getErrno()));
         }
@@ -79,9 +79,15 @@ public class Options {
 
     // POSIX functions
     public static final BooleanOption USE_STATIC_TIME = new BooleanOption("posix.time.static", false);
+    public static final BooleanOption USE_VDSO = new BooleanOption("vmx86.vdso", false);
+    public static final BooleanOption PRINT_SYSCALL_STATS = new BooleanOption("vmx86.syscall.stats", false);
 
     public static final StringOption FSROOT = new StringOption("vmx86.fsroot", null);
     public static final StringOption CWD = new StringOption("vmx86.cwd", null);
+    public static final StringOption TMPFS = new StringOption("vmx86.tmpfs", null);
+
+    // Threads
+    public static final BooleanOption VIRTUAL_THREADS = new BooleanOption("vmx86.threads.virtual", false);
 
     // CPUID
     public static final StringOption CPUID_BRAND = new StringOption("vmx86.cpuid.brand", "VMX86 on Graal/Truffle");
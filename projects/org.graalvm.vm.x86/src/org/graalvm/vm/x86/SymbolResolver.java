@@ -52,7 +52,8 @@ public class SymbolResolver {
     private final NavigableMap<Long, Symbol> symbols;
     private final NavigableMap<Long, Symbol> globalSymbols;
 
-    private final HashMap<String, Symbol> addresses;
+    // built on first lookup by name, most resolvers are only queried by address
+    private HashMap<String, Symbol> addresses;
 
     public SymbolResolver(NavigableMap<Long, Symbol> symbols) {
         this.symbols = symbols;
@@ -65,15 +66,6 @@ public class SymbolResolver {
                 globalSymbols.put(sym.getValue(), sym);
             }
         }
-
-        // compute global addr -> symbol
-        addresses = new HashMap<>();
-        for (Entry<Long, Symbol> entry : symbols.entrySet()) {
-            Symbol sym = entry.getValue();
-            if (sym.getBind() == Symbol.GLOBAL) {
-                addresses.put(sym.getName(), sym);
-            }
-        }
     }
 
     public Symbol getSymbol(long pc) {
@@ -102,7 +94,14 @@ public class SymbolResolver {
         return null;
     }
 
-    public Symbol getSymbol(String name) {
+    public synchronized Symbol getSymbol(String name) {
+        if (addresses == null) {
+            // compute global name -> symbol
+            addresses = new HashMap<>();
+            for (Symbol sym : globalSymbols.values()) {
+                addresses.put(sym.getName(), sym);
+            }
+        }
         return addresses.get(name);
     }
 
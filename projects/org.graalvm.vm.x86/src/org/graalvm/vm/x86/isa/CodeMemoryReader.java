@@ -40,6 +40,7 @@
  */
 package org.graalvm.vm.x86.isa;
 
+import org.graalvm.vm.memory.MemoryView;
 import org.graalvm.vm.memory.VirtualMemory;
 import org.graalvm.vm.memory.exception.SegmentationViolation;
 
@@ -47,9 +48,32 @@ public class CodeMemoryReader extends CodeReader {
     private VirtualMemory memory;
     private long pc;
 
+    // direct view of the executable memory around pc, if the memory provides one
+    private MemoryView view;
+    private long noView;
+
     public CodeMemoryReader(VirtualMemory memory, long pc) {
         this.memory = memory;
         this.pc = pc;
+        this.view = null;
+        this.noView = -1;
+    }
+
+    private boolean inView(int size) {
+        if (view != null && view.contains(pc, size)) {
+            return true;
+        }
+        long page = memory.pageStart(pc);
+        if (page == noView || (view != null && view.contains(pc, 1))) {
+            // no view for this page, or the access crosses the end of the view
+            return false;
+        }
+        view = memory.getCodeView(pc);
+        if (view == null) {
+            noView = page;
+            return false;
+        }
+        return view.contains(pc, size);
     }
 
     private void check() {
@@ -61,6 +85,9 @@ public class CodeMemoryReader extends CodeReader {
     @Override
     public byte peek8(int offset) {
         long ptr = pc + offset;
+        if (view != null && view.contains(ptr, 1)) {
+            return view.getI8(ptr);
+        }
         if (!memory.isExecutable(ptr)) {
             throw new SegmentationViolation(pc);
         }
@@ -69,30 +96,48 @@ public class CodeMemoryReader extends CodeReader {
 
     @Override
     public byte read8() {
+        if (inView(1)) {
+            return view.getI8(pc++);
+        }
         check();
         return memory.getI8(pc++);
     }
 
     @Override
     public short read16() {
-        check();
-        short value = memory.getI16(pc);
+        short value;
+        if (inView(2)) {
+            value = view.getI16(pc);
+        } else {
+            check();
+            value = memory.getI16(pc);
+        }
         pc += 2;
         return value;
     }
 
     @Override
     public int read32() {
-        check();
-        int value = memory.getI32(pc);
+        int value;
+        if (inView(4)) {
+            value = view.getI32(pc);
+        } else {
+            check();
+            value = memory.getI32(pc);
+        }
         pc += 4;
         return value;
     }
 
     @Override
     public long read64() {
-        check();
-        long value = memory.getI64(pc);
+        long value;
+        if (inView(8)) {
+            value = view.getI64(pc);
+        } else {
+            check();
+            value = memory.getI64(pc);
+        }
         pc += 8;
         return value;
     }
@@ -105,6 +150,9 @@ public class CodeMemoryReader extends CodeReader {
     @Override
     public void setPC(long pc) {
         this.pc = pc;
+        // the mappings may have changed since the last block was decoded
+        view = null;
+        noView = -1;
     }
 
     @Override
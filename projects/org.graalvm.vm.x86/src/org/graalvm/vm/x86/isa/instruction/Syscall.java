@@ -40,6 +40,9 @@
  */
 package org.graalvm.vm.x86.isa.instruction;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -47,6 +50,7 @@ import org.graalvm.vm.memory.VirtualMemory;
 import org.graalvm.vm.posix.api.Errno;
 import org.graalvm.vm.util.log.Trace;
 import org.graalvm.vm.x86.AMD64Context;
+import org.graalvm.vm.x86.Options;
 import org.graalvm.vm.x86.RegisterAccessFactory;
 import org.graalvm.vm.x86.isa.AMD64Instruction;
 import org.graalvm.vm.x86.isa.Register;
@@ -59,6 +63,7 @@ import org.graalvm.vm.x86.posix.SyscallException;
 import org.graalvm.vm.x86.posix.SyscallNames;
 import org.graalvm.vm.x86.posix.SyscallWrapper;
 
+import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.TruffleLanguage.ContextReference;
@@ -67,6 +72,14 @@ import com.oracle.truffle.api.frame.VirtualFrame;
 public class Syscall extends AMD64Instruction {
     private static final Logger log = Trace.create(Syscall.class);
 
+    public static final boolean PRINT_STATS = Options.getBoolean(Options.PRINT_SYSCALL_STATS);
+
+    private static final List<Syscall> sites = new ArrayList<>();
+
+    private static final int UNINITIALIZED = 0;
+    private static final int MONOMORPHIC = 1;
+    private static final int GENERIC = 2;
+
     @Child private SyscallWrapper syscall = null;
     @Child private RegisterReadNode readRAX;
     @Child private RegisterReadNode readRDI;
@@ -82,6 +95,14 @@ public class Syscall extends AMD64Instruction {
 
     @CompilationFinal private ContextReference<AMD64Context> ctxRef;
 
+    // almost every call site loads RAX from an immediate, remember the first syscall number
+    @CompilationFinal private int state = UNINITIALIZED;
+    @CompilationFinal private int cachedNr;
+
+    private long directCount;
+    private long genericCount;
+    private BitSet observed;
+
     public Syscall(long pc, byte[] instruction) {
         super(pc, instruction);
 
@@ -112,6 +133,54 @@ public class Syscall extends AMD64Instruction {
         writeRCX = reg.getRegister(Register.RCX).createWrite();
         writeR11 = reg.getRegister(Register.R11).createWrite();
         readFlags = reg.createReadFlags();
+        if (PRINT_STATS) {
+            observed = new BitSet();
+            register(this);
+        }
+    }
+
+    @TruffleBoundary
+    private static void register(Syscall site) {
+        synchronized (sites) {
+            sites.add(site);
+        }
+    }
+
+    @TruffleBoundary
+    private void observe(int nr) {
+        synchronized (observed) {
+            if (nr >= 0) {
+                observed.set(nr);
+            }
+        }
+    }
+
+    private long dispatch(VirtualFrame frame, int nr, long rdi, long rsi, long rdx, long r10, long r8, long r9) throws SyscallException {
+        if (state == MONOMORPHIC) {
+            if (nr == cachedNr) {
+                if (PRINT_STATS) {
+                    directCount++;
+                }
+                return syscall.executeI64(frame, cachedNr, rdi, rsi, rdx, r10, r8, r9, pc);
+            } else {
+                CompilerDirectives.transferToInterpreterAndInvalidate();
+                state = GENERIC;
+            }
+        } else if (state == UNINITIALIZED) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            cachedNr = nr;
+            state = MONOMORPHIC;
+            if (PRINT_STATS) {
+                observe(nr);
+                directCount++;
+            }
+            return syscall.executeI64(frame, nr, rdi, rsi, rdx, r10, r8, r9, pc);
+        }
+        if (PRINT_STATS) {
+            observe(nr);
+            genericCount++;
+        }
+        return syscall.executeI64(frame, nr, rdi, rsi, rdx, r10, r8, r9, pc);
     }
 
     @Override
@@ -125,7 +194,7 @@ public class Syscall extends AMD64Instruction {
         long r9 = readR9.executeI64(frame);
         long result;
         try {
-            result = syscall.executeI64(frame, (int) rax, rdi, rsi, rdx, r10, r8, r9, pc);
+            result = dispatch(frame, (int) rax, rdi, rsi, rdx, r10, r8, r9);
         } catch (SyscallException e) {
             result = -e.getValue();
             if (e.getValue() == Errno.ENOSYS) {
@@ -157,6 +226,45 @@ public class Syscall extends AMD64Instruction {
         return ctxRef.get().interopCall(id, a1, a2, a3, a4, a5, a6);
     }
 
+    @TruffleBoundary
+    public static void printStats() {
+        List<Syscall> all;
+        synchronized (sites) {
+            all = new ArrayList<>(sites);
+        }
+        long direct = 0;
+        long generic = 0;
+        int monomorphic = 0;
+        for (Syscall site : all) {
+            direct += site.directCount;
+            generic += site.genericCount;
+            if (site.state == MONOMORPHIC) {
+                monomorphic++;
+            }
+        }
+        long total = direct + generic;
+        double directPercent = total == 0 ? 0 : (double) direct / total * 100;
+        double genericPercent = total == 0 ? 0 : (double) generic / total * 100;
+        Trace.log.printf("Syscall sites: %d (%d monomorphic)\n", all.size(), monomorphic);
+        Trace.log.printf("Direct syscalls: %d (%.1f%%)\n", direct, directPercent);
+        Trace.log.printf("Generic syscalls: %d (%.1f%%)\n", generic, genericPercent);
+        for (Syscall site : all) {
+            if (site.state == GENERIC) {
+                StringBuilder names = new StringBuilder();
+                synchronized (site.observed) {
+                    for (int nr = site.observed.nextSetBit(0); nr >= 0; nr = site.observed.nextSetBit(nr + 1)) {
+                        if (names.length() > 0) {
+                            names.append(", ");
+                        }
+                        String name = SyscallNames.getName(nr);
+                        names.append(name != null ? name : Integer.toString(nr));
+                    }
+                }
+                Trace.log.printf("Polymorphic site 0x%016x: %d direct, %d generic [%s]\n", site.pc, site.directCount, site.genericCount, names);
+            }
+        }
+    }
+
     @TruffleBoundary
     private static void log(long nr) {
         String name = SyscallNames.getName(nr);
@@ -53,11 +53,13 @@ import org.graalvm.vm.x86.isa.CodeReader;
 import org.graalvm.vm.x86.isa.SegmentationViolationInstruction;
 import org.graalvm.vm.x86.substitution.Substitution;
 import org.graalvm.vm.x86.substitution.SubstitutionRegistry;
+import org.graalvm.vm.x86.substitution.vdso.Vdso.VdsoSubstitution;
 
 public class AMD64BasicBlockParser {
     private static final Logger log = Trace.create(AMD64BasicBlockParser.class);
 
     private static final boolean USE_SUBSTITUTIONS = Options.getBoolean(Options.ENABLE_SUBSTITUTIONS);
+    private static final boolean USE_VDSO = Options.getBoolean(Options.USE_VDSO);
     private static final boolean TRACE = Options.getBoolean(Options.TRACE_SUBSTITUTIONS);
 
     public static AMD64BasicBlock parse(CodeReader reader) {
@@ -77,10 +79,11 @@ public class AMD64BasicBlockParser {
         while (reader.isAvailable()) {
             try {
                 AMD64Instruction insn = null;
-                if (USE_SUBSTITUTIONS && substitutions != null) {
+                if ((USE_SUBSTITUTIONS || USE_VDSO) && substitutions != null) {
                     try {
                         Substitution substitution = substitutions.getSubstitution(reader);
-                        if (substitution != null) {
+                        // the vDSO alone only enables the intrinsics of its own functions
+                        if (substitution != null && (USE_SUBSTITUTIONS || substitution instanceof VdsoSubstitution)) {
                             long pc = reader.getPC();
                             insn = substitution.createNode(pc, reader);
                             if (TRACE) {
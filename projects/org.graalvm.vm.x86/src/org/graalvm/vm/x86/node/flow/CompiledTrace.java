@@ -40,72 +40,54 @@
  */
 package org.graalvm.vm.x86.node.flow;
 
-import com.oracle.truffle.api.Assumption;
-import com.oracle.truffle.api.CompilerDirectives;
-import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import java.util.Arrays;
+
 import com.oracle.truffle.api.RootCallTarget;
 import com.oracle.truffle.api.Truffle;
-import com.oracle.truffle.api.nodes.InvalidAssumptionException;
 
 public class CompiledTrace {
+    private static final int MAX_SUCCESSORS = 8;
+
     public final RootCallTarget callTarget;
     public final TraceCallTarget trace;
 
-    private int usedSuccessors;
-    private final CompiledTrace[] successors;
+    // copy on write: readers always see a complete array without taking the lock
+    private volatile CompiledTrace[] successors;
 
     private final Object lock = new Object();
 
-    private final Assumption singleThreaded;
-    @CompilationFinal private boolean isSingleThreaded;
-
-    public CompiledTrace(TraceCallTarget trace, Assumption singleThreaded) {
+    public CompiledTrace(TraceCallTarget trace) {
         this.trace = trace;
-        this.singleThreaded = singleThreaded;
-        isSingleThreaded = singleThreaded.isValid();
         callTarget = Truffle.getRuntime().createCallTarget(trace);
-        usedSuccessors = 0;
-        successors = new CompiledTrace[8];
+        successors = new CompiledTrace[0];
     }
 
     public CompiledTrace getNext(long pc) {
-        for (int i = 0; i < usedSuccessors; i++) {
-            if (successors[i].trace.getStartAddress() == pc) {
+        CompiledTrace[] next = successors;
+        for (int i = 0; i < next.length; i++) {
+            if (next[i].trace.getStartAddress() == pc) {
                 // TODO: sort as LRU
-                return successors[i];
+                return next[i];
             }
         }
         return null;
     }
 
-    private void doSetNext(CompiledTrace trc) {
-        // trace already registered?
-        for (int i = 0; i < usedSuccessors; i++) {
-            if (successors[i] == trc) {
+    public void setNext(CompiledTrace trc) {
+        synchronized (lock) {
+            CompiledTrace[] next = successors;
+            if (next.length == MAX_SUCCESSORS) {
                 return;
             }
-        }
-
-        if (usedSuccessors < successors.length) {
-            successors[usedSuccessors++] = trc;
-        }
-    }
-
-    public void setNext(CompiledTrace trace) {
-        if (isSingleThreaded) {
-            try {
-                singleThreaded.check();
-                doSetNext(trace);
-                return;
-            } catch (InvalidAssumptionException e) {
-                CompilerDirectives.transferToInterpreterAndInvalidate();
-                isSingleThreaded = false;
+            // trace already registered?
+            for (int i = 0; i < next.length; i++) {
+                if (next[i] == trc) {
+                    return;
+                }
             }
-        }
-
-        // multithreaded cases
-        synchronized (lock) {
-            doSetNext(trace);
+            next = Arrays.copyOf(next, next.length + 1);
+            next[next.length - 1] = trc;
+            successors = next;
         }
     }
 }
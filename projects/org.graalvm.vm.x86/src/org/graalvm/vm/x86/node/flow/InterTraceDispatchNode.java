@@ -47,6 +47,7 @@ import org.graalvm.vm.util.log.Trace;
 import org.graalvm.vm.x86.ArchitecturalState;
 import org.graalvm.vm.x86.Options;
 import org.graalvm.vm.x86.isa.CpuState;
+import org.graalvm.vm.x86.isa.instruction.Syscall;
 import org.graalvm.vm.x86.node.AMD64Node;
 import org.graalvm.vm.x86.node.ReadNode;
 import org.graalvm.vm.x86.node.WriteNode;
@@ -104,6 +105,11 @@ public class InterTraceDispatchNode extends AbstractDispatchNode {
         Trace.log.printf("Executed instructions: %d\n", insncnt);
     }
 
+    @TruffleBoundary
+    private void printVFSStats() {
+        Trace.log.printf("%s\n", getContextReference().get().getPosixEnvironment().getVFS().getDentryCache());
+    }
+
     public CompiledTrace getStartTrace() {
         return startTrace;
     }
@@ -205,6 +211,10 @@ public class InterTraceDispatchNode extends AbstractDispatchNode {
             if (PRINT_STATS) {
                 printStats();
             }
+            if (Syscall.PRINT_STATS) {
+                Syscall.printStats();
+                printVFSStats();
+            }
             throw e;
         }
     }
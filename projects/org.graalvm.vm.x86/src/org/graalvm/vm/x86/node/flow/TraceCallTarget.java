@@ -61,7 +61,6 @@ import org.graalvm.vm.x86.node.init.InitializeFromCpuStateNode;
 import org.graalvm.vm.x86.posix.InteropReturnException;
 import org.graalvm.vm.x86.posix.InteropReturnResult;
 
-import com.oracle.truffle.api.Assumption;
 import com.oracle.truffle.api.CompilerAsserts;
 import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
@@ -95,7 +94,6 @@ public class TraceCallTarget extends AMD64RootNode {
         cpuStateSlot = ctx.getCpuState();
         gprMaskSlot = ctx.getGPRMask();
         avxMaskSlot = ctx.getAVXMask();
-        singleThreaded = ctx.getSingleThreadedAssumption();
         dispatch = new TraceDispatchNode(ctx.getState(), ctx.getPosixEnvironment(), startPC);
         try {
             sym = ctx.getSymbolResolver().getSymbol(pc);
@@ -111,11 +109,10 @@ public class TraceCallTarget extends AMD64RootNode {
     @CompilationFinal(dimensions = 1) private boolean[] avxReadMask = null;
     @CompilationFinal(dimensions = 1) private boolean[] avxWriteMask = null;
 
-    @CompilationFinal private boolean initialized = false;
+    // written once after the masks, so a thread which sees true also sees the masks
+    @CompilationFinal private volatile boolean initialized = false;
     private final Object lock = new Object();
 
-    private final Assumption singleThreaded;
-
     @CompilationFinal(dimensions = 1) private static final boolean[] allTrue = new boolean[16];
     static {
         for (int i = 0; i < 16; i++) {
@@ -189,47 +186,44 @@ public class TraceCallTarget extends AMD64RootNode {
         assertEq("r15", ok.r15, reduced.r15);
     }
 
+    // only runs once per trace, so it can always take the lock
+    @TruffleBoundary
     private void initialize() {
-        if (singleThreaded.isValid()) {
-            doInitialize();
-        } else {
-            synchronized (lock) {
-                doInitialize();
-            }
-        }
-    }
+        synchronized (lock) {
+            // check again: don't initialize twice
+            if (!initialized) {
+                boolean[] gprReads = new boolean[16];
+                boolean[] gprWrites = new boolean[16];
+                Register[] reads = dispatch.getGPRReads();
+                for (Register r : reads) {
+                    if (r.getID() < 16) {
+                        gprReads[r.getID()] = true;
+                    }
+                }
+                Register[] writes = dispatch.getGPRWrites();
+                for (Register r : writes) {
+                    if (r.getID() < 16) {
+                        gprReads[r.getID()] = true; // initialize frames
+                        gprWrites[r.getID()] = true;
+                    }
+                }
 
-    private void doInitialize() {
-        // check again: don't initialize twice
-        if (!initialized) {
-            gprReadMask = new boolean[16];
-            gprWriteMask = new boolean[16];
-            Register[] reads = dispatch.getGPRReads();
-            for (Register r : reads) {
-                if (r.getID() < 16) {
-                    gprReadMask[r.getID()] = true;
+                boolean[] avxReads = new boolean[32];
+                boolean[] avxWrites = new boolean[32];
+                for (int r : dispatch.getAVXReads()) {
+                    avxReads[r] = true;
                 }
-            }
-            Register[] writes = dispatch.getGPRWrites();
-            for (Register r : writes) {
-                if (r.getID() < 16) {
-                    gprReadMask[r.getID()] = true; // initialize frames
-                    gprWriteMask[r.getID()] = true;
+                for (int r : dispatch.getAVXWrites()) {
+                    avxReads[r] = true; // initialize frames
+                    avxWrites[r] = true;
                 }
-            }
 
-            avxReadMask = new boolean[32];
-            avxWriteMask = new boolean[32];
-            int[] avxReads = dispatch.getAVXReads();
-            for (int r : avxReads) {
-                avxReadMask[r] = true;
-            }
-            int[] avxWrites = dispatch.getAVXWrites();
-            for (int r : avxWrites) {
-                avxReadMask[r] = true; // initialize frames
-                avxWriteMask[r] = true;
+                gprReadMask = gprReads;
+                gprWriteMask = gprWrites;
+                avxReadMask = avxReads;
+                avxWriteMask = avxWrites;
+                initialized = true;
             }
-            initialized = true;
         }
     }
 
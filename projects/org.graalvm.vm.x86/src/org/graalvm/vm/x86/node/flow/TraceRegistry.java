@@ -40,47 +40,53 @@
  */
 package org.graalvm.vm.x86.node.flow;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.graalvm.vm.util.HexFormatter;
 import org.graalvm.vm.x86.AMD64Context;
 
-import com.oracle.truffle.api.Assumption;
 import com.oracle.truffle.api.CompilerDirectives;
-import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.TruffleLanguage;
-import com.oracle.truffle.api.TruffleLanguage.ContextReference;
 import com.oracle.truffle.api.frame.FrameDescriptor;
 
+/**
+ * Maps guest addresses to traces. Traces are never removed or replaced, so lookups of existing
+ * traces do not need a lock. Only creating a trace is serialized, which keeps compiled code valid
+ * when the guest starts more threads.
+ */
 public class TraceRegistry {
     private final TruffleLanguage<AMD64Context> language;
     private final FrameDescriptor frameDescriptor;
 
     private final Map<Long, CompiledTrace> traces;
-    private final ContextReference<AMD64Context> ctxref;
     private final Object lock = new Object();
-    @CompilationFinal private Assumption singleThreaded;
 
     public TraceRegistry(TruffleLanguage<AMD64Context> language, FrameDescriptor frameDescriptor) {
         this.language = language;
         this.frameDescriptor = frameDescriptor;
-        traces = new HashMap<>();
-        ctxref = language.getContextReference();
+        traces = new ConcurrentHashMap<>();
     }
 
-    public void initialize() {
-        singleThreaded = ctxref.get().getSingleThreadedAssumption();
+    private CompiledTrace create(long pc) {
+        synchronized (lock) {
+            // another thread may have created it in the meantime
+            CompiledTrace trace = traces.get(pc);
+            if (trace == null) {
+                TraceCallTarget target = new TraceCallTarget(language, frameDescriptor, pc);
+                trace = new CompiledTrace(target);
+                traces.put(pc, trace);
+            }
+            return trace;
+        }
     }
 
     @TruffleBoundary
-    private CompiledTrace doGet(long pc) {
+    public CompiledTrace get(long pc) {
         CompiledTrace trace = traces.get(pc);
         if (trace == null) {
-            TraceCallTarget target = new TraceCallTarget(language, frameDescriptor, pc);
-            trace = new CompiledTrace(target, ctxref.get().getSingleThreadedAssumption());
-            traces.put(pc, trace);
+            trace = create(pc);
         }
         if (trace.trace.getStartAddress() != pc) {
             CompilerDirectives.transferToInterpreter();
@@ -89,16 +95,6 @@ public class TraceRegistry {
         return trace;
     }
 
-    public CompiledTrace get(long pc) {
-        if (singleThreaded.isValid()) {
-            return doGet(pc);
-        } else {
-            synchronized (lock) {
-                return doGet(pc);
-            }
-        }
-    }
-
     public int size() {
         return traces.size();
     }
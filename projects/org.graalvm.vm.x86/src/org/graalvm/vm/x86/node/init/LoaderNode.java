@@ -50,6 +50,7 @@ import org.graalvm.vm.posix.api.PosixException;
 import org.graalvm.vm.posix.elf.Elf;
 import org.graalvm.vm.posix.vfs.FileSystem;
 import org.graalvm.vm.posix.vfs.NativeFileSystem;
+import org.graalvm.vm.posix.vfs.Tmpfs;
 import org.graalvm.vm.posix.vfs.VFS;
 import org.graalvm.vm.posix.vfs.proc.Procfs;
 import org.graalvm.vm.util.log.Trace;
@@ -132,6 +133,15 @@ public class LoaderNode extends AMD64Node {
         } catch (PosixException e) {
             log.warning("Cannot mount /proc: " + e);
         }
+
+        String tmpfs = Options.getString(Options.TMPFS);
+        if (tmpfs != null) {
+            try {
+                posix.mount(tmpfs, new Tmpfs(vfs));
+            } catch (PosixException e) {
+                log.warning("Cannot mount tmpfs on " + tmpfs + ": " + e);
+            }
+        }
     }
 
     @TruffleBoundary
@@ -50,11 +50,10 @@ import java.util.NavigableMap;
 import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
-import org.graalvm.vm.memory.ByteMemory;
 import org.graalvm.vm.memory.Memory;
 import org.graalvm.vm.memory.MemoryPage;
+import org.graalvm.vm.memory.PagedMemory;
 import org.graalvm.vm.memory.PosixMemory;
 import org.graalvm.vm.memory.PosixVirtualMemoryPointer;
 import org.graalvm.vm.memory.VirtualMemory;
@@ -76,7 +75,9 @@ import org.graalvm.vm.posix.api.Timespec;
 import org.graalvm.vm.posix.api.Timeval;
 import org.graalvm.vm.posix.api.Tms;
 import org.graalvm.vm.posix.api.Utsname;
+import org.graalvm.vm.posix.api.io.EpollEvent;
 import org.graalvm.vm.posix.api.io.Fcntl;
+import org.graalvm.vm.posix.api.io.FdSet;
 import org.graalvm.vm.posix.api.io.FileDescriptorManager;
 import org.graalvm.vm.posix.api.io.Iovec;
 import org.graalvm.vm.posix.api.io.Pollfd;
@@ -88,10 +89,8 @@ import org.graalvm.vm.posix.api.net.Msghdr;
 import org.graalvm.vm.posix.api.net.RecvResult;
 import org.graalvm.vm.posix.api.net.Sockaddr;
 import org.graalvm.vm.posix.elf.Elf;
-import org.graalvm.vm.posix.elf.ProgramHeader;
-import org.graalvm.vm.posix.elf.Section;
 import org.graalvm.vm.posix.elf.Symbol;
-import org.graalvm.vm.posix.elf.SymbolTable;
+import org.graalvm.vm.posix.elf.SymbolIndex;
 import org.graalvm.vm.posix.vfs.FileSystem;
 import org.graalvm.vm.posix.vfs.VFS;
 import org.graalvm.vm.util.BitTest;
@@ -101,7 +100,6 @@ import org.graalvm.vm.util.log.Levels;
 import org.graalvm.vm.util.log.Trace;
 import org.graalvm.vm.x86.AMD64;
 import org.graalvm.vm.x86.Options;
-import org.graalvm.vm.x86.SymbolResolver;
 import org.graalvm.vm.x86.node.debug.trace.ExecutionTraceWriter;
 
 import com.oracle.truffle.api.Assumption;
@@ -120,9 +118,8 @@ public class PosixEnvironment {
     private boolean strace;
     private final String arch;
 
-    private NavigableMap<Long, Symbol> symbols;
+    private NavigableMap<Long, SymbolIndex> symbols;
     private NavigableMap<Long, String> libraries;
-    private SymbolResolver symbolResolver;
 
     private final ExecutionTraceWriter traceWriter;
 
@@ -136,7 +133,6 @@ public class PosixEnvironment {
         strace = System.getProperty("posix.strace") != null;
         if (DEBUG) {
             symbols = new TreeMap<>();
-            symbolResolver = new SymbolResolver(symbols);
             libraries = new TreeMap<>();
         }
         exitGroupAssumption = Truffle.getRuntime().createAssumption("exit_group");
@@ -195,11 +191,18 @@ public class PosixEnvironment {
     }
 
     public Symbol getSymbol(long pc) {
-        if (symbolResolver != null) {
-            return symbolResolver.getSymbol(pc);
-        } else {
+        if (symbols == null) {
             return null;
         }
+        for (SymbolIndex index : symbols.headMap(pc, true).descendingMap().values()) {
+            if (Long.compareUnsigned(pc, index.getHigh()) < 0) {
+                Symbol sym = index.getSymbol(pc);
+                if (sym != null) {
+                    return sym;
+                }
+            }
+        }
+        return null;
     }
 
     public long getBase(long pc) {
@@ -254,46 +257,36 @@ public class PosixEnvironment {
                 int read = stream.pread(magic, 0, 4, 0);
                 if (read == 4 && Endianess.get32bitBE(magic) == Elf.MAGIC && (int) stat.st_size > 0) {
                     log.log(Levels.DEBUG, "File " + fildes + " is an ELF file");
-                    // load elf file
-                    byte[] buf = new byte[(int) stat.st_size];
-                    stream.pread(buf, 0, buf.length, 0);
-                    Elf elf = new Elf(buf);
-                    log.log(Levels.DEBUG, "Segments: " +
-                                    elf.getProgramHeaders().stream().map(phdr -> String.format("0x%08x-0x%08x", phdr.p_vaddr, phdr.p_vaddr + phdr.p_memsz)).collect(Collectors.joining(", ")));
-                    log.log(Levels.DEBUG, "Sections: " + elf.sections.stream().map(Section::getName).collect(Collectors.joining(", ")));
+                    // only the headers and symbol tables are read, not the whole file
+                    SymbolIndex.Reader reader = (buf, off, len, pos) -> {
+                        try {
+                            return stream.pread(buf, off, len, pos);
+                        } catch (PosixException e) {
+                            throw new IOException(Errno.toString(e.getErrno()), e);
+                        }
+                    };
 
                     // find program header of this segment
                     long loadBias = ptr - offset; // strange assumption
-                    for (ProgramHeader phdr : elf.getProgramHeaders()) {
-                        if (phdr.p_offset == offset) { // this is it, probably
-                            loadBias = ptr - phdr.p_vaddr;
-                            log.log(Levels.DEBUG, "Program header found: " + String.format("0x%08x-0x%08x", phdr.p_vaddr, phdr.p_vaddr + phdr.p_memsz));
-                            log.log(Levels.DEBUG, "Computed load bias is " + HexFormatter.tohex(loadBias, 16));
-                            String filename = posix.getFileDescriptor(fildes).name;
-                            if (filename == null) {
-                                filename = "/proc/self/fd/" + fildes;
-                            }
-                            libraries.put(loadBias, filename);
-                            break;
+                    long vaddr = SymbolIndex.getSegmentAddress(reader, offset);
+                    if (vaddr != -1) { // this is it, probably
+                        loadBias = ptr - vaddr;
+                        log.log(Levels.DEBUG, "Computed load bias is " + HexFormatter.tohex(loadBias, 16));
+                        String filename = posix.getFileDescriptor(fildes).name;
+                        if (filename == null) {
+                            filename = "/proc/self/fd/" + fildes;
                         }
+                        libraries.put(loadBias, filename);
                     }
 
-                    SymbolTable symtab = elf.getSymbolTable();
-                    if (symtab == null) {
-                        symtab = elf.getDynamicSymbolTable();
-                    }
-                    if (symtab != null) {
-                        log.log(Levels.DEBUG, "Loading symbols in range " + HexFormatter.tohex(ptr, 16) + "-" + HexFormatter.tohex(ptr + length, 16) + "...");
-                        for (Symbol sym : symtab.getSymbols()) {
-                            if (sym.getSectionIndex() != Symbol.SHN_UNDEF && sym.getValue() >= offset && sym.getValue() < offset + length) {
-                                symbols.put(sym.getValue() + loadBias, sym.offset(loadBias));
-                                log.log(Levels.DEBUG, "Adding symbol " + sym + " for address 0x" + HexFormatter.tohex(sym.getValue() + loadBias, 16));
-                            }
-                        }
+                    log.log(Levels.DEBUG, "Loading symbols in range " + HexFormatter.tohex(ptr, 16) + "-" + HexFormatter.tohex(ptr + length, 16) + "...");
+                    SymbolIndex index = SymbolIndex.load(reader, offset, length, loadBias);
+                    if (index.size() > 0) {
+                        symbols.put(index.getLow(), index);
                     }
+                    log.log(Levels.DEBUG, "Indexed " + index.size() + " symbols");
                 }
             }
-            symbolResolver = new SymbolResolver(symbols);
         } catch (PosixException | IOException e) {
             log.log(Level.WARNING, "Error while reading symbols: " + e.getMessage(), e);
         }
@@ -500,6 +493,39 @@ public class PosixEnvironment {
         }
     }
 
+    public long sendfile(int out_fd, int in_fd, long offset, long count) throws SyscallException {
+        try {
+            return posix.sendfile64(out_fd, in_fd, posixPointer(offset), count);
+        } catch (PosixException e) {
+            if (strace) {
+                log.log(Level.INFO, "sendfile failed: " + Errno.toString(e.getErrno()));
+            }
+            throw new SyscallException(e.getErrno());
+        }
+    }
+
+    public long splice(int fd_in, long off_in, int fd_out, long off_out, long len, int flags) throws SyscallException {
+        try {
+            return posix.splice(fd_in, posixPointer(off_in), fd_out, posixPointer(off_out), len, flags);
+        } catch (PosixException e) {
+            if (strace) {
+                log.log(Level.INFO, "splice failed: " + Errno.toString(e.getErrno()));
+            }
+            throw new SyscallException(e.getErrno());
+        }
+    }
+
+    public long copy_file_range(int fd_in, long off_in, int fd_out, long off_out, long len, int flags) throws SyscallException {
+        try {
+            return posix.copy_file_range(fd_in, posixPointer(off_in), fd_out, posixPointer(off_out), len, flags);
+        } catch (PosixException e) {
+            if (strace) {
+                log.log(Level.INFO, "copy_file_range failed: " + Errno.toString(e.getErrno()));
+            }
+            throw new SyscallException(e.getErrno());
+        }
+    }
+
     public long dup(int fildes) throws SyscallException {
         try {
             return posix.dup(fildes);
@@ -872,8 +898,15 @@ public class PosixEnvironment {
     }
 
     public long mmap(long addr, long length, int pr, int fl, int fildes, long offset) throws SyscallException {
-        int flags = fl | Mman.MAP_PRIVATE;
-        int prot = pr | Mman.PROT_WRITE;
+        int flags = fl;
+        int prot = pr;
+        boolean sharedFile = BitTest.test(fl, Mman.MAP_SHARED) && !BitTest.test(fl, Mman.MAP_ANONYMOUS);
+        if (!sharedFile || !mem.supportsSharedMapping(BitTest.test(fl, Mman.MAP_FIXED) ? mem.addr(addr) : -1)) {
+            // shared file mappings have to keep their flags, otherwise writes never reach the file.
+            // Native memory copies every mapping, so there they are still a private copy.
+            flags |= Mman.MAP_PRIVATE;
+            prot |= Mman.PROT_WRITE;
+        }
         try {
             if (mem.pageStart(addr) != mem.addr(addr)) {
                 throw new PosixException(Errno.EINVAL);
@@ -884,7 +917,7 @@ public class PosixEnvironment {
             if (BitTest.test(flags, Mman.MAP_ANONYMOUS) && BitTest.test(flags, Mman.MAP_PRIVATE)) {
                 if (strace) {
                     log.log(Levels.INFO, () -> String.format("mmap(0x%016x, %d, %s, %s, %d, %d)", addr,
-                                    length, Mman.prot(prot), Mman.flags(flags), fildes, offset));
+                                    length, Mman.prot(pr), Mman.flags(fl), fildes, offset));
                 }
                 MemoryPage page;
                 try {
@@ -893,7 +926,7 @@ public class PosixEnvironment {
                         if (!BitTest.test(flags, Mman.MAP_FIXED)) {
                             aligned = mem.pageStart(addr);
                         }
-                        Memory bytes = new ByteMemory(length, false);
+                        Memory bytes = new PagedMemory(mem.roundToPageSize(length), false);
                         page = new MemoryPage(bytes, mem.addr(aligned), mem.roundToPageSize(length));
                         mem.add(page);
                     } else {
@@ -955,6 +988,89 @@ public class PosixEnvironment {
         }
     }
 
+    public int msync(long addr, long length, int flags) throws SyscallException {
+        if (strace) {
+            log.log(Level.INFO, () -> String.format("msync(0x%016x, %d, %s)", addr, length, Mman.msync(flags)));
+        }
+        try {
+            if (mem.pageStart(addr) != mem.addr(addr)) {
+                throw new PosixException(Errno.EINVAL);
+            }
+            if (BitTest.test(flags, Mman.MS_ASYNC) && BitTest.test(flags, Mman.MS_SYNC)) {
+                throw new PosixException(Errno.EINVAL);
+            }
+            long start = mem.addr(addr);
+            long end = start + mem.roundToPageSize(length);
+            for (long p = start; Long.compareUnsigned(p, end) < 0;) {
+                MemoryPage page = mem.get(p);
+                if (page == null) {
+                    if (!mem.contains(p)) {
+                        throw new PosixException(Errno.ENOMEM);
+                    }
+                    // native memory never holds shared file mappings
+                    p += VirtualMemory.PAGE_SIZE;
+                    continue;
+                }
+                Memory memory = page.getMemory();
+                if (memory instanceof PosixMemory) {
+                    long len = Math.min(page.end, end) - p;
+                    ((PosixMemory) memory).msync(page.getOffset(p), len, flags);
+                }
+                p = page.end;
+            }
+            return 0;
+        } catch (SegmentationViolation e) {
+            if (strace) {
+                log.log(Level.INFO, "msync failed: " + Errno.toString(Errno.ENOMEM));
+            }
+            throw new SyscallException(Errno.ENOMEM);
+        } catch (PosixException e) {
+            if (strace) {
+                log.log(Level.INFO, "msync failed: " + Errno.toString(e.getErrno()));
+            }
+            throw new SyscallException(e.getErrno());
+        }
+    }
+
+    public int madvise(long addr, long length, int advice) throws SyscallException {
+        if (strace) {
+            log.log(Level.INFO, () -> String.format("madvise(0x%016x, %d, %s)", addr, length, Mman.madvise(advice)));
+        }
+        try {
+            if (mem.pageStart(addr) != mem.addr(addr) || length < 0) {
+                throw new PosixException(Errno.EINVAL);
+            }
+            switch (advice) {
+                case Mman.MADV_DONTNEED:
+                case Mman.MADV_FREE:
+                    mem.madvise(addr, length, advice);
+                    break;
+                case Mman.MADV_NORMAL:
+                case Mman.MADV_RANDOM:
+                case Mman.MADV_SEQUENTIAL:
+                case Mman.MADV_WILLNEED:
+                case Mman.MADV_DONTFORK:
+                case Mman.MADV_DOFORK:
+                case Mman.MADV_MERGEABLE:
+                case Mman.MADV_UNMERGEABLE:
+                case Mman.MADV_HUGEPAGE:
+                case Mman.MADV_NOHUGEPAGE:
+                case Mman.MADV_DONTDUMP:
+                case Mman.MADV_DODUMP:
+                    // hints only
+                    break;
+                default:
+                    throw new PosixException(Errno.EINVAL);
+            }
+            return 0;
+        } catch (PosixException e) {
+            if (strace) {
+                log.log(Level.INFO, "madvise failed: " + Errno.toString(e.getErrno()));
+            }
+            throw new SyscallException(e.getErrno());
+        }
+    }
+
     public int mprotect(long addr, long size, int prot) throws SyscallException {
         if (strace) {
             log.log(Level.INFO, () -> String.format("mprotect(0x%016x, %d, %s)", addr, size, Mman.prot(prot)));
@@ -1027,6 +1143,32 @@ public class PosixEnvironment {
         return val;
     }
 
+    // vDSO: the caller writes the result to guest memory, Posix traces the call itself
+    public int clock_gettime(int clk_id, Timespec tp) throws SyscallException {
+        try {
+            int val = posix.clock_gettime(clk_id, tp);
+            if (STATIC_TIME) {
+                tp.tv_sec = 0;
+                tp.tv_nsec = 0;
+            }
+            return val;
+        } catch (PosixException e) {
+            if (strace) {
+                log.log(Level.INFO, "clock_gettime failed: " + Errno.toString(e.getErrno()));
+            }
+            throw new SyscallException(e.getErrno());
+        }
+    }
+
+    public int gettimeofday(Timeval tp) {
+        int val = posix.gettimeofday(tp, null);
+        if (STATIC_TIME) {
+            tp.tv_sec = 0;
+            tp.tv_usec = 0;
+        }
+        return val;
+    }
+
     public long times(long buffer) throws SyscallException {
         try {
             Tms buf = new Tms();
@@ -1217,32 +1359,223 @@ public class PosixEnvironment {
 
     public int poll(long fds, int nfds, int timeout) throws SyscallException {
         try {
-            PosixPointer pfds = posixPointer(fds);
-            Pollfd[] parsed = new Pollfd[nfds];
-            PosixPointer ptr = pfds;
-            for (int i = 0; i < nfds; i++) {
-                parsed[i] = new Pollfd();
-                ptr = parsed[i].read(ptr);
+            return poll(posixPointer(fds), nfds, timeout);
+        } catch (PosixException e) {
+            if (strace) {
+                log.log(Level.INFO, "poll failed: " + Errno.toString(e.getErrno()));
+            }
+            throw new SyscallException(e.getErrno());
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public int ppoll(long fds, int nfds, long tmo, long sigmask, long sigsetsize) throws SyscallException {
+        try {
+            // no signal is delivered while the guest waits, so the temporary signal mask does not matter
+            return poll(posixPointer(fds), nfds, getTimeout(posixPointer(tmo)));
+        } catch (PosixException e) {
+            if (strace) {
+                log.log(Level.INFO, "ppoll failed: " + Errno.toString(e.getErrno()));
             }
+            throw new SyscallException(e.getErrno());
+        }
+    }
+
+    private int poll(PosixPointer pfds, int nfds, int timeout) throws PosixException {
+        Pollfd[] parsed = new Pollfd[nfds];
+        PosixPointer ptr = pfds;
+        for (int i = 0; i < nfds; i++) {
+            parsed[i] = new Pollfd();
+            ptr = parsed[i].read(ptr);
+        }
 
-            int result = posix.poll(parsed, nfds, timeout);
+        int result = posix.poll(parsed, nfds, timeout);
 
-            if (result > 0) {
-                ptr = pfds;
-                for (int i = 0; i < nfds; i++) {
-                    ptr = parsed[i].write(ptr);
-                }
+        ptr = pfds;
+        for (int i = 0; i < nfds; i++) {
+            ptr = parsed[i].write(ptr);
+        }
+        return result;
+    }
+
+    // timeout in milliseconds from a struct timespec, rounded up; -1 for NULL
+    private static int getTimeout(PosixPointer ts) throws PosixException {
+        if (ts == null) {
+            return -1;
+        }
+        Timespec t = new Timespec();
+        t.read64(ts);
+        return getTimeout(t.tv_sec, t.tv_nsec, 1_000_000L);
+    }
+
+    private static int getTimeout(long sec, long frac, long fracPerMilli) throws PosixException {
+        if (sec < 0 || frac < 0 || frac >= 1000 * fracPerMilli) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        long ms = sec * 1000 + (frac + fracPerMilli - 1) / fracPerMilli;
+        if (sec > Integer.MAX_VALUE / 1000 || ms > Integer.MAX_VALUE) {
+            return -1;
+        }
+        return (int) ms;
+    }
+
+    public int select(int nfds, long readfds, long writefds, long exceptfds, long timeout) throws SyscallException {
+        try {
+            int ms = -1;
+            if (timeout != 0) {
+                PosixPointer ptr = posixPointer(timeout);
+                ms = getTimeout(ptr.getI64(), ptr.add(8).getI64(), 1_000L);
+            }
+            return select(nfds, readfds, writefds, exceptfds, ms);
+        } catch (PosixException e) {
+            if (strace) {
+                log.log(Level.INFO, "select failed: " + Errno.toString(e.getErrno()));
+            }
+            throw new SyscallException(e.getErrno());
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public int pselect6(int nfds, long readfds, long writefds, long exceptfds, long timeout, long sigmask) throws SyscallException {
+        try {
+            // no signal is delivered while the guest waits, so the temporary signal mask does not matter
+            return select(nfds, readfds, writefds, exceptfds, getTimeout(posixPointer(timeout)));
+        } catch (PosixException e) {
+            if (strace) {
+                log.log(Level.INFO, "pselect6 failed: " + Errno.toString(e.getErrno()));
             }
+            throw new SyscallException(e.getErrno());
+        }
+    }
+
+    private FdSet readFdSet(long addr, int nfds) {
+        if (addr == 0) {
+            return null;
+        }
+        FdSet set = new FdSet();
+        set.read(posixPointer(addr), nfds);
+        return set;
+    }
+
+    private int select(int nfds, long readfds, long writefds, long exceptfds, int timeout) throws PosixException {
+        if (nfds < 0 || nfds > FdSet.FD_SETSIZE) {
+            throw new PosixException(Errno.EINVAL);
+        }
+        FdSet r = readFdSet(readfds, nfds);
+        FdSet w = readFdSet(writefds, nfds);
+        FdSet e = readFdSet(exceptfds, nfds);
+        int result = posix.select(nfds, r, w, e, timeout);
+        if (r != null) {
+            r.write(posixPointer(readfds), nfds);
+        }
+        if (w != null) {
+            w.write(posixPointer(writefds), nfds);
+        }
+        if (e != null) {
+            e.write(posixPointer(exceptfds), nfds);
+        }
+        return result;
+    }
 
+    public int pipe2(long pipefd, int flags) throws SyscallException {
+        try {
+            if (pipefd == 0) {
+                throw new PosixException(Errno.EFAULT);
+            }
+            int[] fildes = new int[2];
+            int result = posix.pipe2(fildes, flags);
+            PosixPointer ptr = posixPointer(pipefd);
+            ptr.setI32(fildes[0]);
+            ptr.add(4).setI32(fildes[1]);
             return result;
         } catch (PosixException e) {
             if (strace) {
-                log.log(Level.INFO, "poll failed: " + Errno.toString(e.getErrno()));
+                log.log(Level.INFO, "pipe2 failed: " + Errno.toString(e.getErrno()));
+            }
+            throw new SyscallException(e.getErrno());
+        }
+    }
+
+    public int eventfd2(int initval, int flags) throws SyscallException {
+        try {
+            return posix.eventfd(initval, flags);
+        } catch (PosixException e) {
+            if (strace) {
+                log.log(Level.INFO, "eventfd2 failed: " + Errno.toString(e.getErrno()));
+            }
+            throw new SyscallException(e.getErrno());
+        }
+    }
+
+    public int epoll_create(int size) throws SyscallException {
+        try {
+            return posix.epoll_create(size);
+        } catch (PosixException e) {
+            if (strace) {
+                log.log(Level.INFO, "epoll_create failed: " + Errno.toString(e.getErrno()));
+            }
+            throw new SyscallException(e.getErrno());
+        }
+    }
+
+    public int epoll_create1(int flags) throws SyscallException {
+        try {
+            return posix.epoll_create1(flags);
+        } catch (PosixException e) {
+            if (strace) {
+                log.log(Level.INFO, "epoll_create1 failed: " + Errno.toString(e.getErrno()));
+            }
+            throw new SyscallException(e.getErrno());
+        }
+    }
+
+    public int epoll_ctl(int epfd, int op, int fd, long event) throws SyscallException {
+        try {
+            EpollEvent ev = null;
+            if (event != 0) {
+                ev = new EpollEvent();
+                ev.read(posixPointer(event));
+            }
+            return posix.epoll_ctl(epfd, op, fd, ev);
+        } catch (PosixException e) {
+            if (strace) {
+                log.log(Level.INFO, "epoll_ctl failed: " + Errno.toString(e.getErrno()));
+            }
+            throw new SyscallException(e.getErrno());
+        }
+    }
+
+    public int epoll_wait(int epfd, long events, int maxevents, int timeout) throws SyscallException {
+        try {
+            if (maxevents <= 0) {
+                throw new PosixException(Errno.EINVAL);
+            }
+            EpollEvent[] parsed = new EpollEvent[maxevents];
+            for (int i = 0; i < maxevents; i++) {
+                parsed[i] = new EpollEvent();
+            }
+
+            int result = posix.epoll_wait(epfd, parsed, maxevents, timeout);
+
+            PosixPointer ptr = posixPointer(events);
+            for (int i = 0; i < result; i++) {
+                ptr = parsed[i].write(ptr);
+            }
+            return result;
+        } catch (PosixException e) {
+            if (strace) {
+                log.log(Level.INFO, "epoll_wait failed: " + Errno.toString(e.getErrno()));
             }
             throw new SyscallException(e.getErrno());
         }
     }
 
+    @SuppressWarnings("unused")
+    public int epoll_pwait(int epfd, long events, int maxevents, int timeout, long sigmask, long sigsetsize) throws SyscallException {
+        // no signal is delivered while the guest waits, so the temporary signal mask does not matter
+        return epoll_wait(epfd, events, maxevents, timeout);
+    }
+
     public int socket(int domain, int type, int protocol) throws SyscallException {
         try {
             return posix.socket(domain, type, protocol);
@@ -1287,6 +1620,28 @@ public class PosixEnvironment {
         }
     }
 
+    public int accept(int socket, long address, long address_len) throws SyscallException {
+        try {
+            return posix.accept(socket, sockaddrPointer(address), posixPointer(address_len));
+        } catch (PosixException e) {
+            if (strace) {
+                log.log(Level.INFO, "accept failed: " + Errno.toString(e.getErrno()));
+            }
+            throw new SyscallException(e.getErrno());
+        }
+    }
+
+    public int accept4(int socket, long address, long address_len, int flags) throws SyscallException {
+        try {
+            return posix.accept4(socket, sockaddrPointer(address), posixPointer(address_len), flags);
+        } catch (PosixException e) {
+            if (strace) {
+                log.log(Level.INFO, "accept4 failed: " + Errno.toString(e.getErrno()));
+            }
+            throw new SyscallException(e.getErrno());
+        }
+    }
+
     public int getsockname(int socket, long address, long address_len) throws SyscallException {
         try {
             Sockaddr sa = posix.getsockname(socket);
@@ -1437,6 +1792,17 @@ public class PosixEnvironment {
         }
     }
 
+    // vDSO: the caller stores the result at tloc
+    public long time() {
+        if (strace) {
+            log.log(Level.INFO, "time(tloc)");
+        }
+        if (STATIC_TIME) {
+            return 0;
+        }
+        return System.currentTimeMillis() / 1000;
+    }
+
     public long time(long tloc) {
         if (strace) {
             log.log(Level.INFO, () -> String.format("time(0x%016x)", tloc));
@@ -230,8 +230,16 @@ public class SyscallWrapper extends AMD64Node {
                 return posix.writev((int) a1, a2, (int) a3);
             case Syscalls.SYS_access:
                 return posix.access(a1, (int) a2);
+            case Syscalls.SYS_pipe:
+                return posix.pipe2(a1, 0);
+            case Syscalls.SYS_select:
+                return posix.select((int) a1, a2, a3, a4, a5);
             case Syscalls.SYS_sched_yield:
                 return posix.sched_yield();
+            case Syscalls.SYS_msync:
+                return posix.msync(a1, a2, (int) a3);
+            case Syscalls.SYS_madvise:
+                return posix.madvise(a1, a2, (int) a3);
             case Syscalls.SYS_dup:
                 return posix.dup((int) a1);
             case Syscalls.SYS_dup2:
@@ -240,10 +248,14 @@ public class SyscallWrapper extends AMD64Node {
                 return posix.nanosleep(a1, a2);
             case Syscalls.SYS_getpid:
                 return posix.getpid();
+            case Syscalls.SYS_sendfile:
+                return posix.sendfile((int) a1, (int) a2, a3, a4);
             case Syscalls.SYS_socket:
                 return posix.socket((int) a1, (int) a2, (int) a3);
             case Syscalls.SYS_connect:
                 return posix.connect((int) a1, a2, (int) a3);
+            case Syscalls.SYS_accept:
+                return posix.accept((int) a1, a2, a3);
             case Syscalls.SYS_sendto:
                 return posix.sendto((int) a1, a2, a3, (int) a4, a5, (int) a6);
             case Syscalls.SYS_recvfrom:
@@ -311,6 +323,8 @@ public class SyscallWrapper extends AMD64Node {
                 return posix.time(a1);
             case Syscalls.SYS_futex:
                 return posix.futex(a1, (int) a2, (int) a3, a4, a5, (int) a6);
+            case Syscalls.SYS_epoll_create:
+                return posix.epoll_create((int) a1);
             case Syscalls.SYS_getdents64:
                 return posix.getdents64((int) a1, a2, (int) a3);
             case Syscalls.SYS_set_tid_address:
@@ -328,6 +342,10 @@ public class SyscallWrapper extends AMD64Node {
             case Syscalls.SYS_exit_group:
                 posix.exit_group((int) a1);
                 throw new AssertionError("exit must not return");
+            case Syscalls.SYS_epoll_wait:
+                return posix.epoll_wait((int) a1, a2, (int) a3, (int) a4);
+            case Syscalls.SYS_epoll_ctl:
+                return posix.epoll_ctl((int) a1, (int) a2, (int) a3, a4);
             case Syscalls.SYS_tgkill:
                 if (posix.isStrace()) {
                     log.log(Level.INFO, () -> String.format("tgkill(%d, %d, %d)", (int) a1, (int) a2, (int) a3));
@@ -335,12 +353,32 @@ public class SyscallWrapper extends AMD64Node {
                 throw new ProcessExitException(128 + (int) a3);
             case Syscalls.SYS_openat:
                 return posix.openat((int) a1, a2, (int) a3, (int) a4);
+            case Syscalls.SYS_pselect6:
+                return posix.pselect6((int) a1, a2, a3, a4, a5, a6);
+            case Syscalls.SYS_ppoll:
+                return posix.ppoll(a1, (int) a2, a3, a4, a5);
             case Syscalls.SYS_set_robust_list:
                 return posix.set_robust_list(a1, a2);
+            case Syscalls.SYS_splice:
+                return posix.splice((int) a1, a2, (int) a3, a4, a5, (int) a6);
+            case Syscalls.SYS_epoll_pwait:
+                return posix.epoll_pwait((int) a1, a2, (int) a3, (int) a4, a5, a6);
+            case Syscalls.SYS_accept4:
+                return posix.accept4((int) a1, a2, a3, (int) a4);
+            case Syscalls.SYS_pipe2:
+                return posix.pipe2(a1, (int) a2);
+            case Syscalls.SYS_eventfd:
+                return posix.eventfd2((int) a1, 0);
+            case Syscalls.SYS_eventfd2:
+                return posix.eventfd2((int) a1, (int) a2);
+            case Syscalls.SYS_epoll_create1:
+                return posix.epoll_create1((int) a1);
             case Syscalls.SYS_dup3:
                 return posix.dup3((int) a1, (int) a2, (int) a3);
             case Syscalls.SYS_prlimit64:
                 return posix.prlimit64((int) a1, (int) a2, a3, a4);
+            case Syscalls.SYS_copy_file_range:
+                return posix.copy_file_range((int) a1, a2, (int) a3, a4, a5, (int) a6);
             case Syscalls.SYS_DEBUG:
                 log.log(Levels.INFO, String.format("DEBUG: %d (%x), %d (%x), %d (%x), %d (%x), %d (%x), %d (%x)", a1, a1, a2, a2, a3, a3, a4, a4, a5, a5, a6, a6));
                 return 0;
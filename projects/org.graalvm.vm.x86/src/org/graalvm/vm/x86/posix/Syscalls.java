@@ -62,13 +62,19 @@ public class Syscalls {
     public static final int SYS_readv = 19;
     public static final int SYS_writev = 20;
     public static final int SYS_access = 21;
+    public static final int SYS_pipe = 22;
+    public static final int SYS_select = 23;
     public static final int SYS_sched_yield = 24;
+    public static final int SYS_msync = 26;
+    public static final int SYS_madvise = 28;
     public static final int SYS_dup = 32;
     public static final int SYS_dup2 = 33;
     public static final int SYS_nanosleep = 35;
     public static final int SYS_getpid = 39;
+    public static final int SYS_sendfile = 40;
     public static final int SYS_socket = 41;
     public static final int SYS_connect = 42;
+    public static final int SYS_accept = 43;
     public static final int SYS_sendto = 44;
     public static final int SYS_recvfrom = 45;
     public static final int SYS_recvmsg = 47;
@@ -104,6 +110,7 @@ public class Syscalls {
     public static final int SYS_gettid = 186;
     public static final int SYS_time = 201;
     public static final int SYS_futex = 202;
+    public static final int SYS_epoll_create = 213;
     public static final int SYS_getdents64 = 217;
     public static final int SYS_set_tid_address = 218;
     public static final int SYS_timer_create = 222;
@@ -112,11 +119,23 @@ public class Syscalls {
     public static final int SYS_clock_gettime = 228;
     public static final int SYS_clock_getres = 229;
     public static final int SYS_exit_group = 231;
+    public static final int SYS_epoll_wait = 232;
+    public static final int SYS_epoll_ctl = 233;
     public static final int SYS_tgkill = 234;
     public static final int SYS_openat = 257;
+    public static final int SYS_pselect6 = 270;
+    public static final int SYS_ppoll = 271;
     public static final int SYS_set_robust_list = 273;
+    public static final int SYS_splice = 275;
+    public static final int SYS_epoll_pwait = 281;
+    public static final int SYS_eventfd = 284;
+    public static final int SYS_accept4 = 288;
+    public static final int SYS_eventfd2 = 290;
+    public static final int SYS_epoll_create1 = 291;
     public static final int SYS_dup3 = 292;
+    public static final int SYS_pipe2 = 293;
     public static final int SYS_prlimit64 = 302;
+    public static final int SYS_copy_file_range = 326;
 
     public static final int SYS_DEBUG = 0xDEADBEEF;
     public static final int SYS_PRINTK = 0xDEADBABE;
@@ -45,6 +45,7 @@ import java.util.List;
 
 import org.graalvm.vm.x86.isa.CodeReader;
 import org.graalvm.vm.x86.substitution.libc.Glibc228;
+import org.graalvm.vm.x86.substitution.vdso.Vdso;
 
 public class SubstitutionRegistry {
     @SuppressWarnings("unchecked") private final List<Substitution>[] signatures = new ArrayList[256];
@@ -54,6 +55,7 @@ public class SubstitutionRegistry {
             signatures[i] = new ArrayList<>();
         }
         Glibc228.register(this);
+        Vdso.register(this);
     }
 
     public void register(Substitution substitution) {
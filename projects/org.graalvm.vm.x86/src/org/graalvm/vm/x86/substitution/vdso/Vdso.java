@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.vm.x86.substitution.vdso;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import org.graalvm.vm.posix.elf.Elf;
+import org.graalvm.vm.posix.elf.Symbol;
+import org.graalvm.vm.x86.AMD64;
+import org.graalvm.vm.x86.isa.AMD64Instruction;
+import org.graalvm.vm.x86.isa.CodeReader;
+import org.graalvm.vm.x86.substitution.Substitution;
+import org.graalvm.vm.x86.substitution.SubstitutionRegistry;
+import org.graalvm.vm.x86.substitution.intrinsics.ClockGettime;
+import org.graalvm.vm.x86.substitution.intrinsics.Getcpu;
+import org.graalvm.vm.x86.substitution.intrinsics.Gettimeofday;
+import org.graalvm.vm.x86.substitution.intrinsics.Time;
+
+/*
+ * Synthetic vDSO in the layout of the Linux kernel vDSO: a small ET_DYN image with a dynamic
+ * symbol table which glibc uses to resolve __vdso_clock_gettime and friends. Every function starts
+ * with a marker NOP followed by a complete fallback implementation (the syscall), the marker makes
+ * the function body a unique signature which is replaced by an intrinsic at parse time.
+ */
+public class Vdso {
+    public static final long VDSO_BASE = AMD64.STACK_BASE - 2 * 4096;
+    public static final String SONAME = "linux-vdso.so.1";
+
+    // @formatter:off
+    private static final int DT_NULL   = 0;
+    private static final int DT_HASH   = 4;
+    private static final int DT_STRTAB = 5;
+    private static final int DT_SYMTAB = 6;
+    private static final int DT_STRSZ  = 10;
+    private static final int DT_SYMENT = 11;
+    private static final int DT_SONAME = 14;
+
+    // nopl 0x4f534456(%rax) = "VDSO"
+    private static final byte[] MARKER = {0x0f, 0x1f, (byte) 0x80, 'V', 'D', 'S', 'O'};
+
+    private static final byte[] CLOCK_GETTIME = code(new byte[]{
+                    (byte) 0xb8, (byte) 0xe4, 0x00, 0x00, 0x00,     // mov    eax,0xe4
+                    0x0f, 0x05,                                     // syscall
+                    (byte) 0xc3});                                  // ret
+
+    private static final byte[] GETTIMEOFDAY = code(new byte[]{
+                    (byte) 0xb8, 0x60, 0x00, 0x00, 0x00,            // mov    eax,0x60
+                    0x0f, 0x05,                                     // syscall
+                    (byte) 0xc3});                                  // ret
+
+    private static final byte[] TIME = code(new byte[]{
+                    (byte) 0xb8, (byte) 0xc9, 0x00, 0x00, 0x00,     // mov    eax,0xc9
+                    0x0f, 0x05,                                     // syscall
+                    (byte) 0xc3});                                  // ret
+
+    private static final byte[] GETCPU = code(new byte[]{
+                    0x48, (byte) 0x85, (byte) 0xff,                 // test   rdi,rdi
+                    0x74, 0x06,                                     // je     1f
+                    (byte) 0xc7, 0x07, 0x00, 0x00, 0x00, 0x00,      // mov    DWORD PTR [rdi],0x0
+                    0x48, (byte) 0x85, (byte) 0xf6,                 // 1: test rsi,rsi
+                    0x74, 0x06,                                     // je     2f
+                    (byte) 0xc7, 0x06, 0x00, 0x00, 0x00, 0x00,      // mov    DWORD PTR [rsi],0x0
+                    0x31, (byte) 0xc0,                              // 2: xor eax,eax
+                    (byte) 0xc3});                                  // ret
+    // @formatter:on
+
+    private static final String[] NAMES = {"__vdso_clock_gettime", "__vdso_gettimeofday", "__vdso_time", "__vdso_getcpu"};
+    private static final byte[][] CODE = {CLOCK_GETTIME, GETTIMEOFDAY, TIME, GETCPU};
+
+    private static final byte[] IMAGE = build();
+
+    private static byte[] code(byte[] fallback) {
+        byte[] result = new byte[MARKER.length + fallback.length];
+        System.arraycopy(MARKER, 0, result, 0, MARKER.length);
+        System.arraycopy(fallback, 0, result, MARKER.length, fallback.length);
+        return result;
+    }
+
+    public static byte[] getImage() {
+        return IMAGE.clone();
+    }
+
+    public static void register(SubstitutionRegistry registry) {
+        registry.register(new VdsoClockGettime());
+        registry.register(new VdsoGettimeofday());
+        registry.register(new VdsoTime());
+        registry.register(new VdsoGetcpu());
+    }
+
+    private static int align(int x, int alignment) {
+        return (x + alignment - 1) & ~(alignment - 1);
+    }
+
+    private static long hash(byte[] name) {
+        long h = 0;
+        for (byte b : name) {
+            h = (h << 4) + Byte.toUnsignedInt(b);
+            long g = h & 0xf0000000L;
+            if (g != 0) {
+                h ^= g >>> 24;
+            }
+            h &= ~g;
+        }
+        return h;
+    }
+
+    private static byte[] build() {
+        int nsyms = NAMES.length + 1;
+        int nbucket = NAMES.length;
+
+        // string tables
+        ByteBuffer dynstr = ByteBuffer.allocate(256);
+        dynstr.put((byte) 0);
+        int soname = dynstr.position();
+        dynstr.put(SONAME.getBytes(StandardCharsets.US_ASCII)).put((byte) 0);
+        int[] names = new int[NAMES.length];
+        for (int i = 0; i < NAMES.length; i++) {
+            names[i] = dynstr.position();
+            dynstr.put(NAMES[i].getBytes(StandardCharsets.US_ASCII)).put((byte) 0);
+        }
+        int strsz = dynstr.position();
+
+        String[] sections = {"", ".hash", ".dynsym", ".dynstr", ".dynamic", ".text", ".shstrtab"};
+        ByteBuffer shstrtab = ByteBuffer.allocate(256);
+        int[] shnames = new int[sections.length];
+        for (int i = 0; i < sections.length; i++) {
+            shnames[i] = shstrtab.position();
+            shstrtab.put(sections[i].getBytes(StandardCharsets.US_ASCII)).put((byte) 0);
+        }
+        int shstrsz = shstrtab.position();
+
+        // layout: ELF header, program headers, .hash, .dynsym, .dynstr, .dynamic, .text, .shstrtab,
+        // section headers
+        int phoff = 64;
+        int phnum = 2;
+        int hashOff = phoff + phnum * 56;
+        int hashSize = (2 + nbucket + nsyms) * 4;
+        int symOff = align(hashOff + hashSize, 8);
+        int strOff = symOff + nsyms * 24;
+        int dynOff = align(strOff + strsz, 8);
+        int dynSize = 7 * 16;
+        int textOff = align(dynOff + dynSize, 16);
+        int[] funcs = new int[CODE.length];
+        int ptr = textOff;
+        for (int i = 0; i < CODE.length; i++) {
+            funcs[i] = ptr;
+            ptr = align(ptr + CODE[i].length, 16);
+        }
+        int textSize = ptr - textOff;
+        int shstrOff = ptr;
+        int shoff = align(shstrOff + shstrsz, 8);
+        int shnum = sections.length;
+        int size = shoff + shnum * 64;
+        assert size <= 4096;
+
+        ByteBuffer buf = ByteBuffer.allocate(size);
+
+        // ELF header
+        buf.putInt(0, Elf.MAGIC);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        buf.put(4, Elf.ELFCLASS64);
+        buf.put(5, Elf.ELFDATA2LSB);
+        buf.put(6, (byte) 1); // EV_CURRENT
+        buf.put(7, Elf.OSABI_SYSV);
+        buf.putShort(16, Elf.ET_DYN);
+        buf.putShort(18, Elf.EM_X86_64);
+        buf.putInt(20, 1); // EV_CURRENT
+        buf.putLong(24, funcs[0]);
+        buf.putLong(32, phoff);
+        buf.putLong(40, shoff);
+        buf.putInt(48, 0);
+        buf.putShort(52, (short) 64);
+        buf.putShort(54, (short) 56);
+        buf.putShort(56, (short) phnum);
+        buf.putShort(58, (short) 64);
+        buf.putShort(60, (short) shnum);
+        buf.putShort(62, (short) (shnum - 1));
+
+        // program headers
+        buf.position(phoff);
+        buf.putInt(Elf.PT_LOAD).putInt(Elf.PF_R | Elf.PF_X);
+        buf.putLong(0).putLong(0).putLong(0).putLong(size).putLong(size).putLong(4096);
+        buf.putInt(Elf.PT_DYNAMIC).putInt(Elf.PF_R);
+        buf.putLong(dynOff).putLong(dynOff).putLong(dynOff).putLong(dynSize).putLong(dynSize).putLong(8);
+
+        // hash table
+        int[] buckets = new int[nbucket];
+        int[] chains = new int[nsyms];
+        for (int i = 1; i < nsyms; i++) {
+            int bucket = (int) (hash(NAMES[i - 1].getBytes(StandardCharsets.US_ASCII)) % nbucket);
+            chains[i] = buckets[bucket];
+            buckets[bucket] = i;
+        }
+        buf.position(hashOff);
+        buf.putInt(nbucket).putInt(nsyms);
+        for (int bucket : buckets) {
+            buf.putInt(bucket);
+        }
+        for (int chain : chains) {
+            buf.putInt(chain);
+        }
+
+        // dynamic symbols, entry 0 is the undefined symbol
+        buf.position(symOff + 24);
+        for (int i = 0; i < NAMES.length; i++) {
+            buf.putInt(names[i]);
+            buf.put((byte) ((Symbol.GLOBAL << 4) | Symbol.FUNC));
+            buf.put((byte) Symbol.DEFAULT);
+            buf.putShort((short) 5); // .text
+            buf.putLong(funcs[i]);
+            buf.putLong(CODE[i].length);
+        }
+
+        buf.position(strOff);
+        buf.put(dynstr.array(), 0, strsz);
+
+        buf.position(dynOff);
+        buf.putLong(DT_HASH).putLong(hashOff);
+        buf.putLong(DT_STRTAB).putLong(strOff);
+        buf.putLong(DT_SYMTAB).putLong(symOff);
+        buf.putLong(DT_STRSZ).putLong(strsz);
+        buf.putLong(DT_SYMENT).putLong(24);
+        buf.putLong(DT_SONAME).putLong(soname);
+        buf.putLong(DT_NULL).putLong(0);
+
+        for (int i = 0; i < CODE.length; i++) {
+            buf.position(funcs[i]);
+            buf.put(CODE[i]);
+            // pad with int3 like the kernel vDSO
+            while (buf.position() < funcs[i] + align(CODE[i].length, 16)) {
+                buf.put((byte) 0xcc);
+            }
+        }
+
+        buf.position(shstrOff);
+        buf.put(shstrtab.array(), 0, shstrsz);
+
+        // section headers
+        buf.position(shoff + 64);
+        section(buf, shnames[1], Elf.SHT_HASH, Elf.SHF_ALLOC, hashOff, hashSize, 2, 0, 8, 4);
+        section(buf, shnames[2], Elf.SHT_DYNSYM, Elf.SHF_ALLOC, symOff, nsyms * 24, 3, 1, 8, 24);
+        section(buf, shnames[3], Elf.SHT_STRTAB, Elf.SHF_ALLOC, strOff, strsz, 0, 0, 1, 0);
+        section(buf, shnames[4], Elf.SHT_DYNAMIC, Elf.SHF_ALLOC, dynOff, dynSize, 3, 0, 8, 16);
+        section(buf, shnames[5], Elf.SHT_PROGBITS, Elf.SHF_ALLOC | Elf.SHF_EXECINSTR, textOff, textSize, 0, 0, 16, 0);
+        section(buf, shnames[6], Elf.SHT_STRTAB, 0, shstrOff, shstrsz, 0, 0, 1, 0);
+
+        return buf.array();
+    }
+
+    private static void section(ByteBuffer buf, int name, int type, long flags, int offset, int size, int link, int info, int align, int entsize) {
+        long addr = (flags & Elf.SHF_ALLOC) != 0 ? offset : 0;
+        buf.putInt(name).putInt(type).putLong(flags).putLong(addr).putLong(offset).putLong(size);
+        buf.putInt(link).putInt(info).putLong(align).putLong(entsize);
+    }
+
+    /**
+     * Base class of the substitutions for the functions of the vDSO image.
+     */
+    public abstract static class VdsoSubstitution extends Substitution {
+        protected VdsoSubstitution(byte[] code) {
+            super(code);
+        }
+    }
+
+    public static class VdsoClockGettime extends VdsoSubstitution {
+        public VdsoClockGettime() {
+            super(CLOCK_GETTIME);
+        }
+
+        @Override
+        public AMD64Instruction createNode(long pc, CodeReader reader) {
+            reader.check(CLOCK_GETTIME);
+            return new ClockGettime(pc, CLOCK_GETTIME);
+        }
+    }
+
+    public static class VdsoGettimeofday extends VdsoSubstitution {
+        public VdsoGettimeofday() {
+            super(GETTIMEOFDAY);
+        }
+
+        @Override
+        public AMD64Instruction createNode(long pc, CodeReader reader) {
+            reader.check(GETTIMEOFDAY);
+            return new Gettimeofday(pc, GETTIMEOFDAY);
+        }
+    }
+
+    public static class VdsoTime extends VdsoSubstitution {
+        public VdsoTime() {
+            super(TIME);
+        }
+
+        @Override
+        public AMD64Instruction createNode(long pc, CodeReader reader) {
+            reader.check(TIME);
+            return new Time(pc, TIME);
+        }
+    }
+
+    public static class VdsoGetcpu extends VdsoSubstitution {
+        public VdsoGetcpu() {
+            super(GETCPU);
+        }
+
+        @Override
+        public AMD64Instruction createNode(long pc, CodeReader reader) {
+            reader.check(GETCPU);
+            return new Getcpu(pc, GETCPU);
+        }
+    }
+}
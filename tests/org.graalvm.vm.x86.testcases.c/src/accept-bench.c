@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+#define _GNU_SOURCE
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <time.h>
+#include <errno.h>
+#include <unistd.h>
+#include <netinet/in.h>
+#include <arpa/inet.h>
+#include <sys/socket.h>
+#include <sys/epoll.h>
+
+#define BATCH		64
+
+static double now(void)
+{
+	struct timespec ts;
+	clock_gettime(CLOCK_MONOTONIC, &ts);
+	return ts.tv_sec + ts.tv_nsec / 1e9;
+}
+
+static int cmp(const void *a, const void *b)
+{
+	double x = *(const double *) a;
+	double y = *(const double *) b;
+	return x < y ? -1 : x > y;
+}
+
+static int port_of(struct sockaddr_in *addr)
+{
+	return ntohs(addr->sin_port);
+}
+
+/*
+ * Opens connections to a non-blocking listening socket on loopback and accepts them through
+ * epoll, BATCH connections at a time. The latency of a connection is the time from connect until
+ * accept4 returns it.
+ * usage: accept-bench [connections]
+ */
+int main(int argc, char **argv)
+{
+	int connections = 10000;
+	int listener;
+	int ep;
+	int done;
+	int i;
+	struct sockaddr_in addr;
+	socklen_t len = sizeof(addr);
+	struct epoll_event ev;
+	int clients[BATCH];
+	int ports[BATCH];
+	double started[BATCH];
+	double *latency;
+	double t;
+
+	if(argc > 1)
+		connections = atoi(argv[1]);
+
+	latency = malloc(connections * sizeof(double));
+	if(!latency) {
+		perror("malloc");
+		return 1;
+	}
+
+	listener = socket(AF_INET, SOCK_STREAM | SOCK_NONBLOCK, 0);
+	if(listener < 0) {
+		perror("socket");
+		return 1;
+	}
+	memset(&addr, 0, sizeof(addr));
+	addr.sin_family = AF_INET;
+	addr.sin_port = 0;
+	addr.sin_addr.s_addr = htonl(INADDR_LOOPBACK);
+	if(bind(listener, (struct sockaddr *) &addr, sizeof(addr)) < 0) {
+		perror("bind");
+		return 1;
+	}
+	if(listen(listener, 1024) < 0) {
+		perror("listen");
+		return 1;
+	}
+	if(getsockname(listener, (struct sockaddr *) &addr, &len) < 0) {
+		perror("getsockname");
+		return 1;
+	}
+
+	ep = epoll_create1(EPOLL_CLOEXEC);
+	if(ep < 0) {
+		perror("epoll_create1");
+		return 1;
+	}
+	ev.events = EPOLLIN;
+	ev.data.fd = listener;
+	if(epoll_ctl(ep, EPOLL_CTL_ADD, listener, &ev) < 0) {
+		perror("epoll_ctl");
+		return 1;
+	}
+
+	t = now();
+	for(done = 0; done < connections;) {
+		int batch = connections - done < BATCH ? connections - done : BATCH;
+		int pending = batch;
+
+		for(i = 0; i < batch; i++) {
+			struct sockaddr_in local;
+			socklen_t locallen = sizeof(local);
+			clients[i] = socket(AF_INET, SOCK_STREAM | SOCK_NONBLOCK, 0);
+			if(clients[i] < 0) {
+				perror("socket");
+				return 1;
+			}
+			started[i] = now();
+			if(connect(clients[i], (struct sockaddr *) &addr, sizeof(addr)) < 0 && errno != EINPROGRESS) {
+				perror("connect");
+				return 1;
+			}
+			if(getsockname(clients[i], (struct sockaddr *) &local, &locallen) < 0) {
+				perror("getsockname");
+				return 1;
+			}
+			ports[i] = port_of(&local);
+		}
+
+		while(pending > 0) {
+			struct sockaddr_in peer;
+			socklen_t peerlen = sizeof(peer);
+			int fd = accept4(listener, (struct sockaddr *) &peer, &peerlen, SOCK_NONBLOCK | SOCK_CLOEXEC);
+			if(fd < 0) {
+				if(errno != EAGAIN) {
+					perror("accept4");
+					return 1;
+				}
+				if(epoll_wait(ep, &ev, 1, -1) < 0) {
+					perror("epoll_wait");
+					return 1;
+				}
+				continue;
+			}
+			for(i = 0; i < batch; i++) {
+				if(clients[i] >= 0 && ports[i] == port_of(&peer)) {
+					latency[done++] = now() - started[i];
+					close(clients[i]);
+					clients[i] = -1;
+					break;
+				}
+			}
+			if(i == batch) {
+				fprintf(stderr, "unexpected peer port %d\n", port_of(&peer));
+				return 1;
+			}
+			close(fd);
+			pending--;
+		}
+	}
+	t = now() - t;
+
+	qsort(latency, connections, sizeof(double), cmp);
+	printf("%8d connections in %8.3f s: %10.1f connections/s\n", connections, t, connections / t);
+	printf("accept latency: p50 %8.1f us, p99 %8.1f us, max %8.1f us\n", latency[connections / 2] * 1e6,
+			latency[connections * 99 / 100] * 1e6, latency[connections - 1] * 1e6);
+
+	close(ep);
+	close(listener);
+	free(latency);
+	return 0;
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+#define _DEFAULT_SOURCE
+#include <stdio.h>
+#include <stdlib.h>
+#include <time.h>
+#include <sys/time.h>
+
+/* timestamp heavy loop: compare with and without -Dvmx86.vdso=true */
+int main(int argc, char **argv)
+{
+	long i;
+	long n = 1000000;
+	long sum = 0;
+	struct timespec start;
+	struct timespec end;
+	struct timespec ts;
+	struct timeval tv;
+	double ns;
+
+	if(argc > 1)
+		n = atol(argv[1]);
+
+	clock_gettime(CLOCK_MONOTONIC, &start);
+	for(i = 0; i < n; i++) {
+		clock_gettime(CLOCK_MONOTONIC, &ts);
+		sum += ts.tv_nsec & 1;
+		gettimeofday(&tv, NULL);
+		sum += tv.tv_usec & 1;
+		sum += time(NULL) & 1;
+	}
+	clock_gettime(CLOCK_MONOTONIC, &end);
+
+	ns = (end.tv_sec - start.tv_sec) * 1e9 + (end.tv_nsec - start.tv_nsec);
+	printf("%ld iterations (%ld odd), %.1f ns/iteration\n", n, sum, ns / n);
+	return 0;
+}
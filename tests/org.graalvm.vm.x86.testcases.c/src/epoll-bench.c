@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+#define _GNU_SOURCE
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <time.h>
+#include <errno.h>
+#include <unistd.h>
+#include <netinet/in.h>
+#include <arpa/inet.h>
+#include <sys/socket.h>
+#include <sys/epoll.h>
+
+#define MSG_SIZE	64
+#define MAX_EVENTS	256
+
+struct conn {
+	int fd;
+	int rounds;
+	int sent;
+	int received;
+};
+
+static char msg[MSG_SIZE];
+
+static double now(void)
+{
+	struct timespec ts;
+	clock_gettime(CLOCK_MONOTONIC, &ts);
+	return ts.tv_sec + ts.tv_nsec / 1e9;
+}
+
+/* returns 0 on EAGAIN, -1 on error */
+static int flush(struct conn *c)
+{
+	while(c->sent < MSG_SIZE) {
+		ssize_t n = write(c->fd, msg + c->sent, MSG_SIZE - c->sent);
+		if(n < 0)
+			return errno == EAGAIN ? 0 : -1;
+		c->sent += n;
+	}
+	return 0;
+}
+
+/* returns 1 once the whole message came back, 0 on EAGAIN, -1 on error */
+static int drain(struct conn *c)
+{
+	char buf[MSG_SIZE];
+	while(c->received < MSG_SIZE) {
+		ssize_t n = read(c->fd, buf, MSG_SIZE - c->received);
+		if(n < 0)
+			return errno == EAGAIN ? 0 : -1;
+		if(n == 0)
+			return -1;
+		c->received += n;
+	}
+	return 1;
+}
+
+/*
+ * Drives many concurrent connections through one edge triggered epoll instance. Every connection
+ * sends a message and waits for the echo, for a given number of rounds. The echo server runs on
+ * the host, e.g. "ncat -l -k 127.0.0.1 8080 --exec /bin/cat", and is selected by the port.
+ * usage: epoll-bench port [connections [rounds]]
+ */
+int main(int argc, char **argv)
+{
+	int connections = 1000;
+	int rounds = 100;
+	int active;
+	int ep;
+	int i;
+	long total = 0;
+	struct sockaddr_in addr;
+	struct epoll_event events[MAX_EVENTS];
+	struct conn *conns;
+	double t;
+
+	if(argc < 2) {
+		fprintf(stderr, "usage: %s port [connections [rounds]]\n", argv[0]);
+		return 1;
+	}
+	if(argc > 2)
+		connections = atoi(argv[2]);
+	if(argc > 3)
+		rounds = atoi(argv[3]);
+
+	memset(msg, 'x', sizeof(msg));
+	memset(&addr, 0, sizeof(addr));
+	addr.sin_family = AF_INET;
+	addr.sin_port = htons(atoi(argv[1]));
+	addr.sin_addr.s_addr = htonl(INADDR_LOOPBACK);
+
+	ep = epoll_create1(EPOLL_CLOEXEC);
+	if(ep < 0) {
+		perror("epoll_create1");
+		return 1;
+	}
+
+	conns = calloc(connections, sizeof(struct conn));
+	if(!conns) {
+		perror("calloc");
+		return 1;
+	}
+
+	t = now();
+	for(i = 0; i < connections; i++) {
+		struct epoll_event ev;
+		struct conn *c = &conns[i];
+		c->fd = socket(AF_INET, SOCK_STREAM | SOCK_NONBLOCK, 0);
+		if(c->fd < 0) {
+			perror("socket");
+			return 1;
+		}
+		if(connect(c->fd, (struct sockaddr *) &addr, sizeof(addr)) < 0 && errno != EINPROGRESS) {
+			perror("connect");
+			return 1;
+		}
+		ev.events = EPOLLIN | EPOLLOUT | EPOLLET;
+		ev.data.ptr = c;
+		if(epoll_ctl(ep, EPOLL_CTL_ADD, c->fd, &ev) < 0) {
+			perror("epoll_ctl");
+			return 1;
+		}
+	}
+	printf("%-12s %8d in %8.3f s\n", "connect", connections, now() - t);
+
+	t = now();
+	active = connections;
+	while(active > 0) {
+		int n = epoll_wait(ep, events, MAX_EVENTS, -1);
+		if(n < 0) {
+			perror("epoll_wait");
+			return 1;
+		}
+		for(i = 0; i < n; i++) {
+			struct conn *c = events[i].data.ptr;
+			int result = 0;
+			if(c->rounds == rounds)
+				continue;
+			if(events[i].events & (EPOLLERR | EPOLLHUP))
+				result = -1;
+			if(result == 0 && (events[i].events & EPOLLOUT))
+				result = flush(c);
+			if(result == 0 && c->sent == MSG_SIZE && (events[i].events & EPOLLIN))
+				result = drain(c);
+			while(result == 1) {
+				total++;
+				c->sent = 0;
+				c->received = 0;
+				if(++c->rounds == rounds)
+					break;
+				result = flush(c);
+				if(result == 0)
+					result = drain(c);
+			}
+			if(result < 0) {
+				fprintf(stderr, "connection %d failed after %d rounds\n", (int) (c - conns), c->rounds);
+				c->rounds = rounds;
+			}
+			if(c->rounds == rounds) {
+				close(c->fd);
+				active--;
+			}
+		}
+	}
+	t = now() - t;
+	printf("%-12s %8ld in %8.3f s: %10.1f round trips/s\n", "echo", total, t, total / t);
+
+	close(ep);
+	free(conns);
+	return 0;
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+#define _GNU_SOURCE
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <time.h>
+#include <fcntl.h>
+#include <dirent.h>
+#include <unistd.h>
+#include <sys/stat.h>
+#include <sys/syscall.h>
+
+#define ENTRIES	500000
+#define BUFSZ	1024
+
+static double now(void)
+{
+	struct timespec ts;
+	clock_gettime(CLOCK_MONOTONIC, &ts);
+	return ts.tv_sec + ts.tv_nsec / 1e9;
+}
+
+static long read_readdir(const char *path)
+{
+	struct dirent *ent;
+	long n = 0;
+	DIR *dir = opendir(path);
+	if(!dir) {
+		perror("opendir");
+		exit(1);
+	}
+	while((ent = readdir(dir)) != NULL) {
+		n++;
+	}
+	closedir(dir);
+	return n;
+}
+
+static long read_getdents(const char *path)
+{
+	char buf[BUFSZ];
+	long n = 0;
+	long len;
+	int fd = open(path, O_RDONLY | O_DIRECTORY);
+	if(fd < 0) {
+		perror("open");
+		exit(1);
+	}
+	/* small buffers make every call return only a few entries */
+	while((len = syscall(SYS_getdents64, fd, buf, sizeof(buf))) > 0) {
+		long off = 0;
+		while(off < len) {
+			unsigned short reclen = *(unsigned short *) (buf + off + 16);
+			off += reclen;
+			n++;
+		}
+	}
+	if(len < 0) {
+		perror("getdents64");
+		exit(1);
+	}
+	close(fd);
+	return n;
+}
+
+int main(int argc, char **argv)
+{
+	const char *path = argc > 1 ? argv[1] : "/tmp/getdents-bench";
+	char name[4096];
+	double start;
+	double t;
+	long n;
+	int i;
+
+	if(mkdir(path, 0755) < 0) {
+		perror("mkdir");
+		return 1;
+	}
+	for(i = 0; i < ENTRIES; i++) {
+		int fd;
+		snprintf(name, sizeof(name), "%s/entry-%d", path, i);
+		fd = open(name, O_WRONLY | O_CREAT | O_EXCL, 0644);
+		if(fd < 0) {
+			perror("open");
+			return 1;
+		}
+		close(fd);
+	}
+
+	start = now();
+	n = read_readdir(path);
+	t = now() - start;
+	printf("readdir:    %ld entries in %.3f s (%.0f entries/s)\n", n, t, n / t);
+
+	start = now();
+	n = read_getdents(path);
+	t = now() - start;
+	printf("getdents64: %ld entries in %.3f s (%.0f entries/s, %d byte buffer)\n", n, t, n / t, BUFSZ);
+
+	for(i = 0; i < ENTRIES; i++) {
+		snprintf(name, sizeof(name), "%s/entry-%d", path, i);
+		unlink(name);
+	}
+	rmdir(path);
+	return 0;
+}
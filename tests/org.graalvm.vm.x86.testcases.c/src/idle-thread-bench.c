@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+#define _GNU_SOURCE
+#include <stdio.h>
+#include <stdlib.h>
+#include <stdint.h>
+#include <time.h>
+#include <unistd.h>
+#include <pthread.h>
+
+#define ROUNDS		5
+#define ITERATIONS	20000000
+
+static int pipefd[2];
+
+static double now(void)
+{
+	struct timespec ts;
+	clock_gettime(CLOCK_MONOTONIC, &ts);
+	return ts.tv_sec + ts.tv_nsec / 1e9;
+}
+
+/* a branchy integer loop which spans several traces */
+static uint32_t work(uint32_t seed)
+{
+	uint32_t x = seed;
+	int i;
+	for(i = 0; i < ITERATIONS; i++) {
+		if(x & 1)
+			x = x * 3 + 1;
+		else
+			x >>= 1;
+		x ^= i;
+	}
+	return x;
+}
+
+static void measure(const char *name)
+{
+	uint32_t x = 1;
+	int i;
+	for(i = 0; i < ROUNDS; i++) {
+		double start = now();
+		double t;
+		x = work(x);
+		t = now() - start;
+		printf("%s: round %d: %.3fs, %.1f M iterations/s\n", name, i, t, ITERATIONS / t / 1e6);
+	}
+	printf("%s: result %u\n", name, x);
+}
+
+/* blocks until the main thread is done */
+static void *idle(void *arg)
+{
+	char c;
+	if(read(pipefd[0], &c, 1) < 0)
+		perror("read");
+	return NULL;
+}
+
+int main(void)
+{
+	pthread_t thread;
+
+	if(pipe(pipefd)) {
+		perror("pipe");
+		return 1;
+	}
+
+	measure("single thread");
+
+	if(pthread_create(&thread, NULL, idle, NULL)) {
+		perror("pthread_create");
+		return 1;
+	}
+	measure("idle second thread");
+
+	if(write(pipefd[1], "x", 1) != 1)
+		perror("write");
+	pthread_join(thread, NULL);
+	return 0;
+}
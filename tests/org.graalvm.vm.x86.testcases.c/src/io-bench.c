@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+#define _DEFAULT_SOURCE
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <time.h>
+#include <fcntl.h>
+#include <unistd.h>
+#include <sys/mman.h>
+
+#define CHUNK		(1024 * 1024)
+#define PIPE_CHUNK	(32 * 1024)
+
+static double now(void)
+{
+	struct timespec ts;
+	clock_gettime(CLOCK_MONOTONIC, &ts);
+	return ts.tv_sec + ts.tv_nsec / 1e9;
+}
+
+static void report(const char *name, long bytes, double t)
+{
+	printf("%-12s %8ld MiB in %8.3f s: %10.1f MiB/s\n", name, bytes >> 20, t, (bytes >> 20) / t);
+}
+
+/* large reads and writes on a file and on a pipe, the buffer spans many guest pages */
+int main(int argc, char **argv)
+{
+	long i;
+	long n = 256;
+	long total;
+	long sum = 0;
+	char *buf;
+	char name[] = "/tmp/io-bench-XXXXXX";
+	int fd;
+	int p[2];
+	double t;
+
+	if(argc > 1)
+		n = atol(argv[1]);
+
+	buf = mmap(NULL, CHUNK, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS, -1, 0);
+	if(buf == MAP_FAILED) {
+		perror("mmap");
+		return 1;
+	}
+	memset(buf, 0x5a, CHUNK);
+
+	fd = mkstemp(name);
+	if(fd < 0) {
+		perror("mkstemp");
+		return 1;
+	}
+	unlink(name);
+
+	t = now();
+	for(i = 0; i < n; i++) {
+		if(write(fd, buf, CHUNK) != CHUNK) {
+			perror("write");
+			return 1;
+		}
+	}
+	report("file write", n * CHUNK, now() - t);
+
+	t = now();
+	for(i = 0; i < n; i++) {
+		if(pread(fd, buf, CHUNK, i * CHUNK) != CHUNK) {
+			perror("pread");
+			return 1;
+		}
+		sum += buf[i];
+	}
+	report("file read", n * CHUNK, now() - t);
+	close(fd);
+
+	/* single process: each chunk has to fit into the pipe buffer */
+	if(pipe(p) < 0) {
+		perror("pipe");
+		return 1;
+	}
+
+	t = now();
+	total = 0;
+	for(i = 0; i < n * (CHUNK / PIPE_CHUNK); i++) {
+		if(write(p[1], buf + (i % (CHUNK / PIPE_CHUNK)) * PIPE_CHUNK, PIPE_CHUNK) != PIPE_CHUNK) {
+			perror("write");
+			return 1;
+		}
+		if(read(p[0], buf, PIPE_CHUNK) != PIPE_CHUNK) {
+			perror("read");
+			return 1;
+		}
+		total += PIPE_CHUNK;
+		sum += buf[i % PIPE_CHUNK];
+	}
+	report("pipe", total, now() - t);
+	close(p[0]);
+	close(p[1]);
+
+	printf("checksum: %ld\n", sum);
+	return 0;
+}
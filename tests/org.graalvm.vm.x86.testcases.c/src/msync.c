@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+#define _GNU_SOURCE
+#include <stdio.h>
+#include <errno.h>
+#include <sys/mman.h>
+
+#define TESTCASE(x) { \
+	printf("Running test case \"%s\"\n", #x); \
+	if(!(x)) { \
+		printf("ERROR: \"%s\" failed\n", #x); \
+		return 1; \
+	} \
+}
+
+int main(void)
+{
+	char* p;
+	TESTCASE((p = mmap(NULL, 3 * 4096, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS, -1, 0)) != MAP_FAILED);
+	TESTCASE(msync(p, 3 * 4096, MS_SYNC) == 0);
+	TESTCASE(munmap(p + 4096, 4096) == 0);
+	TESTCASE(msync(p, 4096, MS_SYNC) == 0);
+	TESTCASE(msync(p, 3 * 4096, MS_SYNC) == -1 && errno == ENOMEM);
+	TESTCASE(msync(p + 2 * 4096, 4096, MS_ASYNC) == 0);
+	printf("EXIT()\n");
+	return 0;
+}
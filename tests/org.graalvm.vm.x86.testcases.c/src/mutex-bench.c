@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+#define _GNU_SOURCE
+#include <stdio.h>
+#include <stdlib.h>
+#include <time.h>
+#include <pthread.h>
+
+#define MAX_THREADS	64
+#define OPS		200000
+
+static pthread_mutex_t mutex = PTHREAD_MUTEX_INITIALIZER;
+static pthread_cond_t cond = PTHREAD_COND_INITIALIZER;
+static long counter;
+static int nthreads;
+
+/* condvar test: a token is passed around in round robin order */
+static int turn;
+static int passes;
+
+static double now(void)
+{
+	struct timespec ts;
+	clock_gettime(CLOCK_MONOTONIC, &ts);
+	return ts.tv_sec + ts.tv_nsec / 1e9;
+}
+
+static void *lock_loop(void *arg)
+{
+	int ops = OPS / nthreads;
+	int i;
+	for(i = 0; i < ops; i++) {
+		pthread_mutex_lock(&mutex);
+		counter++;
+		pthread_mutex_unlock(&mutex);
+	}
+	return NULL;
+}
+
+static void *cond_loop(void *arg)
+{
+	int id = (int) (long) arg;
+	pthread_mutex_lock(&mutex);
+	while(1) {
+		while(turn != id && passes > 0)
+			pthread_cond_wait(&cond, &mutex);
+		if(passes <= 0)
+			break;
+		passes--;
+		turn = (turn + 1) % nthreads;
+		pthread_cond_broadcast(&cond);
+	}
+	pthread_mutex_unlock(&mutex);
+	return NULL;
+}
+
+static double run(void *(*fn)(void *), int n)
+{
+	pthread_t threads[MAX_THREADS];
+	double start;
+	long i;
+
+	nthreads = n;
+	start = now();
+	for(i = 0; i < n; i++) {
+		if(pthread_create(&threads[i], NULL, fn, (void *) i)) {
+			perror("pthread_create");
+			exit(1);
+		}
+	}
+	for(i = 0; i < n; i++)
+		pthread_join(threads[i], NULL);
+	return now() - start;
+}
+
+int main(void)
+{
+	int n;
+	for(n = 2; n <= MAX_THREADS; n *= 2) {
+		double t;
+		int ops = (OPS / n) * n;
+
+		counter = 0;
+		t = run(lock_loop, n);
+		if(counter != ops) {
+			printf("mutex: lost updates: %ld != %d\n", counter, ops);
+			return 1;
+		}
+		printf("mutex:   %2d threads, %d lock/unlock in %.3fs, %.0f ops/s\n", n, ops, t, ops / t);
+
+		turn = 0;
+		passes = OPS / 20;
+		t = run(cond_loop, n);
+		printf("condvar: %2d threads, %d handoffs in %.3fs, %.0f handoffs/s\n", n, OPS / 20, t, OPS / 20 / t);
+	}
+	return 0;
+}
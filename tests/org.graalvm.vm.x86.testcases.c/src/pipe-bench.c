@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+#define _GNU_SOURCE
+#include <stdio.h>
+#include <stdlib.h>
+#include <stdint.h>
+#include <time.h>
+#include <unistd.h>
+#include <pthread.h>
+#include <sys/eventfd.h>
+
+#define ROUNDS	20000
+
+struct channel {
+	int ping[2];
+	int pong[2];
+	int ping_efd;
+	int pong_efd;
+};
+
+static double now(void)
+{
+	struct timespec ts;
+	clock_gettime(CLOCK_MONOTONIC, &ts);
+	return ts.tv_sec + ts.tv_nsec / 1e9;
+}
+
+static void *pipe_echo(void *arg)
+{
+	struct channel *c = arg;
+	char b;
+	int i;
+	for(i = 0; i < ROUNDS; i++) {
+		if(read(c->ping[0], &b, 1) != 1 || write(c->pong[1], &b, 1) != 1) {
+			perror("pipe echo");
+			exit(1);
+		}
+	}
+	return NULL;
+}
+
+static void *eventfd_echo(void *arg)
+{
+	struct channel *c = arg;
+	uint64_t v;
+	int i;
+	for(i = 0; i < ROUNDS; i++) {
+		if(read(c->ping_efd, &v, sizeof(v)) != sizeof(v) || write(c->pong_efd, &v, sizeof(v)) != sizeof(v)) {
+			perror("eventfd echo");
+			exit(1);
+		}
+	}
+	return NULL;
+}
+
+static double run(struct channel *c, void *(*echo)(void *), int ping, int pong, size_t size)
+{
+	pthread_t thread;
+	double start;
+	uint64_t v = 1;
+	int i;
+
+	if(pthread_create(&thread, NULL, echo, c)) {
+		perror("pthread_create");
+		exit(1);
+	}
+	start = now();
+	for(i = 0; i < ROUNDS; i++) {
+		if(write(ping, &v, size) != size || read(pong, &v, size) != size) {
+			perror("ping");
+			exit(1);
+		}
+	}
+	pthread_join(thread, NULL);
+	return now() - start;
+}
+
+int main(void)
+{
+	struct channel c;
+	double t;
+
+	if(pipe2(c.ping, 0) || pipe2(c.pong, 0)) {
+		perror("pipe2");
+		return 1;
+	}
+	c.ping_efd = eventfd(0, 0);
+	c.pong_efd = eventfd(0, 0);
+	if(c.ping_efd < 0 || c.pong_efd < 0) {
+		perror("eventfd");
+		return 1;
+	}
+
+	t = run(&c, pipe_echo, c.ping[1], c.pong[0], 1);
+	printf("pipe:    %d round trips in %.3fs, %.2fus per round trip\n", ROUNDS, t, t * 1e6 / ROUNDS);
+	t = run(&c, eventfd_echo, c.ping_efd, c.pong_efd, sizeof(uint64_t));
+	printf("eventfd: %d round trips in %.3fs, %.2fus per round trip\n", ROUNDS, t, t * 1e6 / ROUNDS);
+
+	close(c.ping[0]);
+	close(c.ping[1]);
+	close(c.pong[0]);
+	close(c.pong[1]);
+	close(c.ping_efd);
+	close(c.pong_efd);
+	return 0;
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+#define _GNU_SOURCE
+#include <stdio.h>
+#include <stdlib.h>
+#include <time.h>
+#include <fcntl.h>
+#include <unistd.h>
+#include <netinet/in.h>
+#include <arpa/inet.h>
+#include <sys/socket.h>
+#include <sys/sendfile.h>
+
+static double now(void)
+{
+	struct timespec ts;
+	clock_gettime(CLOCK_MONOTONIC, &ts);
+	return ts.tv_sec + ts.tv_nsec / 1e9;
+}
+
+static void report(const char *name, long bytes, double t)
+{
+	printf("%-16s %8ld MiB in %8.3f s: %10.1f MiB/s\n", name, bytes >> 20, t, (bytes >> 20) / t);
+}
+
+/*
+ * Serves a file over loopback with sendfile and copies it with copy_file_range. The receiving
+ * side runs on the host, e.g. "nc -l 127.0.0.1 8080 > /dev/null", and is selected by the port.
+ * usage: sendfile-bench [port [MiB]]
+ */
+int main(int argc, char **argv)
+{
+	int port = 0;
+	long size = 1024L * 1024 * 1024;
+	char src[] = "/tmp/sendfile-bench-XXXXXX";
+	char dst[] = "/tmp/sendfile-bench-XXXXXX";
+	int in;
+	int out;
+	long total;
+	ssize_t n;
+	double t;
+
+	if(argc > 1)
+		port = atoi(argv[1]);
+	if(argc > 2)
+		size = atol(argv[2]) * 1024 * 1024;
+
+	in = mkstemp(src);
+	out = mkstemp(dst);
+	if(in < 0 || out < 0) {
+		perror("mkstemp");
+		return 1;
+	}
+	unlink(src);
+	unlink(dst);
+	if(ftruncate(in, size) < 0) {
+		perror("ftruncate");
+		return 1;
+	}
+
+	t = now();
+	for(total = 0; total < size; total += n) {
+		n = copy_file_range(in, NULL, out, NULL, size - total, 0);
+		if(n <= 0) {
+			perror("copy_file_range");
+			return 1;
+		}
+	}
+	report("copy_file_range", total, now() - t);
+
+	if(port != 0) {
+		struct sockaddr_in addr;
+		off_t off = 0;
+		int s = socket(AF_INET, SOCK_STREAM, 0);
+		if(s < 0) {
+			perror("socket");
+			return 1;
+		}
+		addr.sin_family = AF_INET;
+		addr.sin_port = htons(port);
+		addr.sin_addr.s_addr = inet_addr("127.0.0.1");
+		if(connect(s, (struct sockaddr*) &addr, sizeof(addr)) < 0) {
+			perror("connect");
+			return 1;
+		}
+
+		t = now();
+		while(off < size) {
+			n = sendfile(s, in, &off, size - off);
+			if(n <= 0) {
+				perror("sendfile");
+				return 1;
+			}
+		}
+		report("sendfile", (long) off, now() - t);
+		close(s);
+	}
+
+	close(in);
+	close(out);
+	return 0;
+}
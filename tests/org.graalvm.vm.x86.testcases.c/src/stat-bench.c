@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+#define _GNU_SOURCE
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <time.h>
+#include <dirent.h>
+#include <unistd.h>
+#include <sys/stat.h>
+
+#define PASSES	5
+
+static long files;
+static long missing;
+
+static double now(void)
+{
+	struct timespec ts;
+	clock_gettime(CLOCK_MONOTONIC, &ts);
+	return ts.tv_sec + ts.tv_nsec / 1e9;
+}
+
+static void walk(const char *path)
+{
+	char child[4096];
+	char probe[4096 + 16];
+	struct dirent *ent;
+	struct stat st;
+	DIR *dir = opendir(path);
+	if(!dir) {
+		return;
+	}
+	while((ent = readdir(dir)) != NULL) {
+		if(!strcmp(ent->d_name, ".") || !strcmp(ent->d_name, "..")) {
+			continue;
+		}
+		snprintf(child, sizeof(child), "%s/%s", path, ent->d_name);
+		if(lstat(child, &st) < 0) {
+			continue;
+		}
+		files++;
+		/* compilers probe include paths for files which do not exist */
+		snprintf(probe, sizeof(probe), "%s.missing", child);
+		if(access(probe, F_OK) < 0) {
+			missing++;
+		}
+		if(S_ISDIR(st.st_mode)) {
+			walk(child);
+		} else if(stat(child, &st) < 0) {
+			perror("stat");
+		}
+	}
+	closedir(dir);
+}
+
+int main(int argc, char **argv)
+{
+	const char *root = argc > 1 ? argv[1] : "/usr/include";
+	int i;
+
+	for(i = 0; i < PASSES; i++) {
+		double start = now();
+		double t;
+		files = 0;
+		missing = 0;
+		walk(root);
+		t = now() - start;
+		printf("pass %d: %ld entries, %ld negative lookups in %.3f s (%.0f lookups/s)\n", i, files, missing, t, (3 * files) / t);
+	}
+	return 0;
+}
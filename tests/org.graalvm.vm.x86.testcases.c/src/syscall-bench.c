@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+#define _DEFAULT_SOURCE
+#include <stdio.h>
+#include <stdlib.h>
+#include <time.h>
+#include <fcntl.h>
+#include <unistd.h>
+#include <sys/syscall.h>
+
+/* syscall heavy loop: small reads, writes and seeks; run with -Dvmx86.syscall.stats=true */
+int main(int argc, char **argv)
+{
+	long i;
+	long n = 1000000;
+	long sum = 0;
+	char c = 0;
+	int in;
+	int out;
+	struct timespec start;
+	struct timespec end;
+	double ns;
+
+	if(argc > 1)
+		n = atol(argv[1]);
+
+	in = open("/dev/zero", O_RDONLY);
+	out = open("/dev/null", O_WRONLY);
+	if(in < 0 || out < 0) {
+		perror("open");
+		return 1;
+	}
+
+	clock_gettime(CLOCK_MONOTONIC, &start);
+	for(i = 0; i < n; i++) {
+		sum += read(in, &c, 1);
+		sum += write(out, &c, 1);
+		sum += lseek(out, 0, SEEK_SET);
+		sum += syscall(SYS_getpid) > 0;
+	}
+	clock_gettime(CLOCK_MONOTONIC, &end);
+
+	close(in);
+	close(out);
+
+	ns = (end.tv_sec - start.tv_sec) * 1e9 + (end.tv_nsec - start.tv_nsec);
+	printf("%ld iterations (%ld), %.1f ns/iteration\n", n, sum, ns / n);
+	return 0;
+}
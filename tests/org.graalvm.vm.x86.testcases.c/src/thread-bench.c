@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+#define _GNU_SOURCE
+#include <stdio.h>
+#include <stdlib.h>
+#include <time.h>
+#include <pthread.h>
+
+#define THREADS		10000
+#define SLEEPS		10
+#define STACK_SIZE	(64 * 1024)
+
+static pthread_t threads[THREADS];
+
+static double now(void)
+{
+	struct timespec ts;
+	clock_gettime(CLOCK_MONOTONIC, &ts);
+	return ts.tv_sec + ts.tv_nsec / 1e9;
+}
+
+/* mostly blocked: sleep and wake up a few times */
+static void *sleeper(void *arg)
+{
+	struct timespec ts = { 0, 10 * 1000 * 1000 };
+	int i;
+	for(i = 0; i < SLEEPS; i++)
+		nanosleep(&ts, NULL);
+	return NULL;
+}
+
+int main(void)
+{
+	pthread_attr_t attr;
+	double start;
+	double spawned;
+	double end;
+	int i;
+
+	pthread_attr_init(&attr);
+	pthread_attr_setstacksize(&attr, STACK_SIZE);
+
+	start = now();
+	for(i = 0; i < THREADS; i++) {
+		if(pthread_create(&threads[i], &attr, sleeper, NULL)) {
+			printf("pthread_create failed after %d threads\n", i);
+			return 1;
+		}
+	}
+	spawned = now();
+	for(i = 0; i < THREADS; i++)
+		pthread_join(threads[i], NULL);
+	end = now();
+
+	printf("spawned %d threads in %.3fs (%.0f threads/s)\n", THREADS, spawned - start, THREADS / (spawned - start));
+	printf("all threads done after %.3fs, %d sleeps each (%.0f wakeups/s)\n", end - start, SLEEPS, (double) THREADS * SLEEPS / (end - start));
+	return 0;
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2019, Oracle and/or its affiliates. All rights reserved.
+ * Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+#define _GNU_SOURCE
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <time.h>
+#include <fcntl.h>
+#include <unistd.h>
+
+/* run with -Dvmx86.tmpfs=/tmp to measure the in-memory file system */
+
+#define BLOCK	4096
+#define TOTAL	(1024L * 1024L * 1024L)
+
+static double now(void)
+{
+	struct timespec ts;
+	clock_gettime(CLOCK_MONOTONIC, &ts);
+	return ts.tv_sec + ts.tv_nsec / 1e9;
+}
+
+int main(int argc, char **argv)
+{
+	const char *path = argc > 1 ? argv[1] : "/tmp/tmpfs-bench.dat";
+	static char buf[BLOCK];
+	long off;
+	double start;
+	double t;
+	int fd;
+
+	memset(buf, 0x5a, sizeof(buf));
+
+	fd = open(path, O_RDWR | O_CREAT | O_TRUNC, 0644);
+	if(fd < 0) {
+		perror("open");
+		return 1;
+	}
+
+	start = now();
+	for(off = 0; off < TOTAL; off += BLOCK) {
+		if(write(fd, buf, BLOCK) != BLOCK) {
+			perror("write");
+			return 1;
+		}
+	}
+	t = now() - start;
+	printf("append: %ld MiB in %.3f s (%.1f MiB/s)\n", TOTAL >> 20, t, (TOTAL >> 20) / t);
+
+	start = now();
+	for(off = 0; off < TOTAL; off += BLOCK) {
+		if(pread(fd, buf, BLOCK, off) != BLOCK) {
+			perror("pread");
+			return 1;
+		}
+	}
+	t = now() - start;
+	printf("read:   %ld MiB in %.3f s (%.1f MiB/s)\n", TOTAL >> 20, t, (TOTAL >> 20) / t);
+
+	if(ftruncate(fd, 0) < 0) {
+		perror("ftruncate");
+		return 1;
+	}
+	close(fd);
+	unlink(path);
+	return 0;
+}